@@ -0,0 +1,86 @@
+package run.runnable.numfeelservice;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 对比两份 JMH JSON 结果（{@code -rf json}），逐个基准打印基线、本次得分与变化百分比。
+ * <p>
+ * 同名且参数相同的基准才对比；avgt / sample / ss 越小越好，thrpt 越大越好。
+ * 任一基准变差超过阈值（百分比）时以退出码 1 结束，CI 里直接让构建失败。
+ * 运行：./mvnw -Pjmh test-compile exec:exec@jmh-diff -Djmh.baseline=jmh-baseline.json [-Djmh.threshold=10]
+ */
+public final class JmhResultDiff {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private JmhResultDiff() {
+    }
+
+    /** 一个基准的得分与单位。 */
+    private record Score(String mode, double score, String unit) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: JmhResultDiff <baseline.json> <current.json> [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Score> baseline = load(Path.of(args[0]));
+        Map<String, Score> current = load(Path.of(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-72s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> e : current.entrySet()) {
+            Score now = e.getValue();
+            Score before = baseline.get(e.getKey());
+            if (before == null || !before.unit.equals(now.unit)) {
+                System.out.printf("%-72s %14s %14.3f %9s  (%s)%n", e.getKey(), "-", now.score, "new", now.unit);
+                continue;
+            }
+            double change = (now.score - before.score) / before.score * 100;
+            // 统一成"正数表示变差"
+            double worse = "thrpt".equals(now.mode) ? -change : change;
+            boolean regressed = worse > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-72s %14.3f %14.3f %+8.1f%%  (%s)%s%n", e.getKey(), before.score, now.score, change,
+                    now.unit, regressed ? "  REGRESSION" : "");
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-72s %14.3f %14s %9s%n", key, baseline.get(key).score, "-", "removed");
+            }
+        }
+        if (regressions > 0) {
+            System.out.printf("%d 个基准比基线慢超过 %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    /** 读取结果文件，键为"基准名 + 参数"，如 {@code ...RateLimitBenchmark.filter:distinctIps=64}。 */
+    private static Map<String, Score> load(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : MAPPER.readTree(Files.readString(file))) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asString());
+            Map<String, String> params = new TreeMap<>();
+            for (Map.Entry<String, JsonNode> p : run.path("params").properties()) {
+                params.put(p.getKey(), p.getValue().asString());
+            }
+            params.forEach((name, value) -> key.append(':').append(name).append('=').append(value));
+            JsonNode metric = run.path("primaryMetric");
+            scores.put(key.toString(), new Score(run.path("mode").asString(), metric.path("score").asDouble(),
+                    metric.path("scoreUnit").asString()));
+        }
+        return scores;
+    }
+}
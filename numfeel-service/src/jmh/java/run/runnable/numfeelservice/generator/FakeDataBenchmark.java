@@ -0,0 +1,57 @@
+package run.runnable.numfeelservice.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成 rows 行假数据的耗时（µs/次）。
+ * <ul>
+ *   <li>generate：{@link FakeDataGenerator#generate(long, int, int)}，逐行产出 {@code MockPersonResponse}；</li>
+ *   <li>generateNdjson：{@link FakeDataGenerator#generateChunks}，直接编码成 NDJSON 分块（导出接口走这条）。</li>
+ * </ul>
+ * 固定 seed，每次生成同一份数据。
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.include=FakeDataBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FakeDataBenchmark {
+
+    private static final long SEED = 20260314L;
+
+    @Param({"100", "10000"})
+    int rows;
+
+    private FakeDataGenerator generator;
+
+    @Setup
+    public void setup() {
+        generator = new FakeDataGenerator();
+    }
+
+    @Benchmark
+    public Long generate() {
+        return generator.generate(SEED, 0, rows).count().block();
+    }
+
+    @Benchmark
+    public Integer generateNdjson() {
+        return generator.generateChunks(SEED, 0, rows, RowFormat.NDJSON)
+                .reduce(0, (bytes, chunk) -> bytes + chunk.bytes().length)
+                .block();
+    }
+}
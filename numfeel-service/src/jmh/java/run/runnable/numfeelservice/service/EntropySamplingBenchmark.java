@@ -0,0 +1,95 @@
+package run.runnable.numfeelservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 随机字节 → 无偏整数的耗时（µs/批，每批 count 个 [0, range) 整数），新旧实现对比。
+ * <ul>
+ *   <li>legacyByteWindow：原先的做法，{@code List<Integer>} 上按 1..8 字节窗口拒绝采样；</li>
+ *   <li>entropyBits：{@link EntropyBits#nextInts}，按位拒绝采样，字节按期望量准备；</li>
+ *   <li>drawBatchSecure：{@link QuantumRandomService#drawBatch} 走 secure 源，含 SecureRandom 取字节。</li>
+ * </ul>
+ * 字节事先生成好，前两项只测抽取本身。
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.include=EntropySamplingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntropySamplingBenchmark {
+
+    @Param({"6", "1000"})
+    int range;
+
+    @Param({"5000"})
+    int count;
+
+    private byte[] bytes;
+    private List<Integer> boxed;
+    private int[] out;
+    private QuantumRandomService service;
+
+    @Setup
+    public void setup() {
+        // 旧实现每个数至少 1 字节且有拒绝，多备一倍
+        bytes = new byte[Math.max(EntropyBits.bytesFor(range, count), count * 8)];
+        new SplittableRandom(42).nextBytes(bytes);
+        boxed = new UnsignedByteList(bytes);
+        out = new int[count];
+        service = new QuantumRandomService(null, null, "");
+    }
+
+    @Benchmark
+    public int[] legacyByteWindow() {
+        int[] idx = {0};
+        for (int i = 0; i < count; i++) {
+            out[i] = legacyDrawInt(boxed, idx, range);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public int[] entropyBits() {
+        new EntropyBits(bytes).nextInts(range, out, 0, count);
+        return out;
+    }
+
+    @Benchmark
+    public QuantumRandomService.IntBatch drawBatchSecure() {
+        return service.drawBatch(0, range - 1, count, QuantumRandomService.SOURCE_SECURE).block();
+    }
+
+    /** 原先的 drawIntShared：取 w 个字节拼成整数，落在 range 的整数倍以内才接受。 */
+    private static int legacyDrawInt(List<Integer> bytes, int[] idx, int range) {
+        if (range <= 1) return 0;
+        int w = 1;
+        long cap = 256;
+        while (cap < range && w < 8) { w++; cap *= 256; }
+        long span = 1L;
+        for (int i = 0; i < w; i++) span *= 256;
+        long limit = span - (span % range);
+        while (idx[0] + w <= bytes.size()) {
+            long n = 0;
+            for (int k = 0; k < w; k++) n = n * 256 + (bytes.get(idx[0] + k) & 0xff);
+            idx[0] += w;
+            if (n < limit) return (int) (n % range);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,71 @@
+package run.runnable.numfeelservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 埋点 props 清洗 + 序列化的耗时（ns/次）：{@link EventCollectService#encodeProps}。
+ * <ul>
+ *   <li>typical：前端常见的 6 个标量属性，全部保留；</li>
+ *   <li>oversized：30 个 key，含嵌套对象、空 key、超长字符串，要截断、跳过并卡 1 KB 上限。</li>
+ * </ul>
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.include=EventPropsBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventPropsBenchmark {
+
+    private Map<String, Object> typical;
+    private Map<String, Object> oversized;
+
+    @Setup
+    public void setup() {
+        typical = new LinkedHashMap<>();
+        typical.put("step", 3);
+        typical.put("choice", "left");
+        typical.put("elapsed_ms", 1834L);
+        typical.put("score", 0.72);
+        typical.put("correct", true);
+        typical.put("label", "第二轮");
+
+        oversized = new LinkedHashMap<>();
+        for (int i = 0; i < 30; i++) {
+            Object value = switch (i % 5) {
+                case 0 -> "值" + "x".repeat(90);
+                case 1 -> i * 1_000_003L;
+                case 2 -> Map.of("nested", i);
+                case 3 -> List.of(i, i + 1);
+                default -> "say \"hi\"\n" + i;
+            };
+            oversized.put("key_" + i, value);
+        }
+        oversized.put("", 1);
+    }
+
+    @Benchmark
+    public String typical() {
+        return EventCollectService.encodeProps(typical);
+    }
+
+    @Benchmark
+    public String oversized() {
+        return EventCollectService.encodeProps(oversized);
+    }
+}
@@ -0,0 +1,48 @@
+package run.runnable.numfeelservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP 二进制演示接口的序列化耗时（µs/次）：同一份 feed 数据
+ * 走 {@link HttpBinaryDemoService#toBinary}（MessagePack）与 {@link HttpBinaryDemoService#toJsonText}（JSON 文本）。
+ * 数据在 setup 里先构造好（首次调用才建树），只测序列化。
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.include=HttpBinaryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpBinaryBenchmark {
+
+    private HttpBinaryDemoService service;
+
+    @Setup
+    public void setup() {
+        service = new HttpBinaryDemoService();
+        service.toBinary();
+        service.toJsonText();
+    }
+
+    @Benchmark
+    public byte[] toBinary() {
+        return service.toBinary();
+    }
+
+    @Benchmark
+    public String toJsonText() {
+        return service.toJsonText();
+    }
+}
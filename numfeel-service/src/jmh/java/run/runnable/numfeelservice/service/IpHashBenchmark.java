@@ -0,0 +1,122 @@
+package run.runnable.numfeelservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ip_hash / SHA-256 十六进制的新旧路径对比。
+ * <ul>
+ *   <li>legacy*：原先每次 {@code MessageDigest.getInstance}、字符串拼接、逐字节 {@code Integer.toHexString}；</li>
+ *   <li>sha256Hex：{@link Hashing} 的线程内摘要 + 查表编码（无缓存，对应 WealthButton 等处）；</li>
+ *   <li>dailyIpHasher：{@link DailyIpHasher}，IP 从大小为 distinctIps 的池中轮流取，池不超过缓存容量时全部命中。</li>
+ * </ul>
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.include=IpHashBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IpHashBenchmark {
+
+    private static final String SALT = "bench-salt-0123456789";
+    private static final DateTimeFormatter DAY_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+
+    /** 轮流使用的不同 IP 个数；4096 以内全部落在当天缓存里，更大时超出部分每次重新计算。 */
+    @Param({"64", "100000"})
+    int distinctIps;
+
+    private String[] ips;
+    private int cursor;
+    private long now;
+    private DailyIpHasher hasher;
+
+    @Setup
+    public void setup() {
+        ips = new String[distinctIps];
+        for (int i = 0; i < distinctIps; i++) {
+            ips[i] = "10." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+        }
+        now = Instant.parse("2026-03-14T12:00:00Z").toEpochMilli();
+        hasher = new DailyIpHasher(SALT, 4096);
+    }
+
+    private String nextIp() {
+        String ip = ips[cursor];
+        cursor = cursor + 1 == ips.length ? 0 : cursor + 1;
+        return ip;
+    }
+
+    @Benchmark
+    public String legacyIpHash() {
+        String day = DAY_FORMATTER.format(Instant.ofEpochMilli(now));
+        String hash = legacySha256(nextIp() + day + SALT);
+        return hash.substring(0, 16);
+    }
+
+    @Benchmark
+    public String sha256Hex() {
+        String day = DAY_FORMATTER.format(Instant.ofEpochMilli(now));
+        return Hashing.sha256Hex(nextIp() + day + SALT).substring(0, 16);
+    }
+
+    @Benchmark
+    public String dailyIpHasher() {
+        return hasher.hash(nextIp(), now);
+    }
+
+    @Benchmark
+    public String legacyHashToken() {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(nextIp().getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", hash[i]));
+            }
+            return "zh:" + sb;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public String hashToken() {
+        return "zh:" + Hashing.hex(Hashing.sha256(nextIp()), 16);
+    }
+
+    private static String legacySha256(String input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : hashBytes) {
+                String h = Integer.toHexString(0xff & b);
+                if (h.length() == 1) hex.append('0');
+                hex.append(h);
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package run.runnable.numfeelservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import run.runnable.numfeelservice.model.GameplayEntities.KeystrokeProfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 击键统计聚合的耗时（µs/次），直接测 {@link KeystrokeIndex}：
+ * <ul>
+ *   <li>buildAndQuery：从 rows 行样本建索引、求全站统计并为当前会话找最近的其他会话（冷启动的首次查询）；</li>
+ *   <li>nearest：在建好的索引上做一次不带备忘的精确最近邻扫描。</li>
+ * </ul>
+ * 每个会话 5 个样本，每个样本 30 次按键，按键时长 / 间隔在会话自己的基准上抖动。
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.include=KeystrokeStatsBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeystrokeStatsBenchmark {
+
+    private static final int SAMPLES_PER_SESSION = 5;
+    private static final int KEYS = 30;
+
+    @Param({"500", "5000"})
+    int rows;
+
+    private List<KeystrokeProfile> profiles;
+    private KeystrokeIndex index;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rng = new SplittableRandom(42);
+        profiles = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            int session = i / SAMPLES_PER_SESSION;
+            int hold = 60 + (session * 37) % 120;
+            int gap = 120 + (session * 53) % 300;
+            StringBuilder holds = new StringBuilder("[");
+            StringBuilder intervals = new StringBuilder("[");
+            int total = 0;
+            for (int k = 0; k < KEYS; k++) {
+                int h = hold + rng.nextInt(-15, 16);
+                holds.append(k == 0 ? "" : ",").append(h);
+                total += h;
+                if (k > 0) {
+                    int g = gap + rng.nextInt(-40, 41);
+                    intervals.append(k == 1 ? "" : ",").append(g);
+                    total += g;
+                }
+            }
+            profiles.add(new KeystrokeProfile((long) i, "s-" + session, i % SAMPLES_PER_SESSION, "abc123",
+                    holds.append(']').toString(), intervals.append(']').toString(), total, 0, 1_000_000L + i));
+        }
+        index = KeystrokeIndex.of(profiles);
+    }
+
+    @Benchmark
+    public KeystrokeIndex.Match buildAndQuery() {
+        KeystrokeIndex built = KeystrokeIndex.of(profiles);
+        built.totals();
+        return built.nearestCached("s-0");
+    }
+
+    @Benchmark
+    public KeystrokeIndex.Match nearest() {
+        return index.nearest("s-0");
+    }
+}
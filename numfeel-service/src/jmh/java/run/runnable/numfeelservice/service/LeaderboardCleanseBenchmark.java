@@ -0,0 +1,58 @@
+package run.runnable.numfeelservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import run.runnable.numfeelservice.controller.dto.LeaderboardResponses.LeaderboardEntry;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 排行榜清洗的耗时（µs/次）：{@link LeaderboardService#cleanse} 把 Umami 返回的 entries 条 path 指标
+ * 归一化、合并重复路径、剔除非 /pages/ 路径并取前 20。
+ * <p>
+ * 路径混有查询串、锚点、.html 后缀、末尾斜杠与首页等需要归一化或剔除的形式，约 60 个不同页面。
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.include=LeaderboardCleanseBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeaderboardCleanseBenchmark {
+
+    private static final String[] SUFFIXES = {"", "/", ".html", "?from=share", "#top", "/?utm_source=x"};
+
+    @Param({"60", "1000"})
+    int entries;
+
+    private JsonNode raw;
+
+    @Setup
+    public void setup() {
+        ArrayNode arr = new ObjectMapper().createArrayNode();
+        for (int i = 0; i < entries; i++) {
+            String path = i % 17 == 0 ? "/" : "/pages/demo-" + (i % 60) + SUFFIXES[i % SUFFIXES.length];
+            arr.addObject().put("x", path).put("y", 1000L - i);
+        }
+        raw = arr;
+    }
+
+    @Benchmark
+    public List<LeaderboardEntry> cleanse() {
+        return LeaderboardService.cleanse(raw);
+    }
+}
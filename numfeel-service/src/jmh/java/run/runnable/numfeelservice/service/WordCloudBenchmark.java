@@ -0,0 +1,95 @@
+package run.runnable.numfeelservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 词云分词统计的耗时（ms/次）：{@link WordCloudService#segmentFiles} 处理 files 个 Markdown 文件，
+ * 每个文件经 {@code processFile} 逐行抽取说话人内容、Jieba 分词、过滤计数。
+ * <ul>
+ *   <li>processFiles：单线程，即单纯的 processFile 累计耗时；</li>
+ *   <li>segmentFilesParallel：按 CPU 数并行（启动时建索引走这条）。</li>
+ * </ul>
+ * 语料在临时目录里生成，每个文件 linesPerFile 行，约一半是目标说话人。
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.include=WordCloudBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordCloudBenchmark {
+
+    private static final String[] LINES = {
+            "户晨风：我们今天聊一聊北京和上海的房价，还有年轻人的工资收入。",
+            "网友：主播你怎么看待消费降级？",
+            "户晨风:消费降级是一个伪命题，苹果手机卖得比安卓贵是有原因的。",
+            "网友：那三四线城市的年轻人应该怎么办？",
+            "户晨风：2024 年的经济形势还是要看出口和内需，制造业和服务业都很重要。",
+            "户晨风：去大城市，找一份稳定的工作，先把收入提上去，再谈买房和结婚。",
+    };
+
+    @Param({"32"})
+    int files;
+
+    @Param({"200"})
+    int linesPerFile;
+
+    private Path dir;
+    private List<Path> paths;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("wordcloud-bench");
+        paths = new ArrayList<>(files);
+        for (int f = 0; f < files; f++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < linesPerFile; i++) {
+                sb.append(LINES[(f + i) % LINES.length]).append('\n');
+            }
+            Path file = dir.resolve(f + ".md");
+            Files.writeString(file, sb.toString());
+            paths.add(file);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public WordCounter[] processFiles() {
+        return WordCloudService.segmentFiles(paths, 1);
+    }
+
+    @Benchmark
+    public WordCounter[] segmentFilesParallel() {
+        return WordCloudService.segmentFiles(paths, Runtime.getRuntime().availableProcessors());
+    }
+}
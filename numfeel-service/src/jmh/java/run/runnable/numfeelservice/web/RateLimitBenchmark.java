@@ -0,0 +1,194 @@
+package run.runnable.numfeelservice.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.TimeMeter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * 每个请求经过限流的耗时（ns/request），新旧实现对比。
+ * <ul>
+ *   <li>legacyFilter：原先的实现（逐条规则判断、{@code ip + "|" + key} 拼接、Caffeine 查找、Bucket4j 扣减）；</li>
+ *   <li>filter：{@link RateLimitWebFilter}（{@link IpKey} + 后缀字典树 + {@link RateLimitTable}）。</li>
+ * </ul>
+ * 请求从 distinctIps 个 IP × 4 种请求（静态资源 GET、普通 GET、/submit POST、/fingerprint/collect POST）中轮流取。
+ * 两边的时钟每次读取都前进一分钟，桶始终是满的，测的是放行路径，不会走到 429 的响应写出。
+ * 运行：./mvnw -Pjmh test-compile exec:exec -Djmh.include=RateLimitBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitBenchmark {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final WebFilterChain CHAIN = exchange -> Mono.empty();
+
+    @Param({"64", "10000"})
+    int distinctIps;
+
+    private ServerWebExchange[] exchanges;
+    private int cursor;
+    private long time;
+    private RateLimitWebFilter filter;
+    private LegacyFilter legacy;
+
+    @Setup
+    public void setup() {
+        String[][] requests = {
+                {"GET", "/assets/app.js"},
+                {"GET", "/random/number"},
+                {"POST", "/sorites/submit"},
+                {"POST", "/fingerprint/collect"},
+        };
+        exchanges = new ServerWebExchange[distinctIps * requests.length];
+        int n = 0;
+        for (int i = 0; i < distinctIps; i++) {
+            String ip = "10." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+            for (String[] request : requests) {
+                exchanges[n++] = MockServerWebExchange.from(
+                        MockServerHttpRequest.method(HttpMethod.valueOf(request[0]), request[1])
+                                .header("X-Forwarded-For", ip + ", 172.16.0.1"));
+            }
+        }
+        filter = new RateLimitWebFilter(this::tick);
+        legacy = new LegacyFilter(this::tick);
+    }
+
+    private long tick() {
+        time += MINUTE;
+        return time;
+    }
+
+    private ServerWebExchange next() {
+        ServerWebExchange exchange = exchanges[cursor];
+        cursor = cursor + 1 == exchanges.length ? 0 : cursor + 1;
+        return exchange;
+    }
+
+    @Benchmark
+    public Mono<Void> legacyFilter() {
+        return legacy.filter(next(), CHAIN);
+    }
+
+    @Benchmark
+    public Mono<Void> filter() {
+        return filter.filter(next(), CHAIN);
+    }
+
+    /** 原先的 RateLimitWebFilter（Caffeine + Bucket4j），只把时钟换成可注入的。 */
+    private static final class LegacyFilter {
+
+        private final class Rule {
+            final Predicate<ServerHttpRequest> matches;
+            final Function<ServerHttpRequest, String> keyFunction;
+            final long maxRequests;
+            final Cache<String, Bucket> buckets = Caffeine.newBuilder()
+                    .expireAfterAccess(300, TimeUnit.SECONDS)
+                    .maximumSize(10_000)
+                    .build();
+
+            Rule(Predicate<ServerHttpRequest> matches, Function<ServerHttpRequest, String> keyFunction,
+                 long maxRequests) {
+                this.matches = matches;
+                this.keyFunction = keyFunction;
+                this.maxRequests = maxRequests;
+            }
+
+            long tryAcquire(ServerHttpRequest request, String ip) {
+                String key = keyFunction.apply(request).replace('\n', ' ');
+                Bucket bucket = buckets.get(ip + "|" + key, k -> Bucket.builder()
+                        .addLimit(Bandwidth.simple(maxRequests, Duration.ofSeconds(60)))
+                        .withCustomTimePrecision(timeMeter)
+                        .build());
+                ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+                if (probe.isConsumed()) {
+                    return 0;
+                }
+                return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill()) + 1);
+            }
+        }
+
+        private final TimeMeter timeMeter;
+        private final List<Rule> rules = new ArrayList<>();
+
+        LegacyFilter(LongSupplier clock) {
+            this.timeMeter = new TimeMeter() {
+                @Override
+                public long currentTimeNanos() {
+                    return clock.getAsLong();
+                }
+
+                @Override
+                public boolean isWallClockBased() {
+                    return false;
+                }
+            };
+            rules.add(new Rule(req -> true, req -> "global", 200));
+            rules.add(new Rule(isPost("/fingerprint/collect"), LegacyFilter::routeKey, 60));
+            rules.add(new Rule(isPost("/social-engineering/submit"), LegacyFilter::routeKey, 30));
+            rules.add(new Rule(isPost("/events/collect"), LegacyFilter::routeKey, 30));
+            rules.add(new Rule(isPost("/zhihu/analyze"), LegacyFilter::routeKey, 3));
+            rules.add(new Rule(isPost("/multipart/upload"), LegacyFilter::routeKey, 20));
+            rules.add(new Rule(LegacyFilter::isWriteThrottled, LegacyFilter::routeKey, 10));
+        }
+
+        private static Predicate<ServerHttpRequest> isPost(String path) {
+            return req -> "POST".equals(req.getMethod().name()) && req.getPath().value().endsWith(path);
+        }
+
+        private static boolean isWriteThrottled(ServerHttpRequest req) {
+            String method = req.getMethod().name();
+            String path = req.getPath().value();
+            if ("POST".equals(method) && path.endsWith("/submit")) {
+                return !path.endsWith("/fingerprint/collect") && !path.endsWith("/social-engineering/submit");
+            }
+            return "POST".equals(method) && path.endsWith("/leaderboard");
+        }
+
+        private static String routeKey(ServerHttpRequest req) {
+            return req.getMethod().name() + " " + req.getPath().value();
+        }
+
+        Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+            ServerHttpRequest request = exchange.getRequest();
+            String ip = ClientIp.resolve(request);
+            for (Rule rule : rules) {
+                if (rule.matches.test(request) && rule.tryAcquire(request, ip) > 0) {
+                    return Mono.error(new IllegalStateException("unexpected 429"));
+                }
+            }
+            return chain.filter(exchange);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package run.runnable.numfeelservice.config;
 
+import run.runnable.numfeelservice.service.Hashing;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -9,9 +10,6 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.lang.reflect.Method;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -54,13 +52,6 @@ public class CacheConfig {
                         .expireAfterWrite(60, TimeUnit.SECONDS)
                         .buildAsync());
 
-        // 键盘节奏统计：200 条、60 秒（最近邻居距离需全量特征比对，缓存避免每次请求重算）
-        cacheManager.registerCustomCache("keystrokeStats",
-                Caffeine.newBuilder()
-                        .maximumSize(200)
-                        .expireAfterWrite(60, TimeUnit.SECONDS)
-                        .buildAsync());
-
         // HIBP range 查询：20000 条、6 小时
         cacheManager.registerCustomCache("pwnedRange",
                 Caffeine.newBuilder()
@@ -104,17 +95,6 @@ public class CacheConfig {
      * @return "zh:" + 32 位十六进制
      */
     public static String hashToken(String token) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(token.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(32);
-            for (int i = 0; i < 16; i++) {
-                sb.append(String.format("%02x", hash[i]));
-            }
-            return "zh:" + sb;
-        } catch (NoSuchAlgorithmException e) {
-            // 几乎不可能；fallback 用 identity
-            return "zh:" + Integer.toHexString(System.identityHashCode(token));
-        }
+        return "zh:" + Hashing.hex(Hashing.sha256(token), 16);
     }
 }
@@ -28,6 +28,7 @@ import java.util.regex.Pattern;
  * <p>
  * POST /events/collect        — 批量上报事件（fire-and-forget，坏数据按条丢弃不影响整批）
  * GET  /events/summary?demo=  — 查询某个 demo 的聚合摘要（只读，不暴露原始事件行）
+ * GET  /events/ingest-stats   — 写入队列状态（排队、丢弃、已写入的计数）
  */
 @RestController
 @RequestMapping("/events")
@@ -79,6 +80,14 @@ public class EventController {
                 });
     }
 
+    /**
+     * 写入队列状态：容量、排队行数，以及累计入队、溢出丢弃、写入成功 / 失败的行数。
+     */
+    @GetMapping("/ingest-stats")
+    public ResponseEntity<JsonNode> ingestStats() {
+        return ApiResponse.ok(collectService.ingestStats());
+    }
+
     /**
      * 查询指定 demo 的聚合摘要（会话数、事件总数、按事件名分组的计数）。
      */
@@ -1,25 +1,59 @@
 package run.runnable.numfeelservice.controller;
 
-import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.JsonNode;
 import run.runnable.numfeelservice.controller.dto.UtilityRequests.GeneratorQuery;
+import run.runnable.numfeelservice.controller.dto.UtilityResponses.MockFormatSizeResponse;
 import run.runnable.numfeelservice.generator.ChineseNameGenerator;
 import run.runnable.numfeelservice.generator.FakeDataGenerator;
+import run.runnable.numfeelservice.generator.RowFormat;
 import run.runnable.numfeelservice.web.ApiException;
+import run.runnable.numfeelservice.web.ApiResponse;
+import run.runnable.numfeelservice.web.QueryParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 数据生成接口：
  * <ul>
- *   <li>GET /mock?n=...           — 假数据（200 ≤ n ≤ 1,000,000）</li>
- *   <li>GET /chinese-names?n=...  — 中文名（1 ≤ n ≤ 100,000）</li>
+ *   <li>GET /mock?n=...                 — 假数据（200 ≤ n ≤ 1,000,000）</li>
+ *   <li>GET /mock?n=...&amp;format=ndjson  — 假数据，逐行流式输出（application/x-ndjson）</li>
+ *   <li>GET /mock?n=...&amp;format=stream  — 假数据，分块流式 JSON 数组</li>
+ *   <li>GET /mock?n=... + Accept 头      — 按 Accept 流式输出 {@code application/x-msgpack}、{@code text/csv}
+ *       或 {@code application/vnd.apache.arrow.stream}（Arrow IPC 列式流）</li>
+ *   <li>GET /mock/formats?n=...         — 同一份数据在各格式下的字节数与每行字节数</li>
+ *   <li>GET /chinese-names?n=...        — 中文名（1 ≤ n ≤ 100,000）</li>
+ * </ul>
+ * 默认输出为 CollectorList 批量 JSON 数组，避免流式响应在中途错误时断裂。
+ * <p>
+ * 分页 / 可复现参数（两个接口通用）：{@code seed} 确定一份 n 行的数据集，第 k 行只由 (seed, k) 决定；
+ * {@code offset}（默认 0）与 {@code limit}（默认 n - offset）截取其中 [offset, min(n, offset + limit)) 一段。
+ * 同一 seed 的不同分段可以分别向不同 Pod 并行请求，失败时只重试该段。未传 seed 时随机生成，
+ * 实际使用的 seed 通过响应头 {@value #SEED_HEADER} 返回，便于继续拉取后续分段。
+ * <p>
+ * 流式模式把生成器的每个分块（{@value FakeDataGenerator#CHUNK_ROWS} 行）直接写为一个 {@link DataBuffer}，
+ * 由 Netty 按下游消费速度拉取（背压），单请求堆占用与 n 无关。响应头发出后无法再改状态码，因此以末尾帧表达结果：
+ * <ul>
+ *   <li>ndjson：最后一行固定为 {@code {"status":200,"count":N}}；生成失败时为
+ *       {@code {"status":500,"message":"Generation failed","count":K}}（K 为已输出行数）</li>
+ *   <li>stream：成功时为普通 JSON 数组；失败时在数组末尾追加同样的 500 对象后闭合，保证整体仍是合法 JSON</li>
  * </ul>
- * 输出为 CollectorList 批量 JSON 数组，避免流式响应在中途错误时断裂。
  */
 @RestController
 public class GeneratorController {
@@ -30,7 +64,34 @@ public class GeneratorController {
     private static final int MOCK_MAX = 1_000_000;
     private static final int NAME_MIN = 1;
     private static final int NAME_MAX = 100_000;
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String FORMAT_NDJSON = "ndjson";
+    private static final String FORMAT_STREAM = "stream";
+    static final String SEED_HEADER = "X-Seed";
+    private static final int FORMAT_SAMPLE_DEFAULT = 1_000;
+    private static final int FORMAT_SAMPLE_MAX = 10_000;
+
+    static final MediaType APPLICATION_MSGPACK = MediaType.parseMediaType("application/x-msgpack");
+    static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    static final MediaType APPLICATION_ARROW_STREAM = MediaType.parseMediaType("application/vnd.apache.arrow.stream");
+
+    /** 各输出格式对应的 Content-Type（同时决定 /mock/formats 的输出顺序）。 */
+    private static final Map<RowFormat, MediaType> MEDIA_TYPES = new EnumMap<>(Map.of(
+            RowFormat.JSON_ARRAY, MediaType.APPLICATION_JSON,
+            RowFormat.NDJSON, MediaType.APPLICATION_NDJSON,
+            RowFormat.CSV, TEXT_CSV,
+            RowFormat.MSGPACK, APPLICATION_MSGPACK,
+            RowFormat.ARROW, APPLICATION_ARROW_STREAM));
+    private static final Map<RowFormat, String> FORMAT_NAMES = new EnumMap<>(Map.of(
+            RowFormat.JSON_ARRAY, "json",
+            RowFormat.NDJSON, "ndjson",
+            RowFormat.CSV, "csv",
+            RowFormat.MSGPACK, "msgpack",
+            RowFormat.ARROW, "arrow"));
+
+    /** 校验后的请求区间：seed 数据集中的 [offset, offset + count)。 */
+    private record Window(int total, long seed, int offset, int count) {
+    }
 
     private final FakeDataGenerator fakeDataGenerator;
     private final ChineseNameGenerator chineseNameGenerator;
@@ -41,31 +102,94 @@ public class GeneratorController {
         this.chineseNameGenerator = chineseNameGenerator;
     }
 
-    @GetMapping(value = "/mock", produces = MediaType.APPLICATION_JSON_VALUE)
-    public Flux<String> mock(@ModelAttribute GeneratorQuery query) {
-        int total = validate(query == null ? null : query.n(), MOCK_MIN, MOCK_MAX);
-        return fakeDataGenerator.generate(total)
-                .map(this::toJson)
+    @GetMapping("/mock")
+    public ResponseEntity<Flux<DataBuffer>> mock(@ModelAttribute GeneratorQuery query, ServerWebExchange exchange) {
+        Window window = window(query, MOCK_MIN, MOCK_MAX, exchange);
+        if (query.format() != null && !query.format().isEmpty()) {
+            throw ApiException.badRequest("Invalid parameter 'format' (ndjson | stream)");
+        }
+        DataBufferFactory factory = exchange.getResponse().bufferFactory();
+        RowFormat negotiated = negotiate(exchange.getRequest().getHeaders().getAccept());
+        if (negotiated != null) {
+            return ResponseEntity.ok().contentType(MEDIA_TYPES.get(negotiated)).body(streamChunks(
+                    fakeDataGenerator.generateChunks(window.seed(), window.offset(), window.count(), negotiated),
+                    negotiated, factory, window.total()));
+        }
+        Flux<DataBuffer> body = fakeDataGenerator
+                .generateChunks(window.seed(), window.offset(), window.count(), RowFormat.JSON_ARRAY)
                 .collectList()
-                .flatMapMany(items -> {
-                    StringBuilder sb = new StringBuilder("[");
-                    for (int i = 0; i < items.size(); i++) {
-                        if (i > 0) sb.append(",");
-                        sb.append(items.get(i));
+                .map(chunks -> {
+                    int size = 2;
+                    for (FakeDataGenerator.Chunk chunk : chunks) {
+                        size += chunk.bytes().length + 1;
                     }
-                    sb.append("]");
-                    return Flux.just(sb.toString());
+                    DataBuffer buffer = factory.allocateBuffer(size);
+                    buffer.write((byte) '[');
+                    for (int i = 0; i < chunks.size(); i++) {
+                        if (i > 0) buffer.write((byte) ',');
+                        buffer.write(chunks.get(i).bytes());
+                    }
+                    buffer.write((byte) ']');
+                    return buffer;
                 })
+                .flux()
                 .onErrorResume(err -> {
-                    log.error("mock generation failed for n={}: {}", total, err.getMessage());
-                    return Flux.just("{\"status\":500,\"message\":\"Generation failed\"}");
+                    log.error("mock generation failed for n={}: {}", window.total(), err.getMessage());
+                    return Flux.just(wrap(factory, "{\"status\":500,\"message\":\"Generation failed\"}"));
                 });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping(value = "/mock", params = "format=" + FORMAT_NDJSON)
+    public ResponseEntity<Flux<DataBuffer>> mockNdjson(@ModelAttribute GeneratorQuery query,
+                                                       ServerWebExchange exchange) {
+        Window window = window(query, MOCK_MIN, MOCK_MAX, exchange);
+        Flux<DataBuffer> body = streamChunks(
+                fakeDataGenerator.generateChunks(window.seed(), window.offset(), window.count(), RowFormat.NDJSON),
+                RowFormat.NDJSON, exchange.getResponse().bufferFactory(), window.total());
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping(value = "/mock", params = "format=" + FORMAT_STREAM)
+    public ResponseEntity<Flux<DataBuffer>> mockStream(@ModelAttribute GeneratorQuery query,
+                                                       ServerWebExchange exchange) {
+        Window window = window(query, MOCK_MIN, MOCK_MAX, exchange);
+        Flux<DataBuffer> body = streamChunks(
+                fakeDataGenerator.generateChunks(window.seed(), window.offset(), window.count(), RowFormat.JSON_ARRAY),
+                RowFormat.JSON_ARRAY, exchange.getResponse().bufferFactory(), window.total());
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * 用同一份数据（默认 {@value #FORMAT_SAMPLE_DEFAULT} 行，n ≤ {@value #FORMAT_SAMPLE_MAX}）
+     * 计算每种输出格式的完整响应体积与平均每行字节数，便于比较格式开销。
+     */
+    @GetMapping("/mock/formats")
+    public Mono<ResponseEntity<JsonNode>> mockFormats(@ModelAttribute GeneratorQuery query) {
+        int rows = query.n() == null || query.n().isEmpty()
+                ? FORMAT_SAMPLE_DEFAULT
+                : validate(query.n(), 1, FORMAT_SAMPLE_MAX);
+        long seed = parseSeed(query.seed());
+        return Flux.fromIterable(MEDIA_TYPES.keySet())
+                .concatMap(format -> fakeDataGenerator.generateChunks(seed, 0, rows, format)
+                        .collectList()
+                        .map(chunks -> {
+                            long bytes = format.header().length + format.footer().length
+                                    + (long) format.chunkSeparator().length * Math.max(0, chunks.size() - 1);
+                            for (FakeDataGenerator.Chunk chunk : chunks) {
+                                bytes += chunk.bytes().length;
+                            }
+                            return new MockFormatSizeResponse(FORMAT_NAMES.get(format),
+                                    MEDIA_TYPES.get(format).toString(), rows, bytes, (double) bytes / rows);
+                        }))
+                .collectList()
+                .map(ApiResponse::ok);
     }
 
     @GetMapping(value = "/chinese-names", produces = MediaType.APPLICATION_JSON_VALUE)
-    public Flux<String> chineseNames(@ModelAttribute GeneratorQuery query) {
-        int total = validate(query == null ? null : query.n(), NAME_MIN, NAME_MAX);
-        return chineseNameGenerator.generate(total)
+    public Flux<String> chineseNames(@ModelAttribute GeneratorQuery query, ServerWebExchange exchange) {
+        Window window = window(query, NAME_MIN, NAME_MAX, exchange);
+        return chineseNameGenerator.generate(window.seed(), window.offset(), window.count())
                 .map(name -> "\"" + name.replace("\"", "\\\"") + "\"")
                 .collectList()
                 .flatMapMany(items -> {
@@ -78,11 +202,22 @@ public class GeneratorController {
                     return Flux.just(sb.toString());
                 })
                 .onErrorResume(err -> {
-                    log.error("chinese-names generation failed for n={}: {}", total, err.getMessage());
+                    log.error("chinese-names generation failed for n={}: {}", window.total(), err.getMessage());
                     return Flux.just("{\"status\":500,\"message\":\"Generation failed\"}");
                 });
     }
 
+    /** 校验 n / seed / offset / limit，并把实际使用的 seed 写入响应头。 */
+    private Window window(GeneratorQuery query, int min, int max, ServerWebExchange exchange) {
+        GeneratorQuery q = query == null ? new GeneratorQuery(null, null, null, null, null) : query;
+        int total = validate(q.n(), min, max);
+        long seed = parseSeed(q.seed());
+        int offset = QueryParams.optionalInt(q.offset(), 0, total - 1, "offset", 0);
+        int limit = QueryParams.optionalInt(q.limit(), 1, total, "limit", total - offset);
+        exchange.getResponse().getHeaders().set(SEED_HEADER, Long.toString(seed));
+        return new Window(total, seed, offset, Math.min(limit, total - offset));
+    }
+
     private int validate(String n, int min, int max) {
         if (n == null || !n.matches("\\d+")) {
             throw ApiException.badRequest("Invalid parameter 'n' (" + min + " <= n <= " + max + ")");
@@ -94,12 +229,90 @@ public class GeneratorController {
         return value;
     }
 
-    private String toJson(Object value) {
+    /**
+     * 从 Accept 头按出现顺序挑选第一个支持的二进制 / CSV 格式；JSON、通配符或未声明时返回 null（走默认 JSON 数组）。
+     */
+    private static RowFormat negotiate(List<MediaType> accept) {
+        for (MediaType type : accept) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            if (type.isWildcardType() || type.equalsTypeAndSubtype(MediaType.APPLICATION_JSON)) {
+                return null;
+            }
+            for (Map.Entry<RowFormat, MediaType> entry : MEDIA_TYPES.entrySet()) {
+                if (entry.getKey() != RowFormat.JSON_ARRAY && entry.getKey() != RowFormat.NDJSON
+                        && type.equalsTypeAndSubtype(entry.getValue())) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把生成器输出的分块编码为 DataBuffer 流：format 的 header、分块（块间插入分隔符）、footer。
+     * 每次订阅独立计数。出错时 JSON 类格式输出错误帧而不是直接断开连接：ndjson 以状态行收尾，
+     * JSON 数组追加 500 对象后闭合；CSV / MessagePack / Arrow 无法内嵌错误帧，直接中止响应
+     * （不发送 chunked 结束块，Arrow 也缺少 EOS 标记），客户端据此判定数据不完整。
+     */
+    private Flux<DataBuffer> streamChunks(Flux<FakeDataGenerator.Chunk> chunks, RowFormat format,
+                                          DataBufferFactory factory, int total) {
+        boolean ndjson = format == RowFormat.NDJSON;
+        boolean jsonArray = format == RowFormat.JSON_ARRAY;
+        byte[] separator = format.chunkSeparator();
+        return Flux.defer(() -> {
+            AtomicLong written = new AtomicLong();
+            byte[] header = format.header();
+            Flux<DataBuffer> open = header.length == 0 ? Flux.empty() : Flux.just(factory.wrap(header));
+            Flux<DataBuffer> data = chunks.map(chunk -> {
+                DataBuffer buffer;
+                if (separator.length > 0 && written.get() > 0) {
+                    buffer = factory.allocateBuffer(chunk.bytes().length + separator.length);
+                    buffer.write(separator);
+                    buffer.write(chunk.bytes());
+                } else {
+                    buffer = factory.wrap(chunk.bytes());
+                }
+                written.addAndGet(chunk.rows());
+                return buffer;
+            });
+            Mono<DataBuffer> close = Mono.fromSupplier(() -> ndjson
+                    ? wrap(factory, "{\"status\":200,\"count\":" + written.get() + "}\n")
+                    : factory.wrap(format.footer()));
+            return Flux.concat(open, data, close)
+                    .onErrorResume(err -> {
+                        log.error("mock streaming ({}) failed for n={} after {} rows: {}",
+                                format, total, written.get(), err.getMessage());
+                        if (!ndjson && !jsonArray) {
+                            return Flux.error(err);
+                        }
+                        String frame = "{\"status\":500,\"message\":\"Generation failed\",\"count\":"
+                                + written.get() + "}";
+                        return Mono.fromSupplier(() -> ndjson
+                                ? wrap(factory, frame + "\n")
+                                : wrap(factory, (written.get() > 0 ? "," : "") + frame + "]"));
+                    });
+        });
+    }
+
+    /** 可选 seed：缺省时随机，同一 seed 的输出完全一致。 */
+    private long parseSeed(String seed) {
+        if (seed == null || seed.isEmpty()) {
+            return ThreadLocalRandom.current().nextLong();
+        }
+        if (!seed.matches("-?\\d{1,19}")) {
+            throw ApiException.badRequest("Invalid parameter 'seed' (64-bit integer)");
+        }
         try {
-            return MAPPER.writeValueAsString(value);
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to serialize generator item", e);
+            return Long.parseLong(seed);
+        } catch (NumberFormatException e) {
+            throw ApiException.badRequest("Invalid parameter 'seed' (64-bit integer)");
         }
     }
+
+    private static DataBuffer wrap(DataBufferFactory factory, String text) {
+        return factory.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
 }
 
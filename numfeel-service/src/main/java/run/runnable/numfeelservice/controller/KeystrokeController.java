@@ -12,6 +12,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -21,6 +22,8 @@ import reactor.core.publisher.Mono;
  * 键盘输入节奏识别 HTTP 处理器。
  * POST /keystroke/submit — 提交打字样本
  * GET  /keystroke/stats  — 查询全站统计 + 指定 session 的指纹独特性
+ * GET  /keystroke/ann-report — 近似最近邻与精确扫描的召回率 / 耗时对比（仅在开启近似索引并配置报告令牌时提供，
+ *                               须在 X-Report-Token 头中携带该令牌）
  */
 @RestController
 @RequestMapping("/keystroke")
@@ -86,4 +89,22 @@ public class KeystrokeController {
                     return Mono.just(ApiResponse.error(500, "Internal error"));
                 });
     }
+
+    @GetMapping("/ann-report")
+    public Mono<ResponseEntity<JsonNode>> annReport(
+            @RequestParam(defaultValue = "100") int sessions,
+            @RequestHeader(value = "X-Report-Token", required = false) String token) {
+        if (!service.annReportAvailable()) {
+            throw new ApiException(404, "Not found");
+        }
+        if (!service.annReportAuthorized(token)) {
+            throw new ApiException(403, "Forbidden");
+        }
+        return service.annReport(sessions)
+                .map(ApiResponse::ok)
+                .onErrorResume(err -> {
+                    log.error("keystroke ann report error", err);
+                    return Mono.just(ApiResponse.error(500, "Internal error"));
+                });
+    }
 }
@@ -1,5 +1,6 @@
 package run.runnable.numfeelservice.controller;
 
+import run.runnable.numfeelservice.controller.dto.UtilityRequests.RandomBatchQuery;
 import run.runnable.numfeelservice.controller.dto.UtilityRequests.RandomBytesQuery;
 import run.runnable.numfeelservice.controller.dto.UtilityRequests.RandomDigitsQuery;
 import run.runnable.numfeelservice.controller.dto.UtilityRequests.RandomLotteryQuery;
@@ -19,12 +20,15 @@ import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 import tools.jackson.databind.JsonNode;
 
+import java.util.Arrays;
+
 /**
  * 真随机数接口（熵源链 + 无偏抽取）。
  * <ul>
  *   <li>GET /random/bytes  — 原始随机字节 + 实际熵源</li>
  *   <li>GET /random/lottery — 服务端无偏抽取一注彩票</li>
  *   <li>GET /random/digits  — 固定位数/区间无偏随机数</li>
+ *   <li>GET /random/batch   — 区间内批量无偏随机整数（模拟类页面一次取几千个）</li>
  * </ul>
  * 限流由 {@link run.runnable.numfeelservice.web.RateLimitWebFilter} 全局规则统一处理。
  */
@@ -34,6 +38,9 @@ public class RandomController {
 
     private static final Logger log = LoggerFactory.getLogger(RandomController.class);
 
+    /** /random/batch 单次最多生成的个数。 */
+    private static final int MAX_BATCH_COUNT = 10_000;
+
     private final QuantumRandomService randomService;
 
     public RandomController(QuantumRandomService randomService) {
@@ -115,6 +122,34 @@ public class RandomController {
         }
     }
 
+    /**
+     * 区间内批量无偏随机整数，响应格式与 /random/digits 区间模式相同，
+     * {@code source} / {@code degraded} 按整批标注：任一段被降级即整批标为降级后的源。
+     */
+    @GetMapping(value = "/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<JsonNode>> batch(@ModelAttribute RandomBatchQuery query) {
+        Integer min = query == null ? null : parseIntOrDefaultNull(query.min());
+        Integer max = query == null ? null : parseIntOrDefaultNull(query.max());
+        if (min == null || max == null) {
+            return Mono.just(ApiResponse.error(400, "缺少 min/max"));
+        }
+        int count = parseInt(query.count(), 1);
+        if (count < 1 || count > MAX_BATCH_COUNT) {
+            return Mono.just(ApiResponse.error(400, "count 必须在 1.." + MAX_BATCH_COUNT));
+        }
+        return randomService.drawBatch(min, max, count, query.source())
+                .map(b -> {
+                    RandomDigitsResponse resp = new RandomDigitsResponse(
+                            Arrays.stream(b.values()).boxed().toList(), null,
+                            b.source(), b.provider(), b.degraded());
+                    return ApiResponse.ok(resp);
+                })
+                .doOnError(err -> log.warn("/random/batch 失败: {}", err.getMessage()))
+                .onErrorResume(IllegalArgumentException.class,
+                        err -> Mono.just(ApiResponse.error(400, err.getMessage())))
+                .onErrorResume(err -> Mono.just(ApiResponse.error(500, "取熵失败，请稍后再试")));
+    }
+
     private int parseInt(String value, int def) {
         if (value == null || value.isBlank()) return def;
         try { return Integer.parseInt(value.trim()); } catch (NumberFormatException e) { return def; }
@@ -7,6 +7,7 @@ import run.runnable.numfeelservice.controller.dto.UtilityResponses.WordCloudEntr
 import run.runnable.numfeelservice.controller.dto.UtilityResponses.WordCloudSearchResponse;
 import run.runnable.numfeelservice.service.WordCloudService;
 import run.runnable.numfeelservice.web.ApiResponse;
+import run.runnable.numfeelservice.web.QueryParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
@@ -18,7 +19,7 @@ import reactor.core.publisher.Mono;
 
 /**
  * 词云 HTTP 处理器。
- * GET /word-cloud[?search=词]
+ * GET /word-cloud[?search=词 | ?prefix=前缀 | ?contains=片段][&limit=]
  */
 @RestController
 public class WordCloudController {
@@ -33,8 +34,10 @@ public class WordCloudController {
 
     @GetMapping(value = "/word-cloud", produces = MediaType.APPLICATION_JSON_VALUE)
     public Mono<ResponseEntity<JsonNode>> wordCloud(@ModelAttribute WordCloudQuery query) {
+        WordCloudQuery q = query == null ? new WordCloudQuery(null, null, null, null) : query;
+        int limit = QueryParams.optionalInt(q.limit(), 1, 100, "limit", 20);
         return service.getOrLoad()
-                .map(data -> respond(data, query == null ? null : query.search()))
+                .map(data -> respond(data, q, limit))
                 .onErrorResume(err -> {
                     log.error("Failed to load word cloud data", err);
                     return Mono.just(ResponseEntity.status(500)
@@ -43,13 +46,20 @@ public class WordCloudController {
                 });
     }
 
-    private ResponseEntity<JsonNode> respond(WordCloudService.WordCloudData data, String search) {
+    private ResponseEntity<JsonNode> respond(WordCloudService.WordCloudData data, WordCloudQuery query, int limit) {
+        String search = query.search();
         if (search != null && !search.isBlank()) {
             String word = search.trim();
-            int count = data.fullCounts().getOrDefault(word, 0);
+            int count = data.words().count(word);
             boolean inTop300 = data.top300().stream().map(WordCloudEntryResponse::name).anyMatch(word::equals);
             return ApiResponse.raw(new WordCloudSearchResponse(word, count, inTop300));
         }
+        if (query.prefix() != null && !query.prefix().isBlank()) {
+            return ApiResponse.raw(data.words().prefix(query.prefix().trim(), limit));
+        }
+        if (query.contains() != null && !query.contains().isBlank()) {
+            return ApiResponse.raw(data.words().contains(query.contains().trim(), limit));
+        }
         return ApiResponse.raw(data.top300());
     }
 }
@@ -13,8 +13,8 @@ public final class EventResponses {
     /**
      * 埋点批量上报响应。
      *
-     * @param accepted 本批次成功接受并落库的事件数
-     * @param dropped 本批次被丢弃（非法事件名 / 校验失败）的事件数
+     * @param accepted 本批次校验通过并进入写入队列的事件数（异步落库，不等待写入结果）
+     * @param dropped 本批次被丢弃（非法事件名 / 校验失败 / 写入队列已满）的事件数
      */
     public record EventCollectResponse(
             int accepted,
@@ -22,6 +22,32 @@ public final class EventResponses {
     ) {
     }
 
+    /**
+     * 埋点写入队列状态。
+     *
+     * @param capacity 队列容量
+     * @param maxBatch 单条 INSERT 最多的行数
+     * @param maxLatencyMs 不满一批时的定时写入间隔
+     * @param queued 当前排队的行数
+     * @param enqueued 累计进入队列的行数
+     * @param overflowDropped 累计因队列已满被丢弃的行数
+     * @param written 累计写入成功的行数
+     * @param failed 累计写入失败的行数
+     * @param batches 累计成功执行的 INSERT 条数
+     */
+    public record EventIngestStatsResponse(
+            int capacity,
+            int maxBatch,
+            long maxLatencyMs,
+            int queued,
+            long enqueued,
+            long overflowDropped,
+            long written,
+            long failed,
+            long batches
+    ) {
+    }
+
     /**
      * 某个 demo 的聚合摘要响应。
      *
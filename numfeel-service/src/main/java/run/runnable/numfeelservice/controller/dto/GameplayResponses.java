@@ -754,4 +754,28 @@ public final class GameplayResponses {
     ) {
     }
 
+    /**
+     * 键盘节奏近似最近邻 召回报告：抽样若干 session，对比近似查询与精确扫描。
+     *
+     * @param approximate 线上 /keystroke/stats 是否走近似查询
+     * @param epsilon 近似系数 ε
+     * @param maxChecks 近似查询每个样本的距离计算预算
+     * @param totalSamples 索引中的样本总数
+     * @param sampledSessions 参与对比的 session 数（仅统计精确扫描能找到邻居的）
+     * @param recall 近似结果与精确最近距离（取 1 位小数后）一致的比例
+     * @param exactAvgMicros 精确扫描平均耗时（微秒）
+     * @param approxAvgMicros 近似查询平均耗时（微秒）
+     */
+    public record KeystrokeAnnReportResponse(
+            boolean approximate,
+            double epsilon,
+            int maxChecks,
+            long totalSamples,
+            int sampledSessions,
+            double recall,
+            double exactAvgMicros,
+            double approxAvgMicros
+    ) {
+    }
+
 }
@@ -42,6 +42,8 @@ public final class TrackingResponses {
      * @param uniqueScreen 屏幕信息维度去重后的唯一数
      * @param uniquePlatform 平台维度去重后的唯一数
      * @param avgEntropy 已上报样本的平均熵值
+     * @param uniqueStdError 各 unique* 字段的相对标准误差（HyperLogLog 估算，约 95% 的情况下误差在 2 倍以内）；
+     *                       total、avgEntropy 为精确值
      */
     public record BrowserFingerprintStatsResponse(
             long total,
@@ -53,7 +55,8 @@ public final class TrackingResponses {
             long uniqueTimezone,
             long uniqueScreen,
             long uniquePlatform,
-            double avgEntropy
+            double avgEntropy,
+            double uniqueStdError
     ) {
     }
 
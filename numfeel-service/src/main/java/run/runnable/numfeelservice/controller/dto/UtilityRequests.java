@@ -19,9 +19,14 @@ public final class UtilityRequests {
     /**
      * 数据生成接口查询参数。
      *
-     * @param n 期望生成的数据条数
+     * @param n      数据集总条数
+     * @param format 输出格式：缺省为一次性 JSON 数组；{@code ndjson} 为逐行流式输出；
+     *               {@code stream} 为分块流式 JSON 数组
+     * @param seed   可选随机种子（64 位整数），相同 seed 的第 k 条数据恒定
+     * @param offset 可选起始行号（0 ≤ offset &lt; n，默认 0）
+     * @param limit  可选返回条数上限（1 ≤ limit ≤ n，默认取到第 n 条为止）
      */
-    public record GeneratorQuery(String n) {
+    public record GeneratorQuery(String n, String format, String seed, String offset, String limit) {
     }
 
     /**
@@ -83,11 +88,14 @@ public final class UtilityRequests {
     }
 
     /**
-     * 词云查询参数。
+     * 词云查询参数。三种查询同时出现时按 search、prefix、contains 的顺序取第一个。
      *
-     * @param search 需要搜索的关键词
+     * @param search 需要精确搜索的关键词
+     * @param prefix 前缀查询：返回以它开头、出现次数最多的词
+     * @param contains 包含查询：返回包含它、出现次数最多的词
+     * @param limit 前缀 / 包含查询返回的条数（1-100，默认 20）
      */
-    public record WordCloudQuery(String search) {
+    public record WordCloudQuery(String search, String prefix, String contains, String limit) {
     }
 
     /**
@@ -131,4 +139,20 @@ public final class UtilityRequests {
             String source
     ) {
     }
+
+    /**
+     * 真随机批量整数查询参数。
+     *
+     * @param min 最小值（含）
+     * @param max 最大值（含）
+     * @param count 生成个数（1–10000）
+     * @param source 熵源；留空走量子优先链
+     */
+    public record RandomBatchQuery(
+            String min,
+            String max,
+            String count,
+            String source
+    ) {
+    }
 }
@@ -220,6 +220,24 @@ public final class UtilityResponses {
     ) {
     }
 
+    /**
+     * 假数据各输出格式的体积对比。
+     *
+     * @param format      格式名（json / ndjson / csv / msgpack / arrow）
+     * @param contentType 对应的响应 Content-Type
+     * @param rows        采样行数
+     * @param bytes       完整响应体字节数（含 header / footer）
+     * @param bytesPerRow 平均每行字节数
+     */
+    public record MockFormatSizeResponse(
+            String format,
+            String contentType,
+            int rows,
+            long bytes,
+            double bytesPerRow
+    ) {
+    }
+
     /**
      * P2P 隐私透视镜 — 单个 peer 信息（IP 已打码）。
      *
@@ -0,0 +1,170 @@
+package run.runnable.numfeelservice.generator;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import org.apache.arrow.flatbuf.Buffer;
+import org.apache.arrow.flatbuf.Endianness;
+import org.apache.arrow.flatbuf.Field;
+import org.apache.arrow.flatbuf.FieldNode;
+import org.apache.arrow.flatbuf.Int;
+import org.apache.arrow.flatbuf.Message;
+import org.apache.arrow.flatbuf.MessageHeader;
+import org.apache.arrow.flatbuf.MetadataVersion;
+import org.apache.arrow.flatbuf.RecordBatch;
+import org.apache.arrow.flatbuf.Schema;
+import org.apache.arrow.flatbuf.Type;
+import org.apache.arrow.flatbuf.Utf8;
+
+/**
+ * 最小化的 Arrow IPC 流式格式编码器（Columnar Format 1.0 / MetadataVersion V5）。
+ * <p>
+ * 只覆盖生成器需要的 schema：第 0 列 {@code int32 id}，其余列为非空 {@code utf8}。
+ * 元数据用 arrow-format 提供的 FlatBuffers 定义构造，列数据直接按规范布局写入字节数组，
+ * 不依赖 arrow-vector 的堆外内存分配器（后者在 JDK 17 上需要额外的 --add-opens）。
+ * <p>
+ * 每条消息：{@code 0xFFFFFFFF} + int32 元数据长度 + FlatBuffer 元数据（补齐到 8 字节）+ 消息体。
+ */
+final class ArrowIpc {
+
+    private static final int CONTINUATION = 0xFFFFFFFF;
+
+    private ArrowIpc() {
+    }
+
+    /** 一个 RecordBatch 的列数据：id 列 + stringColumns 个 utf8 列。 */
+    static final class Columns {
+
+        private final Utf8Sink ids = new Utf8Sink(4 * FakeDataGenerator.CHUNK_ROWS);
+        private final Utf8Sink[] offsets;
+        private final Utf8Sink[] values;
+        private int rows;
+
+        Columns(int stringColumns) {
+            offsets = new Utf8Sink[stringColumns];
+            values = new Utf8Sink[stringColumns];
+            for (int i = 0; i < stringColumns; i++) {
+                offsets[i] = new Utf8Sink(4 * (FakeDataGenerator.CHUNK_ROWS + 1));
+                offsets[i].putIntLE(0);
+                values[i] = new Utf8Sink(32 * FakeDataGenerator.CHUNK_ROWS);
+            }
+        }
+
+        void addId(int id) {
+            ids.putIntLE(id);
+            rows++;
+        }
+
+        void addValue(int column, byte[] src, int offset, int length) {
+            values[column].put(src, offset, length);
+            offsets[column].putIntLE(values[column].length());
+        }
+    }
+
+    static byte[] schemaMessage(String[] names) {
+        FlatBufferBuilder fbb = new FlatBufferBuilder(512);
+        int[] fields = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            int name = fbb.createString(names[i]);
+            byte typeType;
+            int type;
+            if (i == 0) {
+                Int.startInt(fbb);
+                Int.addBitWidth(fbb, 32);
+                Int.addIsSigned(fbb, true);
+                type = Int.endInt(fbb);
+                typeType = Type.Int;
+            } else {
+                Utf8.startUtf8(fbb);
+                type = Utf8.endUtf8(fbb);
+                typeType = Type.Utf8;
+            }
+            int children = Field.createChildrenVector(fbb, new int[0]);
+            Field.startField(fbb);
+            Field.addName(fbb, name);
+            Field.addNullable(fbb, false);
+            Field.addTypeType(fbb, typeType);
+            Field.addType(fbb, type);
+            Field.addChildren(fbb, children);
+            fields[i] = Field.endField(fbb);
+        }
+        int fieldVector = Schema.createFieldsVector(fbb, fields);
+        Schema.startSchema(fbb);
+        Schema.addEndianness(fbb, Endianness.Little);
+        Schema.addFields(fbb, fieldVector);
+        int schema = Schema.endSchema(fbb);
+        return message(fbb, MessageHeader.Schema, schema, null);
+    }
+
+    static byte[] recordBatchMessage(Columns columns) {
+        int columnCount = columns.values.length + 1;
+        // 每列：validity（非空列长度为 0）+ 数据；utf8 列额外有 offsets
+        long[] buffers = new long[(2 + 3 * columns.values.length) * 2];
+        Utf8Sink body = new Utf8Sink(64);
+        int b = 0;
+        b = addBuffer(buffers, b, body, null);
+        b = addBuffer(buffers, b, body, columns.ids);
+        for (int i = 0; i < columns.values.length; i++) {
+            b = addBuffer(buffers, b, body, null);
+            b = addBuffer(buffers, b, body, columns.offsets[i]);
+            b = addBuffer(buffers, b, body, columns.values[i]);
+        }
+
+        FlatBufferBuilder fbb = new FlatBufferBuilder(512);
+        RecordBatch.startNodesVector(fbb, columnCount);
+        for (int i = columnCount - 1; i >= 0; i--) {
+            FieldNode.createFieldNode(fbb, columns.rows, 0);
+        }
+        int nodes = fbb.endVector();
+        RecordBatch.startBuffersVector(fbb, buffers.length / 2);
+        for (int i = buffers.length - 2; i >= 0; i -= 2) {
+            Buffer.createBuffer(fbb, buffers[i], buffers[i + 1]);
+        }
+        int bufferVector = fbb.endVector();
+        RecordBatch.startRecordBatch(fbb);
+        RecordBatch.addLength(fbb, columns.rows);
+        RecordBatch.addNodes(fbb, nodes);
+        RecordBatch.addBuffers(fbb, bufferVector);
+        int batch = RecordBatch.endRecordBatch(fbb);
+        return message(fbb, MessageHeader.RecordBatch, batch, body);
+    }
+
+    /** 流结束标记：continuation + 0 长度元数据。 */
+    static byte[] endOfStream() {
+        Utf8Sink sink = new Utf8Sink(8);
+        sink.putIntLE(CONTINUATION);
+        sink.putIntLE(0);
+        return sink.toByteArray();
+    }
+
+    /** 把 data 追加进消息体（8 字节对齐），记录 (offset, length)；data 为 null 表示空 buffer。 */
+    private static int addBuffer(long[] buffers, int index, Utf8Sink body, Utf8Sink data) {
+        buffers[index] = body.length();
+        if (data != null) {
+            buffers[index + 1] = data.length();
+            body.put(data.array(), 0, data.length());
+            body.pad8();
+        }
+        return index + 2;
+    }
+
+    private static byte[] message(FlatBufferBuilder fbb, byte headerType, int header, Utf8Sink body) {
+        int bodyLength = body == null ? 0 : body.length();
+        Message.startMessage(fbb);
+        Message.addVersion(fbb, MetadataVersion.V5);
+        Message.addHeaderType(fbb, headerType);
+        Message.addHeader(fbb, header);
+        Message.addBodyLength(fbb, bodyLength);
+        fbb.finish(Message.endMessage(fbb));
+        byte[] metadata = fbb.sizedByteArray();
+
+        Utf8Sink out = new Utf8Sink(8 + metadata.length + 8 + bodyLength);
+        out.putIntLE(CONTINUATION);
+        int padded = (metadata.length + 8 + 7) / 8 * 8 - 8;
+        out.putIntLE(padded);
+        out.put(metadata);
+        out.pad8();
+        if (body != null) {
+            out.put(body.array(), 0, bodyLength);
+        }
+        return out.toByteArray();
+    }
+}
@@ -3,30 +3,44 @@ package run.runnable.numfeelservice.generator;
 import net.datafaker.Faker;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
+import java.util.List;
 import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 中文名生成器
+ * <p>
+ * 启动时载入 Datafaker zh-CN 的姓 / 名词表，姓名按 zh-CN 的 {@code #{last_name}#{first_name}} 格式拼接。
+ * 每行随机源由 {@link RowRandom#forRow(long, long) (seed, 行号)} 派生，同一 seed 的第 k 个名字恒定。
  */
 @Component
 public class ChineseNameGenerator {
 
     private static final Faker FAKER = new Faker(Locale.CHINA);
+    private static final String[] LAST_NAMES = load("name.last_name");
+    private static final String[] FIRST_NAMES = load("name.first_name");
 
-    private final int parallelism;
+    public Flux<String> generate(int total) {
+        return generate(ThreadLocalRandom.current().nextLong(), 0, total);
+    }
 
-    public ChineseNameGenerator() {
-        this.parallelism = Math.min(8, Runtime.getRuntime().availableProcessors());
+    /** 生成 seed 数据集中第 offset ~ offset+count-1 个名字。 */
+    public Flux<String> generate(long seed, int offset, int count) {
+        return Flux.range(offset, count).map(row -> nameAt(seed, row));
     }
 
-    public Flux<String> generate(int total) {
-        return Flux.range(0, total)
-                .parallel(parallelism)
-                .runOn(Schedulers.boundedElastic())
-                .flatMap(i -> Mono.fromCallable(() -> FAKER.name().fullName()))
-                .sequential();
+    private static String nameAt(long seed, int row) {
+        SplittableRandom rng = RowRandom.forRow(seed, row);
+        return LAST_NAMES[rng.nextInt(LAST_NAMES.length)] + FIRST_NAMES[rng.nextInt(FIRST_NAMES.length)];
+    }
+
+    private static String[] load(String key) {
+        Object value = FAKER.fakeValuesService().fetchObject(key, FAKER.getContext());
+        if (!(value instanceof List<?> list) || list.isEmpty()) {
+            throw new IllegalStateException("Datafaker dictionary '" + key + "' is empty");
+        }
+        return list.stream().map(String::valueOf).toArray(String[]::new);
     }
 }
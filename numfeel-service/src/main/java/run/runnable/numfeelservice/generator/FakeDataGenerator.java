@@ -7,13 +7,54 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
- * 假数据生成器
+ * 假数据生成器（批量引擎）。
+ * <p>
+ * 启动时把 Datafaker 词典载入 {@link PersonDictionary}，之后按 {@value #CHUNK_ROWS} 行一块生成：
+ * 每块由一个 {@code Schedulers.parallel()} 工作线程独立完成，行直接编码为目标格式（{@link RowFormat}：JSON、
+ * NDJSON、CSV、MessagePack、Arrow IPC）的字节，不经过 Faker 表达式解析和 Jackson。
+ * <p>
+ * 每行的随机源由 {@link RowRandom#forRow(long, long) (seed, 行号)} 派生，第 k 行的内容与分块方式、
+ * 调度顺序、并行度以及请求的起始偏移都无关，因此可以按 offset 分段、并行或重试拉取同一份数据集。
+ * <p>
+ * 出生日期取固定区间 {@code 1960-01-01 ~ 2007-12-31}（与 Faker {@code birthday(18, 65)} 当前的分布相当），
+ * 不随当天日期漂移，以保证同一 seed 跨天、跨 Pod 输出一致。
  */
 @Component
 public class FakeDataGenerator {
 
-    private static final Faker FAKER = new Faker();
+    /** 每个分块的行数。 */
+    public static final int CHUNK_ROWS = 512;
+
+    private static final PersonDictionary DICT = new PersonDictionary(new Faker());
+
+    private static final LocalDate DOB_FROM = LocalDate.of(1960, 1, 1);
+    private static final LocalDate DOB_TO = LocalDate.of(2007, 12, 31);
+    /** 区间内每一天预先格式化好的 {@code yyyy-MM-dd} 字节。 */
+    private static final byte[][] DOB_TABLE = buildDobTable();
+
+    private static final byte[] APT = bytes("Apt. ");
+    private static final byte[] SUITE = bytes("Suite ");
+    private static final byte[] COMMA_SPACE = bytes(", ");
+    private static final byte[] AND = bytes(" and ");
+
+    private static final ThreadLocal<Utf8Sink> SINKS = ThreadLocal.withInitial(() -> new Utf8Sink(192 * 1024));
+
+    /**
+     * 一块已按 {@link RowFormat} 编码的行。
+     *
+     * @param bytes 编码后的字节，不含格式的 header / footer / 块分隔符
+     * @param rows  本块包含的行数
+     */
+    public record Chunk(byte[] bytes, int rows) {
+    }
 
     private final int parallelism;
 
@@ -25,25 +66,235 @@ public class FakeDataGenerator {
         this.parallelism = parallelism;
     }
 
-    /** 并行生成假数据。 */
+    /** 并行生成假数据（随机 seed），行号 0 ~ total-1。 */
     public Flux<MockPersonResponse> generate(int total) {
-        return Flux.range(0, total)
-                .parallel(parallelism)
-                .runOn(Schedulers.boundedElastic())
-                .flatMap(id -> Mono.fromCallable(() -> createPerson(id)))
-                .sequential();
-    }
-
-    private MockPersonResponse createPerson(int id) {
-        return new MockPersonResponse(
-                id,
-                FAKER.name().fullName(),
-                FAKER.internet().emailAddress(),
-                FAKER.phoneNumber().cellPhone(),
-                FAKER.address().fullAddress(),
-                FAKER.company().name(),
-                FAKER.timeAndDate().birthday(18, 65).toString(),
-                FAKER.job().title()
-        );
+        return generate(ThreadLocalRandom.current().nextLong(), 0, total);
+    }
+
+    /** 并行生成 seed 数据集中行号 offset ~ offset+count-1 的假数据。 */
+    public Flux<MockPersonResponse> generate(long seed, int offset, int count) {
+        return Flux.range(0, chunkCount(count))
+                .flatMapSequential(c -> Mono.fromCallable(() -> personChunk(seed, offset, count, c))
+                        .subscribeOn(Schedulers.parallel()), parallelism, 1)
+                .flatMapIterable(list -> list);
+    }
+
+    /**
+     * 并行生成 seed 数据集中行号 offset ~ offset+count-1 的数据，直接编码为 format 格式的分块，按块号顺序输出。
+     * 同时在途的块不超过并行度，下游不请求时不会继续生成。
+     */
+    public Flux<Chunk> generateChunks(long seed, int offset, int count, RowFormat format) {
+        return Flux.range(0, chunkCount(count))
+                .flatMapSequential(c -> Mono.fromCallable(() -> encodedChunk(seed, offset, count, c, format))
+                        .subscribeOn(Schedulers.parallel()), parallelism, 1);
+    }
+
+    private static int chunkCount(int count) {
+        return (count + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    }
+
+    private Chunk encodedChunk(long seed, int offset, int count, int chunk, RowFormat format) {
+        Utf8Sink sink = SINKS.get();
+        sink.reset();
+        RowEncoder encoder = format.newEncoder();
+        int from = offset + chunk * CHUNK_ROWS;
+        int to = offset + Math.min(count, (chunk + 1) * CHUNK_ROWS);
+        for (int id = from; id < to; id++) {
+            writePerson(sink, RowRandom.forRow(seed, id), id, id == from, encoder);
+        }
+        return new Chunk(encoder.finish(sink, to - from), to - from);
+    }
+
+    private List<MockPersonResponse> personChunk(long seed, int offset, int count, int chunk) {
+        Utf8Sink sink = SINKS.get();
+        sink.reset();
+        Capture capture = new Capture();
+        int from = offset + chunk * CHUNK_ROWS;
+        int to = offset + Math.min(count, (chunk + 1) * CHUNK_ROWS);
+        List<MockPersonResponse> out = new ArrayList<>(to - from);
+        for (int id = from; id < to; id++) {
+            writePerson(sink, RowRandom.forRow(seed, id), id, id == from, capture);
+            String[] f = capture.fields;
+            out.add(new MockPersonResponse(id, f[1], f[2], f[3], f[4], f[5], f[6], f[7]));
+        }
+        return out;
+    }
+
+    /** 不做编码，逐字段取出字符串（下标与 {@link MockPersonResponse} 字段顺序一致）。 */
+    private static final class Capture extends RowEncoder {
+
+        final String[] fields = new String[FIELD_NAMES.length];
+
+        @Override
+        void startRow(Utf8Sink sink, int id, boolean first) {
+        }
+
+        @Override
+        void startField(Utf8Sink sink, int field) {
+        }
+
+        @Override
+        void endField(Utf8Sink sink, int field, int mark) {
+            fields[field] = sink.takeString(mark);
+        }
+
+        @Override
+        void endRow(Utf8Sink sink) {
+        }
+    }
+
+    /** 生成一行：字段内容由这里写入 sink，行 / 字段边界的编码交给 encoder。 */
+    private static void writePerson(Utf8Sink sink, SplittableRandom rng, int id, boolean firstInChunk,
+                                    RowEncoder encoder) {
+        boolean female = rng.nextBoolean();
+        byte[][] firsts = female ? DICT.femaleFirstNames : DICT.maleFirstNames;
+        int first = rng.nextInt(firsts.length);
+        int last = rng.nextInt(DICT.lastNames.length);
+
+        encoder.startRow(sink, id, firstInChunk);
+        for (int field = 1; field <= 7; field++) {
+            encoder.startField(sink, field);
+            int mark = sink.length();
+            switch (field) {
+                case 1 -> writeName(sink, rng, firsts[first], DICT.lastNames[last]);
+                case 2 -> writeEmail(sink, rng, (female ? DICT.femaleFirstLower : DICT.maleFirstLower)[first],
+                        DICT.lastLower[last]);
+                case 3 -> writePhone(sink, rng);
+                case 4 -> writeAddress(sink, rng);
+                case 5 -> writeCompany(sink, rng);
+                case 6 -> sink.put(DOB_TABLE[rng.nextInt(DOB_TABLE.length)]);
+                default -> writeJob(sink, rng);
+            }
+            encoder.endField(sink, field, mark);
+        }
+        encoder.endRow(sink);
+    }
+
+    private static void writeName(Utf8Sink sink, SplittableRandom rng, byte[] first, byte[] last) {
+        int format = rng.nextInt(10);
+        if (format == 0) {
+            sink.put(pick(rng, DICT.prefixes));
+            sink.put((byte) ' ');
+        }
+        sink.put(first);
+        sink.put((byte) ' ');
+        sink.put(last);
+        if (format == 1) {
+            sink.put((byte) ' ');
+            sink.put(pick(rng, DICT.suffixes));
+        }
+    }
+
+    private static void writeEmail(Utf8Sink sink, SplittableRandom rng, byte[] firstLower, byte[] lastLower) {
+        sink.put(firstLower);
+        sink.put((byte) '.');
+        sink.put(lastLower);
+        sink.put((byte) '@');
+        sink.put(pick(rng, DICT.emailDomains));
+    }
+
+    /** 美式手机号：{@code (NXX) XXX-XXXX}，区号首位为 2-9。 */
+    private static void writePhone(Utf8Sink sink, SplittableRandom rng) {
+        sink.put((byte) '(');
+        sink.put((byte) ('2' + rng.nextInt(8)));
+        sink.putRandomDigits(rng, 2);
+        sink.put((byte) ')');
+        sink.put((byte) ' ');
+        sink.putRandomDigits(rng, 3);
+        sink.put((byte) '-');
+        sink.putRandomDigits(rng, 4);
+    }
+
+    private static void writeAddress(Utf8Sink sink, SplittableRandom rng) {
+        if (rng.nextInt(4) == 0) {
+            sink.put(rng.nextBoolean() ? APT : SUITE);
+            sink.putRandomDigits(rng, 3);
+            sink.put((byte) ' ');
+        }
+        sink.putRandomDigits(rng, 3 + rng.nextInt(3));
+        sink.put((byte) ' ');
+        sink.put(rng.nextBoolean() ? randomFirstName(rng) : pick(rng, DICT.lastNames));
+        sink.put((byte) ' ');
+        sink.put(pick(rng, DICT.streetSuffixes));
+        sink.put(COMMA_SPACE);
+        switch (rng.nextInt(4)) {
+            case 0 -> {
+                sink.put(pick(rng, DICT.cityPrefixes));
+                sink.put((byte) ' ');
+                sink.put(randomFirstName(rng));
+                sink.put(pick(rng, DICT.citySuffixes));
+            }
+            case 1 -> {
+                sink.put(pick(rng, DICT.cityPrefixes));
+                sink.put((byte) ' ');
+                sink.put(randomFirstName(rng));
+            }
+            case 2 -> {
+                sink.put(randomFirstName(rng));
+                sink.put(pick(rng, DICT.citySuffixes));
+            }
+            default -> {
+                sink.put(pick(rng, DICT.lastNames));
+                sink.put(pick(rng, DICT.citySuffixes));
+            }
+        }
+        sink.put(COMMA_SPACE);
+        int state = rng.nextInt(DICT.states.length);
+        sink.put(DICT.states[state]);
+        sink.put((byte) ' ');
+        sink.putTemplate(rng, DICT.zipTemplates[state]);
+    }
+
+    private static void writeCompany(Utf8Sink sink, SplittableRandom rng) {
+        switch (rng.nextInt(3)) {
+            case 0 -> {
+                sink.put(pick(rng, DICT.lastNames));
+                sink.put((byte) ' ');
+                sink.put(pick(rng, DICT.companySuffixes));
+            }
+            case 1 -> {
+                sink.put(pick(rng, DICT.lastNames));
+                sink.put((byte) '-');
+                sink.put(pick(rng, DICT.lastNames));
+            }
+            default -> {
+                sink.put(pick(rng, DICT.lastNames));
+                sink.put(COMMA_SPACE);
+                sink.put(pick(rng, DICT.lastNames));
+                sink.put(AND);
+                sink.put(pick(rng, DICT.lastNames));
+            }
+        }
+    }
+
+    private static void writeJob(Utf8Sink sink, SplittableRandom rng) {
+        if (rng.nextInt(5) < 3) {
+            sink.put(pick(rng, DICT.jobSeniorities));
+            sink.put((byte) ' ');
+        }
+        sink.put(pick(rng, DICT.jobFields));
+        sink.put((byte) ' ');
+        sink.put(pick(rng, DICT.jobPositions));
+    }
+
+    private static byte[] randomFirstName(SplittableRandom rng) {
+        return pick(rng, rng.nextBoolean() ? DICT.femaleFirstNames : DICT.maleFirstNames);
+    }
+
+    private static byte[] pick(SplittableRandom rng, byte[][] words) {
+        return words[rng.nextInt(words.length)];
+    }
+
+    private static byte[][] buildDobTable() {
+        int days = (int) (DOB_TO.toEpochDay() - DOB_FROM.toEpochDay()) + 1;
+        byte[][] table = new byte[days][];
+        for (int i = 0; i < days; i++) {
+            table[i] = bytes(DOB_FROM.plusDays(i).toString());
+        }
+        return table;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
     }
 }
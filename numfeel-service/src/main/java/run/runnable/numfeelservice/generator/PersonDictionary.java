@@ -0,0 +1,114 @@
+package run.runnable.numfeelservice.generator;
+
+import net.datafaker.Faker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 启动时从 Datafaker 的 en 词典一次性载入的姓名 / 地址 / 公司 / 职位词表。
+ * <p>
+ * 每个词条预先编码为 UTF-8 字节数组，按下标随机选取即可直接拷贝进输出，
+ * 避免逐行调用 Faker 的表达式解析（单行约 100µs）。含引号、反斜杠或控制字符的词条
+ * 在载入时剔除，因此所有字节都可以不经转义直接写入 JSON 字符串。
+ */
+final class PersonDictionary {
+
+    final byte[][] femaleFirstNames;
+    final byte[][] maleFirstNames;
+    /** 与 firstNames 下标一一对应的小写、仅含字母数字的形式，用于拼接邮箱。 */
+    final byte[][] femaleFirstLower;
+    final byte[][] maleFirstLower;
+    final byte[][] lastNames;
+    final byte[][] lastLower;
+    final byte[][] prefixes;
+    final byte[][] suffixes;
+    final byte[][] emailDomains;
+    final byte[][] streetSuffixes;
+    final byte[][] cityPrefixes;
+    final byte[][] citySuffixes;
+    final byte[][] states;
+    /** 与 states 下标对应的邮编模板（如 {@code 350##}）。 */
+    final byte[][] zipTemplates;
+    final byte[][] companySuffixes;
+    final byte[][] jobSeniorities;
+    final byte[][] jobFields;
+    final byte[][] jobPositions;
+
+    PersonDictionary(Faker faker) {
+        femaleFirstNames = load(faker, "name.female_first_name");
+        maleFirstNames = load(faker, "name.male_first_name");
+        femaleFirstLower = lower(femaleFirstNames);
+        maleFirstLower = lower(maleFirstNames);
+        lastNames = load(faker, "name.last_name");
+        lastLower = lower(lastNames);
+        prefixes = load(faker, "name.prefix");
+        suffixes = load(faker, "name.suffix");
+        emailDomains = load(faker, "internet.free_email");
+        streetSuffixes = load(faker, "address.street_suffix");
+        cityPrefixes = load(faker, "address.city_prefix");
+        citySuffixes = load(faker, "address.city_suffix");
+        states = load(faker, "address.state_abbr");
+        zipTemplates = zipTemplates(faker, states);
+        companySuffixes = load(faker, "company.suffix");
+        jobSeniorities = load(faker, "job.seniority");
+        jobFields = load(faker, "job.field");
+        jobPositions = load(faker, "job.position");
+    }
+
+    private static byte[][] load(Faker faker, String key) {
+        Object value = faker.fakeValuesService().fetchObject(key, faker.getContext());
+        List<byte[]> out = new ArrayList<>();
+        if (value instanceof List<?> list) {
+            for (Object item : list) {
+                String s = String.valueOf(item);
+                if (!s.isEmpty() && isJsonSafe(s)) {
+                    out.add(s.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        if (out.isEmpty()) {
+            throw new IllegalStateException("Datafaker dictionary '" + key + "' is empty");
+        }
+        return out.toArray(new byte[0][]);
+    }
+
+    private static byte[][] zipTemplates(Faker faker, byte[][] states) {
+        Object value = faker.fakeValuesService().fetchObject("address.postcode_by_state", faker.getContext());
+        Map<?, ?> byState = value instanceof Map<?, ?> m ? m : Map.of();
+        byte[][] out = new byte[states.length][];
+        for (int i = 0; i < states.length; i++) {
+            Object template = byState.get(new String(states[i], StandardCharsets.UTF_8));
+            String s = template == null ? "#####" : String.valueOf(template);
+            out[i] = (isJsonSafe(s) ? s : "#####").getBytes(StandardCharsets.UTF_8);
+        }
+        return out;
+    }
+
+    private static byte[][] lower(byte[][] words) {
+        byte[][] out = new byte[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (char c : new String(words[i], StandardCharsets.UTF_8).toLowerCase(Locale.ROOT).toCharArray()) {
+                if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                    sb.append(c);
+                }
+            }
+            out[i] = (sb.isEmpty() ? "user" : sb.toString()).getBytes(StandardCharsets.UTF_8);
+        }
+        return out;
+    }
+
+    private static boolean isJsonSafe(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
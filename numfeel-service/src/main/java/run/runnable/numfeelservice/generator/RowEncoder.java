@@ -0,0 +1,194 @@
+package run.runnable.numfeelservice.generator;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 把生成器逐字段写出的行编码为某种输出格式。
+ * <p>
+ * 生成器对每行依次调用 {@link #startRow} → 7 次 {@link #startField}/{@link #endField}（字段内容由生成器
+ * 直接写进 sink）→ {@link #endRow}，一块结束后调用 {@link #finish} 取出该块的字节。
+ * 字段下标 1..7 与 {@link #FIELD_NAMES} 对应，0 为 id。实例持有分块内状态，每块新建一个。
+ */
+abstract class RowEncoder {
+
+    static final String[] FIELD_NAMES = {"id", "name", "email", "phone", "address", "company", "dob", "job"};
+
+    /** 写入行开头（含 id）。first 表示这是本块第一行。 */
+    abstract void startRow(Utf8Sink sink, int id, boolean first);
+
+    abstract void startField(Utf8Sink sink, int field);
+
+    /** 字段内容已写在 sink 的 [mark, length) 区间。 */
+    abstract void endField(Utf8Sink sink, int field, int mark);
+
+    abstract void endRow(Utf8Sink sink);
+
+    byte[] finish(Utf8Sink sink, int rows) {
+        return sink.toByteArray();
+    }
+
+    private static byte[][] prefixes(String format) {
+        byte[][] out = new byte[FIELD_NAMES.length][];
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            out[i] = String.format(format, FIELD_NAMES[i]).getBytes(StandardCharsets.UTF_8);
+        }
+        return out;
+    }
+
+    /** JSON 对象；lineDelimited 时每行以换行结尾，否则行间以逗号分隔。 */
+    static final class Json extends RowEncoder {
+
+        private static final byte[][] PREFIXES = prefixes(",\"%s\":\"");
+        private static final byte[] ROW_START = "{\"id\":".getBytes(StandardCharsets.UTF_8);
+
+        private final boolean lineDelimited;
+
+        Json(boolean lineDelimited) {
+            this.lineDelimited = lineDelimited;
+        }
+
+        @Override
+        void startRow(Utf8Sink sink, int id, boolean first) {
+            if (!lineDelimited && !first) {
+                sink.put((byte) ',');
+            }
+            sink.put(ROW_START);
+            sink.putInt(id);
+        }
+
+        @Override
+        void startField(Utf8Sink sink, int field) {
+            sink.put(PREFIXES[field]);
+        }
+
+        @Override
+        void endField(Utf8Sink sink, int field, int mark) {
+            sink.put((byte) '"');
+        }
+
+        @Override
+        void endRow(Utf8Sink sink) {
+            sink.put((byte) '}');
+            if (lineDelimited) {
+                sink.put((byte) '\n');
+            }
+        }
+    }
+
+    /** CSV 行。词典已剔除含双引号的词条，因此文本列只需整体加引号，无需转义。 */
+    static final class Csv extends RowEncoder {
+
+        @Override
+        void startRow(Utf8Sink sink, int id, boolean first) {
+            sink.putInt(id);
+        }
+
+        @Override
+        void startField(Utf8Sink sink, int field) {
+            sink.put((byte) ',');
+            sink.put((byte) '"');
+        }
+
+        @Override
+        void endField(Utf8Sink sink, int field, int mark) {
+            sink.put((byte) '"');
+        }
+
+        @Override
+        void endRow(Utf8Sink sink) {
+            sink.put((byte) '\n');
+        }
+    }
+
+    /**
+     * MessagePack map。字符串值先预留 str8 头（2 字节），写完后回填长度；
+     * 不足 32 字节时改写为 fixstr 并去掉多余的 1 字节，与 Jackson 的紧凑编码一致。
+     */
+    static final class MsgPack extends RowEncoder {
+
+        private static final byte[][] KEYS = keys();
+
+        @Override
+        void startRow(Utf8Sink sink, int id, boolean first) {
+            sink.put((byte) (0x80 | FIELD_NAMES.length));
+            sink.put(KEYS[0]);
+            if (id < 0x80) {
+                sink.put((byte) id);
+            } else if (id <= 0xFFFF) {
+                sink.put((byte) 0xcd);
+                sink.putBE(id, 2);
+            } else {
+                sink.put((byte) 0xce);
+                sink.putBE(id, 4);
+            }
+        }
+
+        @Override
+        void startField(Utf8Sink sink, int field) {
+            sink.put(KEYS[field]);
+            sink.put((byte) 0xd9);
+            sink.put((byte) 0);
+        }
+
+        @Override
+        void endField(Utf8Sink sink, int field, int mark) {
+            int length = sink.length() - mark;
+            if (length < 32) {
+                sink.set(mark - 2, (byte) (0xa0 | length));
+                sink.removeByte(mark - 1);
+            } else if (length <= 0xFF) {
+                sink.set(mark - 1, (byte) length);
+            } else {
+                throw new IllegalStateException("Field '" + FIELD_NAMES[field] + "' exceeds 255 bytes");
+            }
+        }
+
+        @Override
+        void endRow(Utf8Sink sink) {
+        }
+
+        private static byte[][] keys() {
+            byte[][] out = new byte[FIELD_NAMES.length][];
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                byte[] name = FIELD_NAMES[i].getBytes(StandardCharsets.UTF_8);
+                out[i] = new byte[name.length + 1];
+                out[i][0] = (byte) (0xa0 | name.length);
+                System.arraycopy(name, 0, out[i], 1, name.length);
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Arrow 列式编码：字段内容写完后立即搬进对应列的数据区并从行缓冲中截掉，
+     * 块结束时由 {@link ArrowIpc#recordBatchMessage} 拼成一个 RecordBatch 消息。
+     */
+    static final class Arrow extends RowEncoder {
+
+        private final ArrowIpc.Columns columns = new ArrowIpc.Columns(FIELD_NAMES.length - 1);
+
+        @Override
+        void startRow(Utf8Sink sink, int id, boolean first) {
+            columns.addId(id);
+        }
+
+        @Override
+        void startField(Utf8Sink sink, int field) {
+        }
+
+        @Override
+        void endField(Utf8Sink sink, int field, int mark) {
+            columns.addValue(field - 1, sink.array(), mark, sink.length() - mark);
+            sink.truncate(mark);
+        }
+
+        @Override
+        void endRow(Utf8Sink sink) {
+        }
+
+        @Override
+        byte[] finish(Utf8Sink sink, int rows) {
+            return ArrowIpc.recordBatchMessage(columns);
+        }
+    }
+}
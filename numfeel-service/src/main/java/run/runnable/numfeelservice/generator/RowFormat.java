@@ -0,0 +1,60 @@
+package run.runnable.numfeelservice.generator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * 批量生成器的输出格式。
+ * <p>
+ * 一次输出 = {@link #header()} + 若干分块（相邻分块之间插入 {@link #chunkSeparator()}）+ {@link #footer()}。
+ * 每个分块由 {@link FakeDataGenerator} 独立编码，可以直接作为一个网络写出单元。
+ */
+public enum RowFormat {
+
+    /** JSON 数组：{@code [{...},{...}]}。 */
+    JSON_ARRAY(bytes("["), bytes(","), bytes("]"), () -> new RowEncoder.Json(false)),
+
+    /** 换行分隔 JSON（NDJSON），每行一个对象。 */
+    NDJSON(new byte[0], new byte[0], new byte[0], () -> new RowEncoder.Json(true)),
+
+    /** RFC 4180 CSV，首行为列名，文本列一律加双引号。 */
+    CSV(bytes(String.join(",", RowEncoder.FIELD_NAMES) + "\n"), new byte[0], new byte[0], RowEncoder.Csv::new),
+
+    /** MessagePack 对象流：每行一个 8 键 map，键名与 JSON 相同。 */
+    MSGPACK(new byte[0], new byte[0], new byte[0], RowEncoder.MsgPack::new),
+
+    /** Arrow IPC 流式格式：Schema 消息 + 每块一个 RecordBatch + EOS 标记。 */
+    ARROW(ArrowIpc.schemaMessage(RowEncoder.FIELD_NAMES), new byte[0], ArrowIpc.endOfStream(), RowEncoder.Arrow::new);
+
+    private final byte[] header;
+    private final byte[] chunkSeparator;
+    private final byte[] footer;
+    private final Supplier<RowEncoder> encoderFactory;
+
+    RowFormat(byte[] header, byte[] chunkSeparator, byte[] footer, Supplier<RowEncoder> encoderFactory) {
+        this.header = header;
+        this.chunkSeparator = chunkSeparator;
+        this.footer = footer;
+        this.encoderFactory = encoderFactory;
+    }
+
+    public byte[] header() {
+        return header.clone();
+    }
+
+    public byte[] chunkSeparator() {
+        return chunkSeparator.clone();
+    }
+
+    public byte[] footer() {
+        return footer.clone();
+    }
+
+    RowEncoder newEncoder() {
+        return encoderFactory.get();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
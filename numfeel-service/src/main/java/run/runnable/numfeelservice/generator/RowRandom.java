@@ -0,0 +1,28 @@
+package run.runnable.numfeelservice.generator;
+
+import java.util.SplittableRandom;
+
+/**
+ * 基于计数器的逐行随机源：第 k 行的随机序列只由 (seed, k) 决定。
+ * <p>
+ * 因此同一 seed 下任意一段行区间都可以被独立、并行、重复地计算，
+ * 分页拉取或中途重试时无需重新生成前面的数据。
+ */
+final class RowRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private RowRandom() {
+    }
+
+    static SplittableRandom forRow(long seed, long row) {
+        return new SplittableRandom(mix64(seed + (row + 1) * GOLDEN_GAMMA));
+    }
+
+    /** SplitMix64 终混函数，把相邻的 seed/行号打散为互不相关的种子。 */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
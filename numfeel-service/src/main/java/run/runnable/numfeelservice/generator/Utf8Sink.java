@@ -0,0 +1,141 @@
+package run.runnable.numfeelservice.generator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 可复用的字节写入缓冲区，供批量生成器直接拼接 UTF-8 文本行或二进制编码（MessagePack / Arrow），
+ * 不经过 String / Jackson。
+ * <p>
+ * 非线程安全：每个工作线程持有自己的实例，写完一个分块后用 {@link #toByteArray()} 拷出结果再 {@link #reset()}。
+ */
+final class Utf8Sink {
+
+    private byte[] buf;
+    private int len;
+
+    Utf8Sink(int initialCapacity) {
+        this.buf = new byte[initialCapacity];
+    }
+
+    int length() {
+        return len;
+    }
+
+    void reset() {
+        len = 0;
+    }
+
+    /** 内部数组，仅在 [0, length()) 范围内有效。 */
+    byte[] array() {
+        return buf;
+    }
+
+    /** 丢弃 newLength 之后写入的内容。 */
+    void truncate(int newLength) {
+        len = newLength;
+    }
+
+    void set(int pos, byte b) {
+        buf[pos] = b;
+    }
+
+    /** 删除 pos 处的一个字节，其后内容前移。 */
+    void removeByte(int pos) {
+        System.arraycopy(buf, pos + 1, buf, pos, len - pos - 1);
+        len--;
+    }
+
+    void put(byte b) {
+        ensure(1);
+        buf[len++] = b;
+    }
+
+    void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    void put(byte[] src, int offset, int length) {
+        ensure(length);
+        System.arraycopy(src, offset, buf, len, length);
+        len += length;
+    }
+
+    /** 写入小端序 int32。 */
+    void putIntLE(int value) {
+        ensure(4);
+        buf[len++] = (byte) value;
+        buf[len++] = (byte) (value >>> 8);
+        buf[len++] = (byte) (value >>> 16);
+        buf[len++] = (byte) (value >>> 24);
+    }
+
+    /** 写入大端序的低 bytes 个字节（MessagePack 整数 / 长度字段）。 */
+    void putBE(long value, int bytes) {
+        ensure(bytes);
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            buf[len++] = (byte) (value >>> shift);
+        }
+    }
+
+    /** 补零到 8 字节对齐。 */
+    void pad8() {
+        while ((len & 7) != 0) {
+            put((byte) 0);
+        }
+    }
+
+    /** 写入非负整数的十进制表示。 */
+    void putInt(int value) {
+        if (value < 10) {
+            put((byte) ('0' + value));
+            return;
+        }
+        int digits = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        ensure(digits);
+        for (int i = len + digits - 1; i >= len; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        len += digits;
+    }
+
+    /** 写入 count 个随机数字。 */
+    void putRandomDigits(SplittableRandom rng, int count) {
+        ensure(count);
+        for (int i = 0; i < count; i++) {
+            buf[len++] = (byte) ('0' + rng.nextInt(10));
+        }
+    }
+
+    /** 按模板写入，模板中的 {@code #} 替换为随机数字，其余字节原样输出。 */
+    void putTemplate(SplittableRandom rng, byte[] template) {
+        ensure(template.length);
+        for (byte b : template) {
+            buf[len++] = b == '#' ? (byte) ('0' + rng.nextInt(10)) : b;
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, len);
+    }
+
+    /** 取出 from 之后写入的内容作为字符串，并回退到 from。 */
+    String takeString(int from) {
+        String s = new String(buf, from, len - from, StandardCharsets.UTF_8);
+        len = from;
+        return s;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package run.runnable.numfeelservice.service;
 
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.BarnumStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.BarnumResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -16,10 +17,27 @@ import java.util.stream.IntStream;
 @Service
 public class BarnumStatsService {
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<BarnumResult> aggregates;
+    private final LiveAggregates.Summary<BarnumResult> tarot;
+    private final LiveAggregates.Summary<BarnumResult> random;
+    private final LiveAggregates.Fold<BarnumResult, int[]> tarotDistribution;
+    private final LiveAggregates.Fold<BarnumResult, int[]> randomDistribution;
 
     public BarnumStatsService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<BarnumResult> builder = LiveAggregates.builder(template, BarnumResult.class);
+        this.tarot = builder.summary(row -> "tarot".equals(row.userGroup()), BarnumResult::avgRating);
+        this.random = builder.summary(row -> "random".equals(row.userGroup()), BarnumResult::avgRating);
+        this.tarotDistribution = builder.fold(() -> new int[5], (counts, row) -> {
+            if ("tarot".equals(row.userGroup())) {
+                applyRatings(counts, row);
+            }
+        });
+        this.randomDistribution = builder.fold(() -> new int[5], (counts, row) -> {
+            if ("random".equals(row.userGroup())) {
+                applyRatings(counts, row);
+            }
+        });
+        this.aggregates = builder.build();
     }
 
     /**
@@ -38,7 +56,7 @@ public class BarnumStatsService {
         BarnumResult entity = new BarnumResult(
                 null, userGroup, rating1, rating2, rating3, rating4, rating5,
                 avg(rating1, rating2, rating3, rating4, rating5), System.currentTimeMillis());
-        return template.insert(BarnumResult.class).using(entity).then();
+        return aggregates.insert(entity).then();
     }
 
     /**
@@ -47,56 +65,34 @@ public class BarnumStatsService {
      * @return 包含两组对比数据的统计响应
      */
     public Mono<BarnumStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, BarnumResult.class)
-                .map(this::buildStatsResponse);
+        return aggregates.read(this::buildStatsResponse);
     }
 
     /** 计算两组平均分、样本量和 1-5 分分布。 */
-    private BarnumStatsResponse buildStatsResponse(List<BarnumResult> rows) {
-        long tarotCount = rows.stream().filter(row -> "tarot".equals(row.userGroup())).count();
-        long randomCount = rows.stream().filter(row -> "random".equals(row.userGroup())).count();
-        double tarotAvg = averageRating(rows, "tarot");
-        double randomAvg = averageRating(rows, "random");
-        List<Integer> tarotDistribution = buildDistribution(rows, "tarot");
-        List<Integer> randomDistribution = buildDistribution(rows, "random");
+    private BarnumStatsResponse buildStatsResponse() {
+        double tarotAvg = ServiceSupport.round(tarot.mean(), 2);
+        double randomAvg = ServiceSupport.round(random.mean(), 2);
         double diff = ServiceSupport.round(tarotAvg - randomAvg, 2);
         int diffPercent = randomAvg > 0 ? (int) Math.round(diff / randomAvg * 100) : 0;
 
         return new BarnumStatsResponse(
                 tarotAvg,
                 randomAvg,
-                tarotCount,
-                randomCount,
+                tarot.count(),
+                random.count(),
                 diff,
                 diffPercent,
-                tarotDistribution,
-                randomDistribution
+                toList(tarotDistribution.get()),
+                toList(randomDistribution.get())
         );
     }
 
-    /** 计算指定组别的平均认同分。 */
-    private double averageRating(List<BarnumResult> rows, String group) {
-        return ServiceSupport.round(rows.stream()
-                .filter(row -> group.equals(row.userGroup()))
-                .mapToDouble(BarnumResult::avgRating)
-                .average()
-                .orElse(0), 2);
-    }
-
-    /** 统计指定组别在 1-5 分上的分布。 */
-    private List<Integer> buildDistribution(List<BarnumResult> rows, String group) {
-        int[] counts = new int[5];
-        rows.stream()
-                .filter(row -> group.equals(row.userGroup()))
-                .forEach(row -> applyRatings(counts, row));
-
-        return IntStream.range(0, counts.length)
-                .mapToObj(index -> counts[index])
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+    private static List<Integer> toList(int[] counts) {
+        return IntStream.of(counts).boxed().collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
     }
 
     /** 将单条记录的 5 个评分累计到分布数组。 */
-    private void applyRatings(int[] counts, BarnumResult row) {
+    private static void applyRatings(int[] counts, BarnumResult row) {
         int[] values = {row.rating1(), row.rating2(), row.rating3(), row.rating4(), row.rating5()};
         for (int rating : values) {
             if (rating >= 1 && rating <= 5) {
@@ -109,4 +105,9 @@ public class BarnumStatsService {
     private double avg(double rating1, double rating2, double rating3, double rating4, double rating5) {
         return (rating1 + rating2 + rating3 + rating4 + rating5) / 5.0;
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
@@ -0,0 +1,219 @@
+package run.runnable.numfeelservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.core.ReactiveDataAccessStrategy;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单张表的合并写入：把并发到达的单行 INSERT 攒成一条多行 {@code INSERT ... VALUES (...),(...)}，
+ * 做法与 {@link EventCollectService} 的批量写入相同，只是列和参数由实体映射生成。
+ * <p>
+ * 每张表同一时刻只有一条写入语句在执行：
+ * <ul>
+ *   <li>空闲时到达的行立即单独写入（仍走 {@code template.insert}，回填 id），低流量下不增加延迟；</li>
+ *   <li>语句执行期间到达的行排队，上一条结束后立即合成一条多行 INSERT，每批最多 {@link #MAX_BATCH_ROWS} 行；</li>
+ *   <li>队列达到 {@link #MAX_PENDING_ROWS} 行时不再排队，新行直接单独写入，由连接池自己限流；</li>
+ *   <li>与 {@code template.insert} 一样只写非 null 的列（null 列交给表的 DEFAULT），
+ *       一批里非 null 列不同的行分组，各写一条多行 INSERT；</li>
+ *   <li>多行 INSERT 失败时逐行重试，每个调用方拿到的是自己那一行的结果或错误。</li>
+ * </ul>
+ * 多行写入不回填自增 id（MySQL 交错自增模式下批内 id 不保证连续），返回的实体 id 为 null；
+ * 需要 id 的调用方应直接使用 {@code template.insert}。
+ * 持有本实例的 bean 在 {@code @PreDestroy} 中调用 {@link #drain()}，停机时把队列写完。
+ *
+ * @param <T> 实体类型
+ */
+final class BatchInsertBuffer<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchInsertBuffer.class);
+
+    /** 单条多行 INSERT 最多包含的行数。 */
+    static final int MAX_BATCH_ROWS = 200;
+
+    /** 排队等待写入的最大行数，超出后直接单独写入。 */
+    static final int MAX_PENDING_ROWS = 2000;
+
+    /** 停机时最多等待排队的行写完的时长。 */
+    static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
+    private record Pending<T>(T row, Sinks.One<T> result) {
+    }
+
+    /** 映射好的一行：实体的出站列，已去掉值为 null 的列。 */
+    private record Mapped<T>(Pending<T> pending, OutboundRow outbound) {
+    }
+
+    private final R2dbcEntityTemplate template;
+    private final Class<T> entityType;
+    private final ArrayDeque<Pending<T>> queue = new ArrayDeque<>();
+    private final DrainSignal idle = new DrainSignal();
+    private boolean writing;
+    private boolean closed;
+
+    BatchInsertBuffer(R2dbcEntityTemplate template, Class<T> entityType) {
+        this.template = template;
+        this.entityType = entityType;
+    }
+
+    /** 写入一行；订阅时才入队。返回落库后的实体（合并写入时 id 为 null）。 */
+    Mono<T> insert(T row) {
+        return Mono.defer(() -> {
+            Sinks.One<T> result = Sinks.one();
+            boolean start;
+            synchronized (this) {
+                if (closed || queue.size() >= MAX_PENDING_ROWS) {
+                    return insertOne(row);
+                }
+                queue.add(new Pending<>(row, result));
+                start = !writing;
+                writing = true;
+            }
+            if (start) {
+                writeNext();
+            }
+            return result.asMono();
+        });
+    }
+
+    /** 停止排队并等待已排队的行写完；超时返回 false。 */
+    boolean drain(Duration timeout) {
+        synchronized (this) {
+            closed = true;
+        }
+        return idle.await(this::idle, () -> { }, timeout);
+    }
+
+    private synchronized boolean idle() {
+        return !writing;
+    }
+
+    /** 停机排空：至多等待 {@link #DRAIN_TIMEOUT}，超时只记日志。 */
+    void drain() {
+        if (!drain(DRAIN_TIMEOUT)) {
+            log.warn("batch insert drain timed out, entity={}", entityType.getSimpleName());
+        }
+    }
+
+    private void writeNext() {
+        List<Pending<T>> batch;
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                writing = false;
+                batch = null;
+            } else {
+                batch = new ArrayList<>(Math.min(queue.size(), MAX_BATCH_ROWS));
+                while (!queue.isEmpty() && batch.size() < MAX_BATCH_ROWS) {
+                    batch.add(queue.poll());
+                }
+            }
+        }
+        if (batch == null) {
+            idle.signal();
+            return;
+        }
+        Mono<Void> write = batch.size() == 1 ? writeOne(batch.get(0)) : writeBatch(batch);
+        write.doFinally(signal -> writeNext()).subscribe();
+    }
+
+    private Mono<Void> writeOne(Pending<T> pending) {
+        return insertOne(pending.row())
+                .doOnSuccess(saved -> {
+                    if (saved == null) {
+                        pending.result().tryEmitEmpty();
+                    } else {
+                        pending.result().tryEmitValue(saved);
+                    }
+                })
+                .doOnError(e -> pending.result().tryEmitError(e))
+                .onErrorComplete()
+                .then();
+    }
+
+    private Mono<Void> writeBatch(List<Pending<T>> batch) {
+        Map<List<SqlIdentifier>, List<Mapped<T>>> groups;
+        try {
+            groups = groupByColumns(batch);
+        } catch (RuntimeException e) {
+            log.warn("mapping {} {} rows failed, writing one by one: {}",
+                    batch.size(), entityType.getSimpleName(), e.getMessage());
+            return Flux.fromIterable(batch).concatMap(this::writeOne).then();
+        }
+        return Flux.fromIterable(groups.entrySet())
+                .concatMap(group -> writeGroup(group.getKey(), group.getValue()))
+                .then();
+    }
+
+    /** 非 null 列相同的一组行：多于一行时合成一条多行 INSERT。 */
+    private Mono<Void> writeGroup(List<SqlIdentifier> columns, List<Mapped<T>> rows) {
+        if (rows.size() == 1 || columns.isEmpty()) {
+            return Flux.fromIterable(rows).concatMap(r -> writeOne(r.pending())).then();
+        }
+        return Mono.defer(() -> multiRowInsert(columns, rows))
+                .doOnSuccess(updated -> rows.forEach(r -> r.pending().result().tryEmitValue(r.pending().row())))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("batch insert of {} {} rows failed, retrying one by one: {}",
+                            rows.size(), entityType.getSimpleName(), e.getMessage());
+                    return Flux.fromIterable(rows).concatMap(r -> writeOne(r.pending())).then();
+                });
+    }
+
+    private Mono<T> insertOne(T row) {
+        return Mono.defer(() -> template.insert(entityType).using(row));
+    }
+
+    /** 把每行映射成出站列并去掉 null 列，按剩下的列分组，组的顺序与组内行的顺序都保持到达顺序。 */
+    private Map<List<SqlIdentifier>, List<Mapped<T>>> groupByColumns(List<Pending<T>> batch) {
+        ReactiveDataAccessStrategy strategy = template.getDataAccessStrategy();
+        Map<List<SqlIdentifier>, List<Mapped<T>>> groups = new LinkedHashMap<>();
+        for (Pending<T> pending : batch) {
+            OutboundRow outbound = strategy.getOutboundRow(pending.row());
+            // 与 template.insert 一致：未赋值的列（含自增主键）不写，由数据库取默认值
+            outbound.entrySet().removeIf(column -> column.getValue() == null || column.getValue().isEmpty());
+            groups.computeIfAbsent(List.copyOf(outbound.keySet()), k -> new ArrayList<>())
+                    .add(new Mapped<>(pending, outbound));
+        }
+        return groups;
+    }
+
+    private Mono<Long> multiRowInsert(List<SqlIdentifier> columns, List<Mapped<T>> rows) {
+        ReactiveDataAccessStrategy strategy = template.getDataAccessStrategy();
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(strategy.toSql(strategy.getTableName(entityType)))
+                .append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(strategy.toSql(columns.get(i)));
+        }
+        sql.append(") VALUES ");
+        String placeholders = "(" + "?,".repeat(columns.size() - 1) + "?)";
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(placeholders);
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient().sql(sql.toString());
+        int index = 0;
+        for (Mapped<T> row : rows) {
+            for (SqlIdentifier column : columns) {
+                spec = spec.bind(index++, strategy.getBindValue(row.outbound().get(column)).getValue());
+            }
+        }
+        return spec.fetch().rowsUpdated();
+    }
+}
@@ -4,6 +4,7 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.BrainCompute
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.BrainComputeSubmitResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.BrainComputeTopResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.BrainComputeEntry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -28,12 +29,23 @@ public class BrainComputeService {
     static final int CAT_BEST = 400;
     static final int CAT_WORST = 3000;
 
-    private final R2dbcEntityTemplate template;
+    /** 排行榜可查询的最大条数。 */
+    private static final int MAX_TOP = 50;
+
     private final TurnstileVerifier turnstileVerifier;
+    private final LiveAggregates<BrainComputeEntry> aggregates;
+    private final LiveAggregates.IntRank<BrainComputeEntry> scoreRank;
+    private final LiveAggregates.TopK<BrainComputeEntry> leaders;
 
     public BrainComputeService(R2dbcEntityTemplate template, TurnstileVerifier turnstileVerifier) {
-        this.template = template;
         this.turnstileVerifier = turnstileVerifier;
+        LiveAggregates.Builder<BrainComputeEntry> builder = LiveAggregates.builder(template, BrainComputeEntry.class);
+        this.scoreRank = builder.rank(BrainComputeEntry::score, 0, 300);
+        this.leaders = builder.top(MAX_TOP,
+                Comparator.comparingInt(BrainComputeEntry::score).reversed()
+                        .thenComparingLong(BrainComputeEntry::createdAt),
+                row -> true);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -53,24 +65,22 @@ public class BrainComputeService {
         String grade = gradeOf(score);
         BrainComputeEntry entity = new BrainComputeEntry(
                 null, name, score, reactionMs, catMs, ballScore, grade, System.currentTimeMillis());
-        // 人机验证通过前不触碰数据库：用 defer 保证 insert/select 只在 verify 成功后才构建执行
+        // 人机验证通过前不触碰数据库：用 defer 保证入库与名次查询只在 verify 成功后才构建执行
         return turnstileVerifier.verify(token, remoteIp)
-                .then(Mono.defer(() -> template.insert(BrainComputeEntry.class).using(entity)))
-                .then(Mono.defer(() -> ServiceSupport.selectAll(template, BrainComputeEntry.class)))
-                .map(rows -> new BrainComputeSubmitResponse(
-                        name, score, grade, rankByScore(rows, score), rows.size()));
+                .then(Mono.defer(() -> aggregates.insert(entity)))
+                .then(Mono.defer(() -> aggregates.read(() -> new BrainComputeSubmitResponse(
+                        name, score, grade, scoreRank.countAbove(score) + 1, aggregates.count()))));
     }
 
     /** 查询排行榜前 N 名，按综合分优先、提交时间次序排序。 */
     public Mono<BrainComputeTopResponse> top(int limit) {
-        int safeLimit = ServiceSupport.clampLimit(limit, 1, 50);
-        return ServiceSupport.selectAll(template, BrainComputeEntry.class)
-                .map(rows -> toTopResponse(rows, safeLimit));
+        int safeLimit = ServiceSupport.clampLimit(limit, 1, MAX_TOP);
+        return aggregates.read(() -> toTopResponse(leaders.first(safeLimit), aggregates.count()));
     }
 
     /** 清空排行榜记录，供管理接口或测试场景使用。 */
     public Mono<Void> clear() {
-        return template.delete(BrainComputeEntry.class).all().then();
+        return aggregates.deleteAll();
     }
 
     /**
@@ -104,21 +114,11 @@ public class BrainComputeService {
         return x;
     }
 
-    /** 按综合分计算当前成绩名次，高分在前。 */
-    private long rankByScore(List<BrainComputeEntry> rows, int score) {
-        return rows.stream().filter(row -> row.score() > score).count() + 1;
-    }
-
     /** 构建前端排行榜列表，附带总样本数。 */
-    private BrainComputeTopResponse toTopResponse(List<BrainComputeEntry> rows, int limit) {
-        List<BrainComputeEntry> sortedRows = ServiceSupport.sorted(
-                rows,
-                Comparator.comparingInt(BrainComputeEntry::score).reversed()
-                        .thenComparingLong(BrainComputeEntry::createdAt)
-        );
+    private BrainComputeTopResponse toTopResponse(List<BrainComputeEntry> rows, long total) {
         List<BrainComputeLeader> leaders = new ArrayList<>();
         int rank = 1;
-        for (BrainComputeEntry row : sortedRows.stream().limit(limit).toList()) {
+        for (BrainComputeEntry row : rows) {
             leaders.add(new BrainComputeLeader(
                     rank++,
                     row.name(),
@@ -129,6 +129,11 @@ public class BrainComputeService {
                     row.grade()
             ));
         }
-        return new BrainComputeTopResponse(leaders, rows.size());
+        return new BrainComputeTopResponse(leaders, total);
+    }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
     }
 }
@@ -7,12 +7,13 @@ import run.runnable.numfeelservice.controller.dto.TrackingResponses.CaptchaMetri
 import run.runnable.numfeelservice.controller.dto.TrackingResponses.CaptchaStatsResponse;
 import run.runnable.numfeelservice.controller.dto.TrackingResponses.CaptchaSubmitResponse;
 import run.runnable.numfeelservice.model.TrackingEntities.CaptchaResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
 
 /**
  * CAPTCHA 攻防实验室 — 业务逻辑层（R2DBC 重写）。
@@ -20,10 +21,33 @@ import java.util.Map;
 @Service
 public class CaptchaStatsService {
 
-    private final R2dbcEntityTemplate template;
+    /** 八个关卡的通过标记，顺序与 {@link CaptchaMetrics} 字段一致。 */
+    private static final List<ToDoubleFunction<CaptchaResult>> LEVELS = List.of(
+            CaptchaResult::lvText, CaptchaResult::lvMath, CaptchaResult::lvSlider, CaptchaResult::lvGrid,
+            CaptchaResult::lvClick, CaptchaResult::lvRotate, CaptchaResult::lvSpatial, CaptchaResult::lvBehavior);
+
+    /** 八个关卡的耗时（毫秒），顺序与 {@link CaptchaMetrics} 字段一致。 */
+    private static final List<ToDoubleFunction<CaptchaResult>> TIMES = List.of(
+            CaptchaResult::timeText, CaptchaResult::timeMath, CaptchaResult::timeSlider, CaptchaResult::timeGrid,
+            CaptchaResult::timeClick, CaptchaResult::timeRotate, CaptchaResult::timeSpatial, CaptchaResult::timeBehavior);
+
+    private final LiveAggregates<CaptchaResult> aggregates;
+    private final List<LiveAggregates.Summary<CaptchaResult>> levelPasses;
+    private final List<LiveAggregates.Summary<CaptchaResult>> levelTimes;
+    private final LiveAggregates.Summary<CaptchaResult> passed;
+    private final LiveAggregates.Summary<CaptchaResult> totalTime;
+    private final LiveAggregates.GroupCount<CaptchaResult, String> grades;
+    private final LiveAggregates.DoubleRank<CaptchaResult> standing;
 
     public CaptchaStatsService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<CaptchaResult> builder = LiveAggregates.builder(template, CaptchaResult.class);
+        this.levelPasses = LEVELS.stream().map(builder::summary).toList();
+        this.levelTimes = TIMES.stream().map(builder::summary).toList();
+        this.passed = builder.summary(CaptchaResult::passedCount);
+        this.totalTime = builder.summary(CaptchaResult::totalTimeMs);
+        this.grades = builder.countBy(CaptchaResult::grade);
+        this.standing = builder.rank(row -> standingKey(row.passedCount(), row.totalTimeMs()));
+        this.aggregates = builder.build();
     }
 
     /**
@@ -37,10 +61,8 @@ public class CaptchaStatsService {
         int totalTimeMs = request.totalTimeMs();
         CaptchaResult entity = toEntity(request);
 
-        return template.insert(CaptchaResult.class)
-                .using(entity)
-                .then(ServiceSupport.selectAll(template, CaptchaResult.class))
-                .map(rows -> toSubmitResponse(rows, passedCount, totalTimeMs));
+        return aggregates.insert(entity)
+                .then(aggregates.read(() -> toSubmitResponse(passedCount, totalTimeMs)));
     }
 
     /**
@@ -49,8 +71,7 @@ public class CaptchaStatsService {
      * @return 包含全局指标与评级分布的统计响应
      */
     public Mono<CaptchaStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, CaptchaResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /** 将前端一次挑战结果转换为数据库实体。 */
@@ -81,13 +102,18 @@ public class CaptchaStatsService {
         );
     }
 
+    /**
+     * 把“通过关数多者优先、同关数耗时短者优先”压成一个可比较的 double：
+     * 关数放在 2^32 位以上，耗时取负放在低位，两者都是 int，乘积仍在 double 的精确整数范围内。
+     */
+    private static double standingKey(int passedCount, int totalTimeMs) {
+        return passedCount * 4294967296.0 - totalTimeMs;
+    }
+
     /** 根据当前成绩在所有历史样本中的相对位置生成排名反馈。 */
-    private CaptchaSubmitResponse toSubmitResponse(java.util.List<CaptchaResult> rows, int passedCount, int totalTimeMs) {
-        long rank = rows.stream()
-                .filter(row -> row.passedCount() > passedCount
-                        || (row.passedCount() == passedCount && row.totalTimeMs() < totalTimeMs))
-                .count() + 1;
-        long totalSessions = rows.size();
+    private CaptchaSubmitResponse toSubmitResponse(int passedCount, int totalTimeMs) {
+        long rank = standing.countAbove(standingKey(passedCount, totalTimeMs)) + 1;
+        long totalSessions = aggregates.count();
         double percentile = totalSessions > 0
                 ? Math.round((1.0 - (double) rank / totalSessions) * 100)
                 : 50;
@@ -95,36 +121,21 @@ public class CaptchaStatsService {
     }
 
     /** 计算验证码全局统计，包括关卡通过率、平均耗时和评级分布。 */
-    private CaptchaStatsResponse toStatsResponse(java.util.List<CaptchaResult> rows) {
-        CaptchaMetrics passRates = new CaptchaMetrics(
-                avgPct(rows.stream().mapToInt(CaptchaResult::lvText).average().orElse(0)),
-                avgPct(rows.stream().mapToInt(CaptchaResult::lvMath).average().orElse(0)),
-                avgPct(rows.stream().mapToInt(CaptchaResult::lvSlider).average().orElse(0)),
-                avgPct(rows.stream().mapToInt(CaptchaResult::lvGrid).average().orElse(0)),
-                avgPct(rows.stream().mapToInt(CaptchaResult::lvClick).average().orElse(0)),
-                avgPct(rows.stream().mapToInt(CaptchaResult::lvRotate).average().orElse(0)),
-                avgPct(rows.stream().mapToInt(CaptchaResult::lvSpatial).average().orElse(0)),
-                avgPct(rows.stream().mapToInt(CaptchaResult::lvBehavior).average().orElse(0))
-        );
-        CaptchaMetrics avgTimes = new CaptchaMetrics(
-                avgSeconds(rows.stream().mapToInt(CaptchaResult::timeText).average().orElse(0)),
-                avgSeconds(rows.stream().mapToInt(CaptchaResult::timeMath).average().orElse(0)),
-                avgSeconds(rows.stream().mapToInt(CaptchaResult::timeSlider).average().orElse(0)),
-                avgSeconds(rows.stream().mapToInt(CaptchaResult::timeGrid).average().orElse(0)),
-                avgSeconds(rows.stream().mapToInt(CaptchaResult::timeClick).average().orElse(0)),
-                avgSeconds(rows.stream().mapToInt(CaptchaResult::timeRotate).average().orElse(0)),
-                avgSeconds(rows.stream().mapToInt(CaptchaResult::timeSpatial).average().orElse(0)),
-                avgSeconds(rows.stream().mapToInt(CaptchaResult::timeBehavior).average().orElse(0))
-        );
+    private CaptchaStatsResponse toStatsResponse() {
+        List<Double> passRates = levelPasses.stream().map(s -> avgPct(s.mean())).toList();
+        List<Double> avgTimes = levelTimes.stream().map(s -> avgSeconds(s.mean())).toList();
         CaptchaGlobalStats global = new CaptchaGlobalStats(
-                rows.size(),
-                round2(rows.stream().mapToInt(CaptchaResult::passedCount).average().orElse(0)),
-                avgSeconds(rows.stream().mapToInt(CaptchaResult::totalTimeMs).average().orElse(0)),
-                passRates,
-                avgTimes
+                aggregates.count(),
+                round2(passed.mean()),
+                avgSeconds(totalTime.mean()),
+                toMetrics(passRates),
+                toMetrics(avgTimes)
         );
-        Map<String, Long> gradeDist = new LinkedHashMap<>(ServiceSupport.countBy(rows, CaptchaResult::grade));
-        return new CaptchaStatsResponse(global, gradeDist);
+        return new CaptchaStatsResponse(global, grades.snapshot());
+    }
+
+    private CaptchaMetrics toMetrics(List<Double> v) {
+        return new CaptchaMetrics(v.get(0), v.get(1), v.get(2), v.get(3), v.get(4), v.get(5), v.get(6), v.get(7));
     }
 
     private int intVal(Integer value) {
@@ -146,4 +157,9 @@ public class CaptchaStatsService {
     private double avgSeconds(double milliseconds) {
         return round1(milliseconds / 1000.0);
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
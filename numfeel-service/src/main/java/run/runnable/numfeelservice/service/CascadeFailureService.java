@@ -7,13 +7,16 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.CascadeFailu
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.CascadeFailureSubmitResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.CascadeFailureTopologyStats;
 import run.runnable.numfeelservice.model.GameplayEntities.CascadeFailureResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 级联故障模拟器 — 业务逻辑层（R2DBC 重写）。
@@ -22,9 +25,27 @@ import java.util.List;
 public class CascadeFailureService {
 
     private final R2dbcEntityTemplate template;
+    private final LiveAggregates<CascadeFailureResult> aggregates;
+    private final LiveAggregates.Summary<CascadeFailureResult> survivalRate;
+    private final LiveAggregates.Summary<CascadeFailureResult> cascadeSteps;
+    private final LiveAggregates.Summary<CascadeFailureResult> score;
+    private final LiveAggregates.Counter<CascadeFailureResult> highSurvival;
+    /** 拓扑 → [样本数, 存活率之和]，按首次出现顺序。 */
+    private final LiveAggregates.Fold<CascadeFailureResult, Map<String, double[]>> topologies;
 
     public CascadeFailureService(R2dbcEntityTemplate template) {
         this.template = template;
+        LiveAggregates.Builder<CascadeFailureResult> builder = LiveAggregates.builder(template, CascadeFailureResult.class);
+        this.survivalRate = builder.summary(CascadeFailureResult::survivalRate);
+        this.cascadeSteps = builder.summary(CascadeFailureResult::cascadeSteps);
+        this.score = builder.summary(CascadeFailureResult::score);
+        this.highSurvival = builder.count(row -> row.survivalRate() >= 0.8);
+        this.topologies = builder.fold(LinkedHashMap::new, (byTopology, row) -> {
+            double[] acc = byTopology.computeIfAbsent(row.topology(), k -> new double[2]);
+            acc[0]++;
+            acc[1] += row.survivalRate();
+        });
+        this.aggregates = builder.build();
     }
 
     /**
@@ -48,10 +69,8 @@ public class CascadeFailureService {
         CascadeFailureResult entity = new CascadeFailureResult(
                 null, topology, coupling, capacity, strategy, triggerPos, survivalRate,
                 cascadeSteps, maxComponent, totalNodes, score, System.currentTimeMillis());
-        return template.insert(CascadeFailureResult.class)
-                .using(entity)
-                .then(template.select(CascadeFailureResult.class).all().count())
-                .map(total -> new CascadeFailureSubmitResponse(total, score));
+        return aggregates.insert(entity)
+                .then(aggregates.read(() -> new CascadeFailureSubmitResponse(aggregates.count(), score)));
     }
 
     /**
@@ -60,8 +79,7 @@ public class CascadeFailureService {
      * @return 包含全局指标与拓扑分布的统计响应
      */
     public Mono<CascadeFailureStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, CascadeFailureResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /**
@@ -116,38 +134,35 @@ public class CascadeFailureService {
     }
 
     /** 聚合全局指标与拓扑维度统计。 */
-    private CascadeFailureStatsResponse toStatsResponse(List<CascadeFailureResult> rows) {
-        long totalRuns = rows.size();
-        return new CascadeFailureStatsResponse(buildGlobalStats(rows, totalRuns), buildTopologyStats(rows));
+    private CascadeFailureStatsResponse toStatsResponse() {
+        return new CascadeFailureStatsResponse(buildGlobalStats(aggregates.count()), buildTopologyStats());
     }
 
     /** 计算平均存活率、平均级联步数和高存活率占比。 */
-    private CascadeFailureGlobalStats buildGlobalStats(List<CascadeFailureResult> rows, long totalRuns) {
+    private CascadeFailureGlobalStats buildGlobalStats(long totalRuns) {
         if (totalRuns == 0) {
             return new CascadeFailureGlobalStats(0, 0.0, 0.0, 0.0, 0.0);
         }
 
         return new CascadeFailureGlobalStats(
                 totalRuns,
-                round3(rows.stream().mapToDouble(CascadeFailureResult::survivalRate).average().orElse(0)),
-                round1(rows.stream().mapToInt(CascadeFailureResult::cascadeSteps).average().orElse(0)),
-                round1(rows.stream().mapToInt(CascadeFailureResult::score).average().orElse(0)),
-                round3(rows.stream().filter(row -> row.survivalRate() >= 0.8).count() / (double) totalRuns)
+                round3(survivalRate.mean()),
+                round1(cascadeSteps.mean()),
+                round1(score.mean()),
+                round3(highSurvival.get() / (double) totalRuns)
         );
     }
 
-    /** 按拓扑类型汇总样本数和平均存活率。 */
-    private List<CascadeFailureTopologyStats> buildTopologyStats(List<CascadeFailureResult> rows) {
+    /** 按拓扑类型汇总样本数和平均存活率，样本多的在前。 */
+    private List<CascadeFailureTopologyStats> buildTopologyStats() {
         List<CascadeFailureTopologyStats> byTopology = new ArrayList<>();
-        rows.stream()
-                .collect(java.util.stream.Collectors.groupingBy(CascadeFailureResult::topology))
-                .entrySet()
+        topologies.get().entrySet()
                 .stream()
-                .sorted((a, b) -> Integer.compare(b.getValue().size(), a.getValue().size()))
+                .sorted((a, b) -> Double.compare(b.getValue()[0], a.getValue()[0]))
                 .forEach(entry -> byTopology.add(new CascadeFailureTopologyStats(
                         entry.getKey(),
-                        entry.getValue().size(),
-                        round3(entry.getValue().stream().mapToDouble(CascadeFailureResult::survivalRate).average().orElse(0))
+                        (int) entry.getValue()[0],
+                        round3(entry.getValue()[1] / entry.getValue()[0])
                 )));
         return byTopology;
     }
@@ -163,4 +178,9 @@ public class CascadeFailureService {
     private Number number(Object value) {
         return value instanceof Number number ? number : 0;
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
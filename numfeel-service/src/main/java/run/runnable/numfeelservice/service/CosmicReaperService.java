@@ -2,6 +2,7 @@ package run.runnable.numfeelservice.service;
 
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.CosmicReaperStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.CosmicReaperResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -12,10 +13,19 @@ import reactor.core.publisher.Mono;
 @Service
 public class CosmicReaperService {
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<CosmicReaperResult> aggregates;
+    private final LiveAggregates.Counter<CosmicReaperResult> escapes;
+    private final LiveAggregates.Summary<CosmicReaperResult> score;
+    private final LiveAggregates.Summary<CosmicReaperResult> turns;
+    private final LiveAggregates.GroupCount<CosmicReaperResult, String> strategies;
 
     public CosmicReaperService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<CosmicReaperResult> builder = LiveAggregates.builder(template, CosmicReaperResult.class);
+        this.escapes = builder.count(CosmicReaperResult::escaped);
+        this.score = builder.summary(CosmicReaperResult::score);
+        this.turns = builder.summary(CosmicReaperResult::turns);
+        this.strategies = builder.countBy(CosmicReaperResult::strategy);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -34,7 +44,7 @@ public class CosmicReaperService {
                                                    int finalTech, int finalSignal, int finalStealth) {
         CosmicReaperResult entity = new CosmicReaperResult(
                 null, strategy, escaped, turns, score, finalTech, finalSignal, finalStealth, System.currentTimeMillis());
-        return template.insert(CosmicReaperResult.class).using(entity).then(getStats());
+        return aggregates.insert(entity).then(getStats());
     }
 
     /**
@@ -43,27 +53,31 @@ public class CosmicReaperService {
      * @return 包含全局指标的统计响应
      */
     public Mono<CosmicReaperStatsResponse> getStats() {
-        return ServiceSupport.selectAll(template, CosmicReaperResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /** 汇总逃脱率、平均得分、平均回合数以及最常见策略。 */
-    private CosmicReaperStatsResponse toStatsResponse(java.util.List<CosmicReaperResult> rows) {
-        long totalRuns = rows.size();
+    private CosmicReaperStatsResponse toStatsResponse() {
+        long totalRuns = aggregates.count();
         if (totalRuns == 0) {
             return new CosmicReaperStatsResponse(totalRuns, 0.0, 0.0, 0.0, "-");
         }
 
         return new CosmicReaperStatsResponse(
                 totalRuns,
-                round1(rows.stream().filter(CosmicReaperResult::escaped).count() * 100.0 / totalRuns),
-                round1(rows.stream().mapToInt(CosmicReaperResult::score).average().orElse(0)),
-                round1(rows.stream().mapToInt(CosmicReaperResult::turns).average().orElse(0)),
-                ServiceSupport.mostFrequentOrDefault(rows, CosmicReaperResult::strategy, "-")
+                round1(escapes.get() * 100.0 / totalRuns),
+                round1(score.mean()),
+                round1(turns.mean()),
+                strategies.mostFrequentOrDefault("-")
         );
     }
 
     private double round1(double value) {
         return ServiceSupport.round(value, 1);
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
@@ -0,0 +1,81 @@
+package run.runnable.numfeelservice.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 埋点 ip_hash 的计算与按天缓存：ip_hash = SHA-256(ip + 当日UTC日期 + 盐) 的前 16 位十六进制。
+ * <p>
+ * 日期 + 盐是当天固定的后缀，UTF-8 字节只在换天时算一次；同一 IP 当天的结果缓存起来，
+ * 高频 IP 不再重复做摘要。缓存跟着 UTC 日期走：第一次遇到新的一天就换一张空表，旧表随之丢弃，
+ * 与盐按日轮换的语义一致。每天最多缓存 maxEntries 个 IP，满了之后的新 IP 照常计算、不再入表。
+ * <p>
+ * 线程安全。
+ */
+final class DailyIpHasher {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private final String salt;
+    private final int maxEntries;
+    private volatile Day current;
+
+    /** 某一天的后缀字节与 IP → hash 表。 */
+    private static final class Day {
+        final long epochDay;
+        final byte[] suffix;
+        final ConcurrentHashMap<String, String> hashes = new ConcurrentHashMap<>();
+
+        Day(long epochDay, String salt) {
+            this.epochDay = epochDay;
+            this.suffix = (LocalDate.ofEpochDay(epochDay) + salt).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @param salt 盐
+     * @param maxEntries 每天最多缓存的 IP 数
+     */
+    DailyIpHasher(String salt, int maxEntries) {
+        this.salt = salt;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param clientIp 客户端 IP，为 {@code null} 时按 "unknown" 计算
+     * @param nowMs 当前时间戳，决定使用哪一天的日期
+     */
+    String hash(String clientIp, long nowMs) {
+        String ip = clientIp == null ? "unknown" : clientIp;
+        long epochDay = Math.floorDiv(nowMs, DAY_MS);
+        Day day = current;
+        if (day == null || day.epochDay != epochDay) {
+            Day fresh = new Day(epochDay, salt);
+            // 跨零点时个别线程可能还拿着前一天的时间戳：只为它算一次，不把缓存换回旧的一天
+            if (day == null || epochDay > day.epochDay) {
+                current = fresh;
+            }
+            day = fresh;
+        }
+        String cached = day.hashes.get(ip);
+        if (cached != null) {
+            return cached;
+        }
+        MessageDigest digest = Hashing.sha256Digest();
+        digest.update(ip.getBytes(StandardCharsets.UTF_8));
+        digest.update(day.suffix);
+        String hash = Hashing.hex(digest.digest(), 8);
+        if (day.hashes.size() < maxEntries) {
+            day.hashes.putIfAbsent(ip, hash);
+        }
+        return hash;
+    }
+
+    /** 当天已缓存的 IP 数。 */
+    int cachedCount() {
+        Day day = current;
+        return day == null ? 0 : day.hashes.size();
+    }
+}
@@ -4,11 +4,11 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.DevilDealGlo
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.DevilDealStatsResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.DevilDealSubmitResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.DevilDealResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -21,10 +21,25 @@ public class DevilDealService {
     private static final Set<String> VALID_TYPES = Set.of(
             "power", "love", "money", "revenge", "recognition", "knowledge");
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<DevilDealResult> aggregates;
+    private final LiveAggregates.Summary<DevilDealResult> power;
+    private final LiveAggregates.Summary<DevilDealResult> love;
+    private final LiveAggregates.Summary<DevilDealResult> money;
+    private final LiveAggregates.Summary<DevilDealResult> revenge;
+    private final LiveAggregates.Summary<DevilDealResult> recognition;
+    private final LiveAggregates.Summary<DevilDealResult> knowledge;
+    private final LiveAggregates.GroupCount<DevilDealResult, String> dealTypes;
 
     public DevilDealService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<DevilDealResult> builder = LiveAggregates.builder(template, DevilDealResult.class);
+        this.power = builder.summary(DevilDealResult::powerPct);
+        this.love = builder.summary(DevilDealResult::lovePct);
+        this.money = builder.summary(DevilDealResult::moneyPct);
+        this.revenge = builder.summary(DevilDealResult::revengePct);
+        this.recognition = builder.summary(DevilDealResult::recognitionPct);
+        this.knowledge = builder.summary(DevilDealResult::knowledgePct);
+        this.dealTypes = builder.countBy(DevilDealResult::dealType);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -54,10 +69,8 @@ public class DevilDealService {
         DevilDealResult entity = new DevilDealResult(
                 null, dealType, secondType, powerPct, lovePct, moneyPct, revengePct,
                 recognitionPct, knowledgePct, System.currentTimeMillis());
-        return template.insert(DevilDealResult.class)
-                .using(entity)
-                .then(ServiceSupport.selectAll(template, DevilDealResult.class))
-                .map(rows -> toSubmitResponse(rows, dealType));
+        return aggregates.insert(entity)
+                .then(aggregates.read(() -> toSubmitResponse(dealType)));
     }
 
     /**
@@ -66,34 +79,38 @@ public class DevilDealService {
      * @return 包含全局指标与类型分布的统计响应
      */
     public Mono<DevilDealStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, DevilDealResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /** 统计当前首选交易类型在全部样本中的人数与占比。 */
-    private DevilDealSubmitResponse toSubmitResponse(java.util.List<DevilDealResult> rows, String dealType) {
-        long sameCount = rows.stream().filter(row -> dealType.equals(row.dealType())).count();
-        long total = rows.size();
+    private DevilDealSubmitResponse toSubmitResponse(String dealType) {
+        long sameCount = dealTypes.get(dealType);
+        long total = aggregates.count();
         double samePercent = total > 0 ? ServiceSupport.percentage(sameCount, total, 1) : 0;
         return new DevilDealSubmitResponse(sameCount, total, samePercent);
     }
 
     /** 聚合六种欲望占比均值与首选交易类型分布。 */
-    private DevilDealStatsResponse toStatsResponse(java.util.List<DevilDealResult> rows) {
+    private DevilDealStatsResponse toStatsResponse() {
         DevilDealGlobalStats global = new DevilDealGlobalStats(
-                rows.size(),
-                round1(rows.stream().mapToInt(DevilDealResult::powerPct).average().orElse(0)),
-                round1(rows.stream().mapToInt(DevilDealResult::lovePct).average().orElse(0)),
-                round1(rows.stream().mapToInt(DevilDealResult::moneyPct).average().orElse(0)),
-                round1(rows.stream().mapToInt(DevilDealResult::revengePct).average().orElse(0)),
-                round1(rows.stream().mapToInt(DevilDealResult::recognitionPct).average().orElse(0)),
-                round1(rows.stream().mapToInt(DevilDealResult::knowledgePct).average().orElse(0))
+                aggregates.count(),
+                round1(power.mean()),
+                round1(love.mean()),
+                round1(money.mean()),
+                round1(revenge.mean()),
+                round1(recognition.mean()),
+                round1(knowledge.mean())
         );
-        Map<String, Long> typeDist = new LinkedHashMap<>(ServiceSupport.countBy(rows, DevilDealResult::dealType));
+        Map<String, Long> typeDist = dealTypes.snapshot();
         return new DevilDealStatsResponse(global, typeDist);
     }
 
     private double round1(double value) {
         return ServiceSupport.round(value, 1);
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
@@ -0,0 +1,61 @@
+package run.runnable.numfeelservice.service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 停机排空时等待后台写入结束，代替 “轮询 + Thread.sleep”。
+ * <p>
+ * 后台写入每次结束（写入标志复位、回填结束等可能让排空条件成立的时刻）都调用 {@link #signal()}；
+ * {@link #await} 检查条件不成立时先推动一次写入，再阻塞到下一次 signal 或超时，醒来后重新检查。
+ * 检查条件之前先记下 signal 的次数，检查之后才到来的 signal 也不会错过。
+ * <p>
+ * 调用 {@link #signal()} 时不要持有条件里会用到的锁。
+ */
+final class DrainSignal {
+
+    private long signals;
+
+    /** 后台写入的状态变了，唤醒正在等待的排空线程。 */
+    synchronized void signal() {
+        signals++;
+        notifyAll();
+    }
+
+    /**
+     * 等到 done 成立；每次不成立时先调用 kick 推动写入（可以什么都不做）。
+     *
+     * @param done 排空完成的条件
+     * @param kick 推动下一轮写入
+     * @param timeout 最长等待时间
+     * @return done 成立返回 true，超时或被中断返回 false
+     */
+    boolean await(BooleanSupplier done, Runnable kick, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            long seen;
+            synchronized (this) {
+                seen = signals;
+            }
+            if (done.getAsBoolean()) {
+                return true;
+            }
+            kick.run();
+            synchronized (this) {
+                while (signals == seen) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        return false;
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, left);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package run.runnable.numfeelservice.service;
 
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.EhpQuizStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.EhpQuizResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -14,10 +15,22 @@ import java.util.List;
 @Service
 public class EhpQuizService {
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<EhpQuizResult> aggregates;
+    private final LiveAggregates.Summary<EhpQuizResult> correct;
+    private final LiveAggregates.Counter<EhpQuizResult> allCorrect;
+    private final List<LiveAggregates.Counter<EhpQuizResult>> questionCorrect;
 
     public EhpQuizService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<EhpQuizResult> builder = LiveAggregates.builder(template, EhpQuizResult.class);
+        this.correct = builder.summary(EhpQuizResult::correctCount);
+        this.allCorrect = builder.count(r -> r.correctCount() == r.totalQuestions());
+        this.questionCorrect = List.of(
+                builder.count(EhpQuizResult::q1Correct),
+                builder.count(EhpQuizResult::q2Correct),
+                builder.count(EhpQuizResult::q3Correct),
+                builder.count(EhpQuizResult::q4Correct),
+                builder.count(EhpQuizResult::q5Correct));
+        this.aggregates = builder.build();
     }
 
     /**
@@ -27,42 +40,37 @@ public class EhpQuizService {
                                               boolean q1, boolean q2, boolean q3, boolean q4, boolean q5) {
         EhpQuizResult entity = new EhpQuizResult(
                 null, totalQuestions, correctCount, q1, q2, q3, q4, q5, System.currentTimeMillis());
-        return template.insert(EhpQuizResult.class)
-                .using(entity)
-                .then(stats());
+        return aggregates.insert(entity).then(stats());
     }
 
     /**
      * 查询统计数据。
      */
     public Mono<EhpQuizStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, EhpQuizResult.class)
-                .map(this::buildStats);
+        return aggregates.read(this::buildStats);
     }
 
-    private EhpQuizStatsResponse buildStats(List<EhpQuizResult> rows) {
-        if (rows.isEmpty()) {
+    private EhpQuizStatsResponse buildStats() {
+        long total = aggregates.count();
+        if (total == 0) {
             return new EhpQuizStatsResponse(0, 0, 0, 0, 0, 0, 0, 0);
         }
-        long total = rows.size();
-        double avgCorrect = ServiceSupport.round(
-                rows.stream().mapToInt(EhpQuizResult::correctCount).average().orElse(0), 1);
-        long allCorrect = rows.stream().filter(r -> r.correctCount() == r.totalQuestions()).count();
-        long q1c = rows.stream().filter(EhpQuizResult::q1Correct).count();
-        long q2c = rows.stream().filter(EhpQuizResult::q2Correct).count();
-        long q3c = rows.stream().filter(EhpQuizResult::q3Correct).count();
-        long q4c = rows.stream().filter(EhpQuizResult::q4Correct).count();
-        long q5c = rows.stream().filter(EhpQuizResult::q5Correct).count();
+        double avgCorrect = ServiceSupport.round(correct.mean(), 1);
 
         return new EhpQuizStatsResponse(
                 total,
                 avgCorrect,
-                ServiceSupport.percentage(allCorrect, total, 1),
-                ServiceSupport.percentage(q1c, total, 1),
-                ServiceSupport.percentage(q2c, total, 1),
-                ServiceSupport.percentage(q3c, total, 1),
-                ServiceSupport.percentage(q4c, total, 1),
-                ServiceSupport.percentage(q5c, total, 1)
+                ServiceSupport.percentage(allCorrect.get(), total, 1),
+                ServiceSupport.percentage(questionCorrect.get(0).get(), total, 1),
+                ServiceSupport.percentage(questionCorrect.get(1).get(), total, 1),
+                ServiceSupport.percentage(questionCorrect.get(2).get(), total, 1),
+                ServiceSupport.percentage(questionCorrect.get(3).get(), total, 1),
+                ServiceSupport.percentage(questionCorrect.get(4).get(), total, 1)
         );
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
@@ -0,0 +1,109 @@
+package run.runnable.numfeelservice.service;
+
+/**
+ * 按位读取一段随机字节，并在其上做无偏整数抽取。
+ * <p>
+ * 抽 [0, range) 用 Fast Dice Roller（Lumbroso 2013）：逐位扩大取值区间，落在 [0, range) 内即接受，
+ * 超出时把多余的部分（v − range 种等概率情况）留作下一轮的起点而不是整段丢弃。
+ * 每次抽取期望消耗不超过 log2(range) + 2 位，而按字节窗口拒绝采样至少要整字节、被拒时整窗作废。
+ * <p>
+ * 字节按大端顺序逐位读出（高位在前）。不是线程安全的，每次抽取各用一个实例。
+ */
+final class EntropyBits {
+
+    private final byte[] bytes;
+    /** 下一个尚未装入 buffer 的字节下标。 */
+    private int pos;
+    /** 已装入、未读的位，取低 bits 位。 */
+    private long buffer;
+    private int bits;
+
+    EntropyBits(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /** 抽一个 [0, range) 整数期望消耗位数的上界（range ≤ 1 不消耗）。 */
+    static int bitsPerDraw(int range) {
+        return range <= 1 ? 0 : 34 - Integer.numberOfLeadingZeros(range - 1);
+    }
+
+    /** 抽 count 个 [0, range) 整数按期望上界需要的字节数。 */
+    static int bytesFor(int range, int count) {
+        return (int) (((long) bitsPerDraw(range) * count + 7) >>> 3);
+    }
+
+    /** 尚未读出的位数。 */
+    int remainingBits() {
+        return bits + ((bytes.length - pos) << 3);
+    }
+
+    /**
+     * 无偏抽取 [0, range) 的整数。
+     *
+     * @return 抽到的整数；字节耗尽时返回 -1（已读的位作废，调用方自行兜底）
+     */
+    int nextInt(int range) {
+        if (range <= 1) return 0;
+        // [0, v) 上均匀的 c；v 翻倍到不小于 range 后判断是否落在 [0, range)。
+        // v 到 2^k（k = ceil(log2 range)）之前不会有分支，前 k 位一次读出
+        int k = 32 - Integer.numberOfLeadingZeros(range - 1);
+        if (remainingBits() < k) {
+            pos = bytes.length;
+            bits = 0;
+            return -1;
+        }
+        long v = 1L << k;
+        long c = nextBits(k);
+        for (;;) {
+            if (c < range) return (int) c;
+            v -= range;
+            c -= range;
+            while (v < range) {
+                int b = nextBit();
+                if (b < 0) return -1;
+                v <<= 1;
+                c = (c << 1) | b;
+            }
+        }
+    }
+
+    /**
+     * 批量无偏抽取：向 dest[off, off + len) 写入 [0, range) 的整数，字节耗尽即停。
+     *
+     * @return 实际写入的个数
+     */
+    int nextInts(int range, int[] dest, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            int v = nextInt(range);
+            if (v < 0) return i;
+            dest[off + i] = v;
+        }
+        return len;
+    }
+
+    /** 读出 k（≤ 32）位，调用方保证剩余位数足够。 */
+    private long nextBits(int k) {
+        if (bits < k) {
+            // 剩下的 bits 位留在低位，补装整字节，有效位不超过 64
+            while (bits <= 56 && pos < bytes.length) {
+                buffer = (buffer << 8) | (bytes[pos++] & 0xff);
+                bits += 8;
+            }
+        }
+        bits -= k;
+        return (buffer >>> bits) & ((1L << k) - 1);
+    }
+
+    private int nextBit() {
+        if (bits == 0) {
+            if (pos == bytes.length) return -1;
+            // 一次装入至多 8 个字节，高位残留会在移位时被挤出，不影响低 bits 位
+            while (bits < 64 && pos < bytes.length) {
+                buffer = (buffer << 8) | (bytes[pos++] & 0xff);
+                bits += 8;
+            }
+        }
+        bits--;
+        return (int) (buffer >>> bits) & 1;
+    }
+}
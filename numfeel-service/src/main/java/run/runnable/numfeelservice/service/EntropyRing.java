@@ -0,0 +1,82 @@
+package run.runnable.numfeelservice.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个熵源的随机字节池：定长 {@code byte[]} 环形缓冲，一个写入方、多个读取方。
+ * <p>
+ * head / tail 是只增不减的绝对位置，[head, tail) 为池中可取的字节。
+ * 读取方一次批量预留：读出 head 与 tail，先把 [head, head + k) 复制出去，再把 head CAS 到 head + k；
+ * CAS 成功说明复制期间 head 没有动过，写入方也就不会覆盖这段（它只写 [tail, head + capacity)），复制的内容有效；
+ * 失败（被别的读取方抢先）则重来。读取方之间不加锁，也不会拿到同一段字节。
+ * <p>
+ * 写入方先写字节再发布 tail（volatile），读取方读到新的 tail 就能看到对应的字节。
+ * 写入由 {@link #offer} 内部串行化，同一时刻只有一个写入方（上游取回的批量和后台补充都从这里写入）。
+ */
+final class EntropyRing {
+
+    private final byte[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+
+    /**
+     * @param capacity 容量，向上取 2 的幂
+     */
+    EntropyRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.buffer = new byte[size];
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    /** 池中可取的字节数（并发下为近似值）。 */
+    int available() {
+        return (int) (tail - head.get());
+    }
+
+    /**
+     * 取出至多 max 个字节写入 dest[off, off + max)，池中不够时有多少取多少。
+     *
+     * @return 实际取出的字节数
+     */
+    int poll(byte[] dest, int off, int max) {
+        for (;;) {
+            long h = head.get();
+            long t = tail;
+            int k = (int) Math.min(max, t - h);
+            if (k <= 0) {
+                return 0;
+            }
+            int from = (int) h & mask;
+            int first = Math.min(k, buffer.length - from);
+            System.arraycopy(buffer, from, dest, off, first);
+            System.arraycopy(buffer, 0, dest, off + first, k - first);
+            if (head.compareAndSet(h, h + k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * 放入 src[off, off + len)，池满时只放入装得下的部分。
+     *
+     * @return 实际放入的字节数
+     */
+    synchronized int offer(byte[] src, int off, int len) {
+        long t = tail;
+        int k = (int) Math.min(len, buffer.length - (t - head.get()));
+        if (k <= 0) {
+            return 0;
+        }
+        int to = (int) t & mask;
+        int first = Math.min(k, buffer.length - to);
+        System.arraycopy(src, off, buffer, to, first);
+        System.arraycopy(src, off + first, buffer, 0, k - first);
+        tail = t + k;
+        return k;
+    }
+}
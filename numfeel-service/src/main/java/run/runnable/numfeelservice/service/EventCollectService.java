@@ -2,24 +2,23 @@ package run.runnable.numfeelservice.service;
 
 import run.runnable.numfeelservice.controller.dto.EventRequests.EventItem;
 import run.runnable.numfeelservice.controller.dto.EventResponses.EventCollectResponse;
+import run.runnable.numfeelservice.controller.dto.EventResponses.EventIngestStatsResponse;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import tools.jackson.databind.ObjectMapper;
-
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
 /**
@@ -27,6 +26,18 @@ import java.util.regex.Pattern;
  * <p>
  * 所有 demo 共用 {@code demo_events} 一张表。前端是 fire-and-forget 上报，
  * 坏数据按条丢弃而不是整批拒绝（除了 demo / sessionId 这两个在 controller 层校验的字段）。
+ * <p>
+ * 写入与请求解耦：{@link #collect} 只做校验清洗，把行放进有界的 {@link EventIngestQueue} 后立即返回；
+ * 单个 flusher 跨请求合并，同一时刻最多一条多行 INSERT 在执行（只占一个连接）：
+ * <ul>
+ *   <li>队列攒够 max-batch 行时立即写一批，写完若仍满一批则接着写；</li>
+ *   <li>不满一批的行由定时任务每 max-latency-ms 写一次，排队时间不超过该值（加上一条 INSERT 的耗时）；</li>
+ *   <li>队列满时新行直接丢弃并计入 dropped；</li>
+ *   <li>多行 INSERT 失败时与 {@link BatchInsertBuffer} 一样逐行重试，一条坏行不连累整批，
+ *       逐行写入仍失败的行只记日志和计数。</li>
+ * </ul>
+ * 各计数见 {@link #ingestStats}；停机时 {@link #drain} 把队列写完。写入成功的行交给
+ * {@link EventRollupMaterializer} 计入预聚合。
  */
 @Service
 public class EventCollectService {
@@ -51,22 +62,59 @@ public class EventCollectService {
     /** client_ts 与服务端时间偏差超过该值则置 0。 */
     private static final long MAX_CLIENT_TS_SKEW_MS = 24L * 60 * 60 * 1000;
 
-    private static final DateTimeFormatter DAY_FORMATTER =
-            DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+    /** 每天最多缓存 ip_hash 的 IP 数。 */
+    private static final int IP_HASH_CACHE_SIZE = 4096;
+
+    /** 一条 INSERT 最多的行数：8 列 × 8000 行仍在 MySQL 单语句 65535 个占位符以内。 */
+    static final int MAX_INSERT_ROWS = 8000;
+
+    /** 停机时等待队列写完的最长时间。 */
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
 
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    /** 每个线程一个 props 编码器，复用其字节缓冲区。 */
+    private static final ThreadLocal<EventPropsEncoder> PROPS_ENCODER = ThreadLocal.withInitial(
+            () -> new EventPropsEncoder(MAX_PROPS_KEYS, MAX_PROPS_BYTES, MAX_PROPS_STRING_LENGTH));
 
     private final DatabaseClient databaseClient;
+    private final EventRollupMaterializer rollup;
     private final boolean enabled;
-    private final String salt;
+    private final DailyIpHasher ipHasher;
+    private final EventIngestQueue<Object[]> queue;
+    private final int maxBatch;
+    private final long maxLatencyMs;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final DrainSignal flushed = new DrainSignal();
+    private volatile boolean closed;
 
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder overflowDropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * @param queueCapacity 写入队列容量（向上取整为 2 的幂）
+     * @param maxBatch 单条 INSERT 最多的行数（1 ~ {@link #MAX_INSERT_ROWS}）
+     * @param maxLatencyMs 不满一批时的定时写入间隔，与 {@link #flushPending} 的调度读同一配置
+     */
     public EventCollectService(
             DatabaseClient databaseClient,
+            EventRollupMaterializer rollup,
             @Value("${numfeel.events.enabled:true}") boolean enabled,
-            @Value("${numfeel.events.salt}") String salt) {
+            @Value("${numfeel.events.salt}") String salt,
+            @Value("${numfeel.events.ingest.capacity:65536}") int queueCapacity,
+            @Value("${numfeel.events.ingest.max-batch:500}") int maxBatch,
+            @Value("${numfeel.events.ingest.max-latency-ms:200}") long maxLatencyMs) {
+        if (maxBatch < 1 || maxBatch > MAX_INSERT_ROWS) {
+            throw new IllegalArgumentException("numfeel.events.ingest.max-batch must be in [1, " + MAX_INSERT_ROWS + "]");
+        }
         this.databaseClient = databaseClient;
+        this.rollup = rollup;
         this.enabled = enabled;
-        this.salt = salt;
+        this.ipHasher = new DailyIpHasher(salt, IP_HASH_CACHE_SIZE);
+        this.queue = new EventIngestQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.maxLatencyMs = maxLatencyMs;
     }
 
     /**
@@ -76,7 +124,7 @@ public class EventCollectService {
      * @param sessionId 会话 ID（已在 controller 层完成格式校验）
      * @param events 本批次事件（已在 controller 层截断到 {@link #MAX_EVENTS_PER_BATCH} 条以内）
      * @param clientIp 客户端真实 IP，仅用于计算 ip_hash，不落库原始值
-     * @return 接受与丢弃的事件数
+     * @return 进入写入队列与被丢弃的事件数；不等待落库
      */
     public Mono<EventCollectResponse> collect(String demo, String sessionId, List<EventItem> events, String clientIp) {
         if (!enabled) {
@@ -89,29 +137,102 @@ public class EventCollectService {
         long now = System.currentTimeMillis();
         String ipHash = computeIpHash(clientIp, now);
 
-        List<Object[]> rows = new ArrayList<>();
+        int accepted = 0;
         int dropped = 0;
         for (EventItem item : events) {
             Object[] row = toRow(demo, sessionId, item, now, ipHash);
             if (row == null) {
                 dropped++;
+            } else if (closed || !queue.offer(row)) {
+                overflowDropped.increment();
+                dropped++;
             } else {
-                rows.add(row);
+                accepted++;
+            }
+        }
+        if (accepted > 0) {
+            enqueued.add(accepted);
+            if (queue.size() >= maxBatch) {
+                flush();
             }
         }
+        return Mono.just(new EventCollectResponse(accepted, dropped));
+    }
 
-        if (rows.isEmpty()) {
-            return Mono.just(new EventCollectResponse(0, dropped));
+    /** 定时写出不满一批的排队行。 */
+    @Scheduled(initialDelayString = "${numfeel.events.ingest.max-latency-ms:200}",
+            fixedDelayString = "${numfeel.events.ingest.max-latency-ms:200}")
+    public void flushPending() {
+        if (queue.size() > 0) {
+            flush();
         }
+    }
 
-        int accepted = rows.size();
-        int finalDropped = dropped;
-        return batchInsert(rows)
-                .thenReturn(new EventCollectResponse(accepted, finalDropped))
+    /** 写入队列的当前状态与累计计数。 */
+    public EventIngestStatsResponse ingestStats() {
+        return new EventIngestStatsResponse(queue.capacity(), maxBatch, maxLatencyMs, queue.size(),
+                enqueued.sum(), overflowDropped.sum(), written.sum(), failed.sum(), batches.sum());
+    }
+
+    /** 停止接收并等待队列写完；依赖 {@link DatabaseClient}，销毁时连接池仍可用。 */
+    @PreDestroy
+    void drain() {
+        closed = true;
+        if (!flushed.await(() -> queue.size() == 0 && !flushing.get(), this::flush, DRAIN_TIMEOUT)) {
+            log.warn("demo_events drain timed out, {} rows left", queue.size());
+        }
+    }
+
+    /**
+     * 取出至多 max-batch 行写一条多行 INSERT。已有写入在执行时直接返回；
+     * 写完后若队列里仍有满一批的行，立即接着写。
+     */
+    private void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(Math.min(queue.size(), maxBatch));
+        if (queue.drainTo(rows, maxBatch) == 0) {
+            flushing.set(false);
+            flushed.signal();
+            return;
+        }
+        Mono.defer(() -> batchInsert(rows))
+                .doOnSuccess(updated -> {
+                    batches.increment();
+                    rows.forEach(this::recordWritten);
+                })
+                .then()
                 .onErrorResume(err -> {
-                    log.warn("demo_events batch insert failed: {}", err.getMessage());
-                    return Mono.just(new EventCollectResponse(0, accepted + finalDropped));
-                });
+                    log.warn("demo_events batch insert of {} rows failed, retrying one by one: {}",
+                            rows.size(), err.getMessage());
+                    return Flux.fromIterable(rows).concatMap(this::insertOne).then();
+                })
+                .doFinally(signal -> {
+                    flushing.set(false);
+                    flushed.signal();
+                    if (queue.size() >= maxBatch || (closed && queue.size() > 0)) {
+                        flush();
+                    }
+                })
+                .subscribe();
+    }
+
+    /** 单独写入一行（整批失败后的逐行重试）；失败只计数，不向上抛。 */
+    private Mono<Void> insertOne(Object[] row) {
+        return Mono.defer(() -> batchInsert(List.<Object[]>of(row)))
+                .doOnSuccess(updated -> recordWritten(row))
+                .doOnError(err -> {
+                    failed.increment();
+                    log.warn("demo_events insert failed: {}", err.getMessage());
+                })
+                .onErrorComplete()
+                .then();
+    }
+
+    private void recordWritten(Object[] row) {
+        written.increment();
+        rollup.record((String) row[0], (String) row[1], (String) row[2], (Long) row[6]);
     }
 
     /**
@@ -123,7 +244,7 @@ public class EventCollectService {
         }
         int seq = item.seq() != null ? item.seq() : 0;
         long clientTs = normalizeClientTs(item.t(), now);
-        String propsJson = serializeProps(cleanProps(item.props()));
+        String propsJson = encodeProps(item.props());
 
         return new Object[]{demo, item.name(), sessionId, seq, propsJson, clientTs, now, ipHash};
     }
@@ -146,66 +267,16 @@ public class EventCollectService {
     }
 
     /**
-     * 清洗事件属性：仅保留 number / boolean / 短字符串值，最多 {@link #MAX_PROPS_KEYS} 个 key，
-     * 且逐步添加时确保序列化后不超过 {@link #MAX_PROPS_BYTES} 字节。
+     * 清洗并序列化事件属性：仅保留 number / boolean / 短字符串值，最多 {@link #MAX_PROPS_KEYS} 个 key，
+     * 且逐个添加时确保序列化后不超过 {@link #MAX_PROPS_BYTES} 字节（超限的 key 跳过，继续尝试后面的 key）。
+     * 单遍完成，结果直接作为 props 列的值，见 {@link EventPropsEncoder}。
      *
      * @param raw 原始属性 map，可为 {@code null}
-     * @return 清洗后的属性 map；没有可用属性时返回空 map
+     * @return 清洗后属性的 JSON；没有可用属性时返回 {@code null}
      */
-    static Map<String, Object> cleanProps(Map<String, Object> raw) {
-        Map<String, Object> result = new LinkedHashMap<>();
-        if (raw == null || raw.isEmpty()) {
-            return result;
-        }
-        for (Map.Entry<String, Object> entry : raw.entrySet()) {
-            if (result.size() >= MAX_PROPS_KEYS) {
-                break;
-            }
-            String key = entry.getKey();
-            Object value = entry.getValue();
-            if (key == null || key.isBlank()) {
-                continue;
-            }
-            Object cleanedValue = cleanValue(value);
-            if (cleanedValue == null) {
-                continue;
-            }
-            Map<String, Object> candidate = new LinkedHashMap<>(result);
-            candidate.put(key, cleanedValue);
-            if (serializedByteLength(candidate) > MAX_PROPS_BYTES) {
-                // 加入这个 key 会超限，跳过它但继续尝试后面更小的 key
-                continue;
-            }
-            result.put(key, cleanedValue);
-        }
-        return result;
-    }
-
-    /** 仅允许 Number / Boolean / 长度 ≤64 的 String；其他类型（嵌套对象、数组等）返回 {@code null} 表示丢弃。 */
-    private static Object cleanValue(Object value) {
-        if (value instanceof Number || value instanceof Boolean) {
-            return value;
-        }
-        if (value instanceof String str) {
-            return str.length() <= MAX_PROPS_STRING_LENGTH ? str : null;
-        }
-        return null;
-    }
-
-    private static int serializedByteLength(Map<String, Object> map) {
+    static String encodeProps(Map<String, Object> raw) {
         try {
-            return MAPPER.writeValueAsString(map).getBytes(StandardCharsets.UTF_8).length;
-        } catch (Exception e) {
-            return Integer.MAX_VALUE;
-        }
-    }
-
-    private static String serializeProps(Map<String, Object> props) {
-        if (props == null || props.isEmpty()) {
-            return null;
-        }
-        try {
-            return MAPPER.writeValueAsString(props);
+            return PROPS_ENCODER.get().encode(raw);
         } catch (Exception e) {
             log.warn("failed to serialize event props: {}", e.getMessage());
             return null;
@@ -215,32 +286,13 @@ public class EventCollectService {
     /**
      * 计算 ip_hash = SHA-256(ip + 当日UTC日期 + 盐) 的前 16 位十六进制。
      * <p>
-     * 使用按日轮换的盐，跨天无法关联同一 IP，仅用于短期防刷。
+     * 使用按日轮换的盐，跨天无法关联同一 IP，仅用于短期防刷。当天算过的 IP 直接取缓存，见 {@link DailyIpHasher}。
      */
     String computeIpHash(String clientIp, long nowMs) {
-        String ip = clientIp == null ? "unknown" : clientIp;
-        String day = DAY_FORMATTER.format(Instant.ofEpochMilli(nowMs));
-        String hash = sha256(ip + day + salt);
-        return hash.substring(0, Math.min(16, hash.length()));
-    }
-
-    private static String sha256(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hex = new StringBuilder(64);
-            for (byte b : hashBytes) {
-                String h = Integer.toHexString(0xff & b);
-                if (h.length() == 1) hex.append('0');
-                hex.append(h);
-            }
-            return hex.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 not available", e);
-        }
+        return ipHasher.hash(clientIp, nowMs);
     }
 
-    /** 一次请求一条批量 INSERT SQL，不循环单条插入。 */
+    /** 一批行一条多行 INSERT SQL，不循环单条插入。 */
     private Mono<Long> batchInsert(List<Object[]> rows) {
         StringBuilder sql = new StringBuilder(
                 "INSERT INTO demo_events (demo_slug, event_name, session_id, seq, props, client_ts, created_at, ip_hash) VALUES ");
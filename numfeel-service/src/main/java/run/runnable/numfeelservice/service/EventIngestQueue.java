@@ -0,0 +1,90 @@
+package run.runnable.numfeelservice.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 埋点写入队列：有界、无锁的多生产者单消费者（MPSC）环形缓冲区。
+ * <p>
+ * 每个槽位带一个序号：序号等于生产者拿到的位置时槽位可写，等于位置 + 1 时可读。
+ * 生产者用 CAS 抢占位置，写入元素后再发布序号；唯一的消费者（{@link EventCollectService} 的 flusher）
+ * 按顺序取走已发布的元素并把槽位序号推进一圈。队列满时 {@link #offer} 立即返回 false，不阻塞也不扩容。
+ *
+ * @param <E> 元素类型
+ */
+final class EventIngestQueue<E> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    /** 下一个要读的位置；只由消费者写，volatile 仅为 {@link #size} 可见。 */
+    private volatile long head;
+
+    /** @param capacity 容量，向上取整为 2 的幂 */
+    EventIngestQueue(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    /** 当前排队的元素数（并发下为近似值）。 */
+    int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, slots.length));
+    }
+
+    /** 入队；队列满时返回 false。可由任意线程并发调用。 */
+    boolean offer(E element) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[index] = element;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // 槽位还没被消费者腾出来：已满一圈
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /** 取走至多 max 个已发布的元素追加到 out，返回取走的个数。同一时刻只能有一个调用方。 */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<? super E> out, int max) {
+        long pos = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (pos & mask);
+            if (sequences.get(index) != pos + 1) {
+                break;
+            }
+            out.add((E) slots[index]);
+            slots[index] = null;
+            sequences.set(index, pos + slots.length);
+            pos++;
+            drained++;
+        }
+        head = pos;
+        return drained;
+    }
+}
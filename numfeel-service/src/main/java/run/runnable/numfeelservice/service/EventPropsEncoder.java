@@ -0,0 +1,154 @@
+package run.runnable.numfeelservice.service;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 埋点 props 的单遍清洗 + 编码：逐个 key 判断取舍，接受的直接追加进复用的字节缓冲区，
+ * 最终字节即 props 列的 JSON，不再构造中间 Map、也不反复整体序列化。
+ * <p>
+ * 每个 key / value 只经 {@link JsonGenerator} 编码一次：生成器把它们当作一个数组的元素依次写进
+ * {@link #scratch}，每写完一个元素就截取它的字节。追加前先算出加上这一对之后的总长度
+ * （{@code {"k":v,...}} 的 UTF-8 字节数），超过上限则这一对不落进输出，相当于回滚最后一个 key，
+ * 再继续尝试后面的 key。输出与 Jackson 直接序列化同一个 LinkedHashMap 的结果逐字节相同。
+ * <p>
+ * 非线程安全：{@link EventCollectService} 每个线程持有一个实例。
+ */
+final class EventPropsEncoder {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** 可以直接访问内部数组的输出流，生成器 flush 后从中截取刚写出的字节。 */
+    private static final class Scratch extends ByteArrayOutputStream {
+        Scratch() {
+            super(256);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private final int maxKeys;
+    private final int maxBytes;
+    private final int maxStringLength;
+    private final Scratch scratch = new Scratch();
+    private final byte[] out;
+    private int len;
+
+    /**
+     * @param maxKeys 最多保留的 key 数
+     * @param maxBytes 序列化后的最大字节数
+     * @param maxStringLength 字符串值的最大长度
+     */
+    EventPropsEncoder(int maxKeys, int maxBytes, int maxStringLength) {
+        this.maxKeys = maxKeys;
+        this.maxBytes = maxBytes;
+        this.maxStringLength = maxStringLength;
+        this.out = new byte[maxBytes];
+    }
+
+    /**
+     * 清洗并编码：仅保留 number / boolean / 短字符串值，最多 maxKeys 个 key，且总字节数不超过 maxBytes；
+     * 加入某个 key 会超限时跳过它，但继续尝试后面更小的 key。
+     *
+     * @param raw 原始属性 map，可为 {@code null}
+     * @return props 列的 JSON；没有可用属性时返回 {@code null}
+     */
+    String encode(Map<String, Object> raw) {
+        if (raw == null || raw.isEmpty()) {
+            return null;
+        }
+        len = 0;
+        out[len++] = '{';
+        int accepted = 0;
+        scratch.reset();
+        try (JsonGenerator gen = MAPPER.createGenerator(scratch)) {
+            gen.writeStartArray();
+            for (Map.Entry<String, Object> entry : raw.entrySet()) {
+                if (accepted >= maxKeys) {
+                    break;
+                }
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if (key == null || key.isBlank() || !acceptable(value)) {
+                    continue;
+                }
+                gen.flush();
+                scratch.reset();
+                gen.writeString(key);
+                gen.flush();
+                int keyEnd = scratch.size();
+                writeValue(gen, value);
+                gen.flush();
+
+                byte[] bytes = scratch.array();
+                int keyStart = elementStart(bytes, 0);
+                int valueStart = elementStart(bytes, keyEnd);
+                int keyLength = keyEnd - keyStart;
+                int valueLength = scratch.size() - valueStart;
+                // 逗号（非首个）+ "key" + 冒号 + value + 收尾的 }
+                int total = len + (accepted > 0 ? 1 : 0) + keyLength + 1 + valueLength + 1;
+                if (total > maxBytes) {
+                    continue;
+                }
+                if (accepted > 0) {
+                    out[len++] = ',';
+                }
+                System.arraycopy(bytes, keyStart, out, len, keyLength);
+                len += keyLength;
+                out[len++] = ':';
+                System.arraycopy(bytes, valueStart, out, len, valueLength);
+                len += valueLength;
+                accepted++;
+            }
+        }
+        if (accepted == 0) {
+            return null;
+        }
+        out[len++] = '}';
+        return new String(out, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /** 仅允许 Number / Boolean / 长度不超过上限的 String；嵌套对象、数组等丢弃。 */
+    private boolean acceptable(Object value) {
+        if (value instanceof Number || value instanceof Boolean) {
+            return true;
+        }
+        return value instanceof String str && str.length() <= maxStringLength;
+    }
+
+    /** 数组元素之间的逗号由生成器写出，截取元素字节时跳过。 */
+    private static int elementStart(byte[] bytes, int pos) {
+        return bytes[pos] == ',' ? pos + 1 : pos;
+    }
+
+    /** 与 ObjectMapper 序列化对应类型时调用的生成器方法一致。 */
+    private static void writeValue(JsonGenerator gen, Object value) {
+        if (value instanceof String str) {
+            gen.writeString(str);
+        } else if (value instanceof Boolean bool) {
+            gen.writeBoolean(bool);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            gen.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long l) {
+            gen.writeNumber(l);
+        } else if (value instanceof Double d) {
+            gen.writeNumber(d);
+        } else if (value instanceof Float f) {
+            gen.writeNumber(f);
+        } else if (value instanceof BigInteger big) {
+            gen.writeNumber(big);
+        } else if (value instanceof BigDecimal big) {
+            gen.writeNumber(big);
+        } else {
+            gen.writeNumber(value.toString());
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package run.runnable.numfeelservice.service;
+
+import run.runnable.numfeelservice.controller.dto.EventResponses.EventSummaryResponse;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * 通用行为埋点 — 预聚合（rollup）物化。
+ * <p>
+ * 维护两张汇总表，摘要查询只读它们，不再扫描 {@code demo_events}：
+ * <ul>
+ *   <li>{@code demo_event_rollup}：按 (demo, UTC 日, event_name) 的事件计数；</li>
+ *   <li>{@code demo_session_sketch}：按 (demo, UTC 日) 的 session_id {@link HyperLogLog} 草图，
+ *       另有 day = {@value #ALL_DAYS} 的一行存该 demo 全部日期的并集，摘要只需读这一行。</li>
+ * </ul>
+ * 写入路径：{@link EventCollectService} 每批 INSERT 成功后逐行调用 {@link #record}，先在内存里累加，
+ * 每 flush-interval-ms 由 {@link #flush} 写一次库：计数用 {@code events = events + 增量} 累加，
+ * 草图读出后按寄存器取最大值再写回（单实例部署、同一时刻只有一个 flusher，读改写不会互相覆盖）。
+ * 写库失败的增量放回内存，下次重试；已写成功的部分不会重复计入。
+ * <p>
+ * 写入路径的计数可能有偏差：进程异常退出时丢失最多一个 flush 间隔的增量；upsert 已提交却报错（如超时）时
+ * 增量被放回重试、重复计入。因此汇总表以 {@code demo_events} 为准定期对账（回填）：
+ * <ul>
+ *   <li>{@code demo_rollup_state.backfilled_before} 是高水位，早于它的事件已按原表重算，计数用覆盖写；</li>
+ *   <li>启动后从高水位所在日的零点起，把早于本实例启动时刻的事件按原表重算，再把高水位推进到启动时刻，
+ *       上一个实例写入路径的偏差在这里纠正；第一次部署时高水位不存在，即从头回填整张表；</li>
+ *   <li>运行中每个 UTC 日结束 {@link #RECONCILE_GRACE_MS} 之后、该日的增量都已写库时，由 {@link #flush}
+ *       把已结束的日子再按原表重算一遍并推进高水位，当天以前的计数不再依赖写入路径。</li>
+ * </ul>
+ * 草图按寄存器取最大值合并，重复并入无害，对账时与库里已有的草图合并而不是覆盖。
+ * 启动时的回填在后台进行（第一次 flush 或摘要查询时发起），不阻塞调用方：完成前不写库，摘要查询立即以错误结束，
+ * 由调用方回退到扫描原表。回填失败后一分钟内不再重试。
+ * <p>
+ * 读取把库里的汇总与内存中尚未写库的增量合并，结果与刚写入的事件一致。写库开始与结束时各把版本号加一，
+ * 读取前后版本号不同（或正在写库）时重读，避免同一批增量被内存和库各算一次。正常停机时 {@link #drain} 写完增量。
+ */
+@Service
+public class EventRollupMaterializer {
+
+    private static final Logger log = LoggerFactory.getLogger(EventRollupMaterializer.class);
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    /** demo_session_sketch 中存全部日期并集的 day 值。 */
+    static final long ALL_DAYS = -1;
+
+    /** 一条计数 upsert 最多的行数。 */
+    private static final int MAX_UPSERT_ROWS = 1000;
+
+    /** 读取遇到并发写库时的最多重读次数与间隔。 */
+    private static final int MAX_READ_RETRIES = 10;
+    private static final Duration READ_RETRY_DELAY = Duration.ofMillis(20);
+
+    /** UTC 日结束多久之后才对账，留给该日最后几批事件的 INSERT 与 {@link #record}。 */
+    static final long RECONCILE_GRACE_MS = TimeUnit.MINUTES.toMillis(10);
+
+    /** 回填失败后的重试间隔。 */
+    private static final long BACKFILL_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** 停机时等待增量写完的最长时间。 */
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final DatabaseClient databaseClient;
+    private final boolean enabled;
+    private final LongSupplier clock;
+    /** 本实例启动时刻：早于它的事件由回填计入，不早于它的由 {@link #record} 计入。 */
+    private final long cutoff;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final DrainSignal flushed = new DrainSignal();
+
+    private Map<DayKey, Delta> pending = new HashMap<>();
+    /** 写库开始、结束各加一：奇数表示正在写库。 */
+    private long writes;
+    /** 回填已完成（或无需回填），之后才写库、才从汇总表读摘要。 */
+    private volatile boolean ready;
+    /** 正在进行的后台回填。 */
+    private boolean backfilling;
+    /** 回填失败后，早于该时刻（System.nanoTime）不再重试；0 表示没有失败过。 */
+    private long retryAt;
+    /** 已按原表重算到的时刻，与库里的 backfilled_before 一致；只由回填与 flusher 读写。 */
+    private volatile long reconciledBefore;
+
+    private record DayKey(String demo, long day) {
+    }
+
+    /** 一个 (demo, 日) 尚未写库的增量；sessions 在写库成功后置空。 */
+    private static final class Delta {
+        final Map<String, Long> counts = new HashMap<>();
+        HyperLogLog sessions = new HyperLogLog();
+
+        boolean isEmpty() {
+            return counts.isEmpty() && sessions == null;
+        }
+
+        void mergeInto(Delta target) {
+            counts.forEach((event, count) -> target.counts.merge(event, count, Long::sum));
+            if (sessions != null) {
+                target.sessions.merge(sessions);
+            }
+        }
+    }
+
+    private record CountRow(DayKey key, String event, long count) {
+    }
+
+    private record SessionRow(String demo, long day, String sessionId) {
+    }
+
+    /** 回填时一个 demo 的各天草图，外加 {@link #ALL_DAYS} 的并集。 */
+    private static final class DemoSketches {
+        String demo;
+        final Map<Long, HyperLogLog> days = new TreeMap<>();
+
+        void add(SessionRow row) {
+            demo = row.demo();
+            days.computeIfAbsent(row.day(), d -> new HyperLogLog()).add(row.sessionId());
+            days.computeIfAbsent(ALL_DAYS, d -> new HyperLogLog()).add(row.sessionId());
+        }
+    }
+
+    /**
+     * @param enabled 关闭时不记录也不写库，摘要查询走原表扫描
+     */
+    @Autowired
+    public EventRollupMaterializer(
+            DatabaseClient databaseClient,
+            @Value("${numfeel.events.rollup.enabled:true}") boolean enabled) {
+        this(databaseClient, enabled, System::currentTimeMillis);
+    }
+
+    EventRollupMaterializer(DatabaseClient databaseClient, boolean enabled, LongSupplier clock) {
+        this.databaseClient = databaseClient;
+        this.enabled = enabled;
+        this.clock = clock;
+        this.cutoff = clock.getAsLong();
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /** 记录一条已落库的事件。 */
+    public void record(String demo, String eventName, String sessionId, long createdAt) {
+        if (!enabled) {
+            return;
+        }
+        DayKey key = new DayKey(demo, Math.floorDiv(createdAt, DAY_MS));
+        synchronized (this) {
+            Delta delta = pending.computeIfAbsent(key, k -> new Delta());
+            delta.counts.merge(eventName, 1L, Long::sum);
+            delta.sessions.add(sessionId);
+        }
+    }
+
+    /**
+     * 从汇总表与内存增量组装摘要：会话数为 HyperLogLog 估算值，事件数与按事件名的计数精确。
+     * 回填尚未完成（此时在后台发起回填）或持续遇到并发写库时以错误结束，由调用方回退到扫描原表。
+     */
+    public Mono<EventSummaryResponse> summary(String demo) {
+        if (!ready) {
+            startBackfill();
+            return Mono.error(new IllegalStateException("demo_events rollup backfill not finished"));
+        }
+        return Mono.defer(() -> readConsistent(demo))
+                .repeatWhenEmpty(MAX_READ_RETRIES, repeats -> repeats.delayElements(READ_RETRY_DELAY));
+    }
+
+    /** 定时把内存增量写库，之后对账已结束的日子；回填完成前只发起回填，增量留在内存里。 */
+    @Scheduled(initialDelayString = "${numfeel.events.rollup.flush-interval-ms:5000}",
+            fixedDelayString = "${numfeel.events.rollup.flush-interval-ms:5000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        if (!ready) {
+            startBackfill();
+            return;
+        }
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        Mono.defer(this::writePending)
+                .then(Mono.defer(this::reconcileClosedDays))
+                .doOnError(err -> log.warn("demo_events rollup flush failed: {}", err.getMessage()))
+                .onErrorComplete()
+                .doFinally(signal -> {
+                    flushing.set(false);
+                    flushed.signal();
+                })
+                .subscribe();
+    }
+
+    /** 停机时把内存增量写完；在 {@link EventCollectService#drain} 之后执行（它依赖本类）。 */
+    @PreDestroy
+    void drain() {
+        if (!enabled) {
+            return;
+        }
+        // 回填失败且不再进行时写不了库，不必等到超时
+        boolean settled = flushed.await(
+                () -> (!hasPending() && !flushing.get()) || (!ready && !backfillRunning()), this::flush, DRAIN_TIMEOUT);
+        if (!settled) {
+            log.warn("demo_events rollup drain timed out, {} days left", pendingDays());
+        } else if (hasPending()) {
+            log.warn("demo_events rollup not backfilled, leaving {} days of unflushed counts to the next startup",
+                    pendingDays());
+        }
+    }
+
+    private synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    private synchronized int pendingDays() {
+        return pending.size();
+    }
+
+    private synchronized boolean backfillRunning() {
+        return backfilling;
+    }
+
+    // ── 读取 ──────────────────────────────────────────────────────────
+
+    private Mono<EventSummaryResponse> readConsistent(String demo) {
+        long version;
+        Map<String, Long> localCounts = new HashMap<>();
+        HyperLogLog localSessions = new HyperLogLog();
+        synchronized (this) {
+            if ((writes & 1) != 0) {
+                return Mono.empty();
+            }
+            version = writes;
+            // 不在写库时，尚未写库的增量只在 pending 里
+            collectLocal(pending, demo, localCounts, localSessions);
+        }
+        Mono<Map<String, Long>> storedCounts = databaseClient.sql(
+                        "SELECT event_name, SUM(events) AS cnt FROM demo_event_rollup " +
+                                "WHERE demo_slug = ? GROUP BY event_name")
+                .bind(0, demo)
+                .map((row, metadata) -> Map.entry(
+                        (String) row.get("event_name"),
+                        number(row.get("cnt")).longValue()))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+        Mono<HyperLogLog> storedSessions = databaseClient.sql(
+                        "SELECT sketch FROM demo_session_sketch WHERE demo_slug = ? AND day = ?")
+                .bind(0, demo)
+                .bind(1, ALL_DAYS)
+                .map((row, metadata) -> HyperLogLog.fromBytes(row.get("sketch", byte[].class)))
+                .one()
+                .defaultIfEmpty(new HyperLogLog());
+
+        return Mono.zip(storedCounts, storedSessions).flatMap(tuple -> {
+            synchronized (this) {
+                if (writes != version) {
+                    return Mono.empty();
+                }
+            }
+            Map<String, Long> counts = new HashMap<>(tuple.getT1());
+            localCounts.forEach((event, count) -> counts.merge(event, count, Long::sum));
+            HyperLogLog sessions = tuple.getT2();
+            sessions.merge(localSessions);
+            return Mono.just(toResponse(counts, sessions));
+        });
+    }
+
+    private static void collectLocal(Map<DayKey, Delta> deltas, String demo,
+                                     Map<String, Long> counts, HyperLogLog sessions) {
+        deltas.forEach((key, delta) -> {
+            if (key.demo().equals(demo)) {
+                delta.counts.forEach((event, count) -> counts.merge(event, count, Long::sum));
+                if (delta.sessions != null) {
+                    sessions.merge(delta.sessions);
+                }
+            }
+        });
+    }
+
+    /** 按计数降序排列 byEvent，与原先 ORDER BY cnt DESC 一致。 */
+    private static EventSummaryResponse toResponse(Map<String, Long> counts, HyperLogLog sessions) {
+        Map<String, Long> byEvent = new LinkedHashMap<>();
+        long events = 0;
+        for (Map.Entry<String, Long> entry : counts.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .toList()) {
+            byEvent.put(entry.getKey(), entry.getValue());
+            events += entry.getValue();
+        }
+        return new EventSummaryResponse(events == 0 ? 0 : Math.max(1, sessions.estimate()), events, byEvent);
+    }
+
+    // ── 写库 ──────────────────────────────────────────────────────────
+
+    private Mono<Void> writePending() {
+        Map<DayKey, Delta> batch;
+        List<CountRow> countRows = new ArrayList<>();
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return Mono.empty();
+            }
+            batch = pending;
+            pending = new HashMap<>();
+            writes++;
+            batch.forEach((key, delta) -> delta.counts.forEach(
+                    (event, count) -> countRows.add(new CountRow(key, event, count))));
+        }
+        Mono<Void> counts = Flux.fromIterable(countRows)
+                .buffer(MAX_UPSERT_ROWS)
+                .concatMap(chunk -> upsertCounts(chunk).doOnSuccess(updated -> {
+                    synchronized (this) {
+                        chunk.forEach(row -> batch.get(row.key()).counts.remove(row.event()));
+                    }
+                }))
+                .then();
+        Mono<Void> sketches = Flux.fromIterable(batch.entrySet())
+                .concatMap(entry -> mergeSketch(entry.getKey(), entry.getValue().sessions)
+                        .doOnSuccess(v -> {
+                            synchronized (this) {
+                                entry.getValue().sessions = null;
+                            }
+                        }))
+                .then();
+        return counts.then(sketches)
+                .doFinally(signal -> {
+                    synchronized (this) {
+                        // 没写成功的部分放回 pending，下次重试
+                        batch.forEach((key, delta) -> {
+                            if (!delta.isEmpty()) {
+                                delta.mergeInto(pending.computeIfAbsent(key, k -> new Delta()));
+                            }
+                        });
+                        writes++;
+                    }
+                });
+    }
+
+    private Mono<Long> upsertCounts(List<CountRow> rows) {
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO demo_event_rollup (demo_slug, day, event_name, events) VALUES ");
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("(?,?,?,?)");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE events = events + VALUES(events)");
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        int paramIndex = 0;
+        for (CountRow row : rows) {
+            spec = spec.bind(paramIndex++, row.key().demo())
+                    .bind(paramIndex++, row.key().day())
+                    .bind(paramIndex++, row.event())
+                    .bind(paramIndex++, row.count());
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    /** 把增量草图并入库里当天与全部日期的两行：读出、取最大值、写回。 */
+    private Mono<Void> mergeSketch(DayKey key, HyperLogLog delta) {
+        return databaseClient.sql(
+                        "SELECT day, sketch FROM demo_session_sketch WHERE demo_slug = ? AND day IN (?, ?)")
+                .bind(0, key.demo())
+                .bind(1, key.day())
+                .bind(2, ALL_DAYS)
+                .map((row, metadata) -> Map.entry(
+                        number(row.get("day")).longValue(),
+                        HyperLogLog.fromBytes(row.get("sketch", byte[].class))))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .flatMap(stored -> {
+                    Map<Long, HyperLogLog> merged = new TreeMap<>();
+                    for (long day : new long[]{key.day(), ALL_DAYS}) {
+                        HyperLogLog sketch = stored.getOrDefault(day, new HyperLogLog());
+                        sketch.merge(delta);
+                        merged.put(day, sketch);
+                    }
+                    return upsertSketches(key.demo(), merged);
+                });
+    }
+
+    /** 覆盖写入一个 demo 的若干天草图。 */
+    private Mono<Void> upsertSketches(String demo, Map<Long, HyperLogLog> sketches) {
+        StringBuilder sql = new StringBuilder("INSERT INTO demo_session_sketch (demo_slug, day, sketch) VALUES ");
+        int i = 0;
+        for (int n = sketches.size(); i < n; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("(?,?,?)");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE sketch = VALUES(sketch)");
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        int paramIndex = 0;
+        for (Map.Entry<Long, HyperLogLog> entry : sketches.entrySet()) {
+            spec = spec.bind(paramIndex++, demo)
+                    .bind(paramIndex++, entry.getKey())
+                    .bind(paramIndex++, entry.getValue().toBytes());
+        }
+        return spec.fetch().rowsUpdated().then();
+    }
+
+    // ── 一次性回填 ────────────────────────────────────────────────────
+
+    /** 在后台检查并执行回填；已完成、正在进行或仍在失败退避期内时什么都不做。 */
+    private synchronized void startBackfill() {
+        if (ready || backfilling || (retryAt != 0 && System.nanoTime() - retryAt < 0)) {
+            return;
+        }
+        backfilling = true;
+        backfillIfNeeded()
+                .doOnSuccess(v -> ready = true)
+                .doOnError(err -> {
+                    log.warn("demo_events rollup backfill failed, retrying in {}s: {}",
+                            TimeUnit.NANOSECONDS.toSeconds(BACKFILL_BACKOFF_NANOS), err.getMessage());
+                    synchronized (this) {
+                        retryAt = System.nanoTime() + BACKFILL_BACKOFF_NANOS;
+                    }
+                })
+                .onErrorComplete()
+                .doFinally(signal -> {
+                    synchronized (this) {
+                        backfilling = false;
+                    }
+                    flushed.signal();
+                })
+                .subscribe();
+    }
+
+    /** 读出高水位，把它所在日的零点到 cutoff 之间的事件按原表重算；第一次部署时从头回填。 */
+    private Mono<Void> backfillIfNeeded() {
+        return databaseClient.sql("SELECT backfilled_before FROM demo_rollup_state WHERE id = 1")
+                .map((row, metadata) -> number(row.get("backfilled_before")).longValue())
+                .one()
+                .defaultIfEmpty(-1L)
+                .flatMap(mark -> {
+                    long from = mark < 0 ? 0 : dayStart(mark);
+                    log.info("demo_events rollup backfill started, from={} cutoff={}", from, cutoff);
+                    return reconcile(from, cutoff)
+                            .doOnSuccess(v -> log.info("demo_events rollup backfill finished"));
+                });
+    }
+
+    /**
+     * 已结束超过 {@link #RECONCILE_GRACE_MS} 的 UTC 日若还在高水位之后，且这些日子的增量都已写库，
+     * 就按原表重算并推进高水位。只在 flusher 中调用，不与写库并发。
+     */
+    private Mono<Void> reconcileClosedDays() {
+        long before = dayStart(clock.getAsLong() - RECONCILE_GRACE_MS);
+        long from = reconciledBefore;
+        if (before <= from) {
+            return Mono.empty();
+        }
+        synchronized (this) {
+            for (DayKey key : pending.keySet()) {
+                if (key.day() * DAY_MS < before) {
+                    return Mono.empty();
+                }
+            }
+        }
+        log.info("demo_events rollup reconciling [{}, {})", dayStart(from), before);
+        return reconcile(dayStart(from), before);
+    }
+
+    /**
+     * 按 {@code demo_events} 重算 [from, to) 内的事件写入汇总表并把高水位记为 to。
+     * 计数是覆盖写、草图按最大值合并，中途失败后整体重做不会重复计数；
+     * 调用方保证期间没有写入路径的增量写入这段时间的计数。
+     */
+    private Mono<Void> reconcile(long from, long to) {
+        Mono<Long> counts = databaseClient.sql(
+                        "INSERT INTO demo_event_rollup (demo_slug, day, event_name, events) " +
+                                "SELECT demo_slug, created_at DIV " + DAY_MS + ", event_name, COUNT(*) " +
+                                "FROM demo_events WHERE created_at >= ? AND created_at < ? " +
+                                "GROUP BY demo_slug, created_at DIV " + DAY_MS + ", event_name " +
+                                "ON DUPLICATE KEY UPDATE events = VALUES(events)")
+                .bind(0, from)
+                .bind(1, to)
+                .fetch()
+                .rowsUpdated();
+        // 按 demo 顺序流式读取，同一时刻只在内存里保留一个 demo 的各天草图
+        Mono<Void> sessions = databaseClient.sql(
+                        "SELECT DISTINCT demo_slug, created_at DIV " + DAY_MS + " AS day, session_id " +
+                                "FROM demo_events WHERE created_at >= ? AND created_at < ? ORDER BY demo_slug")
+                .bind(0, from)
+                .bind(1, to)
+                .map((row, metadata) -> new SessionRow(
+                        (String) row.get("demo_slug"),
+                        number(row.get("day")).longValue(),
+                        (String) row.get("session_id")))
+                .all()
+                .windowUntilChanged(SessionRow::demo)
+                .concatMap(rows -> rows.collect(DemoSketches::new, DemoSketches::add))
+                .concatMap(demo -> mergeSketches(demo.demo, Math.floorDiv(from, DAY_MS), demo.days))
+                .then();
+        Mono<Long> mark = databaseClient.sql(
+                        "INSERT INTO demo_rollup_state (id, backfilled_before) VALUES (1, ?) " +
+                                "ON DUPLICATE KEY UPDATE backfilled_before = VALUES(backfilled_before)")
+                .bind(0, to)
+                .fetch()
+                .rowsUpdated();
+        return counts.then(sessions).then(mark)
+                .doOnSuccess(v -> reconciledBefore = to)
+                .then();
+    }
+
+    /** 把一个 demo 重算出的各天草图（含全部日期并集）与库里 fromDay 及以后的草图按寄存器取最大值后写回。 */
+    private Mono<Void> mergeSketches(String demo, long fromDay, Map<Long, HyperLogLog> sketches) {
+        return databaseClient.sql(
+                        "SELECT day, sketch FROM demo_session_sketch WHERE demo_slug = ? AND (day >= ? OR day = ?)")
+                .bind(0, demo)
+                .bind(1, fromDay)
+                .bind(2, ALL_DAYS)
+                .map((row, metadata) -> Map.entry(
+                        number(row.get("day")).longValue(),
+                        HyperLogLog.fromBytes(row.get("sketch", byte[].class))))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .flatMap(stored -> {
+                    sketches.forEach((day, sketch) -> {
+                        HyperLogLog previous = stored.get(day);
+                        if (previous != null) {
+                            sketch.merge(previous);
+                        }
+                    });
+                    return upsertSketches(demo, sketches);
+                });
+    }
+
+    private static long dayStart(long millis) {
+        return Math.floorDiv(millis, DAY_MS) * DAY_MS;
+    }
+
+    private static Number number(Object value) {
+        return value instanceof Number number ? number : 0;
+    }
+}
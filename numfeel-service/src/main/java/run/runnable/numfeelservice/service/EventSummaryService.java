@@ -1,5 +1,7 @@
 package run.runnable.numfeelservice.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.Cacheable;
 import run.runnable.numfeelservice.controller.dto.EventResponses.EventSummaryResponse;
 import org.springframework.r2dbc.core.DatabaseClient;
@@ -12,27 +14,44 @@ import java.util.Map;
 /**
  * 通用行为埋点 — 聚合摘要查询业务逻辑（只读）。
  * <p>
- * 只暴露聚合统计，不提供任何返回原始事件行的接口。查询全部走裸 SQL 聚合，
- * 不做 select 全量再内存过滤。结果通过 @Cacheable 按 demo 缓存 60 秒，
- * 减少高频访问对数据库的压力。
+ * 只暴露聚合统计，不提供任何返回原始事件行的接口。默认读 {@link EventRollupMaterializer} 维护的预聚合表，
+ * 代价与原始事件量无关；预聚合关闭、尚未回填完成或读取失败时，回退到对 {@code demo_events} 的裸 SQL 聚合。
+ * 结果通过 @Cacheable 按 demo 缓存 60 秒，减少高频访问对数据库的压力。
  */
 @Service
 public class EventSummaryService {
 
+    private static final Logger log = LoggerFactory.getLogger(EventSummaryService.class);
+
     private final DatabaseClient databaseClient;
+    private final EventRollupMaterializer rollup;
 
-    public EventSummaryService(DatabaseClient databaseClient) {
+    public EventSummaryService(DatabaseClient databaseClient, EventRollupMaterializer rollup) {
         this.databaseClient = databaseClient;
+        this.rollup = rollup;
     }
 
     /**
      * 查询指定 demo 的聚合摘要：会话数、事件总数、按事件名分组的计数。
+     * 读预聚合表时会话数为 HyperLogLog 估算值（相对误差约 1.6%）。
      *
      * @param demo demo slug
      * @return 聚合摘要
      */
     @Cacheable(cacheNames = "eventSummary", sync = true)
     public Mono<EventSummaryResponse> summary(String demo) {
+        if (!rollup.enabled()) {
+            return scanSummary(demo);
+        }
+        return rollup.summary(demo)
+                .onErrorResume(err -> {
+                    log.warn("event rollup unavailable for {}, scanning demo_events: {}", demo, err.getMessage());
+                    return scanSummary(demo);
+                });
+    }
+
+    /** 直接在 demo_events 上聚合：COUNT(*)、COUNT(DISTINCT session_id) 与按事件名分组。 */
+    private Mono<EventSummaryResponse> scanSummary(String demo) {
         Mono<long[]> countsMono = databaseClient.sql(
                         "SELECT COUNT(*) AS events, COUNT(DISTINCT session_id) AS sessions " +
                                 "FROM demo_events WHERE demo_slug = ?")
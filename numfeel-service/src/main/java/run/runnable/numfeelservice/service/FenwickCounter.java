@@ -0,0 +1,97 @@
+package run.runnable.numfeelservice.service;
+
+import java.util.Arrays;
+
+/**
+ * 有界整数值域上的计数树状数组：记录每个分值出现了多少次，按分值求名次为 O(log(max - min))。
+ * <p>
+ * 值域外的分值（历史脏数据或规则调整前的成绩）落到一个 {@link RankSkipList} 里，名次依然精确。
+ * 非线程安全，由调用方加锁。
+ */
+final class FenwickCounter {
+
+    private final int min;
+    private final int max;
+    /** 1-based，tree[i] 覆盖 (i - lowbit(i), i] 区间的计数。 */
+    private final long[] tree;
+    private final RankSkipList outOfRange = new RankSkipList();
+    private long inRange;
+
+    FenwickCounter(int min, int max) {
+        if (max < min) {
+            throw new IllegalArgumentException("max < min");
+        }
+        this.min = min;
+        this.max = max;
+        this.tree = new long[max - min + 2];
+    }
+
+    void add(int value) {
+        update(value, 1);
+    }
+
+    /** 移除一次 value；value 从未加入时结果未定义。 */
+    void remove(int value) {
+        update(value, -1);
+    }
+
+    long size() {
+        return inRange + outOfRange.size();
+    }
+
+    /** 严格大于 value 的个数。 */
+    long countGreater(int value) {
+        long fromTree;
+        if (value < min) {
+            fromTree = inRange;
+        } else if (value >= max) {
+            fromTree = 0;
+        } else {
+            fromTree = inRange - prefix(value - min + 1);
+        }
+        return fromTree + outOfRange.countGreater(value);
+    }
+
+    /** 严格小于 value 的个数。 */
+    long countLess(int value) {
+        long fromTree;
+        if (value <= min) {
+            fromTree = 0;
+        } else if (value > max) {
+            fromTree = inRange;
+        } else {
+            fromTree = prefix(value - min);
+        }
+        return fromTree + outOfRange.countLess(value);
+    }
+
+    void clear() {
+        Arrays.fill(tree, 0);
+        outOfRange.clear();
+        inRange = 0;
+    }
+
+    private void update(int value, int delta) {
+        if (value < min || value > max) {
+            if (delta > 0) {
+                outOfRange.add(value);
+            } else {
+                outOfRange.remove(value);
+            }
+            return;
+        }
+        inRange += delta;
+        for (int i = value - min + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /** 值域内前 n 个分值（min .. min+n-1）的计数和。 */
+    private long prefix(int n) {
+        long sum = 0;
+        for (int i = n; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
@@ -2,14 +2,12 @@ package run.runnable.numfeelservice.service;
 
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.FilterBubbleStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.FilterBubbleResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * 信息茧房模拟器 — 业务逻辑层。
@@ -17,10 +15,19 @@ import java.util.stream.Collectors;
 @Service
 public class FilterBubbleService {
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<FilterBubbleResult> aggregates;
+    private final LiveAggregates.Summary<FilterBubbleResult> entropyDrop;
+    private final LiveAggregates.Summary<FilterBubbleResult> dominantPct;
+    private final LiveAggregates.Summary<FilterBubbleResult> convergeRound;
+    private final LiveAggregates.GroupCount<FilterBubbleResult, String> dominantCats;
 
     public FilterBubbleService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<FilterBubbleResult> builder = LiveAggregates.builder(template, FilterBubbleResult.class);
+        this.entropyDrop = builder.summary(FilterBubbleResult::entropyDrop);
+        this.dominantPct = builder.summary(FilterBubbleResult::dominantPct);
+        this.convergeRound = builder.summary(r -> r.convergeRound() > 0, FilterBubbleResult::convergeRound);
+        this.dominantCats = builder.countBy(FilterBubbleResult::dominantCat);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -31,36 +38,31 @@ public class FilterBubbleService {
         FilterBubbleResult entity = new FilterBubbleResult(
                 null, entropyDrop, dominantCat, dominantPct,
                 convergeRound, totalRounds, clickSequence, System.currentTimeMillis());
-        return template.insert(FilterBubbleResult.class).using(entity).then();
+        return aggregates.insert(entity).then();
     }
 
     /**
      * 查询全站统计数据。
      */
     public Mono<FilterBubbleStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, FilterBubbleResult.class)
-                .map(this::buildStatsResponse);
+        return aggregates.read(this::buildStatsResponse);
     }
 
-    private FilterBubbleStatsResponse buildStatsResponse(List<FilterBubbleResult> rows) {
-        if (rows.isEmpty()) {
+    private FilterBubbleStatsResponse buildStatsResponse() {
+        long total = aggregates.count();
+        if (total == 0) {
             return new FilterBubbleStatsResponse(0, 0, 0, 0, Map.of());
         }
 
-        long total = rows.size();
-        double avgDrop = ServiceSupport.round(
-                rows.stream().mapToDouble(FilterBubbleResult::entropyDrop).average().orElse(0), 1);
-        double avgPct = ServiceSupport.round(
-                rows.stream().mapToDouble(FilterBubbleResult::dominantPct).average().orElse(0), 1);
-        double avgConverge = ServiceSupport.round(
-                rows.stream()
-                        .filter(r -> r.convergeRound() > 0)
-                        .mapToInt(FilterBubbleResult::convergeRound)
-                        .average().orElse(0), 1);
+        double avgDrop = ServiceSupport.round(entropyDrop.mean(), 1);
+        double avgPct = ServiceSupport.round(dominantPct.mean(), 1);
+        double avgConverge = ServiceSupport.round(convergeRound.mean(), 1);
 
-        Map<String, Long> catDist = rows.stream()
-                .collect(Collectors.groupingBy(FilterBubbleResult::dominantCat, LinkedHashMap::new, Collectors.counting()));
+        return new FilterBubbleStatsResponse(total, avgDrop, avgPct, avgConverge, dominantCats.snapshot());
+    }
 
-        return new FilterBubbleStatsResponse(total, avgDrop, avgPct, avgConverge, catDist);
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
     }
 }
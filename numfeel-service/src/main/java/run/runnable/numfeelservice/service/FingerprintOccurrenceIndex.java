@@ -0,0 +1,177 @@
+package run.runnable.numfeelservice.service;
+
+import java.util.Locale;
+
+/**
+ * 浏览器指纹出现次数的内存索引：full_hash → (出现次数, 最近两次的 created_at)，
+ * 代替采集时按 full_hash 的 COUNT(*) 与 {@code ORDER BY created_at DESC LIMIT 1 OFFSET 1} 子查询。
+ * <p>
+ * 键是 full_hash 的 64 位前缀：前端上报的是 SHA-256 十六进制，直接取前 16 位（不区分大小写，
+ * 与 MySQL 默认排序规则下的等值比较一致）；不是十六进制时退回 {@link HyperLogLog#hash64}。
+ * 不同指纹撞上同一个键要到约 2^32 个不同指纹量级，忽略不计。
+ * <p>
+ * 按键的高位分成 {@value #PARTITIONS} 个分区，各自加锁；分区内是线性探测的开放寻址表，
+ * 键、次数、时间戳各占一个基本类型数组，不为每个指纹分配对象，每个指纹约 28 字节（装载因子 0.75）。
+ * <p>
+ * 线程安全。
+ */
+final class FingerprintOccurrenceIndex {
+
+    private static final int PARTITIONS = 16;
+    private static final int PARTITION_BITS = Integer.numberOfTrailingZeros(PARTITIONS);
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** 只出现过一次时 previous 的取值。 */
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * 记入一次出现之后的结果。
+     *
+     * @param count 含本次在内的出现次数
+     * @param lastSeenAt 第二新的 created_at（通常即上一次出现），只出现过一次时为 {@code null}
+     */
+    record Occurrence(long count, Long lastSeenAt) {
+    }
+
+    private final Partition[] partitions = new Partition[PARTITIONS];
+
+    FingerprintOccurrenceIndex() {
+        clear();
+    }
+
+    /** 清空所有分区。 */
+    void clear() {
+        for (int i = 0; i < PARTITIONS; i++) {
+            Partition partition = partitions[i];
+            if (partition == null) {
+                partitions[i] = new Partition();
+            } else {
+                synchronized (partition) {
+                    partition.reset();
+                }
+            }
+        }
+    }
+
+    /** 记入一次出现，返回记入后的次数与上一次出现时间。 */
+    Occurrence record(String fullHash, long createdAt) {
+        long key = key(fullHash);
+        long mixed = mix(key);
+        Partition partition = partitions[(int) (mixed >>> (64 - PARTITION_BITS))];
+        synchronized (partition) {
+            return partition.add(key, (int) mixed, createdAt);
+        }
+    }
+
+    /** 不同键的个数。 */
+    int size() {
+        int size = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                size += partition.size;
+            }
+        }
+        return size;
+    }
+
+    /** full_hash 的 64 位键：十六进制时取前 16 位，否则取 64 位哈希。 */
+    static long key(String fullHash) {
+        if (fullHash.length() >= 16) {
+            long prefix = 0;
+            for (int i = 0; i < 16; i++) {
+                int digit = Character.digit(fullHash.charAt(i), 16);
+                if (digit < 0) {
+                    return HyperLogLog.hash64(fullHash.toLowerCase(Locale.ROOT));
+                }
+                prefix = (prefix << 4) | digit;
+            }
+            return prefix;
+        }
+        return HyperLogLog.hash64(fullHash.toLowerCase(Locale.ROOT));
+    }
+
+    /** MurmurHash3 的 fmix64：键可由客户端构造，打散后再选分区与槽位，避免成片聚集。 */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** 一个分区：count 为 0 的槽位是空槽。 */
+    private static final class Partition {
+        long[] keys;
+        int[] counts;
+        long[] latest;
+        long[] previous;
+        int size;
+
+        Partition() {
+            reset();
+        }
+
+        void reset() {
+            allocate(INITIAL_CAPACITY);
+            size = 0;
+        }
+
+        Occurrence add(long key, int slotHash, long createdAt) {
+            int mask = keys.length - 1;
+            int slot = slotHash & mask;
+            while (counts[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (counts[slot] == 0) {
+                keys[slot] = key;
+                counts[slot] = 1;
+                latest[slot] = createdAt;
+                previous[slot] = NONE;
+                if (++size * 4L > keys.length * 3L) {
+                    grow();
+                }
+                return new Occurrence(1, null);
+            }
+            counts[slot]++;
+            // 保留最大的两个时间戳：初始加载不保证顺序
+            if (createdAt >= latest[slot]) {
+                previous[slot] = latest[slot];
+                latest[slot] = createdAt;
+            } else if (createdAt > previous[slot]) {
+                previous[slot] = createdAt;
+            }
+            return new Occurrence(counts[slot], previous[slot]);
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            long[] oldLatest = latest;
+            long[] oldPrevious = previous;
+            allocate(oldKeys.length * 2);
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] == 0) {
+                    continue;
+                }
+                int slot = (int) mix(oldKeys[i]) & mask;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                latest[slot] = oldLatest[i];
+                previous[slot] = oldPrevious[i];
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            counts = new int[capacity];
+            latest = new long[capacity];
+            previous = new long[capacity];
+        }
+    }
+}
@@ -4,25 +4,80 @@ import run.runnable.numfeelservice.controller.dto.TrackingResponses.BrowserFinge
 import run.runnable.numfeelservice.controller.dto.TrackingResponses.BrowserFingerprintStatsResponse;
 import run.runnable.numfeelservice.model.FingerprintRecord;
 import run.runnable.numfeelservice.model.TrackingEntities.BrowserFingerprint;
+import run.runnable.numfeelservice.service.FingerprintOccurrenceIndex.Occurrence;
+import run.runnable.numfeelservice.service.FingerprintSketches.Row;
+import run.runnable.numfeelservice.service.FingerprintSketches.Snapshot;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 浏览器指纹采集与统计（基于 DatabaseClient + SQL，内存兜底）。
+ * <p>
+ * 全站统计由内存中的 {@link FingerprintSketches} 直接给出，不再对整表做 COUNT(DISTINCT ...)：
+ * 第一次使用时在后台从 {@code fingerprint_sketch_state} / {@code fingerprint_sketches} 恢复上次保存的快照，
+ * 再补扫之后新增的行（没有快照时全表扫描一次）；之后每次采集成功就地计入，
+ * 每 persist-interval-ms 保存一次快照。
+ * <p>
+ * 采集返回的同指纹次数与上一次出现时间取自 {@link FingerprintOccurrenceIndex}，
+ * 与草图一同由一次流式全表查询建立，之后随每次采集更新。
+ * <p>
+ * 加载完成之前（包括加载失败后 {@value #LOAD_BACKOFF_SECONDS} 秒的退避期）采集不等待加载，
+ * 照常 INSERT 并用 SQL 查询即时统计，stats 回退到整表 SQL；退避期内不重试加载。
+ * 加载期间写入的行可能在扫描读到之前或之后提交，加载成功后逐条核对，扫描没读到的才计入。
  */
 @Service
 public class FingerprintService {
 
     private static final Logger log = LoggerFactory.getLogger(FingerprintService.class);
 
+    /** 停机时保存快照的最长等待时间。 */
+    private static final Duration PERSIST_TIMEOUT = Duration.ofSeconds(10);
+
+    /** 加载失败后到下一次重试的间隔。 */
+    private static final long LOAD_BACKOFF_SECONDS = 60;
+
     private final R2dbcEntityTemplate template;
     private final AtomicLong memTotal = new AtomicLong(0);
+    private final FingerprintSketches sketches = new FingerprintSketches();
+    private final FingerprintOccurrenceIndex occurrences = new FingerprintOccurrenceIndex();
+    private final AtomicBoolean persisting = new AtomicBoolean();
+
+    /** 草图与出现次数索引已加载，之后一直为 true。 */
+    private volatile boolean ready;
+    /** 正在进行的加载，没有时为 null；由实例锁保护，下同。 */
+    private LoadWindow loading;
+    /** 加载失败后允许重试的时间（nanoTime），0 表示不在退避期。 */
+    private long retryAt;
+    /** 草图就绪前发出、尚未结束的 INSERT。 */
+    private final Set<FallbackInsert> fallbackInserts = new HashSet<>();
+    /** 上次保存的快照对应的 lastId / total，未变化时跳过保存。 */
+    private volatile long persistedId = -1;
+    private volatile long persistedTotal = -1;
+
+    /** fingerprint_sketch_state 中的一行。 */
+    private record SavedState(long lastId, long total, double entropySum, long entropyCount) {
+    }
+
+    /** 建立出现次数索引时读到的一行。 */
+    private record Seen(long id, String fullHash, long createdAt) {
+    }
 
     public FingerprintService(R2dbcEntityTemplate template) {
         this.template = template;
@@ -31,8 +86,9 @@ public class FingerprintService {
     /**
      * 采集一条指纹记录并返回即时统计。
      * <p>
-     * 先 INSERT 到 {@code browser_fingerprints} 表，再通过 SQL 子查询
-     * 获取总量、同指纹历史数量及上一次出现的时间戳。
+     * INSERT 到 {@code browser_fingerprints} 表后计入内存统计与出现次数索引，
+     * 总量、同指纹历史数量及上一次出现的时间戳都直接取自内存，不再额外查询。
+     * 草图或索引尚未加载完成时不等待加载，照常 INSERT，即时统计改用 SQL 查询；
      * 若 MySQL 不可用则落入内存计数兜底。
      *
      * @param r 前端上报的指纹记录
@@ -60,9 +116,50 @@ public class FingerprintService {
                 System.currentTimeMillis()
         );
 
+        // INSERT 不等待加载：草图未就绪时照常写入，即时统计改用 SQL 查询
+        startLoad();
+        FallbackInsert fallback = beginFallback();
+        return (fallback == null ? insert(entity) : insertAndQuery(entity, fallback))
+                .onErrorResume(err -> {
+                    log.error("Fingerprint collect failed: {}", err.getMessage());
+                    long total = memTotal.incrementAndGet();
+                    return Mono.just(new BrowserFingerprintCollectResponse(
+                            total, null, null, "memory"));
+                });
+    }
+
+    /** INSERT 一行并计入内存统计与出现次数索引；失败或取消时不计入。 */
+    private Mono<BrowserFingerprintCollectResponse> insert(BrowserFingerprint entity) {
+        sketches.beginInsert();
+        AtomicBoolean counted = new AtomicBoolean();
+        return template.insert(BrowserFingerprint.class)
+                .using(entity)
+                .defaultIfEmpty(entity)
+                .map(saved -> {
+                    counted.set(true);
+                    long total = sketches.inserted(Row.of(saved));
+                    Occurrence occurrence = occurrences.record(saved.fullHash(), saved.createdAt());
+                    return new BrowserFingerprintCollectResponse(
+                            total, occurrence.count(), occurrence.lastSeenAt(), "mysql");
+                })
+                .doFinally(signal -> {
+                    if (!counted.get()) {
+                        sketches.abandoned();
+                    }
+                });
+    }
+
+    /**
+     * 草图未就绪时的采集：INSERT 后用 SQL 查询总量、同指纹次数与上一次出现时间（与 {@link #scanStats} 同为回退路径）。
+     * 这些行由加载时的扫描或加载成功后的核对计入，见 {@link LoadWindow}。
+     */
+    private Mono<BrowserFingerprintCollectResponse> insertAndQuery(BrowserFingerprint entity, FallbackInsert fallback) {
         DatabaseClient client = template.getDatabaseClient();
         return template.insert(BrowserFingerprint.class)
                 .using(entity)
+                .defaultIfEmpty(entity)
+                .doOnNext(saved -> fallback.saved = saved)
+                .doFinally(signal -> fallbackFinished(fallback))
                 .then(client.sql("""
                         SELECT
                           (SELECT COUNT(*) FROM browser_fingerprints) AS total,
@@ -73,33 +170,32 @@ public class FingerprintService {
                            ORDER BY created_at DESC
                            LIMIT 1 OFFSET 1) AS last_seen_at
                         """)
-                        .bind("full_hash", r.fullHash())
+                        .bind("full_hash", entity.fullHash())
                         .map((row, meta) -> {
                             long total = number(row.get("total")).longValue();
                             long sameHashCount = number(row.get("same_hash_count")).longValue();
-                            Object lastSeenObj = row.get("last_seen_at");
-                            Long lastSeenAt = lastSeenObj instanceof Number n ? n.longValue() : null;
+                            Long lastSeenAt = row.get("last_seen_at") instanceof Number n ? n.longValue() : null;
                             return new BrowserFingerprintCollectResponse(
                                     total, sameHashCount, lastSeenAt, "mysql");
                         })
-                        .one())
-                .onErrorResume(err -> {
-                    log.error("Fingerprint collect failed: {}", err.getMessage());
-                    long total = memTotal.incrementAndGet();
-                    return Mono.just(new BrowserFingerprintCollectResponse(
-                            total, null, null, "memory"));
-                });
+                        .one());
     }
 
     /**
      * 查询全站浏览器指纹统计数据。
      * <p>
-     * 一条 SQL 完成总量、各维度去重计数和平均熵值计算，
-     * 平均访问次数由 {@code total / unique_full} 在应用层得出。
+     * 总量与平均熵值精确，各维度去重计数为 HyperLogLog 估算值，
+     * 相对标准误差见 {@code uniqueStdError}；平均访问次数由 {@code total / unique_full} 得出。
      *
      * @return 包含各维度统计值的响应 Mono
      */
     public Mono<BrowserFingerprintStatsResponse> stats() {
+        startLoad();
+        return ready ? Mono.fromSupplier(sketches::stats) : scanStats();
+    }
+
+    /** 一条 SQL 完成总量、各维度精确去重计数和平均熵值计算。 */
+    private Mono<BrowserFingerprintStatsResponse> scanStats() {
         DatabaseClient client = template.getDatabaseClient();
         return client.sql("""
                         SELECT
@@ -131,12 +227,328 @@ public class FingerprintService {
                             number(row.get("unique_timezone")).longValue(),
                             number(row.get("unique_screen")).longValue(),
                             number(row.get("unique_platform")).longValue(),
-                            ServiceSupport.round(avgEntropy, 2)
+                            ServiceSupport.round(avgEntropy, 2),
+                            0
                     );
                 })
                 .one()
                 .defaultIfEmpty(new BrowserFingerprintStatsResponse(
-                        0, 0, 0, 0, 0, 0, 0, 0, 0, 0));
+                        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0));
+    }
+
+    // ── 草图的加载与保存 ──────────────────────────────────────────────
+
+    /**
+     * 草图未就绪、没有正在进行的加载且不在失败后的退避期内时，在后台开始加载草图与出现次数索引。
+     * 调用方不等待加载；此时仍在执行的回退 INSERT 加入本次加载的核对。
+     */
+    private void startLoad() {
+        LoadWindow window;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (ready || loading != null || (retryAt != 0 && now - retryAt < 0)) {
+                return;
+            }
+            window = new LoadWindow();
+            loading = window;
+            fallbackInserts.forEach(fallback -> join(window, fallback));
+        }
+        Mono.defer(() -> load(window))
+                .subscribe(v -> { }, err -> loadFailed(window, err), () -> loadSucceeded(window));
+    }
+
+    private synchronized void loadSucceeded(LoadWindow window) {
+        window.done = true;
+        for (FallbackInsert fallback : window.members) {
+            if (fallback.finished) {
+                reconcile(window, fallback);
+            }
+        }
+        window.members.clear();
+        loading = null;
+        ready = true;
+    }
+
+    private synchronized void loadFailed(LoadWindow window, Throwable err) {
+        log.warn("Fingerprint sketches load failed, retrying in {}s: {}", LOAD_BACKOFF_SECONDS, err.getMessage());
+        // 加入本次加载的 INSERT 不再核对，仍在执行的在下次加载开始时重新加入
+        for (FallbackInsert fallback : window.members) {
+            fallback.window = null;
+            sketches.abandoned();
+        }
+        window.members.clear();
+        loading = null;
+        retryAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(LOAD_BACKOFF_SECONDS);
+    }
+
+    /** 草图就绪时返回 null；否则登记一条回退 INSERT，正在加载时加入本次加载的核对。 */
+    private synchronized FallbackInsert beginFallback() {
+        if (ready) {
+            return null;
+        }
+        FallbackInsert fallback = new FallbackInsert();
+        fallbackInserts.add(fallback);
+        if (loading != null) {
+            join(loading, fallback);
+        }
+        return fallback;
+    }
+
+    /** 核对结束之前这条 INSERT 算作草图里未完成的 INSERT，扫描不会越过它推进 settledId。 */
+    private void join(LoadWindow window, FallbackInsert fallback) {
+        sketches.beginInsert();
+        fallback.window = window;
+        window.members.add(fallback);
+        window.joined();
+    }
+
+    private synchronized void fallbackFinished(FallbackInsert fallback) {
+        fallbackInserts.remove(fallback);
+        fallback.finished = true;
+        LoadWindow window = fallback.window;
+        if (window != null && window.done) {
+            reconcile(window, fallback);
+        }
+    }
+
+    /** 加载已成功、INSERT 已结束：写入的行没被两次扫描读到的，现在计入。 */
+    private void reconcile(LoadWindow window, FallbackInsert fallback) {
+        fallback.window = null;
+        BrowserFingerprint saved = fallback.saved;
+        if (saved == null) {
+            sketches.abandoned();
+            return;
+        }
+        if (window.sketchRowSeen(saved.id())) {
+            sketches.abandoned();
+        } else {
+            sketches.inserted(Row.of(saved));
+        }
+        if (!window.occurrenceRowSeen(saved.id())) {
+            occurrences.record(saved.fullHash(), saved.createdAt());
+        }
+    }
+
+    private Mono<Void> load(LoadWindow window) {
+        return loadSketches(window).then(loadOccurrences(window));
+    }
+
+    private Mono<Void> loadSketches(LoadWindow window) {
+        DatabaseClient client = template.getDatabaseClient();
+        Mono<Snapshot> saved = client.sql(
+                        "SELECT last_id, total, entropy_sum, entropy_count FROM fingerprint_sketch_state WHERE id = 1")
+                .map((row, meta) -> new SavedState(
+                        number(row.get("last_id")).longValue(),
+                        number(row.get("total")).longValue(),
+                        number(row.get("entropy_sum")).doubleValue(),
+                        number(row.get("entropy_count")).longValue()))
+                .one()
+                .flatMap(state -> client.sql("SELECT dimension, sketch FROM fingerprint_sketches")
+                        .map((row, meta) -> Map.entry(
+                                (String) row.get("dimension"),
+                                row.get("sketch", byte[].class)))
+                        .all()
+                        .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                        .flatMap(stored -> {
+                            if (!stored.keySet().containsAll(FingerprintSketches.DIMENSIONS)) {
+                                return Mono.empty();
+                            }
+                            List<byte[]> bytes = new ArrayList<>();
+                            FingerprintSketches.DIMENSIONS.forEach(d -> bytes.add(stored.get(d)));
+                            return Mono.just(new Snapshot(
+                                    state.lastId(), state.total(), state.entropySum(), state.entropyCount(), bytes));
+                        }));
+        return saved
+                .map(snapshot -> {
+                    sketches.restore(snapshot);
+                    return snapshot.lastId();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    sketches.reset();
+                    return 0L;
+                }))
+                .flatMap(lastId -> {
+                    log.info("Fingerprint sketches loading rows after id {}", lastId);
+                    window.scanFrom(lastId);
+                    return client.sql("""
+                                    SELECT id, full_hash, canvas_hash, font_hash, webgl_hash,
+                                           timezone, screen_info, platform, entropy_bits
+                                    FROM browser_fingerprints WHERE id > :last_id
+                                    """)
+                            .bind("last_id", lastId)
+                            .map((row, meta) -> new Row(
+                                    number(row.get("id")).longValue(),
+                                    (String) row.get("full_hash"),
+                                    (String) row.get("canvas_hash"),
+                                    (String) row.get("font_hash"),
+                                    (String) row.get("webgl_hash"),
+                                    (String) row.get("timezone"),
+                                    (String) row.get("screen_info"),
+                                    (String) row.get("platform"),
+                                    row.get("entropy_bits") instanceof Number n ? n.doubleValue() : null))
+                            .all()
+                            .doOnNext(row -> {
+                                sketches.scanned(row);
+                                window.sketchRowScanned(row.id());
+                            })
+                            .then();
+                })
+                .doOnSuccess(v -> log.info("Fingerprint sketches loaded, total={}", sketches.total()));
+    }
+
+    /** 流式读取全表的 (full_hash, created_at) 建立出现次数索引，只在内存里保留索引本身。 */
+    private Mono<Void> loadOccurrences(LoadWindow window) {
+        return Mono.defer(() -> {
+                    occurrences.clear();
+                    return template.getDatabaseClient()
+                            .sql("SELECT id, full_hash, created_at FROM browser_fingerprints")
+                            .map((row, meta) -> new Seen(
+                                    number(row.get("id")).longValue(),
+                                    (String) row.get("full_hash"),
+                                    number(row.get("created_at")).longValue()))
+                            .all()
+                            .doOnNext(seen -> {
+                                occurrences.record(seen.fullHash(), seen.createdAt());
+                                window.occurrenceRowScanned(seen.id());
+                            })
+                            .then();
+                })
+                .doOnSuccess(v -> log.info("Fingerprint occurrence index loaded, distinct={}", occurrences.size()));
+    }
+
+    /** 定时保存快照；草图尚未加载或自上次保存以来没有变化时跳过。 */
+    @Scheduled(initialDelayString = "${numfeel.fingerprint.sketch.persist-interval-ms:60000}",
+            fixedDelayString = "${numfeel.fingerprint.sketch.persist-interval-ms:60000}")
+    public void persist() {
+        if (!persisting.compareAndSet(false, true)) {
+            return;
+        }
+        persistSnapshot()
+                .doOnError(err -> log.warn("Fingerprint sketches persist failed: {}", err.getMessage()))
+                .onErrorComplete()
+                .doFinally(signal -> persisting.set(false))
+                .subscribe();
+    }
+
+    /** 停机时保存最后一次快照，未保存的部分下次启动补扫。 */
+    @PreDestroy
+    void persistOnShutdown() {
+        try {
+            persistSnapshot().block(PERSIST_TIMEOUT);
+        } catch (RuntimeException e) {
+            log.warn("Fingerprint sketches final persist failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 先写草图再写计数：两步之间失败时，库里的草图可能比计数多包含一些行，
+     * 恢复后补扫会再加入一次，草图对此不敏感，计数不会重复。
+     */
+    private Mono<Void> persistSnapshot() {
+        if (!ready) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            Snapshot snapshot = sketches.snapshot();
+            if (snapshot.lastId() == persistedId && snapshot.total() == persistedTotal) {
+                return Mono.empty();
+            }
+            DatabaseClient client = template.getDatabaseClient();
+            StringBuilder sql = new StringBuilder("INSERT INTO fingerprint_sketches (dimension, sketch) VALUES ");
+            for (int i = 0; i < FingerprintSketches.DIMENSIONS.size(); i++) {
+                if (i > 0) sql.append(", ");
+                sql.append("(?,?)");
+            }
+            sql.append(" ON DUPLICATE KEY UPDATE sketch = VALUES(sketch)");
+            DatabaseClient.GenericExecuteSpec spec = client.sql(sql.toString());
+            int paramIndex = 0;
+            for (int i = 0; i < FingerprintSketches.DIMENSIONS.size(); i++) {
+                spec = spec.bind(paramIndex++, FingerprintSketches.DIMENSIONS.get(i))
+                        .bind(paramIndex++, snapshot.sketches().get(i));
+            }
+            Mono<Long> state = client.sql("""
+                            INSERT INTO fingerprint_sketch_state
+                              (id, last_id, total, entropy_sum, entropy_count, saved_at)
+                            VALUES (1, ?, ?, ?, ?, ?)
+                            ON DUPLICATE KEY UPDATE last_id = VALUES(last_id), total = VALUES(total),
+                              entropy_sum = VALUES(entropy_sum), entropy_count = VALUES(entropy_count),
+                              saved_at = VALUES(saved_at)
+                            """)
+                    .bind(0, snapshot.lastId())
+                    .bind(1, snapshot.total())
+                    .bind(2, snapshot.entropySum())
+                    .bind(3, snapshot.entropyCount())
+                    .bind(4, System.currentTimeMillis())
+                    .fetch()
+                    .rowsUpdated();
+            return spec.fetch().rowsUpdated()
+                    .then(state)
+                    .doOnSuccess(updated -> {
+                        persistedId = snapshot.lastId();
+                        persistedTotal = snapshot.total();
+                    })
+                    .then();
+        });
+    }
+
+    /** 草图就绪前发出的一条 INSERT；除 saved 外的字段由 FingerprintService 实例锁保护。 */
+    private static final class FallbackInsert {
+        LoadWindow window;
+        boolean finished;
+        volatile BrowserFingerprint saved;
+    }
+
+    /**
+     * 一次加载与加载期间仍在执行的回退 INSERT。这些 INSERT 的行可能在扫描读到之前或之后提交，
+     * 所以只要有 INSERT 加入，两次扫描就记下读到的 id（只记补扫起点之后的，一个 id 一位），
+     * 加载成功后逐条核对，没被读到的才计入，既不漏计也不重复计入。
+     * <p>
+     * members 与 done 由 FingerprintService 实例锁保护，其余由本对象的锁保护。
+     */
+    private static final class LoadWindow {
+        final List<FallbackInsert> members = new ArrayList<>();
+        boolean done;
+
+        private boolean joined;
+        private long floor;
+        private final BitSet sketchIds = new BitSet();
+        private final BitSet occurrenceIds = new BitSet();
+
+        /** 加入的 INSERT 在扫描读到它的行之前就已加入，所以此后才需要记录 id。 */
+        synchronized void joined() {
+            joined = true;
+        }
+
+        /** 补扫起点：回退 INSERT 的 id 都比上次保存的快照里的大。 */
+        synchronized void scanFrom(long lastId) {
+            floor = lastId;
+        }
+
+        synchronized void sketchRowScanned(Long id) {
+            mark(sketchIds, id);
+        }
+
+        synchronized void occurrenceRowScanned(Long id) {
+            mark(occurrenceIds, id);
+        }
+
+        synchronized boolean sketchRowSeen(Long id) {
+            return seen(sketchIds, id);
+        }
+
+        synchronized boolean occurrenceRowSeen(Long id) {
+            return seen(occurrenceIds, id);
+        }
+
+        private void mark(BitSet ids, Long id) {
+            if (joined && id != null && id > floor) {
+                ids.set(Math.toIntExact(id - floor));
+            }
+        }
+
+        private boolean seen(BitSet ids, Long id) {
+            return id != null && id > floor && ids.get(Math.toIntExact(id - floor));
+        }
     }
 
     /**
@@ -145,7 +557,7 @@ public class FingerprintService {
      * @param value 行数据中取出的列值
      * @return 值本身（如果是 Number 实例），否则返回 0
      */
-    private Number number(Object value) {
+    private static Number number(Object value) {
         return value instanceof Number number ? number : 0;
     }
 }
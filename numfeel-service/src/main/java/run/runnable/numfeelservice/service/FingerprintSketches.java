@@ -0,0 +1,169 @@
+package run.runnable.numfeelservice.service;
+
+import run.runnable.numfeelservice.controller.dto.TrackingResponses.BrowserFingerprintStatsResponse;
+import run.runnable.numfeelservice.model.TrackingEntities.BrowserFingerprint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 浏览器指纹全站统计的内存草图：每个维度一个 {@link HyperLogLog} 估算去重数，
+ * 精确的总行数，以及 entropy_bits 的非空计数与和（求均值）。读取 O(1)，与表大小无关。
+ * <p>
+ * 持久化只需保存一份“已结清”的快照：所有 id ≤ settledId 的行都已计入、且 id 更大的行都没有计入
+ * 总数与熵值时的计数器，外加当前的草图。草图对重复加入不敏感，恢复后从 settledId 之后补扫即可，
+ * 总数与熵值不会重复计入。为此记录正在执行的 INSERT 个数，只在没有未完成的 INSERT 时推进 settledId；
+ * 扫描期间也可能有 INSERT 在执行（其结果由调用方在扫描结束后核对），计数在 {@link #reset} / {@link #restore} 之间保留。
+ * <p>
+ * 线程安全。
+ */
+final class FingerprintSketches {
+
+    /** 各维度在持久化表里的名字，顺序即 {@link Row#dimensions} 的顺序。 */
+    static final List<String> DIMENSIONS = List.of(
+            "full_hash", "canvas_hash", "font_hash", "webgl_hash", "timezone", "screen_info", "platform");
+
+    /** 参与统计的列。 */
+    record Row(Long id, String fullHash, String canvasHash, String fontHash, String webglHash,
+               String timezone, String screenInfo, String platform, Double entropyBits) {
+
+        static Row of(BrowserFingerprint f) {
+            return new Row(f.id(), f.fullHash(), f.canvasHash(), f.fontHash(), f.webglHash(),
+                    f.timezone(), f.screenInfo(), f.platform(), f.entropyBits());
+        }
+
+        String[] dimensions() {
+            return new String[]{fullHash, canvasHash, fontHash, webglHash, timezone, screenInfo, platform};
+        }
+    }
+
+    /** 可持久化的快照；sketches 与 {@link #DIMENSIONS} 一一对应。 */
+    record Snapshot(long lastId, long total, double entropySum, long entropyCount, List<byte[]> sketches) {
+    }
+
+    private final HyperLogLog[] sketches = new HyperLogLog[DIMENSIONS.size()];
+    private long total;
+    private double entropySum;
+    private long entropyCount;
+    private long maxId;
+
+    private int pendingInserts;
+    private long settledId;
+    private long settledTotal;
+    private double settledEntropySum;
+    private long settledEntropyCount;
+
+    FingerprintSketches() {
+        reset();
+    }
+
+    /** 清空，回到空表状态；未完成的 INSERT 计数保留。 */
+    synchronized void reset() {
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new HyperLogLog();
+        }
+        total = 0;
+        entropySum = 0;
+        entropyCount = 0;
+        maxId = 0;
+        settle();
+    }
+
+    /** 从快照恢复，未完成的 INSERT 计数保留；之后应补扫 id > {@link Snapshot#lastId} 的行。 */
+    synchronized void restore(Snapshot snapshot) {
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = HyperLogLog.fromBytes(snapshot.sketches().get(i));
+        }
+        total = snapshot.total();
+        entropySum = snapshot.entropySum();
+        entropyCount = snapshot.entropyCount();
+        maxId = snapshot.lastId();
+        settle();
+    }
+
+    /** 计入初始扫描读到的一行；有 INSERT 未完成时不推进 settledId。 */
+    synchronized void scanned(Row row) {
+        add(row);
+        if (pendingInserts == 0) {
+            settle();
+        }
+    }
+
+    /** 一条 INSERT 开始执行，结束时必须调用 {@link #inserted} 或 {@link #abandoned} 之一。 */
+    synchronized void beginInsert() {
+        pendingInserts++;
+    }
+
+    /** INSERT 成功，计入这一行，返回计入后的总行数。 */
+    synchronized long inserted(Row row) {
+        add(row);
+        if (--pendingInserts == 0) {
+            settle();
+        }
+        return total;
+    }
+
+    /** INSERT 失败或被取消。 */
+    synchronized void abandoned() {
+        if (--pendingInserts == 0) {
+            settle();
+        }
+    }
+
+    synchronized long total() {
+        return total;
+    }
+
+    /** 已结清的快照，用于持久化。 */
+    synchronized Snapshot snapshot() {
+        List<byte[]> bytes = new ArrayList<>(sketches.length);
+        for (HyperLogLog sketch : sketches) {
+            bytes.add(sketch.toBytes());
+        }
+        return new Snapshot(settledId, settledTotal, settledEntropySum, settledEntropyCount, List.copyOf(bytes));
+    }
+
+    /** 当前统计；各 unique* 为估算值，相对标准误差见 {@link HyperLogLog#standardError}。 */
+    synchronized BrowserFingerprintStatsResponse stats() {
+        long uniqueFull = sketches[0].estimate();
+        double avgVisits = uniqueFull > 0 ? ServiceSupport.round((double) total / uniqueFull, 2) : 0;
+        double avgEntropy = entropyCount > 0 ? entropySum / entropyCount : 0;
+        return new BrowserFingerprintStatsResponse(
+                total,
+                uniqueFull,
+                avgVisits,
+                sketches[1].estimate(),
+                sketches[2].estimate(),
+                sketches[3].estimate(),
+                sketches[4].estimate(),
+                sketches[5].estimate(),
+                sketches[6].estimate(),
+                ServiceSupport.round(avgEntropy, 2),
+                ServiceSupport.round(HyperLogLog.standardError(), 4));
+    }
+
+    private void add(Row row) {
+        String[] values = row.dimensions();
+        for (int i = 0; i < values.length; i++) {
+            // 与 COUNT(DISTINCT ...) 一致：NULL 不计入
+            if (values[i] != null) {
+                sketches[i].add(values[i]);
+            }
+        }
+        total++;
+        if (row.entropyBits() != null) {
+            entropySum += row.entropyBits();
+            entropyCount++;
+        }
+        if (row.id() != null && row.id() > maxId) {
+            maxId = row.id();
+        }
+    }
+
+    private void settle() {
+        settledId = maxId;
+        settledTotal = total;
+        settledEntropySum = entropySum;
+        settledEntropyCount = entropyCount;
+    }
+}
@@ -2,6 +2,7 @@ package run.runnable.numfeelservice.service;
 
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.GameOfLifePatternStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.GameOfLifePattern;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
@@ -20,9 +21,11 @@ public class GameOfLifeService {
     private static final Logger log = LoggerFactory.getLogger(GameOfLifeService.class);
 
     private final R2dbcEntityTemplate template;
+    private final BatchInsertBuffer<GameOfLifePattern> inserts;
 
     public GameOfLifeService(R2dbcEntityTemplate template) {
         this.template = template;
+        this.inserts = new BatchInsertBuffer<>(template, GameOfLifePattern.class);
     }
 
     /**
@@ -41,7 +44,7 @@ public class GameOfLifeService {
         GameOfLifePattern entity = new GameOfLifePattern(
                 null, patternKey, gridData, gridCols, gridRows,
                 description != null ? description : "", System.currentTimeMillis());
-        return template.insert(GameOfLifePattern.class).using(entity).then(getStats());
+        return inserts.insert(entity).then(getStats());
     }
 
     /**
@@ -80,4 +83,9 @@ public class GameOfLifeService {
     private Number number(Object value) {
         return value instanceof Number n ? n : 0;
     }
+
+    @PreDestroy
+    void drain() {
+        inserts.drain();
+    }
 }
@@ -5,6 +5,7 @@ import tools.jackson.databind.ObjectMapper;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.GooseDuckQuestionRate;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.GooseDuckStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.GooseDuckResult;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
@@ -26,10 +27,16 @@ public class GooseDuckService {
     private static final int TOTAL_QUESTIONS = 10;
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<GooseDuckResult> aggregates;
+    private final LiveAggregates.Summary<GooseDuckResult> score;
+    /** [0] 为每题答对人数，[1] 为每题作答人数；answers JSON 只在行入库时解析一次。 */
+    private final LiveAggregates.Fold<GooseDuckResult, int[][]> perQuestion;
 
     public GooseDuckService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<GooseDuckResult> builder = LiveAggregates.builder(template, GooseDuckResult.class);
+        this.score = builder.summary(GooseDuckResult::correctCount);
+        this.perQuestion = builder.fold(() -> new int[2][TOTAL_QUESTIONS], GooseDuckService::accumulateAnswers);
+        this.aggregates = builder.build();
     }
 
     /** 提交一次测评结果。 */
@@ -41,58 +48,62 @@ public class GooseDuckService {
                 answersJson,
                 System.currentTimeMillis()
         );
-        return template.insert(GooseDuckResult.class).using(entity).then();
+        return aggregates.insert(entity).then();
     }
 
     /** 查询全局统计。 */
     public Mono<GooseDuckStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, GooseDuckResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
-    private GooseDuckStatsResponse toStatsResponse(List<GooseDuckResult> rows) {
-        if (rows.isEmpty()) {
+    private GooseDuckStatsResponse toStatsResponse() {
+        long totalPlayers = aggregates.count();
+        if (totalPlayers == 0) {
             return new GooseDuckStatsResponse(0, 0, 0, List.of());
         }
 
-        long totalPlayers = rows.size();
-        double avgScore = rows.stream().mapToInt(GooseDuckResult::correctCount).average().orElse(0);
+        double avgScore = score.mean();
         double avgAccuracy = avgScore / TOTAL_QUESTIONS;
 
-        // 计算每题正确率
-        int[] questionCorrect = new int[TOTAL_QUESTIONS];
-        int[] questionTotal = new int[TOTAL_QUESTIONS];
-
-        for (GooseDuckResult row : rows) {
-            try {
-                JsonNode answers = MAPPER.readTree(row.answers());
-                if (answers != null && answers.isArray()) {
-                    for (JsonNode ans : answers) {
-                        int qId = ans.get("questionId").asInt() - 1;
-                        if (qId >= 0 && qId < TOTAL_QUESTIONS) {
-                            questionTotal[qId]++;
-                            if (ans.get("correct").asBoolean()) {
-                                questionCorrect[qId]++;
-                            }
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                log.debug("Failed to parse answers JSON for row {}", row.id(), e);
-            }
-        }
-
-        List<GooseDuckQuestionRate> perQuestion = new ArrayList<>(TOTAL_QUESTIONS);
+        // 每题正确率
+        int[] questionCorrect = perQuestion.get()[0];
+        int[] questionTotal = perQuestion.get()[1];
+        List<GooseDuckQuestionRate> rates = new ArrayList<>(TOTAL_QUESTIONS);
         for (int i = 0; i < TOTAL_QUESTIONS; i++) {
             double rate = questionTotal[i] > 0 ? (double) questionCorrect[i] / questionTotal[i] : 0;
-            perQuestion.add(new GooseDuckQuestionRate(i + 1, ServiceSupport.round(rate, 3)));
+            rates.add(new GooseDuckQuestionRate(i + 1, ServiceSupport.round(rate, 3)));
         }
 
         return new GooseDuckStatsResponse(
                 totalPlayers,
                 ServiceSupport.round(avgScore, 1),
                 ServiceSupport.round(avgAccuracy, 3),
-                perQuestion
+                rates
         );
     }
+
+    /** 把一行的逐题作答累加进 [答对人数, 作答人数]。 */
+    private static void accumulateAnswers(int[][] counts, GooseDuckResult row) {
+        try {
+            JsonNode answers = MAPPER.readTree(row.answers());
+            if (answers != null && answers.isArray()) {
+                for (JsonNode ans : answers) {
+                    int qId = ans.get("questionId").asInt() - 1;
+                    if (qId >= 0 && qId < TOTAL_QUESTIONS) {
+                        counts[1][qId]++;
+                        if (ans.get("correct").asBoolean()) {
+                            counts[0][qId]++;
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Failed to parse answers JSON for row {}", row.id(), e);
+        }
+    }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
@@ -0,0 +1,63 @@
+package run.runnable.numfeelservice.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 共用的 SHA-256 摘要与十六进制编码。
+ * <p>
+ * 每个线程复用一个 {@link MessageDigest}（{@code digest()} 之后自动重置，可直接用于下一次），
+ * 不再每次 {@code getInstance} 走一遍 Provider 查找；十六进制按查表编码成 Latin-1 字节再构造字符串，
+ * 不经过 {@code Integer.toHexString} / {@code String.format} 的逐字节临时对象。输出与原先各处的手写实现逐字符相同（小写）。
+ */
+public final class Hashing {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(Hashing::newSha256);
+
+    private Hashing() {
+    }
+
+    /** 当前线程的 SHA-256 实例。调用方须以 {@code digest()} 结束，保证下一次拿到的是干净状态。 */
+    static MessageDigest sha256Digest() {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest;
+    }
+
+    /** SHA-256(UTF-8(input)) 的原始字节。 */
+    public static byte[] sha256(String input) {
+        return sha256Digest().digest(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** SHA-256(UTF-8(input)) 的 64 位小写十六进制。 */
+    public static String sha256Hex(String input) {
+        return hex(sha256(input));
+    }
+
+    /** 全部字节的小写十六进制。 */
+    public static String hex(byte[] bytes) {
+        return hex(bytes, bytes.length);
+    }
+
+    /** 前 count 个字节的小写十六进制（2 × count 个字符）。 */
+    public static String hex(byte[] bytes, int count) {
+        byte[] out = new byte[count * 2];
+        for (int i = 0; i < count; i++) {
+            int b = bytes[i] & 0xff;
+            out[2 * i] = HEX[b >>> 4];
+            out[2 * i + 1] = HEX[b & 0x0f];
+        }
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
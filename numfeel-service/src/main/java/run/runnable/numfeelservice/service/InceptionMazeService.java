@@ -4,6 +4,7 @@ import run.runnable.numfeelservice.controller.dto.GameplayRequests.InceptionMaze
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.InceptionMazeStatsResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.InceptionMazeSubmitResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.InceptionMazeResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -17,10 +18,26 @@ import java.util.Map;
 @Service
 public class InceptionMazeService {
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<InceptionMazeResult> aggregates;
+    private final LiveAggregates.Summary<InceptionMazeResult> detourRatio;
+    private final LiveAggregates.Summary<InceptionMazeResult> pathLength;
+    private final LiveAggregates.Summary<InceptionMazeResult> wallCount;
+    /** 0-5 层梦境各自的样本数。 */
+    private final LiveAggregates.Fold<InceptionMazeResult, long[]> levels;
+    private final LiveAggregates.DoubleRank<InceptionMazeResult> detourRank;
 
     public InceptionMazeService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<InceptionMazeResult> builder = LiveAggregates.builder(template, InceptionMazeResult.class);
+        this.detourRatio = builder.summary(InceptionMazeResult::detourRatio);
+        this.pathLength = builder.summary(InceptionMazeResult::pathLength);
+        this.wallCount = builder.summary(InceptionMazeResult::wallCount);
+        this.levels = builder.fold(() -> new long[6], (counts, row) -> {
+            if (row.dreamLevel() >= 0 && row.dreamLevel() <= 5) {
+                counts[row.dreamLevel()]++;
+            }
+        });
+        this.detourRank = builder.rank(InceptionMazeResult::detourRatio);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -42,22 +59,19 @@ public class InceptionMazeService {
                 System.currentTimeMillis()
         );
 
-        return template.insert(InceptionMazeResult.class)
-                .using(entity)
-                .then(ServiceSupport.selectAll(template, InceptionMazeResult.class))
-                .map(rows -> toSubmitResponse(rows, detourRatio));
+        return aggregates.insert(entity)
+                .then(aggregates.read(() -> toSubmitResponse(detourRatio)));
     }
 
     /** 查询筑梦迷宫全局统计，包括绕路系数、路径长度与梦境层级分布。 */
     public Mono<InceptionMazeStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, InceptionMazeResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /** 根据绕路系数计算当前结果的历史排名和百分位。 */
-    private InceptionMazeSubmitResponse toSubmitResponse(java.util.List<InceptionMazeResult> rows, double detourRatio) {
-        long rank = rows.stream().filter(row -> row.detourRatio() < detourRatio).count() + 1;
-        long total = rows.size();
+    private InceptionMazeSubmitResponse toSubmitResponse(double detourRatio) {
+        long rank = detourRank.countBelow(detourRatio) + 1;
+        long total = aggregates.count();
         int percentile = total > 1
                 ? (int) Math.round((1.0 - (double) rank / total) * 100.0)
                 : 50;
@@ -65,23 +79,23 @@ public class InceptionMazeService {
     }
 
     /** 聚合样本均值与分布数据，供前端概览卡片和分布图使用。 */
-    private InceptionMazeStatsResponse toStatsResponse(java.util.List<InceptionMazeResult> rows) {
+    private InceptionMazeStatsResponse toStatsResponse() {
         return new InceptionMazeStatsResponse(
-                rows.size(),
-                round2(rows.stream().mapToDouble(InceptionMazeResult::detourRatio).average().orElse(0)),
-                round2(rows.stream().mapToDouble(InceptionMazeResult::detourRatio).max().orElse(0)),
-                round1(rows.stream().mapToInt(InceptionMazeResult::pathLength).average().orElse(0)),
-                round1(rows.stream().mapToInt(InceptionMazeResult::wallCount).average().orElse(0)),
-                buildLevelDistribution(rows)
+                aggregates.count(),
+                round2(detourRatio.mean()),
+                round2(detourRatio.max()),
+                round1(pathLength.mean()),
+                round1(wallCount.mean()),
+                buildLevelDistribution()
         );
     }
 
-    /** 统计 0-5 层梦境样本数量，保持固定顺序返回。 */
-    private Map<String, Long> buildLevelDistribution(java.util.List<InceptionMazeResult> rows) {
+    /** 0-5 层梦境样本数量，保持固定顺序返回。 */
+    private Map<String, Long> buildLevelDistribution() {
         Map<String, Long> levelDist = new LinkedHashMap<>();
+        long[] counts = levels.get();
         for (int i = 0; i <= 5; i++) {
-            int level = i;
-            levelDist.put(String.valueOf(i), rows.stream().filter(row -> row.dreamLevel() == level).count());
+            levelDist.put(String.valueOf(i), counts[i]);
         }
         return levelDist;
     }
@@ -93,4 +107,9 @@ public class InceptionMazeService {
     private double round2(double value) {
         return ServiceSupport.round(value, 2);
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
@@ -4,6 +4,7 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.InferenceLea
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.InferenceLeaderboardSubmitResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.InferenceLeaderboardTopResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.InferenceLeaderboardEntry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -18,10 +19,22 @@ import java.util.List;
 @Service
 public class InferenceLeaderboardService {
 
-    private final R2dbcEntityTemplate template;
+    /** 排行榜可查询的最大条数。 */
+    private static final int MAX_TOP = 50;
+
+    private final LiveAggregates<InferenceLeaderboardEntry> aggregates;
+    private final LiveAggregates.IntRank<InferenceLeaderboardEntry> scoreRank;
+    private final LiveAggregates.TopK<InferenceLeaderboardEntry> leaders;
 
     public InferenceLeaderboardService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<InferenceLeaderboardEntry> builder =
+                LiveAggregates.builder(template, InferenceLeaderboardEntry.class);
+        this.scoreRank = builder.rank(InferenceLeaderboardEntry::score, 0, 600);
+        this.leaders = builder.top(MAX_TOP,
+                Comparator.comparingInt(InferenceLeaderboardEntry::score).reversed()
+                        .thenComparingLong(InferenceLeaderboardEntry::createdAt),
+                row -> true);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -37,39 +50,27 @@ public class InferenceLeaderboardService {
     public Mono<InferenceLeaderboardSubmitResponse> submit(String name, int score, int rounds, int wins, String grade) {
         InferenceLeaderboardEntry entity = new InferenceLeaderboardEntry(
                 null, name, score, rounds, wins, grade, System.currentTimeMillis());
-        return template.insert(InferenceLeaderboardEntry.class)
-                .using(entity)
-                .then(ServiceSupport.selectAll(template, InferenceLeaderboardEntry.class))
-                .map(rows -> new InferenceLeaderboardSubmitResponse(name, score, rounds, wins, grade, rankByScore(rows, score)));
+        return aggregates.insert(entity)
+                .then(aggregates.read(() -> new InferenceLeaderboardSubmitResponse(
+                        name, score, rounds, wins, grade, scoreRank.countAbove(score) + 1)));
     }
 
     /** 查询排行榜前 N 名，按得分优先、提交时间次序排序。 */
     public Mono<InferenceLeaderboardTopResponse> top(int limit) {
-        int safeLimit = ServiceSupport.clampLimit(limit, 1, 50);
-        return ServiceSupport.selectAll(template, InferenceLeaderboardEntry.class)
-                .map(rows -> toTopResponse(rows, safeLimit));
+        int safeLimit = ServiceSupport.clampLimit(limit, 1, MAX_TOP);
+        return aggregates.read(() -> toTopResponse(leaders.first(safeLimit), aggregates.count()));
     }
 
     /** 清空排行榜记录，供管理接口或测试场景使用。 */
     public Mono<Void> clear() {
-        return template.delete(InferenceLeaderboardEntry.class).all().then();
-    }
-
-    /** 按得分计算当前成绩名次，高分在前。 */
-    private long rankByScore(List<InferenceLeaderboardEntry> rows, int score) {
-        return rows.stream().filter(row -> row.score() > score).count() + 1;
+        return aggregates.deleteAll();
     }
 
     /** 构建前端排行榜列表，附带总样本数。 */
-    private InferenceLeaderboardTopResponse toTopResponse(List<InferenceLeaderboardEntry> rows, int limit) {
-        List<InferenceLeaderboardEntry> sortedRows = ServiceSupport.sorted(
-                rows,
-                Comparator.comparingInt(InferenceLeaderboardEntry::score).reversed()
-                        .thenComparingLong(InferenceLeaderboardEntry::createdAt)
-        );
+    private InferenceLeaderboardTopResponse toTopResponse(List<InferenceLeaderboardEntry> rows, long total) {
         List<InferenceLeaderboardLeader> leaders = new ArrayList<>();
         int rank = 1;
-        for (InferenceLeaderboardEntry row : sortedRows.stream().limit(limit).toList()) {
+        for (InferenceLeaderboardEntry row : rows) {
             leaders.add(new InferenceLeaderboardLeader(
                     row.name(),
                     row.score(),
@@ -79,6 +80,11 @@ public class InferenceLeaderboardService {
                     rank++
             ));
         }
-        return new InferenceLeaderboardTopResponse(leaders, rows.size());
+        return new InferenceLeaderboardTopResponse(leaders, total);
+    }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
     }
 }
@@ -10,6 +10,7 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.IowaGambling
 import run.runnable.numfeelservice.model.GameplayEntities.IowaGamblingLeaderboardRecord;
 import run.runnable.numfeelservice.model.GameplayEntities.IowaGamblingResult;
 import tools.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
@@ -17,15 +18,11 @@ import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -65,15 +62,68 @@ public class IowaGamblingService {
             .maximumSize(10000)
             .build();
 
-    private final R2dbcEntityTemplate template;
+    /** 按位置累加的整数数组均值：第 i 位只在长度大于 i 的数组间平均。 */
+    private static final class PositionalMean {
+        private long[] sums = new long[4];
+        private long[] counts = new long[4];
+        private int length;
+
+        void add(List<Integer> values) {
+            if (values.size() > sums.length) {
+                sums = Arrays.copyOf(sums, Math.max(values.size(), sums.length * 2));
+                counts = Arrays.copyOf(counts, sums.length);
+            }
+            for (int i = 0; i < values.size(); i++) {
+                sums[i] += values.get(i);
+                counts[i]++;
+            }
+            length = Math.max(length, values.size());
+        }
+
+        /** 前 size 位的均值（保留一位小数），没有样本的位置为 0。 */
+        List<Double> means(int size) {
+            List<Double> avg = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                avg.add(i < length && counts[i] > 0 ? ServiceSupport.round((double) sums[i] / counts[i], 1) : 0.0);
+            }
+            return avg;
+        }
+    }
+
+    private static final Comparator<IowaGamblingLeaderboardRecord> LEADERBOARD_ORDER =
+            Comparator.comparingInt(IowaGamblingLeaderboardRecord::netScore).reversed()
+                    .thenComparingLong(IowaGamblingLeaderboardRecord::createdAt);
+
     private final DatabaseClient databaseClient;
     private final TurnstileVerifier turnstileVerifier;
+    private final LiveAggregates<IowaGamblingResult> results;
+    private final LiveAggregates.Summary<IowaGamblingResult> netScore;
+    private final LiveAggregates.Summary<IowaGamblingResult> finalMoney;
+    private final LiveAggregates.Counter<IowaGamblingResult> bankrupts;
+    private final LiveAggregates.Fold<IowaGamblingResult, PositionalMean> deckPicks;
+    private final LiveAggregates.Fold<IowaGamblingResult, PositionalMean> blockScores;
+    private final LiveAggregates<IowaGamblingLeaderboardRecord> leaderboard;
+    private final LiveAggregates.BestByKey<IowaGamblingLeaderboardRecord, String> bestByUser;
 
     public IowaGamblingService(R2dbcEntityTemplate template, DatabaseClient databaseClient,
                                TurnstileVerifier turnstileVerifier) {
-        this.template = template;
         this.databaseClient = databaseClient;
         this.turnstileVerifier = turnstileVerifier;
+        LiveAggregates.Builder<IowaGamblingResult> builder = LiveAggregates.builder(template, IowaGamblingResult.class);
+        this.netScore = builder.summary(IowaGamblingResult::netScore);
+        this.finalMoney = builder.summary(IowaGamblingResult::finalMoney);
+        this.bankrupts = builder.count(IowaGamblingResult::bankrupt);
+        // JSON 数组在行入库时解析一次，之后读统计不再重复解析
+        this.deckPicks = builder.fold(PositionalMean::new,
+                (mean, row) -> mean.add(parseJsonArray(row.deckPicks(), 4)));
+        this.blockScores = builder.fold(PositionalMean::new,
+                (mean, row) -> mean.add(parseJsonArray(row.blockScores(), 0)));
+        this.results = builder.build();
+        LiveAggregates.Builder<IowaGamblingLeaderboardRecord> boardBuilder =
+                LiveAggregates.builder(template, IowaGamblingLeaderboardRecord.class);
+        this.bestByUser = boardBuilder.bestBy(IowaGamblingLeaderboardRecord::username,
+                IowaGamblingLeaderboardRecord::netScore);
+        this.leaderboard = boardBuilder.build();
     }
 
     /**
@@ -93,7 +143,7 @@ public class IowaGamblingService {
         IowaGamblingResult entity = new IowaGamblingResult(
                 null, sessionId, totalRounds, finalMoney, netScore,
                 bankrupt, deckPicks, blockScores, System.currentTimeMillis());
-        return template.insert(IowaGamblingResult.class).using(entity).then();
+        return results.insert(entity).then();
     }
 
     /**
@@ -102,56 +152,19 @@ public class IowaGamblingService {
      * @return 聚合统计响应
      */
     public Mono<IowaGamblingStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, IowaGamblingResult.class)
-                .map(rows -> {
-                    if (rows.isEmpty()) {
-                        return new IowaGamblingStatsResponse(0, 0, 0, 0, List.of(), List.of());
-                    }
-                    long total = rows.size();
-                    double avgNet = ServiceSupport.round(
-                            rows.stream().mapToInt(IowaGamblingResult::netScore).average().orElse(0), 1);
-                    double avgMoney = ServiceSupport.round(
-                            rows.stream().mapToInt(IowaGamblingResult::finalMoney).average().orElse(0), 1);
-                    double bankruptRate = ServiceSupport.round(
-                            rows.stream().filter(IowaGamblingResult::bankrupt).count() / (double) total, 2);
-
-                    List<Double> avgPicks = averageDeckPicks(rows);
-                    List<Double> avgBlocks = averageBlockScores(rows);
-                    return new IowaGamblingStatsResponse(total, avgNet, avgMoney, bankruptRate, avgPicks, avgBlocks);
-                });
-    }
-
-    private List<Double> averageDeckPicks(List<IowaGamblingResult> rows) {
-        List<Double> avg = new ArrayList<>();
-        for (int i = 0; i < 4; i++) {
-            final int idx = i;
-            double v = ServiceSupport.round(
-                    rows.stream()
-                            .map(r -> parseJsonArray(r.deckPicks(), 4))
-                            .filter(l -> l.size() > idx)
-                            .mapToInt(l -> l.get(idx))
-                            .average().orElse(0), 1);
-            avg.add(v);
-        }
-        return avg;
-    }
-
-    private List<Double> averageBlockScores(List<IowaGamblingResult> rows) {
-        int maxLen = rows.stream()
-                .mapToInt(r -> parseJsonArray(r.blockScores(), 0).size())
-                .max().orElse(0);
-        List<Double> avg = new ArrayList<>();
-        for (int i = 0; i < maxLen; i++) {
-            final int idx = i;
-            double v = ServiceSupport.round(
-                    rows.stream()
-                            .map(r -> parseJsonArray(r.blockScores(), 0))
-                            .filter(l -> l.size() > idx)
-                            .mapToInt(l -> l.get(idx))
-                            .average().orElse(0), 1);
-            avg.add(v);
-        }
-        return avg;
+        return results.read(() -> {
+            long total = results.count();
+            if (total == 0) {
+                return new IowaGamblingStatsResponse(0, 0, 0, 0, List.of(), List.of());
+            }
+            double avgNet = ServiceSupport.round(netScore.mean(), 1);
+            double avgMoney = ServiceSupport.round(finalMoney.mean(), 1);
+            double bankruptRate = ServiceSupport.round(bankrupts.get() / (double) total, 2);
+
+            List<Double> avgPicks = deckPicks.get().means(4);
+            List<Double> avgBlocks = blockScores.get().means(blockScores.get().length);
+            return new IowaGamblingStatsResponse(total, avgNet, avgMoney, bankruptRate, avgPicks, avgBlocks);
+        });
     }
 
     /**
@@ -178,15 +191,14 @@ public class IowaGamblingService {
     /**
      * 查询净分数排行榜（按用户名去重，每人取最高净分数）。
      * <p>
-     * 数据量小，直接全量加载后在内存中去重排序，保证逻辑简单可靠。
+     * 每人最高的一条记录常驻内存并随提交增量更新，查询时只在去重后的记录里取前 N 名。
      *
      * @param limit 返回条数（1~50，超出自动收敛）
      * @return 排行榜响应，含榜单与上榜总人数
      */
     public Mono<IowaGamblingLeaderboardResponse> leaderboard(int limit) {
         int safeLimit = ServiceSupport.clampLimit(limit, 1, 50);
-        return ServiceSupport.selectAll(template, IowaGamblingLeaderboardRecord.class)
-                .map(rows -> buildLeaderboardResponse(rows, safeLimit));
+        return leaderboard.read(() -> buildLeaderboardResponse(safeLimit));
     }
 
     /**
@@ -254,10 +266,8 @@ public class IowaGamblingService {
                     lastSubmitAt.put(username, now);
                 }))
                 // 惰性构建 insert 链：验证失败时不应触碰数据库
-                .then(Mono.defer(() -> template.insert(IowaGamblingLeaderboardRecord.class)
-                        .using(entity)
-                        .then(ServiceSupport.selectAll(template, IowaGamblingLeaderboardRecord.class))
-                        .map(rows -> computeRanks(rows, username))));
+                .then(Mono.defer(() -> leaderboard.insert(entity)))
+                .then(Mono.defer(() -> leaderboard.read(() -> computeRanks(username))));
     }
 
     // ── PoW 验证 ──────────────────────────────────────────────────────
@@ -314,56 +324,34 @@ public class IowaGamblingService {
 
     /** 计算 SHA-256 哈希。 */
     static String sha256(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder(64);
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 not available", e);
-        }
+        return Hashing.sha256Hex(input);
     }
 
     // ── 私有辅助方法 ──────────────────────────────────────────────────
 
     /** 计算当前用户名最佳成绩在榜单中的名次。 */
-    private IowaGamblingLeaderboardSubmitResponse computeRanks(
-            List<IowaGamblingLeaderboardRecord> rows, String username) {
-        Map<String, Integer> bestByUser = new HashMap<>();
-        for (IowaGamblingLeaderboardRecord r : rows) {
-            bestByUser.merge(r.username(), r.netScore(), Math::max);
-        }
-        int myBest = bestByUser.getOrDefault(username, Integer.MIN_VALUE);
-        long rank = bestByUser.values().stream().filter(v -> v > myBest).count() + 1;
-        return new IowaGamblingLeaderboardSubmitResponse((int) rank, bestByUser.size());
+    private IowaGamblingLeaderboardSubmitResponse computeRanks(String username) {
+        IowaGamblingLeaderboardRecord myBest = bestByUser.best(username);
+        long rank = bestByUser.countAbove(myBest != null ? myBest.netScore() : Integer.MIN_VALUE) + 1;
+        return new IowaGamblingLeaderboardSubmitResponse((int) rank, bestByUser.keys());
     }
 
     /** 构建排行榜响应（按用户名去重，各取最高净分数那条记录）。 */
-    private IowaGamblingLeaderboardResponse buildLeaderboardResponse(
-            List<IowaGamblingLeaderboardRecord> rows, int limit) {
-        Map<String, IowaGamblingLeaderboardRecord> bestByUser = new HashMap<>();
-        for (IowaGamblingLeaderboardRecord r : rows) {
-            bestByUser.merge(r.username(), r,
-                    (a, b) -> a.netScore() >= b.netScore() ? a : b);
-        }
-        List<IowaGamblingLeaderboardRecord> sorted = ServiceSupport.sorted(
-                new ArrayList<>(bestByUser.values()),
-                Comparator.comparingInt(IowaGamblingLeaderboardRecord::netScore).reversed()
-                        .thenComparingLong(IowaGamblingLeaderboardRecord::createdAt));
-
+    private IowaGamblingLeaderboardResponse buildLeaderboardResponse(int limit) {
         List<IowaGamblingLeaderboardEntry> leaders = new ArrayList<>();
         int rank = 1;
-        for (IowaGamblingLeaderboardRecord e : sorted.stream().limit(limit).toList()) {
+        for (IowaGamblingLeaderboardRecord e : bestByUser.top(limit, LEADERBOARD_ORDER)) {
             leaders.add(new IowaGamblingLeaderboardEntry(
                     rank++, e.username(), e.netScore(), e.finalMoney(),
                     e.bankrupt(), e.totalRounds(), e.createdAt()));
         }
-        return new IowaGamblingLeaderboardResponse(leaders, bestByUser.size());
+        return new IowaGamblingLeaderboardResponse(leaders, bestByUser.keys());
+    }
+
+    @PreDestroy
+    void drain() {
+        results.drain();
+        leaderboard.drain();
     }
 
     record ChallengeState(long expiresAt) {
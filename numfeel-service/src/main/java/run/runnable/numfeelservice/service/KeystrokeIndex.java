@@ -0,0 +1,581 @@
+package run.runnable.numfeelservice.service;
+
+import run.runnable.numfeelservice.model.GameplayEntities.KeystrokeProfile;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 常驻内存的键盘节奏特征索引：每个样本的 hold / interval 序列只在入索引时解析一次，
+ * 按列（struct-of-arrays）压进连续的 {@code float[]}，并缓存前缀平方和（用于范数下界）。
+ * <p>
+ * 最近邻查询是一次顺序内存扫描：
+ * <ul>
+ *   <li>先用 |‖x‖ − ‖y‖| ≤ ‖x − y‖ 的范数下界 O(1) 排除不可能更近的样本；</li>
+ *   <li>再逐维累加平方差，部分和已经超过当前最优时提前放弃（early abandon）。</li>
+ * </ul>
+ * 距离口径与 {@link KeystrokeService} 原先逐对比较完全一致（hold /200、interval /500，权重 0.6 / 0.4，
+ * 两段各自截断到较短长度）。非线程安全，由调用方加锁（{@link LiveAggregates} 的 fold 即在锁内调用）；
+ * 例外是 {@link Lookup#run} 与 {@link AnnReportRun#run}，它们只读准备时截下的列（及近似索引）快照，
+ * 耗时与样本总数成正比的扫描都在锁外执行。
+ * <p>
+ * 全站统计在每次写入后首次读取时重算一次（{@link #totals}）；每个 session 的最近邻结果带备忘（{@link #nearestCached}），
+ * 之后只需与新加入的样本比较。
+ * <p>
+ * 构造时给出 annEpsilon / annMaxChecks 则同时维护 {@link KeystrokeVpForest}，{@link #nearestApprox} 走近似查询。
+ */
+final class KeystrokeIndex {
+
+    /** 匹配结果：到最近 session 的距离（未取整，无法计算时为 -1）及其最近提交时间戳。 */
+    record Match(double distance, long lastSeenAt) {
+        static final Match NONE = new Match(-1, -1);
+    }
+
+    /** 全站统计快照：样本总数、平均整句耗时（取整）、平均 hold / interval（1 位小数）。 */
+    record Totals(long samples, double avgTotalMs, double avgHoldMs, double avgIntervalMs) {
+    }
+
+    private static final double HOLD_SCALE = 200.0;
+    private static final double INTERVAL_SCALE = 500.0;
+    private static final double HOLD_WEIGHT = 0.6;
+    private static final double INTERVAL_WEIGHT = 0.4;
+
+    // ── 每个样本一格 ──
+    private int size;
+    private int[] sessionOf = new int[64];
+    private int[] holdStart = new int[64];
+    private int[] holdLength = new int[64];
+    private int[] intervalStart = new int[64];
+    private int[] intervalLength = new int[64];
+    /** 同一 session 的上一个样本（-1 表示没有），与 {@link #sessionHead} 组成按 session 的链表。 */
+    private int[] prevInSession = new int[64];
+
+    // ── 所有样本的特征首尾相接 ──
+    private final FeatureColumn holds;
+    private final FeatureColumn intervals;
+
+    // ── 每个 session 一格 ──
+    private final Map<String, Integer> sessionIds = new HashMap<>();
+    private long[] sessionLastSeen = new long[16];
+    private int[] sessionSamples = new int[16];
+    private int[] sessionHead = new int[16];
+    /** 最近邻备忘：计算时的样本总数（-1 表示没有）、当时本 session 的样本数、结果。 */
+    private int[] memoStamp = new int[16];
+    private int[] memoSamples = new int[16];
+    private int[] memoSession = new int[16];
+    private double[] memoDistance = new double[16];
+
+    private long holdValueSum;
+    private long holdValueCount;
+    private long intervalValueSum;
+    private long intervalValueCount;
+    private long totalMsSum;
+    /** 最近一次 {@link #totals} 的结果，写入后置空。 */
+    private Totals totals;
+
+    /** 近似最近邻索引；未开启时为 null。 */
+    private final KeystrokeVpForest forest;
+
+    /** 只支持精确查询的索引。 */
+    KeystrokeIndex() {
+        this.holds = new FeatureColumn();
+        this.intervals = new FeatureColumn();
+        this.forest = null;
+    }
+
+    /**
+     * 同时维护近似最近邻索引。
+     *
+     * @param annEpsilon   近似系数 ε：预算不限时返回的距离不超过真实最近距离的 (1 + ε) 倍（同长度样本之间）
+     * @param annMaxChecks 每个查询样本最多计算的距离次数，见 {@link KeystrokeVpForest}
+     */
+    KeystrokeIndex(double annEpsilon, int annMaxChecks) {
+        this.holds = new FeatureColumn();
+        this.intervals = new FeatureColumn();
+        this.forest = new KeystrokeVpForest(this, annEpsilon, annMaxChecks);
+    }
+
+    /**
+     * source 当前样本列的只读快照，只用于 {@link #scan} 与近似查询：与 source 共享数组，不复制数据。
+     * 样本列只在末尾追加（扩容时换成新数组），[0, size) 内的内容之后不会再被改写。
+     * withForest 时连同近似索引一起复制（树共享，只复制各组的树列表与缓冲区）。
+     */
+    private KeystrokeIndex(KeystrokeIndex source, boolean withForest) {
+        this.size = source.size;
+        this.sessionOf = source.sessionOf;
+        this.holdStart = source.holdStart;
+        this.holdLength = source.holdLength;
+        this.intervalStart = source.intervalStart;
+        this.intervalLength = source.intervalLength;
+        this.holds = source.holds.snapshot();
+        this.intervals = source.intervals.snapshot();
+        this.forest = withForest && source.forest != null ? source.forest.snapshot(this) : null;
+    }
+
+    /** 由一组样本构建索引。 */
+    static KeystrokeIndex of(List<KeystrokeProfile> rows) {
+        KeystrokeIndex index = new KeystrokeIndex();
+        rows.forEach(index::add);
+        return index;
+    }
+
+    /** 加入一个样本：解析一次 JSON，追加到各列。 */
+    void add(KeystrokeProfile row) {
+        int session = sessionIds.computeIfAbsent(row.sessionId(), k -> newSession());
+        sessionSamples[session]++;
+        sessionLastSeen[session] = Math.max(sessionLastSeen[session], row.createdAt());
+
+        List<Integer> h = KeystrokeService.parseList(row.holdTimes());
+        List<Integer> iv = KeystrokeService.parseList(row.intervals());
+        for (int v : h) {
+            holdValueSum += v;
+        }
+        for (int v : iv) {
+            intervalValueSum += v;
+        }
+        holdValueCount += h.size();
+        intervalValueCount += iv.size();
+        totalMsSum += row.totalMs();
+
+        ensureSampleCapacity(size + 1);
+        sessionOf[size] = session;
+        prevInSession[size] = sessionHead[session];
+        sessionHead[session] = size;
+        holdStart[size] = holds.append(h);
+        holdLength[size] = h.size();
+        intervalStart[size] = intervals.append(iv);
+        intervalLength[size] = iv.size();
+        size++;
+        totals = null;
+        if (forest != null) {
+            forest.add(size - 1);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** 全部样本 hold 值的均值。 */
+    double avgHold() {
+        return holdValueCount == 0 ? 0 : holdValueSum / (double) holdValueCount;
+    }
+
+    /** 全部样本 interval 值的均值。 */
+    double avgInterval() {
+        return intervalValueCount == 0 ? 0 : intervalValueSum / (double) intervalValueCount;
+    }
+
+    /** 全部样本整句耗时的均值。 */
+    double avgTotalMs() {
+        return size == 0 ? 0 : totalMsSum / (double) size;
+    }
+
+    /** 全站统计快照；两次写入之间重复读取不再重算。 */
+    Totals totals() {
+        if (totals == null) {
+            totals = new Totals(size, Math.round(avgTotalMs()),
+                    ServiceSupport.round(avgHold(), 1), ServiceSupport.round(avgInterval(), 1));
+        }
+        return totals;
+    }
+
+    /** 指定 session 的样本数。 */
+    int sampleCount(String sessionId) {
+        Integer session = sessionIds.get(sessionId);
+        return session == null ? 0 : sessionSamples[session];
+    }
+
+    /**
+     * 在所有其他 session 的样本中找出与 sessionId 任一样本距离最小的那个。
+     * 返回的距离未取整；取整是单调的，先取最小再取整与逐对取整后取最小结果相同。
+     */
+    Match nearest(String sessionId) {
+        Integer session = sessionIds.get(sessionId);
+        if (session == null || sessionIds.size() < 2) {
+            return Match.NONE;
+        }
+        return toMatch(scan(session, comparableSamples(session), 0, KeystrokeVpForest.Result.NONE));
+    }
+
+    /**
+     * 近似最近邻：只在与自己样本长度相同的样本中用 VP 树查找；
+     * 找不到任何同长度的其他 session 时退回精确扫描。未开启近似索引时等同 {@link #nearest}。
+     */
+    Match nearestApprox(String sessionId) {
+        Integer session = sessionIds.get(sessionId);
+        if (session == null || sessionIds.size() < 2) {
+            return Match.NONE;
+        }
+        return toMatch(search(session, comparableSamples(session)));
+    }
+
+    /**
+     * 带备忘的 {@link #nearestApprox}：上次查询后只有其他 session 加入了样本时，
+     * 只把这些新样本与自己的样本逐一比较并与备忘取小；自己提交了新样本才整体重算。
+     * 精确模式下与 {@link #nearest} 结果相同。lastSeenAt 总是取最新值。
+     */
+    Match nearestCached(String sessionId) {
+        return prepareNearest(sessionId).run().finish();
+    }
+
+    /**
+     * 分步执行 {@link #nearestCached}，让耗时与样本总数成正比的精确扫描不必持锁：
+     * 本方法与 {@link Lookup#finish} 须在调用方的锁内调用，{@link Lookup#run} 可在锁外执行。
+     * 近似索引的查询（每个样本至多 annMaxChecks 次距离计算）仍在本方法内完成。
+     */
+    Lookup prepareNearest(String sessionId) {
+        Integer boxed = sessionIds.get(sessionId);
+        if (boxed == null || sessionIds.size() < 2) {
+            return new Lookup(-1, null, size, KeystrokeVpForest.Result.NONE, size);
+        }
+        int session = boxed;
+        int[] mine = comparableSamples(session);
+        if (memoStamp[session] < 0 || memoSamples[session] != sessionSamples[session]) {
+            if (forest != null) {
+                KeystrokeVpForest.Result result = forest.nearest(mine, session);
+                if (result.session() >= 0) {
+                    return new Lookup(session, mine, size, result, size);
+                }
+            }
+            return new Lookup(session, mine, 0, KeystrokeVpForest.Result.NONE, size);
+        }
+        KeystrokeVpForest.Result memo = memoSession[session] < 0 ? KeystrokeVpForest.Result.NONE
+                : new KeystrokeVpForest.Result(memoSession[session], memoDistance[session]);
+        return new Lookup(session, mine, memoStamp[session], memo, size);
+    }
+
+    /** 一次分步的最近邻查询，见 {@link #prepareNearest}。 */
+    final class Lookup {
+
+        private final int session;
+        private final int[] mine;
+        /** 准备时 session 自己的样本数，写回备忘时据此判断备忘是否仍然有效。 */
+        private final int samples;
+        /** 尚待扫描的样本区间 [from, stamp)。 */
+        private final int from;
+        private final int stamp;
+        private final KeystrokeIndex columns;
+        private KeystrokeVpForest.Result result;
+
+        private Lookup(int session, int[] mine, int from, KeystrokeVpForest.Result seed, int stamp) {
+            this.session = session;
+            this.mine = mine;
+            this.samples = session < 0 ? 0 : sessionSamples[session];
+            this.from = from;
+            this.stamp = stamp;
+            this.result = seed;
+            this.columns = session >= 0 && from < stamp ? new KeystrokeIndex(KeystrokeIndex.this, false) : null;
+        }
+
+        /** 扫描 [from, stamp) 中其他 session 的样本；不读写索引的可变部分，可在锁外调用。 */
+        Lookup run() {
+            if (columns != null) {
+                result = columns.scan(session, mine, from, result);
+            }
+            return this;
+        }
+
+        /** 写回备忘并返回结果，须在锁内调用；run 期间加入的样本留给下次查询增量比较。 */
+        Match finish() {
+            if (session < 0) {
+                return Match.NONE;
+            }
+            memoStamp[session] = stamp;
+            memoSamples[session] = samples;
+            memoSession[session] = result.session();
+            memoDistance[session] = result.distance();
+            return toMatch(result);
+        }
+    }
+
+    /** 是否维护了近似最近邻索引。 */
+    boolean approximate() {
+        return forest != null;
+    }
+
+    /** 召回报告：对比的 session 数、命中比例和两种查询的平均耗时。 */
+    record AnnReport(long totalSamples, int sessions, double recall, double exactAvgMicros, double approxAvgMicros) {
+    }
+
+    /**
+     * 在 session 编号上等距抽取至多 maxSessions 个 session，逐个做精确与近似查询；
+     * 精确扫描找不到邻居的 session 不计入。距离按响应口径取 1 位小数后比较。
+     */
+    AnnReport annReport(int maxSessions) {
+        return prepareAnnReport(maxSessions).run();
+    }
+
+    /**
+     * 分步执行 {@link #annReport}：本方法须在调用方的锁内调用，只挑出候选 session 并截下列与近似索引的快照；
+     * 逐个 session 的精确扫描与近似查询在 {@link AnnReportRun#run} 中完成，可在锁外执行，不阻塞写入与统计。
+     */
+    AnnReportRun prepareAnnReport(int maxSessions) {
+        int total = sessionIds.size();
+        int step = Math.max(1, total / Math.max(1, maxSessions));
+        int candidates = (total + step - 1) / step;
+        int[] sessions = new int[candidates];
+        int[][] samples = new int[candidates][];
+        for (int c = 0; c < candidates; c++) {
+            sessions[c] = c * step;
+            samples[c] = comparableSamples(sessions[c]);
+        }
+        return new AnnReportRun(new KeystrokeIndex(this, true), sessions, samples, maxSessions);
+    }
+
+    /** 一次分步的召回报告，见 {@link #prepareAnnReport}。 */
+    static final class AnnReportRun {
+
+        private final KeystrokeIndex columns;
+        private final int[] sessions;
+        private final int[][] samples;
+        private final int maxSessions;
+
+        private AnnReportRun(KeystrokeIndex columns, int[] sessions, int[][] samples, int maxSessions) {
+            this.columns = columns;
+            this.sessions = sessions;
+            this.samples = samples;
+            this.maxSessions = maxSessions;
+        }
+
+        /** 只读快照上的抽样对比；不读写索引的可变部分，可在锁外调用。 */
+        AnnReport run() {
+            int sampled = 0;
+            int hits = 0;
+            long exactNanos = 0;
+            long approxNanos = 0;
+            for (int c = 0; c < sessions.length && sampled < maxSessions; c++) {
+                int session = sessions[c];
+                int[] mine = samples[c];
+                long t0 = System.nanoTime();
+                KeystrokeVpForest.Result exact = columns.scan(session, mine, 0, KeystrokeVpForest.Result.NONE);
+                long t1 = System.nanoTime();
+                KeystrokeVpForest.Result approx = columns.forest == null ? KeystrokeVpForest.Result.NONE
+                        : columns.forest.nearest(mine, session);
+                long t2 = System.nanoTime();
+                if (exact.session() < 0) {
+                    continue;
+                }
+                sampled++;
+                exactNanos += t1 - t0;
+                approxNanos += t2 - t1;
+                if (approx.session() >= 0
+                        && ServiceSupport.round(approx.distance(), 1) == ServiceSupport.round(exact.distance(), 1)) {
+                    hits++;
+                }
+            }
+            if (sampled == 0) {
+                return new AnnReport(columns.size, 0, 0, 0, 0);
+            }
+            return new AnnReport(columns.size, sampled, hits / (double) sampled,
+                    exactNanos / 1000.0 / sampled, approxNanos / 1000.0 / sampled);
+        }
+    }
+
+    /** session 中 hold、interval 都非空、能参与比较的样本。 */
+    private int[] comparableSamples(int session) {
+        int[] mine = new int[sessionSamples[session]];
+        int mineCount = 0;
+        for (int i = sessionHead[session]; i >= 0; i = prevInSession[i]) {
+            if (comparable(i)) {
+                mine[mineCount++] = i;
+            }
+        }
+        return Arrays.copyOf(mine, mineCount);
+    }
+
+    /** 近似索引优先；未开启或找不到同长度的其他 session 时精确扫描。 */
+    private KeystrokeVpForest.Result search(int session, int[] mine) {
+        if (forest != null) {
+            KeystrokeVpForest.Result result = forest.nearest(mine, session);
+            if (result.session() >= 0) {
+                return result;
+            }
+        }
+        return scan(session, mine, 0, KeystrokeVpForest.Result.NONE);
+    }
+
+    /** 精确扫描 [from, size) 中其他 session 的样本，从 seed 出发取更近者。 */
+    private KeystrokeVpForest.Result scan(int session, int[] mine, int from, KeystrokeVpForest.Result seed) {
+        double best = seed.session() < 0 ? Double.MAX_VALUE : seed.distance();
+        int bestSession = seed.session();
+        for (int j = from; j < size; j++) {
+            if (sessionOf[j] == session || !comparable(j)) {
+                continue;
+            }
+            for (int m : mine) {
+                double d = distance(m, j, best);
+                if (d < best) {
+                    best = d;
+                    bestSession = sessionOf[j];
+                }
+            }
+        }
+        return bestSession < 0 ? KeystrokeVpForest.Result.NONE : new KeystrokeVpForest.Result(bestSession, best);
+    }
+
+    private Match toMatch(KeystrokeVpForest.Result result) {
+        return result.session() < 0 ? Match.NONE : new Match(result.distance(), sessionLastSeen[result.session()]);
+    }
+
+    boolean comparable(int sample) {
+        return holdLength[sample] > 0 && intervalLength[sample] > 0;
+    }
+
+    int sessionOf(int sample) {
+        return sessionOf[sample];
+    }
+
+    int holdLength(int sample) {
+        return holdLength[sample];
+    }
+
+    int intervalLength(int sample) {
+        return intervalLength[sample];
+    }
+
+    /**
+     * 样本 a、b 的加权距离；确定不小于 bound 时提前返回 {@link Double#MAX_VALUE}。
+     */
+    double distance(int a, int b, double bound) {
+        int nh = Math.min(holdLength[a], holdLength[b]);
+        int ni = Math.min(intervalLength[a], intervalLength[b]);
+
+        // 范数下界：两段各自的 |‖x‖ − ‖y‖|，不需要逐维比较
+        double holdLower = HOLD_WEIGHT / HOLD_SCALE / Math.sqrt(nh)
+                * Math.abs(holds.prefixNorm(holdStart[a], nh) - holds.prefixNorm(holdStart[b], nh));
+        double intervalLower = ni == 0 ? 0 : INTERVAL_WEIGHT / INTERVAL_SCALE / Math.sqrt(ni)
+                * Math.abs(intervals.prefixNorm(intervalStart[a], ni) - intervals.prefixNorm(intervalStart[b], ni));
+        if (holdLower + intervalLower >= bound) {
+            return Double.MAX_VALUE;
+        }
+
+        double holdLimit = bound == Double.MAX_VALUE ? Double.MAX_VALUE
+                : square(bound / HOLD_WEIGHT) * nh;
+        double holdSum = holds.squaredDistance(holdStart[a], holdStart[b], nh, HOLD_SCALE, holdLimit);
+        if (holdSum >= holdLimit) {
+            return Double.MAX_VALUE;
+        }
+        double holdPart = HOLD_WEIGHT * Math.sqrt(holdSum / nh);
+        if (ni == 0) {
+            return holdPart;
+        }
+        double remaining = bound - holdPart;
+        if (remaining <= 0) {
+            return Double.MAX_VALUE;
+        }
+        double intervalLimit = bound == Double.MAX_VALUE ? Double.MAX_VALUE
+                : square(remaining / INTERVAL_WEIGHT) * ni;
+        double intervalSum = intervals.squaredDistance(intervalStart[a], intervalStart[b], ni,
+                INTERVAL_SCALE, intervalLimit);
+        if (intervalSum >= intervalLimit) {
+            return Double.MAX_VALUE;
+        }
+        return holdPart + INTERVAL_WEIGHT * Math.sqrt(intervalSum / ni);
+    }
+
+    private static double square(double x) {
+        return x * x;
+    }
+
+    private int newSession() {
+        int id = sessionIds.size();
+        if (id == sessionSamples.length) {
+            sessionSamples = Arrays.copyOf(sessionSamples, id * 2);
+            sessionLastSeen = Arrays.copyOf(sessionLastSeen, id * 2);
+            sessionHead = Arrays.copyOf(sessionHead, id * 2);
+            memoStamp = Arrays.copyOf(memoStamp, id * 2);
+            memoSamples = Arrays.copyOf(memoSamples, id * 2);
+            memoSession = Arrays.copyOf(memoSession, id * 2);
+            memoDistance = Arrays.copyOf(memoDistance, id * 2);
+        }
+        sessionLastSeen[id] = Long.MIN_VALUE;
+        sessionHead[id] = -1;
+        memoStamp[id] = -1;
+        return id;
+    }
+
+    private void ensureSampleCapacity(int capacity) {
+        if (capacity <= sessionOf.length) {
+            return;
+        }
+        int grown = Math.max(capacity, sessionOf.length * 2);
+        sessionOf = Arrays.copyOf(sessionOf, grown);
+        prevInSession = Arrays.copyOf(prevInSession, grown);
+        holdStart = Arrays.copyOf(holdStart, grown);
+        holdLength = Arrays.copyOf(holdLength, grown);
+        intervalStart = Arrays.copyOf(intervalStart, grown);
+        intervalLength = Arrays.copyOf(intervalLength, grown);
+    }
+
+    /**
+     * 一列特征：所有样本的值首尾相接存进一个 float[]（毫秒整数在 2^24 内可精确表示），
+     * 并行存每个样本内的前缀平方和，求任意前缀的 L2 范数为 O(1)。
+     */
+    private static final class FeatureColumn {
+
+        private float[] values;
+        private double[] prefixSquares;
+        private int length;
+
+        FeatureColumn() {
+            this(new float[1024], new double[1024], 0);
+        }
+
+        private FeatureColumn(float[] values, double[] prefixSquares, int length) {
+            this.values = values;
+            this.prefixSquares = prefixSquares;
+            this.length = length;
+        }
+
+        /** 与本列共享数组的只读快照，见 {@link KeystrokeIndex#KeystrokeIndex(KeystrokeIndex)}。 */
+        FeatureColumn snapshot() {
+            return new FeatureColumn(values, prefixSquares, length);
+        }
+
+        /** 追加一个样本的序列，返回其起始下标。 */
+        int append(List<Integer> sample) {
+            int start = length;
+            if (length + sample.size() > values.length) {
+                int grown = Math.max(length + sample.size(), values.length * 2);
+                values = Arrays.copyOf(values, grown);
+                prefixSquares = Arrays.copyOf(prefixSquares, grown);
+            }
+            double running = 0;
+            for (int v : sample) {
+                values[length] = v;
+                running += (double) v * v;
+                prefixSquares[length] = running;
+                length++;
+            }
+            return start;
+        }
+
+        /** 样本前 n 个值的 L2 范数。 */
+        double prefixNorm(int start, int n) {
+            return Math.sqrt(prefixSquares[start + n - 1]);
+        }
+
+        /**
+         * Σ((x − y) / scale)²，每 8 维检查一次，超过 limit 即停止（此时返回值 ≥ limit）。
+         */
+        double squaredDistance(int a, int b, int n, double scale, double limit) {
+            float[] v = values;
+            double sum = 0;
+            int k = 0;
+            while (k < n) {
+                int end = Math.min(n, k + 8);
+                for (; k < end; k++) {
+                    double d = ((double) v[a + k] - v[b + k]) / scale;
+                    sum += d * d;
+                }
+                if (sum >= limit) {
+                    return sum;
+                }
+            }
+            return sum;
+        }
+    }
+}
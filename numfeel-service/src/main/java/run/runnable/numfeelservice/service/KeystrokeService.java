@@ -1,29 +1,36 @@
 package run.runnable.numfeelservice.service;
 
+import run.runnable.numfeelservice.controller.dto.GameplayResponses.KeystrokeAnnReportResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.KeystrokeStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.KeystrokeProfile;
 import tools.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
-import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * 键盘输入节奏识别 — 业务逻辑层。
  * 持久化打字样本，聚合全站统计，并计算指定 session 的"指纹独特性"（最近邻居距离）。
  * <p>
- * 聚合统计（COUNT / AVG(total_ms)）走 DatabaseClient 原生 SQL，不做全表物化；
- * 最近邻居距离是逐样本特征比对（向量相似度），无法用 SQL 表达，保留在内存完成。
- * 整体结果通过 {@link Cacheable} 缓存 60 秒，避免每次请求全量重算。
+ * 全部样本常驻在 {@link KeystrokeIndex} 中：首次查询时扫描一次全表，之后随提交增量加入，
+ * hold / interval 序列只在入索引时解析一次。响应分两部分：全站统计是所有 session 共享的快照，
+ * 每次写入后只重算一次；session 自己的最近邻对内存索引计算并按 session 备忘，
+ * 之后只与新加入的样本比较，因此不再需要按 sessionId 缓存整个响应。
+ * 最近邻的精确扫描在 boundedElastic 上对索引的列快照执行，不持聚合锁、不占用事件循环。
+ * <p>
+ * 开启 {@code numfeel.keystroke.ann.enabled} 后最近邻查询改走 {@link KeystrokeVpForest}（近似），
+ * 可通过 {@link #annReport} 对比其与精确扫描的召回率和耗时；未开启或未配置
+ * {@code numfeel.keystroke.ann.report-token} 时不提供该报告。
  */
 @Service
 public class KeystrokeService {
@@ -37,19 +44,43 @@ public class KeystrokeService {
      */
     private static final double IDENTIFY_THRESHOLD = 0.5;
 
-    /** 最近邻居计算需要的最小列投影（含 created_at 用于识别时回告上次来访时间）。 */
-    private static final String PROJECTION_SQL =
-            "SELECT session_id, hold_times, intervals, created_at FROM keystroke_profiles";
-    /** 全站聚合：样本总数 + 平均整句耗时。 */
-    private static final String AGG_SQL =
-            "SELECT COUNT(*) AS total, COALESCE(AVG(total_ms), 0) AS avg_total FROM keystroke_profiles";
+    /** 召回报告最多抽样的 session 数。 */
+    public static final int MAX_REPORT_SESSIONS = 500;
 
-    private final R2dbcEntityTemplate template;
-    private final DatabaseClient db;
+    private final LiveAggregates<KeystrokeProfile> aggregates;
+    private final LiveAggregates.Fold<KeystrokeProfile, KeystrokeIndex> index;
+    private final boolean annEnabled;
+    private final double annEpsilon;
+    private final int annMaxChecks;
+    private final byte[] reportToken;
 
-    public KeystrokeService(R2dbcEntityTemplate template, DatabaseClient db) {
-        this.template = template;
-        this.db = db;
+    /**
+     * @param annEnabled 是否维护近似最近邻索引并用于 /keystroke/stats
+     * @param annEpsilon 近似系数 ε，见 {@link KeystrokeVpForest}
+     * @param annMaxChecks 每个查询样本最多计算的距离次数，见 {@link KeystrokeVpForest}
+     * @param reportToken 调用 /keystroke/ann-report 须携带的令牌；为空时不提供该报告
+     */
+    public KeystrokeService(R2dbcEntityTemplate template,
+                            @Value("${numfeel.keystroke.ann.enabled:false}") boolean annEnabled,
+                            @Value("${numfeel.keystroke.ann.epsilon:0.1}") double annEpsilon,
+                            @Value("${numfeel.keystroke.ann.max-checks:512}") int annMaxChecks,
+                            @Value("${numfeel.keystroke.ann.report-token:}") String reportToken) {
+        if (annEpsilon < 0) {
+            throw new IllegalArgumentException("numfeel.keystroke.ann.epsilon must be >= 0");
+        }
+        if (annMaxChecks <= 0) {
+            throw new IllegalArgumentException("numfeel.keystroke.ann.max-checks must be > 0");
+        }
+        this.annEnabled = annEnabled;
+        this.annEpsilon = annEpsilon;
+        this.annMaxChecks = annMaxChecks;
+        this.reportToken = reportToken == null || reportToken.isBlank() ? null
+                : reportToken.getBytes(StandardCharsets.UTF_8);
+        LiveAggregates.Builder<KeystrokeProfile> builder = LiveAggregates.builder(template, KeystrokeProfile.class);
+        this.index = builder.fold(
+                () -> annEnabled ? new KeystrokeIndex(annEpsilon, annMaxChecks) : new KeystrokeIndex(),
+                KeystrokeIndex::add);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -69,7 +100,7 @@ public class KeystrokeService {
         KeystrokeProfile entity = new KeystrokeProfile(
                 null, sessionId, sampleIndex, textHash, holdTimes, intervals,
                 totalMs, errorCount, System.currentTimeMillis());
-        return template.insert(KeystrokeProfile.class).using(entity).then();
+        return aggregates.insert(entity).then();
     }
 
     /**
@@ -79,156 +110,67 @@ public class KeystrokeService {
      * @param sessionId 客户端会话 ID（用于计算独特性；null 时跳过）
      * @return 聚合统计响应
      */
-    @Cacheable(cacheNames = "keystrokeStats", sync = true)
     public Mono<KeystrokeStatsResponse> stats(String sessionId) {
-        Mono<List<KeystrokeProfile>> rowsMono = db.sql(PROJECTION_SQL)
-                .map((row, metadata) -> new KeystrokeProfile(
-                        null,
-                        (String) row.get("session_id"),
-                        0,
-                        null,
-                        (String) row.get("hold_times"),
-                        (String) row.get("intervals"),
-                        0, 0,
-                        number(row.get("created_at")).longValue()))
-                .all()
-                .collectList();
-        Mono<long[]> aggMono = db.sql(AGG_SQL)
-                .map((row, metadata) -> new long[]{
-                        number(row.get("total")).longValue(),
-                        Math.round(number(row.get("avg_total")).doubleValue())})
-                .one()
-                .defaultIfEmpty(new long[]{0, 0});
-        return Mono.zip(rowsMono, aggMono)
-                .map(t -> aggregateStats(t.getT1(), t.getT2()[0], t.getT2()[1], sessionId));
-    }
-
-    /**
-     * 由全站样本行聚合出统计响应（可独立单元测试的纯逻辑）。
-     *
-     * @param rows      全站样本（仅需 session_id / hold_times / intervals / created_at）
-     * @param total     SQL 聚合出的样本总数
-     * @param avgTotal  SQL 聚合出的平均整句耗时 ms
-     * @param sessionId 当前会话 ID
-     * @return 聚合统计响应
-     */
-    static KeystrokeStatsResponse aggregateStats(List<KeystrokeProfile> rows,
-                                                 long total, double avgTotal, String sessionId) {
-        double avgHold = ServiceSupport.round(
-                rows.stream().flatMap(r -> parseList(r.holdTimes()).stream())
-                        .mapToInt(Integer::intValue).average().orElse(0), 1);
-        double avgInterval = ServiceSupport.round(
-                rows.stream().flatMap(r -> parseList(r.intervals()).stream())
-                        .mapToInt(Integer::intValue).average().orElse(0), 1);
-
-        long myCount = 0;
-        double nearest = -1;
-        long lastSeenAt = -1;
-        if (sessionId != null && !sessionId.isBlank()) {
-            List<KeystrokeProfile> mine = rows.stream()
-                    .filter(r -> sessionId.equals(r.sessionId()))
-                    .collect(Collectors.toList());
-            myCount = mine.size();
-            if (!mine.isEmpty()) {
-                MatchResult match = findBestMatch(mine, rows);
-                nearest = match.distance();
-                if (match.distance() >= 0 && match.distance() <= IDENTIFY_THRESHOLD) {
-                    lastSeenAt = match.lastSeenAt();
-                }
+        boolean identify = sessionId != null && !sessionId.isBlank();
+        return aggregates.read(() -> {
+            KeystrokeIndex current = index.get();
+            long myCount = identify ? current.sampleCount(sessionId) : 0;
+            return new PendingStats(current.totals(), myCount,
+                    myCount > 0 ? current.prepareNearest(sessionId) : null);
+        }).flatMap(pending -> {
+            if (pending.lookup() == null) {
+                return Mono.just(toStatsResponse(pending.totals(), pending.myCount(), KeystrokeIndex.Match.NONE));
             }
-        }
-        return new KeystrokeStatsResponse(total, avgTotal, avgHold, avgInterval, nearest, myCount, lastSeenAt);
+            return Mono.fromSupplier(pending.lookup()::run)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(lookup -> aggregates.read(lookup::finish))
+                    .map(match -> toStatsResponse(pending.totals(), pending.myCount(), match));
+        });
     }
 
-    /**
-     * 在所有其他 session 中找出与当前 session 特征距离最小的那个，并回告其最近一次提交时间。
-     * 距离按「session 分组后取组内最小」再跨 session 取最小，与全量逐对最小等价。
-     *
-     * @param mine 当前 session 的样本
-     * @param all  全站样本（含自己，会排除同 session）
-     * @return 最小距离（无法计算时为 -1）与对应 session 的最近提交时间戳
-     */
-    private static MatchResult findBestMatch(List<KeystrokeProfile> mine, List<KeystrokeProfile> all) {
-        Map<String, List<KeystrokeProfile>> othersBySession = new HashMap<>();
-        for (KeystrokeProfile p : all) {
-            if (!mine.get(0).sessionId().equals(p.sessionId())) {
-                othersBySession.computeIfAbsent(p.sessionId(), k -> new ArrayList<>()).add(p);
-            }
-        }
-        if (othersBySession.isEmpty()) {
-            return new MatchResult(-1, -1);
-        }
-        double min = Double.MAX_VALUE;
-        long lastSeenAt = -1;
-        for (List<KeystrokeProfile> others : othersBySession.values()) {
-            double d = minDistanceBetween(mine, others);
-            if (d < min) {
-                min = d;
-                lastSeenAt = others.stream().mapToLong(KeystrokeProfile::createdAt).max().orElse(-1);
-            }
-        }
-        return new MatchResult(min == Double.MAX_VALUE ? -1 : min, lastSeenAt);
+    /** 锁内取得的全站统计与本 session 样本数，以及尚待在锁外完成的最近邻查询（无需查询时为 null）。 */
+    private record PendingStats(KeystrokeIndex.Totals totals, long myCount, KeystrokeIndex.Lookup lookup) {
     }
 
-    /**
-     * 两组样本（分属两个 session）之间的最小加权距离。
-     *
-     * @return 最小距离；任一组样本都无法计算特征时返回 -1
-     */
-    private static double minDistanceBetween(List<KeystrokeProfile> a, List<KeystrokeProfile> b) {
-        double min = Double.MAX_VALUE;
-        for (KeystrokeProfile x : a) {
-            List<Integer> xh = parseList(x.holdTimes());
-            List<Integer> xi = parseList(x.intervals());
-            if (xh.isEmpty() || xi.isEmpty()) {
-                continue;
-            }
-            for (KeystrokeProfile y : b) {
-                List<Integer> yh = parseList(y.holdTimes());
-                List<Integer> yi = parseList(y.intervals());
-                if (yh.isEmpty() || yi.isEmpty()) {
-                    continue;
-                }
-                double d = weightedDistance(xh, xi, yh, yi);
-                if (d < min) {
-                    min = d;
-                }
-            }
-        }
-        return min == Double.MAX_VALUE ? -1 : min;
+    /** 是否提供 {@link #annReport}：开启了近似最近邻索引且配置了报告令牌。 */
+    public boolean annReportAvailable() {
+        return annEnabled && reportToken != null;
     }
 
-    /** 匹配结果：到最近 session 的距离及其最近提交时间戳。 */
-    private record MatchResult(double distance, long lastSeenAt) {
+    /** token 是否与配置的报告令牌一致（定长比较）；未提供报告时总是 false。 */
+    public boolean annReportAuthorized(String token) {
+        return annReportAvailable() && token != null
+                && MessageDigest.isEqual(reportToken, token.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
-     * 加权欧氏距离：与前端 engine.computeDistance 同一口径——
-     * hold 差值除以 200ms、interval 差值除以 500ms 归一化，hold 权重 0.6 / interval 权重 0.4，
-     * 两段特征分别截断到较短长度，结果保留 1 位小数。
+     * 近似最近邻召回报告：均匀抽样至多 sessions 个 session，分别做精确扫描与近似查询，
+     * 统计两者最近距离（按响应口径取 1 位小数）一致的比例与各自平均耗时。
+     * 锁内只截下索引快照，抽样查询在 boundedElastic 上对快照执行，不阻塞提交与统计；
+     * 调用方须先确认 {@link #annReportAuthorized}。
      *
-     * @return 归一化距离（0 = 完全一致；越大差异越大）；任一维为空时返回 Double.MAX_VALUE
+     * @param sessions 抽样 session 数上限（1 ~ {@link #MAX_REPORT_SESSIONS}）
+     * @return 召回报告
      */
-    private static double weightedDistance(List<Integer> h1, List<Integer> i1,
-                                           List<Integer> h2, List<Integer> i2) {
-        int nh = Math.min(h1.size(), h2.size());
-        if (nh == 0) {
-            return Double.MAX_VALUE;
-        }
-        double holdSum = 0;
-        for (int k = 0; k < nh; k++) {
-            double d = (h1.get(k) - h2.get(k)) / 200.0;
-            holdSum += d * d;
-        }
-        int ni = Math.min(i1.size(), i2.size());
-        double intSum = 0;
-        for (int k = 0; k < ni; k++) {
-            double d = (i1.get(k) - i2.get(k)) / 500.0;
-            intSum += d * d;
-        }
-        double holdPart = Math.sqrt(holdSum / nh);
-        double intPart = ni > 0 ? Math.sqrt(intSum / ni) : 0;
-        return ServiceSupport.round(0.6 * holdPart + 0.4 * intPart, 1);
+    public Mono<KeystrokeAnnReportResponse> annReport(int sessions) {
+        int limit = ServiceSupport.clampLimit(sessions, 1, MAX_REPORT_SESSIONS);
+        return aggregates.read(() -> index.get().prepareAnnReport(limit))
+                .publishOn(Schedulers.boundedElastic())
+                .map(KeystrokeIndex.AnnReportRun::run)
+                .map(report -> new KeystrokeAnnReportResponse(annEnabled, annEpsilon, annMaxChecks,
+                        report.totalSamples(),
+                        report.sessions(), ServiceSupport.round(report.recall(), 4),
+                        ServiceSupport.round(report.exactAvgMicros(), 1),
+                        ServiceSupport.round(report.approxAvgMicros(), 1)));
+    }
+
+    private static KeystrokeStatsResponse toStatsResponse(KeystrokeIndex.Totals totals, long myCount,
+                                                          KeystrokeIndex.Match match) {
+        // 与前端 engine.computeDistance 同口径保留 1 位小数
+        double nearest = match.distance() < 0 ? -1 : ServiceSupport.round(match.distance(), 1);
+        long lastSeenAt = nearest >= 0 && nearest <= IDENTIFY_THRESHOLD ? match.lastSeenAt() : -1;
+        return new KeystrokeStatsResponse(totals.samples(), totals.avgTotalMs(), totals.avgHoldMs(),
+                totals.avgIntervalMs(), nearest, myCount, lastSeenAt);
     }
 
     /**
@@ -250,7 +192,8 @@ public class KeystrokeService {
         return list;
     }
 
-    private static Number number(Object value) {
-        return value instanceof Number number ? number : 0;
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
     }
 }
@@ -0,0 +1,346 @@
+package run.runnable.numfeelservice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * {@link KeystrokeIndex} 的近似最近邻索引：按 (hold 长度, interval 长度) 把样本分组，每组若干棵 VP 树。
+ * <p>
+ * 长度相同时不涉及截断，加权距离是两段缩放欧氏距离之和，满足三角不等式，VP 树剪枝成立；
+ * 不同长度的样本之间不再比较（同一段文本打出的样本长度相同，影响很小）。组内近似来自两处：
+ * <ul>
+ *   <li>(1 + ε) 放宽：节点下界 ≥ best / (1 + ε) 即剪掉；</li>
+ *   <li>检查预算：按下界从小到大（best-bin-first）展开节点，每个查询样本最多计算 maxChecks 次距离。</li>
+ * </ul>
+ * ε = 0 且预算不限时组内结果精确。
+ * <p>
+ * 新样本先进入组内 {@link #BUFFER_SIZE} 大小的缓冲区；缓冲区满时连同所有不更大的树合并重建为一棵
+ * （对数式合并），各组的树大小严格递减，插入的均摊代价为 O(log² n) 次距离计算，查询最多涉及 O(log n) 棵树。
+ * 非线程安全，随 {@link KeystrokeIndex} 一起由调用方加锁；{@link #snapshot} 得到的只读副本可在锁外查询。
+ */
+final class KeystrokeVpForest {
+
+    /** 查询结果：最近的样本所属 session（找不到时为 -1）及距离。 */
+    record Result(int session, double distance) {
+        static final Result NONE = new Result(-1, -1);
+    }
+
+    /** 叶子节点的最大样本数，叶内线性扫描。 */
+    private static final int LEAF_SIZE = 8;
+
+    /** 组内缓冲区大小，满后合并成树。 */
+    private static final int BUFFER_SIZE = 64;
+
+    private final KeystrokeIndex index;
+    private final double shrink;
+    private final int maxChecks;
+    private final SplittableRandom random = new SplittableRandom(0x5EED);
+    private final Map<Long, Shape> shapes = new HashMap<>();
+
+    /**
+     * 一棵静态 VP 树。节点 [lo, hi) 以 ids[lo] 为 vantage point，
+     * [lo + 1, split[lo]) 是距离 ≤ radius[lo] 的内侧，[split[lo], hi) 是外侧。
+     */
+    private record Tree(int[] ids, double[] radius, int[] split) {
+    }
+
+    /** 一组同长度样本：大小递减的若干棵树加一个缓冲区。 */
+    private static final class Shape {
+        final List<Tree> trees;
+        final int[] buffer;
+        int buffered;
+
+        Shape() {
+            this.trees = new ArrayList<>();
+            this.buffer = new int[BUFFER_SIZE];
+        }
+
+        /** 树建好后不再改动，直接共享；树列表与缓冲区复制。 */
+        Shape(Shape source) {
+            this.trees = new ArrayList<>(source.trees);
+            this.buffer = source.buffer.clone();
+            this.buffered = source.buffered;
+        }
+    }
+
+    /** 一次查询的状态，含按下界排序的待展开节点小顶堆。 */
+    private static final class Search {
+        final int session;
+        int query;
+        int checks;
+        double best = Double.MAX_VALUE;
+        int bestSession = -1;
+
+        int heapSize;
+        double[] bounds = new double[64];
+        int[] trees = new int[64];
+        int[] los = new int[64];
+        int[] his = new int[64];
+        double topBound;
+        int topTree;
+        int topLo;
+        int topHi;
+
+        Search(int session) {
+            this.session = session;
+        }
+
+        void push(double bound, int tree, int lo, int hi) {
+            if (heapSize == bounds.length) {
+                bounds = Arrays.copyOf(bounds, heapSize * 2);
+                trees = Arrays.copyOf(trees, heapSize * 2);
+                los = Arrays.copyOf(los, heapSize * 2);
+                his = Arrays.copyOf(his, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (bounds[parent] <= bound) {
+                    break;
+                }
+                move(parent, i);
+                i = parent;
+            }
+            set(i, bound, tree, lo, hi);
+        }
+
+        /** 弹出下界最小的节点到 top* 字段。 */
+        void pop() {
+            topBound = bounds[0];
+            topTree = trees[0];
+            topLo = los[0];
+            topHi = his[0];
+            int last = --heapSize;
+            if (last == 0) {
+                return;
+            }
+            double bound = bounds[last];
+            int tree = trees[last];
+            int lo = los[last];
+            int hi = his[last];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= last) {
+                    break;
+                }
+                if (child + 1 < last && bounds[child + 1] < bounds[child]) {
+                    child++;
+                }
+                if (bounds[child] >= bound) {
+                    break;
+                }
+                move(child, i);
+                i = child;
+            }
+            set(i, bound, tree, lo, hi);
+        }
+
+        private void set(int i, double bound, int tree, int lo, int hi) {
+            bounds[i] = bound;
+            trees[i] = tree;
+            los[i] = lo;
+            his[i] = hi;
+        }
+
+        private void move(int from, int to) {
+            set(to, bounds[from], trees[from], los[from], his[from]);
+        }
+    }
+
+    /**
+     * @param epsilon   近似系数 ε（≥ 0）
+     * @param maxChecks 每个查询样本最多计算的距离次数（缓冲区扫描不计），{@link Integer#MAX_VALUE} 表示不限
+     */
+    KeystrokeVpForest(KeystrokeIndex index, double epsilon, int maxChecks) {
+        if (epsilon < 0) {
+            throw new IllegalArgumentException("epsilon < 0");
+        }
+        if (maxChecks <= 0) {
+            throw new IllegalArgumentException("maxChecks <= 0");
+        }
+        this.index = index;
+        this.shrink = 1.0 / (1.0 + epsilon);
+        this.maxChecks = maxChecks;
+    }
+
+    private KeystrokeVpForest(KeystrokeVpForest source, KeystrokeIndex columns) {
+        this.index = columns;
+        this.shrink = source.shrink;
+        this.maxChecks = source.maxChecks;
+        source.shapes.forEach((key, shape) -> shapes.put(key, new Shape(shape)));
+    }
+
+    /** 查询用的只读副本，距离在 columns（{@link KeystrokeIndex} 的列快照）上计算；复制代价与组数成正比，与样本数无关。 */
+    KeystrokeVpForest snapshot(KeystrokeIndex columns) {
+        return new KeystrokeVpForest(this, columns);
+    }
+
+    /** 把 index 中新加入的样本放进对应长度组的缓冲区，满了就合并成树。 */
+    void add(int sample) {
+        if (!index.comparable(sample)) {
+            return;
+        }
+        Shape shape = shapes.computeIfAbsent(shapeKey(sample), k -> new Shape());
+        shape.buffer[shape.buffered++] = sample;
+        if (shape.buffered < BUFFER_SIZE) {
+            return;
+        }
+        int[] ids = shape.buffer.clone();
+        shape.buffered = 0;
+        List<Tree> trees = shape.trees;
+        while (!trees.isEmpty() && trees.get(trees.size() - 1).ids().length <= ids.length) {
+            int[] smaller = trees.remove(trees.size() - 1).ids();
+            int[] merged = Arrays.copyOf(ids, ids.length + smaller.length);
+            System.arraycopy(smaller, 0, merged, ids.length, smaller.length);
+            ids = merged;
+        }
+        trees.add(build(ids));
+    }
+
+    /** 对 mine 中每个样本在同长度组内查最近的其他 session 样本，取全体最小。 */
+    Result nearest(int[] mine, int session) {
+        Search search = new Search(session);
+        for (int q : mine) {
+            Shape shape = shapes.get(shapeKey(q));
+            if (shape == null) {
+                continue;
+            }
+            search.query = q;
+            search.checks = 0;
+            for (int i = 0; i < shape.buffered; i++) {
+                consider(search, shape.buffer[i]);
+            }
+            searchTrees(shape, search);
+        }
+        return search.bestSession < 0 ? Result.NONE : new Result(search.bestSession, search.best);
+    }
+
+    private void searchTrees(Shape shape, Search search) {
+        search.heapSize = 0;
+        for (int t = 0; t < shape.trees.size(); t++) {
+            search.push(0, t, 0, shape.trees.get(t).ids().length);
+        }
+        while (search.heapSize > 0 && search.checks < maxChecks) {
+            search.pop();
+            double bound = search.topBound;
+            if (bound >= search.best * shrink) {
+                // 小顶堆：剩下的节点下界都不更小
+                return;
+            }
+            int t = search.topTree;
+            Tree tree = shape.trees.get(t);
+            int lo = search.topLo;
+            int hi = search.topHi;
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi; i++) {
+                    consider(search, tree.ids()[i]);
+                }
+                search.checks += hi - lo;
+                continue;
+            }
+            int vantage = tree.ids()[lo];
+            double mu = tree.radius()[lo];
+            int mid = tree.split()[lo];
+            // d 不小于 best 且不小于 mu + best 时：vantage 不是候选、内侧必被剪掉，精确值不再重要
+            double d = index.distance(search.query, vantage, search.best == Double.MAX_VALUE ? Double.MAX_VALUE
+                    : Math.max(search.best, mu + search.best * shrink));
+            search.checks++;
+            if (index.sessionOf(vantage) != search.session && d < search.best) {
+                search.best = d;
+                search.bestSession = index.sessionOf(vantage);
+            }
+            double limit = search.best * shrink;
+            double inner = Math.max(bound, d - mu);
+            double outer = Math.max(bound, mu - d);
+            if (inner < limit && mid > lo + 1) {
+                search.push(inner, t, lo + 1, mid);
+            }
+            if (outer < limit) {
+                search.push(outer, t, mid, hi);
+            }
+        }
+    }
+
+    private void consider(Search search, int candidate) {
+        if (index.sessionOf(candidate) == search.session) {
+            return;
+        }
+        double d = index.distance(search.query, candidate, search.best);
+        if (d < search.best) {
+            search.best = d;
+            search.bestSession = index.sessionOf(candidate);
+        }
+    }
+
+    private Tree build(int[] ids) {
+        int n = ids.length;
+        Tree tree = new Tree(ids, new double[n], new int[n]);
+        build(tree, new double[n], 0, n);
+        return tree;
+    }
+
+    private void build(Tree tree, double[] scratch, int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        int[] ids = tree.ids();
+        swap(ids, lo, lo + random.nextInt(hi - lo));
+        int vantage = ids[lo];
+        for (int i = lo + 1; i < hi; i++) {
+            scratch[i] = index.distance(vantage, ids[i], Double.MAX_VALUE);
+        }
+        int mid = (lo + 1 + hi) >>> 1;
+        select(ids, scratch, lo + 1, hi - 1, mid);
+        tree.radius()[lo] = scratch[mid];
+        tree.split()[lo] = mid;
+        build(tree, scratch, lo + 1, mid);
+        build(tree, scratch, mid, hi);
+    }
+
+    /** 快速选择：使 [left, right] 中第 k 位就位，左侧距离都不大于它、右侧都不小于它。 */
+    private void select(int[] ids, double[] dist, int left, int right, int k) {
+        while (left < right) {
+            double pivot = dist[left + random.nextInt(right - left + 1)];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (dist[i] < pivot) i++;
+                while (dist[j] > pivot) j--;
+                if (i <= j) {
+                    swap(ids, dist, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private long shapeKey(int sample) {
+        return ((long) index.holdLength(sample) << 32) | index.intervalLength(sample);
+    }
+
+    private static void swap(int[] ids, int a, int b) {
+        int t = ids[a];
+        ids[a] = ids[b];
+        ids[b] = t;
+    }
+
+    private static void swap(int[] ids, double[] dist, int a, int b) {
+        swap(ids, a, b);
+        double t = dist[a];
+        dist[a] = dist[b];
+        dist[b] = t;
+    }
+}
@@ -0,0 +1,688 @@
+package run.runnable.numfeelservice.service;
+
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * 单张表的增量聚合：替代“每次统计都 {@link ServiceSupport#selectAll} 全表加载再在内存里算”。
+ * <p>
+ * 业务 service 在构造时通过 {@link #builder} 声明需要的聚合（计数、带条件计数、求和/均值/最值、
+ * 分组计数、top-k、中位数、名次索引或自定义折叠），拿到各聚合的句柄：
+ * <ul>
+ *   <li>第一次读取时流式扫描一次全表，把每行喂给所有聚合（不物化 List），之后不再全表查询；</li>
+ *   <li>写入必须走 {@link #insert}，每条 INSERT 发出前先看聚合处于哪个阶段：尚未扫描（或已作废、扫描失败）时直接 INSERT、
+ *       不并入聚合，下一次扫描会等所有在途 INSERT 结束后再开始，因而一定能读到它们；扫描进行中时先等扫描结束
+ *       （成功与否都不影响这一行落库）再重新判断；扫描已完成时直接 INSERT，成功后若期间没有 {@link #invalidate}
+ *       就把落库的行 O(1) 并入聚合，否则交给重新扫描。同一行只计入一次。INSERT 经 {@link BatchInsertBuffer}
+ *       与同表的并发写入合并；</li>
+ *   <li>读取走 {@link #read}：在锁内从各句柄组装响应，耗时与表大小无关。</li>
+ * </ul>
+ * 聚合只反映经由本实例写入的行；多实例部署时各实例只在启动扫描时看到其他实例的历史数据。
+ * 初始扫描失败时清空已累计的部分，下次读取重新扫描；写入不受扫描失败影响。
+ *
+ * @param <T> 实体类型
+ */
+final class LiveAggregates<T> {
+
+    /** 单个聚合：接收一行，或被清空。调用方持有 LiveAggregates 的锁。 */
+    private interface Aggregate<T> {
+        void add(T row);
+
+        void clear();
+    }
+
+    private final R2dbcEntityTemplate template;
+    private final Class<T> entityType;
+    private final BatchInsertBuffer<T> inserts;
+    private final List<Aggregate<T>> aggregates;
+    private long rows;
+    private volatile Mono<Void> ready;
+    /** ready 对应的扫描已成功完成，之后发出的 INSERT 由本实例并入聚合。 */
+    private boolean loaded;
+    /** 每次 {@link #invalidate} 加一，丢弃仍在进行中的旧扫描结果与旧一代写入的并入。 */
+    private long generation;
+    /** 已发出、尚未结束的 INSERT 个数。 */
+    private int pendingInserts;
+    /** 扫描开始时若仍有 pendingInserts，扫描等待它们全部结束。 */
+    private Sinks.Empty<Void> insertsDrained;
+
+    private LiveAggregates(R2dbcEntityTemplate template, Class<T> entityType, List<Aggregate<T>> aggregates) {
+        this.template = template;
+        this.entityType = entityType;
+        this.inserts = new BatchInsertBuffer<>(template, entityType);
+        this.aggregates = List.copyOf(aggregates);
+    }
+
+    static <T> Builder<T> builder(R2dbcEntityTemplate template, Class<T> entityType) {
+        return new Builder<>(template, entityType);
+    }
+
+    /** 写入一行，成功后并入聚合。返回落库后的实体；与其他写入合并成批时 id 不回填。 */
+    Mono<T> insert(T entity) {
+        return Mono.defer(() -> {
+            Mono<Void> scanning;
+            long insertGeneration = -1;
+            synchronized (this) {
+                scanning = ready != null && !loaded ? ready : null;
+                if (scanning == null) {
+                    if (loaded) {
+                        insertGeneration = generation;
+                    }
+                    pendingInserts++;
+                }
+            }
+            if (scanning != null) {
+                // 扫描可能读到也可能读不到这一行，等它结束（失败也照常写入）后重新判断
+                return scanning.onErrorResume(e -> Mono.empty()).then(insert(entity));
+            }
+            long applyGeneration = insertGeneration;
+            return inserts.insert(entity)
+                    .doOnNext(row -> applyInserted(applyGeneration, row))
+                    .doFinally(signal -> insertFinished());
+        });
+    }
+
+    /** 等初始扫描完成后，在锁内用 view 组装一次只读结果。 */
+    <R> Mono<R> read(Supplier<R> view) {
+        return ensureLoaded().then(locked(view));
+    }
+
+    private <R> Mono<R> locked(Supplier<R> view) {
+        return Mono.fromSupplier(() -> {
+            synchronized (this) {
+                return view.get();
+            }
+        });
+    }
+
+    /**
+     * 删除全表并作废聚合。与 DELETE 并发的写入可能落在删除之前或之后，
+     * 因此不直接清零，而是交给下一次读取重新扫描（此时表里只剩删除之后的行）。
+     */
+    Mono<Void> deleteAll() {
+        return Mono.defer(() -> template.delete(entityType).all())
+                .doOnSuccess(ignored -> invalidate())
+                .then();
+    }
+
+    /** 丢弃全部聚合，下次读取时重新扫描全表；用于绕过本实例直接改表（如批量删除）之后。 */
+    synchronized void invalidate() {
+        generation++;
+        loaded = false;
+        if (ready != null) {
+            ready = null;
+            clear();
+        }
+    }
+
+    /** 停机时把排队的写入写完，由持有本实例的 bean 在 {@code @PreDestroy} 中调用。 */
+    void drain() {
+        inserts.drain();
+    }
+
+    /** 已计入的总行数，须在 {@link #read} 的 view 内调用。 */
+    long count() {
+        return rows;
+    }
+
+    private Mono<Void> ensureLoaded() {
+        Mono<Void> loaded = ready;
+        if (loaded != null) {
+            return loaded;
+        }
+        synchronized (this) {
+            if (ready == null) {
+                Mono<Void> drained = Mono.empty();
+                if (pendingInserts > 0) {
+                    // 被作废的旧扫描可能还在等同一批 INSERT，共用一个信号，别让它永远等下去
+                    if (insertsDrained == null) {
+                        insertsDrained = Sinks.empty();
+                    }
+                    drained = insertsDrained.asMono();
+                }
+                long scanGeneration = generation;
+                ready = drained
+                        .then(Mono.defer(() -> template.select(entityType).all()
+                                .doOnNext(row -> applyScanned(scanGeneration, row))
+                                .then()))
+                        .doOnSuccess(ignored -> scanFinished(scanGeneration))
+                        .doOnError(e -> {
+                            synchronized (this) {
+                                if (generation == scanGeneration) {
+                                    ready = null;
+                                    clear();
+                                }
+                            }
+                        })
+                        .cache();
+            }
+            return ready;
+        }
+    }
+
+    private synchronized void scanFinished(long scanGeneration) {
+        if (scanGeneration == generation) {
+            loaded = true;
+        }
+    }
+
+    private synchronized void insertFinished() {
+        if (--pendingInserts == 0 && insertsDrained != null) {
+            insertsDrained.tryEmitEmpty();
+            insertsDrained = null;
+        }
+    }
+
+    /** 扫描完成后发出的 INSERT：期间若被作废，重新扫描会读到这一行，这里不再并入。 */
+    private synchronized void applyInserted(long insertGeneration, T row) {
+        if (loaded && insertGeneration == generation) {
+            apply(row);
+        }
+    }
+
+    private synchronized void applyScanned(long scanGeneration, T row) {
+        if (scanGeneration == generation) {
+            apply(row);
+        }
+    }
+
+    private synchronized void apply(T row) {
+        rows++;
+        for (Aggregate<T> aggregate : aggregates) {
+            aggregate.add(row);
+        }
+    }
+
+    private synchronized void clear() {
+        rows = 0;
+        for (Aggregate<T> aggregate : aggregates) {
+            aggregate.clear();
+        }
+    }
+
+    /** 声明聚合的构建器；每个声明方法返回对应聚合的句柄。 */
+    static final class Builder<T> {
+
+        private final R2dbcEntityTemplate template;
+        private final Class<T> entityType;
+        private final List<Aggregate<T>> aggregates = new ArrayList<>();
+
+        private Builder(R2dbcEntityTemplate template, Class<T> entityType) {
+            this.template = template;
+            this.entityType = entityType;
+        }
+
+        /** 满足 filter 的行数。 */
+        Counter<T> count(Predicate<? super T> filter) {
+            return register(new Counter<>(filter));
+        }
+
+        /** 对 value 求和、均值与最值。 */
+        Summary<T> summary(ToDoubleFunction<? super T> value) {
+            return summary(row -> true, value);
+        }
+
+        /** 只对满足 filter 的行求和、均值与最值。 */
+        Summary<T> summary(Predicate<? super T> filter, ToDoubleFunction<? super T> value) {
+            return register(new Summary<>(filter, value));
+        }
+
+        /** 按 classifier 分组计数，分组按首次出现的顺序排列。classifier 返回 null 的行不计入。 */
+        <K> GroupCount<T, K> countBy(Function<? super T, ? extends K> classifier) {
+            return register(new GroupCount<>(classifier));
+        }
+
+        /** 按 comparator 排序后的前 limit 行，只保留满足 filter 的行；顺序相同者先写入的在前。 */
+        TopK<T> top(int limit, Comparator<? super T> comparator, Predicate<? super T> filter) {
+            return register(new TopK<>(limit, comparator, filter));
+        }
+
+        /** 有界整数分值 [min, max] 上的名次索引（树状数组，值域外的分值也能正确计入）。 */
+        IntRank<T> rank(ToIntFunction<? super T> value, int min, int max) {
+            return register(new IntRank<>(value, min, max));
+        }
+
+        /** 任意 double 分值上的名次索引（可索引跳表）。 */
+        DoubleRank<T> rank(ToDoubleFunction<? super T> value) {
+            return register(new DoubleRank<>(value));
+        }
+
+        /**
+         * 按 key 去重、每个 key 只保留 value 最高的一行（并列时保留先写入的），
+         * 并在各 key 的最高值上维护名次索引。key 为 null 的行不计入。
+         */
+        <K> BestByKey<T, K> bestBy(Function<? super T, ? extends K> key, ToDoubleFunction<? super T> value) {
+            return register(new BestByKey<>(key, value));
+        }
+
+        /** value 的中位数（双堆维护）。 */
+        Median<T> median(ToIntFunction<? super T> value) {
+            return register(new Median<>(value));
+        }
+
+        /** 自定义折叠：state 由 factory 创建，每行调用 accumulator 累加。 */
+        <A> Fold<T, A> fold(Supplier<A> factory, BiConsumer<A, ? super T> accumulator) {
+            return register(new Fold<>(factory, accumulator));
+        }
+
+        LiveAggregates<T> build() {
+            return new LiveAggregates<>(template, entityType, aggregates);
+        }
+
+        private <H extends Aggregate<T>> H register(H aggregate) {
+            aggregates.add(aggregate);
+            return aggregate;
+        }
+    }
+
+    static final class Counter<T> implements Aggregate<T> {
+
+        private final Predicate<? super T> filter;
+        private long count;
+
+        private Counter(Predicate<? super T> filter) {
+            this.filter = filter;
+        }
+
+        long get() {
+            return count;
+        }
+
+        @Override
+        public void add(T row) {
+            if (filter.test(row)) {
+                count++;
+            }
+        }
+
+        @Override
+        public void clear() {
+            count = 0;
+        }
+    }
+
+    /** 计数、Kahan 补偿求和（与 DoubleStream.sum 一致）、最值。 */
+    static final class Summary<T> implements Aggregate<T> {
+
+        private final Predicate<? super T> filter;
+        private final ToDoubleFunction<? super T> value;
+        private long count;
+        private double sum;
+        private double compensation;
+        private double min;
+        private double max;
+
+        private Summary(Predicate<? super T> filter, ToDoubleFunction<? super T> value) {
+            this.filter = filter;
+            this.value = value;
+            clear();
+        }
+
+        long count() {
+            return count;
+        }
+
+        double sum() {
+            return sum;
+        }
+
+        /** 均值；没有数据时返回 0。 */
+        double mean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /** 最小值；没有数据时返回 0。 */
+        double min() {
+            return count == 0 ? 0 : min;
+        }
+
+        /** 最大值；没有数据时返回 0。 */
+        double max() {
+            return count == 0 ? 0 : max;
+        }
+
+        @Override
+        public void add(T row) {
+            if (!filter.test(row)) {
+                return;
+            }
+            double v = value.applyAsDouble(row);
+            double y = v - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            count++;
+        }
+
+        @Override
+        public void clear() {
+            count = 0;
+            sum = 0;
+            compensation = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    static final class GroupCount<T, K> implements Aggregate<T> {
+
+        private final Function<? super T, ? extends K> classifier;
+        private final Map<K, long[]> counts = new LinkedHashMap<>();
+
+        private GroupCount(Function<? super T, ? extends K> classifier) {
+            this.classifier = classifier;
+        }
+
+        long get(K key) {
+            long[] c = counts.get(key);
+            return c == null ? 0 : c[0];
+        }
+
+        /** 不同分组的个数。 */
+        int groups() {
+            return counts.size();
+        }
+
+        /** 当前计数的副本，按分组首次出现的顺序。 */
+        Map<K, Long> snapshot() {
+            Map<K, Long> out = new LinkedHashMap<>();
+            counts.forEach((k, c) -> out.put(k, c[0]));
+            return out;
+        }
+
+        /** 计数最多的分组，并列时取先出现的；没有数据时返回 defaultValue。 */
+        K mostFrequentOrDefault(K defaultValue) {
+            K best = defaultValue;
+            long bestCount = 0;
+            for (Map.Entry<K, long[]> e : counts.entrySet()) {
+                if (e.getValue()[0] > bestCount) {
+                    best = e.getKey();
+                    bestCount = e.getValue()[0];
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public void add(T row) {
+            K key = classifier.apply(row);
+            if (key != null) {
+                counts.computeIfAbsent(key, k -> new long[1])[0]++;
+            }
+        }
+
+        @Override
+        public void clear() {
+            counts.clear();
+        }
+    }
+
+    /** 有序的前 limit 行；新行插到所有与它相等的行之后，保持与稳定排序一致。 */
+    static final class TopK<T> implements Aggregate<T> {
+
+        private final int limit;
+        private final Comparator<? super T> comparator;
+        private final Predicate<? super T> filter;
+        private final List<T> items = new ArrayList<>();
+
+        private TopK(int limit, Comparator<? super T> comparator, Predicate<? super T> filter) {
+            this.limit = limit;
+            this.comparator = comparator;
+            this.filter = filter;
+        }
+
+        /** 前 n 行（n 不超过声明的 limit）的副本。 */
+        List<T> first(int n) {
+            return List.copyOf(items.subList(0, Math.min(n, items.size())));
+        }
+
+        @Override
+        public void add(T row) {
+            if (!filter.test(row)) {
+                return;
+            }
+            if (items.size() == limit && comparator.compare(row, items.get(limit - 1)) >= 0) {
+                return;
+            }
+            int lo = 0;
+            int hi = items.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (comparator.compare(items.get(mid), row) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            items.add(lo, row);
+            if (items.size() > limit) {
+                items.remove(items.size() - 1);
+            }
+        }
+
+        @Override
+        public void clear() {
+            items.clear();
+        }
+    }
+
+    static final class IntRank<T> implements Aggregate<T> {
+
+        private final ToIntFunction<? super T> value;
+        private final FenwickCounter counter;
+
+        private IntRank(ToIntFunction<? super T> value, int min, int max) {
+            this.value = value;
+            this.counter = new FenwickCounter(min, max);
+        }
+
+        /** 分值严格高于 score 的行数；“高分在前”的名次即此值 + 1。 */
+        long countAbove(int score) {
+            return counter.countGreater(score);
+        }
+
+        /** 分值严格低于 score 的行数。 */
+        long countBelow(int score) {
+            return counter.countLess(score);
+        }
+
+        @Override
+        public void add(T row) {
+            counter.add(value.applyAsInt(row));
+        }
+
+        @Override
+        public void clear() {
+            counter.clear();
+        }
+    }
+
+    static final class DoubleRank<T> implements Aggregate<T> {
+
+        private final ToDoubleFunction<? super T> value;
+        private final RankSkipList list = new RankSkipList();
+
+        private DoubleRank(ToDoubleFunction<? super T> value) {
+            this.value = value;
+        }
+
+        /** 分值严格高于 score 的行数。 */
+        long countAbove(double score) {
+            return list.countGreater(score);
+        }
+
+        /** 分值严格低于 score 的行数；“低分在前”的名次即此值 + 1。 */
+        long countBelow(double score) {
+            return list.countLess(score);
+        }
+
+        @Override
+        public void add(T row) {
+            list.add(value.applyAsDouble(row));
+        }
+
+        @Override
+        public void clear() {
+            list.clear();
+        }
+    }
+
+    static final class BestByKey<T, K> implements Aggregate<T> {
+
+        private final Function<? super T, ? extends K> key;
+        private final ToDoubleFunction<? super T> value;
+        private final Map<K, T> best = new HashMap<>();
+        private final RankSkipList bestValues = new RankSkipList();
+
+        private BestByKey(Function<? super T, ? extends K> key, ToDoubleFunction<? super T> value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        /** 不同 key 的个数。 */
+        int keys() {
+            return best.size();
+        }
+
+        /** key 的最高一行，没有时返回 null。 */
+        T best(K k) {
+            return best.get(k);
+        }
+
+        /** 最高值严格高于 score 的 key 个数。 */
+        long countAbove(double score) {
+            return bestValues.countGreater(score);
+        }
+
+        /** 各 key 最高行中按 comparator 排在前面的 limit 行。 */
+        List<T> top(int limit, Comparator<? super T> comparator) {
+            if (limit <= 0) {
+                return List.of();
+            }
+            PriorityQueue<T> heap = new PriorityQueue<>(limit + 1, comparator.reversed());
+            for (T row : best.values()) {
+                heap.add(row);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+            List<T> out = new ArrayList<>(heap);
+            out.sort(comparator);
+            return out;
+        }
+
+        @Override
+        public void add(T row) {
+            K k = key.apply(row);
+            if (k == null) {
+                return;
+            }
+            double v = value.applyAsDouble(row);
+            T previous = best.get(k);
+            if (previous == null) {
+                best.put(k, row);
+                bestValues.add(v);
+            } else if (v > value.applyAsDouble(previous)) {
+                best.put(k, row);
+                bestValues.remove(value.applyAsDouble(previous));
+                bestValues.add(v);
+            }
+        }
+
+        @Override
+        public void clear() {
+            best.clear();
+            bestValues.clear();
+        }
+    }
+
+    /** 大顶堆存较小的一半、小顶堆存较大的一半，两堆大小差不超过 1。 */
+    static final class Median<T> implements Aggregate<T> {
+
+        private final ToIntFunction<? super T> value;
+        private final PriorityQueue<Integer> lower = new PriorityQueue<>(Collections.reverseOrder());
+        private final PriorityQueue<Integer> upper = new PriorityQueue<>();
+
+        private Median(ToIntFunction<? super T> value) {
+            this.value = value;
+        }
+
+        /** 中位数，偶数个时取中间两数的平均；没有数据时返回 0。 */
+        double get() {
+            if (lower.isEmpty()) {
+                return 0;
+            }
+            if (lower.size() > upper.size()) {
+                return lower.peek();
+            }
+            return (lower.peek() + upper.peek()) / 2.0;
+        }
+
+        @Override
+        public void add(T row) {
+            int v = value.applyAsInt(row);
+            if (lower.isEmpty() || v <= lower.peek()) {
+                lower.add(v);
+            } else {
+                upper.add(v);
+            }
+            if (lower.size() > upper.size() + 1) {
+                upper.add(lower.poll());
+            } else if (upper.size() > lower.size()) {
+                lower.add(upper.poll());
+            }
+        }
+
+        @Override
+        public void clear() {
+            lower.clear();
+            upper.clear();
+        }
+    }
+
+    static final class Fold<T, A> implements Aggregate<T> {
+
+        private final Supplier<A> factory;
+        private final BiConsumer<A, ? super T> accumulator;
+        private A state;
+
+        private Fold(Supplier<A> factory, BiConsumer<A, ? super T> accumulator) {
+            this.factory = factory;
+            this.accumulator = accumulator;
+            this.state = factory.get();
+        }
+
+        /** 当前状态，须在 {@link LiveAggregates#read} 的 view 内读取。 */
+        A get() {
+            return state;
+        }
+
+        @Override
+        public void add(T row) {
+            accumulator.accept(state, row);
+        }
+
+        @Override
+        public void clear() {
+            state = factory.get();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.MonkeyLeader
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.MonkeyStatsResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.MonkeySubmitResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.MonkeyStat;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -18,10 +19,20 @@ import java.util.List;
 @Service
 public class MonkeyStatsService {
 
-    private final R2dbcEntityTemplate template;
+    /** 成功样本排序：目标文本越长越靠前，同长度下尝试次数越少越靠前。 */
+    private static final Comparator<MonkeyStat> SUCCESS_ORDER =
+            Comparator.comparingInt(MonkeyStat::targetLength).reversed()
+                    .thenComparingLong(MonkeyStat::totalAttempts);
+
+    private final LiveAggregates<MonkeyStat> aggregates;
+    private final LiveAggregates.Counter<MonkeyStat> successes;
+    private final LiveAggregates.TopK<MonkeyStat> topSuccesses;
 
     public MonkeyStatsService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<MonkeyStat> builder = LiveAggregates.builder(template, MonkeyStat.class);
+        this.successes = builder.count(MonkeyStat::success);
+        this.topSuccesses = builder.top(10, SUCCESS_ORDER, MonkeyStat::success);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -39,23 +50,12 @@ public class MonkeyStatsService {
                                             long totalChars, boolean success, int timeElapsed) {
         MonkeyStat entity = new MonkeyStat(
                 null, targetText, targetLength, totalAttempts, totalChars, success, timeElapsed, System.currentTimeMillis());
-        return template.insert(MonkeyStat.class).using(entity).then(submitStats());
-    }
-
-    private Mono<MonkeySubmitResponse> submitStats() {
-        return ServiceSupport.selectAll(template, MonkeyStat.class)
-                .map(rows -> {
-                    long totalRuns = rows.size();
-                    long totalSuccesses = rows.stream().filter(MonkeyStat::success).count();
-                    double successRate = totalRuns == 0 ? 0.0 : round3((double) totalSuccesses / totalRuns);
-                    List<MonkeyStat> successRows = ServiceSupport.sorted(
-                            rows.stream().filter(MonkeyStat::success).toList(),
-                            Comparator.comparingInt(MonkeyStat::targetLength).reversed()
-                                    .thenComparingLong(MonkeyStat::totalAttempts)
-                    );
-                    String longestTarget = successRows.isEmpty() ? null : successRows.get(0).targetText();
-                    return new MonkeySubmitResponse(totalRuns, totalSuccesses, successRate, longestTarget);
-                });
+        return aggregates.insert(entity).then(aggregates.read(() -> {
+            long totalRuns = aggregates.count();
+            long totalSuccesses = successes.get();
+            double successRate = totalRuns == 0 ? 0.0 : round3((double) totalSuccesses / totalRuns);
+            return new MonkeySubmitResponse(totalRuns, totalSuccesses, successRate, longestTarget());
+        }));
     }
 
     /**
@@ -64,33 +64,26 @@ public class MonkeyStatsService {
      * @return 包含全局指标与排行榜的统计响应
      */
     public Mono<MonkeyStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, MonkeyStat.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /** 聚合成功率、最长成功文本和成功样本排行榜。 */
-    private MonkeyStatsResponse toStatsResponse(List<MonkeyStat> rows) {
-        long totalRuns = rows.size();
-        long totalSuccesses = rows.stream().filter(MonkeyStat::success).count();
+    private MonkeyStatsResponse toStatsResponse() {
+        long totalRuns = aggregates.count();
+        long totalSuccesses = successes.get();
         double successRate = totalRuns == 0 ? 0.0 : round3((double) totalSuccesses / totalRuns);
-        List<MonkeyStat> successRows = ServiceSupport.sorted(
-                rows.stream().filter(MonkeyStat::success).toList(),
-                Comparator.comparingInt(MonkeyStat::targetLength).reversed()
-                        .thenComparingLong(MonkeyStat::totalAttempts)
-        );
-        return new MonkeyStatsResponse(
-                totalRuns,
-                totalSuccesses,
-                successRate,
-                successRows.isEmpty() ? null : successRows.get(0).targetText(),
-                toLeaderboard(successRows)
-        );
+        return new MonkeyStatsResponse(totalRuns, totalSuccesses, successRate, longestTarget(), toLeaderboard());
     }
 
-    /** 从成功样本中选取前 10 条，供前端展示示例排行榜。 */
-    private List<MonkeyLeaderboardEntry> toLeaderboard(List<MonkeyStat> successRows) {
+    private String longestTarget() {
+        List<MonkeyStat> top = topSuccesses.first(1);
+        return top.isEmpty() ? null : top.get(0).targetText();
+    }
+
+    /** 成功样本的前 10 条，供前端展示示例排行榜。 */
+    private List<MonkeyLeaderboardEntry> toLeaderboard() {
         List<MonkeyLeaderboardEntry> leaderboard = new ArrayList<>();
-        for (MonkeyStat row : successRows.stream().limit(10).toList()) {
+        for (MonkeyStat row : topSuccesses.first(10)) {
             leaderboard.add(new MonkeyLeaderboardEntry(
                     row.targetText(),
                     row.targetLength(),
@@ -104,4 +97,9 @@ public class MonkeyStatsService {
     private double round3(double value) {
         return ServiceSupport.round(value, 3);
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
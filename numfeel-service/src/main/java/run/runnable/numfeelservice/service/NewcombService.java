@@ -2,11 +2,11 @@ package run.runnable.numfeelservice.service;
 
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.NewcombStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.NewcombResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -17,10 +17,17 @@ public class NewcombService {
 
     private static final Set<String> VALID_CHOICES = Set.of("one", "two");
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<NewcombResult> aggregates;
+    private final LiveAggregates.Summary<NewcombResult> oneBox;
+    private final LiveAggregates.Summary<NewcombResult> twoBox;
+    private final LiveAggregates.Counter<NewcombResult> hits;
 
     public NewcombService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<NewcombResult> builder = LiveAggregates.builder(template, NewcombResult.class);
+        this.oneBox = builder.summary(row -> "one".equals(row.choice()), NewcombResult::payoff);
+        this.twoBox = builder.summary(row -> "two".equals(row.choice()), NewcombResult::payoff);
+        this.hits = builder.count(NewcombResult::hit);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -36,7 +43,7 @@ public class NewcombService {
     /** 保存一次单盒/双盒选择结果，并返回最新统计。 */
     public Mono<NewcombStatsResponse> submit(String choice, String prediction, boolean hit, int payoff) {
         NewcombResult entity = new NewcombResult(null, choice, prediction, hit, payoff, System.currentTimeMillis());
-        return template.insert(NewcombResult.class).using(entity).then(queryStats());
+        return aggregates.insert(entity).then(queryStats());
     }
 
     /** 查询 Newcomb 悖论整体样本统计。 */
@@ -46,36 +53,31 @@ public class NewcombService {
 
     /** 统一查询路径，避免 submit 和 stats 各自复制统计逻辑。 */
     private Mono<NewcombStatsResponse> queryStats() {
-        return ServiceSupport.selectAll(template, NewcombResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /** 聚合单盒/双盒选择分布、命中率和平均收益。 */
-    private NewcombStatsResponse toStatsResponse(List<NewcombResult> rows) {
-        long total = rows.size();
-        long oneBox = rows.stream().filter(row -> "one".equals(row.choice())).count();
-        long twoBox = rows.stream().filter(row -> "two".equals(row.choice())).count();
-        long hits = rows.stream().filter(NewcombResult::hit).count();
+    private NewcombStatsResponse toStatsResponse() {
+        long total = aggregates.count();
+        long oneBoxCount = oneBox.count();
+        long twoBoxCount = twoBox.count();
+        long hitCount = hits.get();
 
         return new NewcombStatsResponse(
                 total,
-                oneBox,
-                twoBox,
-                hits,
-                total > 0 ? ServiceSupport.percentage(hits, total, 1) : 0,
-                total > 0 ? ServiceSupport.percentage(oneBox, total, 1) : 0,
-                total > 0 ? ServiceSupport.percentage(twoBox, total, 1) : 0,
-                roundAvg(rows, "one"),
-                roundAvg(rows, "two")
+                oneBoxCount,
+                twoBoxCount,
+                hitCount,
+                total > 0 ? ServiceSupport.percentage(hitCount, total, 1) : 0,
+                total > 0 ? ServiceSupport.percentage(oneBoxCount, total, 1) : 0,
+                total > 0 ? ServiceSupport.percentage(twoBoxCount, total, 1) : 0,
+                Math.round(oneBox.mean()),
+                Math.round(twoBox.mean())
         );
     }
 
-    /** 计算某一选择下的平均收益，并四舍五入为整数。 */
-    private long roundAvg(List<NewcombResult> rows, String choice) {
-        return Math.round(rows.stream()
-                .filter(row -> choice.equals(row.choice()))
-                .mapToInt(NewcombResult::payoff)
-                .average()
-                .orElse(0));
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
     }
 }
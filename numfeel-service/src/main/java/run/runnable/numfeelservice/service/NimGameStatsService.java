@@ -2,6 +2,7 @@ package run.runnable.numfeelservice.service;
 
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.NimGameStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.NimGameStat;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -12,10 +13,17 @@ import reactor.core.publisher.Mono;
 @Service
 public class NimGameStatsService {
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<NimGameStat> aggregates;
+    private final LiveAggregates.GroupCount<NimGameStat, String> results;
+    private final LiveAggregates.GroupCount<NimGameStat, String> hardResults;
+    private final LiveAggregates.GroupCount<NimGameStat, String> difficulties;
 
     public NimGameStatsService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<NimGameStat> builder = LiveAggregates.builder(template, NimGameStat.class);
+        this.results = builder.countBy(NimGameStat::result);
+        this.hardResults = builder.countBy(row -> "hard".equals(row.difficulty()) ? row.result() : null);
+        this.difficulties = builder.countBy(NimGameStat::difficulty);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -29,7 +37,7 @@ public class NimGameStatsService {
      */
     public Mono<NimGameStatsResponse> submit(String result, String difficulty, int rounds, String preset) {
         NimGameStat entity = new NimGameStat(null, result, difficulty, rounds, preset, System.currentTimeMillis());
-        return template.insert(NimGameStat.class).using(entity).then(getStats());
+        return aggregates.insert(entity).then(getStats());
     }
 
     /**
@@ -38,21 +46,16 @@ public class NimGameStatsService {
      * @return 包含全局指标与难度分布的统计响应
      */
     public Mono<NimGameStatsResponse> getStats() {
-        return ServiceSupport.selectAll(template, NimGameStat.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /** 聚合玩家胜率、AI 胜率以及不同难度的对局分布。 */
-    private NimGameStatsResponse toStatsResponse(java.util.List<NimGameStat> rows) {
-        long total = rows.size();
-        long playerWins = rows.stream().filter(row -> "win".equals(row.result())).count();
-        long aiWins = rows.stream().filter(row -> "lose".equals(row.result())).count();
-        long aiWinsHard = rows.stream()
-                .filter(row -> "lose".equals(row.result()) && "hard".equals(row.difficulty()))
-                .count();
-        long playerWinsHard = rows.stream()
-                .filter(row -> "win".equals(row.result()) && "hard".equals(row.difficulty()))
-                .count();
+    private NimGameStatsResponse toStatsResponse() {
+        long total = aggregates.count();
+        long playerWins = results.get("win");
+        long aiWins = results.get("lose");
+        long aiWinsHard = hardResults.get("lose");
+        long playerWinsHard = hardResults.get("win");
 
         return new NimGameStatsResponse(
                 total,
@@ -60,18 +63,18 @@ public class NimGameStatsService {
                 aiWins,
                 round1(total > 0 ? aiWins * 100.0 / total : 0),
                 round1((aiWinsHard + playerWinsHard) > 0 ? aiWinsHard * 100.0 / (aiWinsHard + playerWinsHard) : 0),
-                countByDifficulty(rows, "easy"),
-                countByDifficulty(rows, "normal"),
-                countByDifficulty(rows, "hard")
+                difficulties.get("easy"),
+                difficulties.get("normal"),
+                difficulties.get("hard")
         );
     }
 
-    /** 统计某个难度档位下的对局数量。 */
-    private long countByDifficulty(java.util.List<NimGameStat> rows, String difficulty) {
-        return rows.stream().filter(row -> difficulty.equals(row.difficulty())).count();
-    }
-
     private double round1(double value) {
         return ServiceSupport.round(value, 1);
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
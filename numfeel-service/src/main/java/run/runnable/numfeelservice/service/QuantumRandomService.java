@@ -1,24 +1,24 @@
 package run.runnable.numfeelservice.service;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import tools.jackson.databind.node.ArrayNode;
 
 import java.security.SecureRandom;
-import java.time.Duration;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 真随机熵源服务：熵源链 + 字节池缓存 + 无偏抽取。
@@ -29,6 +29,15 @@ import java.util.concurrent.atomic.AtomicLong;
  * 3. {@code secure}——本地 {@link SecureRandom}（CSPRNG，诚实标注非真随机）。
  * <p>
  * 诚实标注：被降级时 {@link Entropy#degraded} 为 true，前端据此显示徽章，绝不谎称量子。
+ * <p>
+ * 字节池：quantum、atmospheric 各一个 {@link EntropyRing}（{@code byte[]} 环形缓冲，读取方批量无锁预留）。
+ * 上游取回的字节一律先进池，请求再从池里取：池里不够时先取走池中已有的，差额等上游补进池后再取。
+ * 每个池同一时刻至多一个上游请求，并发的缺口都挂在这一个请求上，补进池后各取各的，N 个并发缺口只打一次上游。
+ * <p>
+ * 预取：每个池按取用量估计消耗速率（字节/秒，指数移动平均），下一批取约 {@value #PREFETCH_SECONDS} 秒的用量
+ * （不少于 {@value #MIN_BATCH}、不超过上游单次上限与池的空位）；池中字节少于约 {@value #LEAD_SECONDS} 秒的用量
+ * （不少于 {@value #LOW_WATER}）时开始补充。取用后低于水位立即补充，后台也定时检查；
+ * 超过 {@value #IDLE_MINUTES} 分钟没人取用的池不再补充。所以 {@code /random/bytes} 通常直接从池里拿到字节，不等上游 HTTP。
  */
 @Service
 public class QuantumRandomService {
@@ -41,24 +50,48 @@ public class QuantumRandomService {
 
     private static final int MIN_BATCH = 1024;
     private static final int MAX_BYTES = 8192;
+    /** 批量抽取一次最多的个数。 */
+    private static final int MAX_BATCH_DRAWS = 10_000;
     private static final int POOL_CAP = 8192;
+    /** 补充水位的下限：池低于该字节数时补充。 */
+    private static final int LOW_WATER = POOL_CAP / 16;
+    /** 池中字节少于这么多秒的用量时补充。 */
+    private static final long LEAD_SECONDS = 3;
+    /** 每批上游请求取这么多秒的用量。 */
+    private static final long PREFETCH_SECONDS = 10;
+    /** 消耗速率移动平均的平滑系数。 */
+    private static final double RATE_ALPHA = 0.3;
+    /** 请求等上游补池的最多轮数；每轮至多一次上游请求。 */
+    private static final int MAX_FILL_ROUNDS = 3;
+    /** 超过这么久没人取用的池不再补充，避免空闲时白白消耗上游配额。 */
+    private static final long IDLE_MINUTES = 5;
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(IDLE_MINUTES);
+    /** 后台补充失败后暂停补充的时长。 */
+    private static final long REFILL_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+    /** 上游单次最多返回的字节数。 */
+    private static final int QUANTUM_MAX_FETCH = 2000;
+    private static final int ATMOSPHERIC_MAX_FETCH = 1000;
 
     private final WebClient ninjaApiWebClient;
     private final WebClient randomOrgWebClient;
     private final String ninjaApiToken;
     private final SecureRandom secureRandom = new SecureRandom();
 
-    /** 字节池：按 source 维护一段已取到的随机字节，避免每次请求都打上游。 */
-    private final Cache<String, Deque<Integer>> bytePool = Caffeine.newBuilder()
-            .expireAfterWrite(Duration.ofMinutes(5))
-            .maximumSize(16)
-            .build();
+    /** 字节池：quantum、atmospheric 各一个；secure 本地生成，不需要池。 */
+    private final BytePool quantumPool = new BytePool(SOURCE_QUANTUM, QUANTUM_MAX_FETCH);
+    private final BytePool atmosphericPool = new BytePool(SOURCE_ATMOSPHERIC, ATMOSPHERIC_MAX_FETCH);
 
     /** 统计用：上游成功/失败次数。仅作可观测性指标。 */
     private final AtomicLong quantumHits = new AtomicLong();
     private final AtomicLong atmosphericHits = new AtomicLong();
     private final AtomicLong secureHits = new AtomicLong();
     private final AtomicLong fallbackEvents = new AtomicLong();
+    /** 实际发出的上游请求数，与挂到已有请求上的缺口数。 */
+    private final AtomicLong upstreamFetches = new AtomicLong();
+    private final AtomicLong coalescedWaiters = new AtomicLong();
+    /** quantum / atmospheric 请求的字节数，与其中直接由池满足的字节数。 */
+    private final AtomicLong pooledRequestedBytes = new AtomicLong();
+    private final AtomicLong pooledServedBytes = new AtomicLong();
 
     /**
      * 构造服务。
@@ -91,68 +124,206 @@ public class QuantumRandomService {
      * @return 取到的字节与来源信息
      */
     public Mono<Entropy> bytes(int count, String requestedSource) {
-        int n = Math.max(1, Math.min(count, MAX_BYTES));
         String want = normalizeSource(requestedSource);
-        return resolveFromPool(n, want)
-                .flatMap(poolHit -> {
-                    if (poolHit.satisfied) {
-                        return Mono.just(new Entropy(poolHit.bytes, poolHit.actualSource, poolHit.provider,
-                                !sameSource(want, poolHit.actualSource), want));
-                    }
-                    // 池里不够，按链补
-                    return fetchChain(want, n)
-                            .map(fetched -> {
-                                // 多取的留进池
-                                if (fetched.bytes.size() > n) {
-                                    stashPool(fetched.source, fetched.provider, fetched.bytes.subList(n, fetched.bytes.size()));
-                                }
-                                List<Integer> dispense = fetched.bytes.size() >= n
-                                        ? fetched.bytes.subList(0, n) : fetched.bytes;
-                                return new Entropy(dispense, fetched.source, fetched.provider,
-                                        !sameSource(want, fetched.source), want);
-                            });
+        return rawBytes(Math.max(1, Math.min(count, MAX_BYTES)), want)
+                .map(f -> new Entropy(new UnsignedByteList(f.bytes), f.source, f.provider,
+                        !sameSource(want, f.source), want));
+    }
+
+    /** 取 n（≤ {@value #MAX_BYTES}）个字节：先从池里取，差额按链补。 */
+    private Mono<Fetched> rawBytes(int n, String want) {
+        BytePool pool = poolOf(want);
+        byte[] out = new byte[n];
+        int pooled = 0;
+        if (pool != null) {
+            pooled = pool.take(out, 0, n);
+            pooledRequestedBytes.addAndGet(n);
+            pooledServedBytes.addAndGet(pooled);
+        }
+        if (pooled == n) {
+            // 池中字节记不得 provider 元信息，统一用"上游缓存"
+            return Mono.just(new Fetched(out, want, providerOf(want) + "（字节池缓存）"));
+        }
+        // 池里不够：池中已有的先用上，差额按链补
+        int head = pooled;
+        return fetchChain(want, n - head)
+                .map(fetched -> {
+                    System.arraycopy(fetched.bytes, 0, out, head, fetched.bytes.length);
+                    int total = head + fetched.bytes.length;
+                    byte[] dispense = total == n ? out : Arrays.copyOf(out, total);
+                    // 补差额的源被降级时，整段按降级后的源标注
+                    return new Fetched(dispense, fetched.source, fetched.provider);
                 });
     }
 
     // ── 池操作 ──
-    private record PoolHit(boolean satisfied, List<Integer> bytes, String actualSource, String provider) {
-    }
 
-    private Mono<PoolHit> resolveFromPool(int n, String want) {
-        Deque<Integer> pool = bytePool.getIfPresent(poolKey(want));
-        if (pool != null && pool.size() >= n) {
-            List<Integer> taken = new ArrayList<>(n);
-            synchronized (pool) {
-                for (int i = 0; i < n; i++) taken.add(pool.poll());
+    /** 一个熵源的字节池、上游请求与补充状态。 */
+    private final class BytePool {
+        final String source;
+        final int maxFetch;
+        final EntropyRing ring = new EntropyRing(POOL_CAP);
+        /** 正在进行的上游请求，完成（字节已进池）时结束；没有时为 null。 */
+        final AtomicReference<Mono<Void>> inFlight = new AtomicReference<>();
+        /** 累计取走的字节数，用于估计消耗速率。 */
+        final AtomicLong consumed = new AtomicLong();
+        /** 最近一次取用的时刻（System.nanoTime）；从未取用时为 0。 */
+        volatile long lastDemand;
+        /** 补充失败后，早于该时刻不再补充；0 表示没有失败过。 */
+        volatile long retryAt;
+        /** 消耗速率（字节/秒）的指数移动平均。 */
+        volatile double rate;
+        /** 上一次采样的时刻与累计取走量，只由定时任务读写。 */
+        private long sampledAt;
+        private long sampledConsumed;
+
+        BytePool(String source, int maxFetch) {
+            this.source = source;
+            this.maxFetch = maxFetch;
+        }
+
+        /** 从池中取出至多 n 个字节写入 dest[off, ...)，不等上游。 */
+        int take(byte[] dest, int off, int n) {
+            lastDemand = System.nanoTime();
+            int taken = ring.poll(dest, off, n);
+            consumed.addAndGet(taken);
+            // 池本来就空时缺口由请求自己挂上游请求补，不另发一次
+            if (taken > 0 && ring.available() < lowWater()) {
+                refill(this);
             }
-            // 池中字节记不得 provider 元信息，统一用"上游缓存"
-            return Mono.just(new PoolHit(true, taken, want, providerOf(want) + "（字节池缓存）"));
+            return taken;
         }
-        if (pool != null && !pool.isEmpty()) {
-            // 不够 n，先把池里全用掉再补差——简化起见直接补：清池重新拉
-            synchronized (pool) { pool.clear(); }
+
+        /**
+         * 取 n 个字节：池里不够时挂到（或发起）上游请求上，等字节进池后再取，至多 {@value #MAX_FILL_ROUNDS} 轮。
+         * 最后一轮仍不够时有多少给多少；一个也没有则报错，由调用方降级。
+         */
+        Mono<byte[]> acquire(int n) {
+            return acquire(new byte[n], 0, 0);
+        }
+
+        private Mono<byte[]> acquire(byte[] out, int got, int round) {
+            return Mono.defer(() -> {
+                int total = got + take(out, got, out.length - got);
+                if (total == out.length) {
+                    return Mono.just(out);
+                }
+                if (round == MAX_FILL_ROUNDS) {
+                    return total > 0
+                            ? Mono.just(Arrays.copyOf(out, total))
+                            : Mono.error(new IllegalStateException(source + " 上游没有补进字节"));
+                }
+                return fill(out.length - total, true).then(acquire(out, total, round + 1));
+            });
         }
-        return Mono.just(new PoolHit(false, List.of(), want, ""));
-    }
 
-    private void stashPool(String source, String provider, List<Integer> extra) {
-        if (extra == null || extra.isEmpty()) return;
-        String key = poolKey(source);
-        Deque<Integer> pool = bytePool.get(key, k -> new ArrayDeque<>());
-        synchronized (pool) {
-            for (Integer b : extra) {
-                if (pool.size() >= POOL_CAP) break;
-                pool.add(b);
+        /**
+         * 让池补进至少 need 个字节：已有上游请求在进行时挂到它上面，否则发起一个。
+         *
+         * @param waiter 调用方是在等字节的请求（计入合并的等待数），而不是后台补充
+         * @return 上游请求结束（字节已进池）时完成；上游失败时报错
+         */
+        Mono<Void> fill(int need, boolean waiter) {
+            for (;;) {
+                Mono<Void> current = inFlight.get();
+                if (current != null) {
+                    if (waiter) {
+                        coalescedWaiters.incrementAndGet();
+                    }
+                    return current;
+                }
+                Sinks.Empty<Void> done = Sinks.empty();
+                Mono<Void> flight = done.asMono();
+                if (!inFlight.compareAndSet(null, flight)) {
+                    continue;
+                }
+                upstreamFetches.incrementAndGet();
+                // 先清掉 inFlight 再通知等待方：字节仍不够的等待方下一轮会发起新的请求，而不是挂回这个已结束的
+                upstream(batchSize(need)).subscribe(
+                        bytes -> ring.offer(bytes, 0, bytes.length),
+                        e -> {
+                            inFlight.set(null);
+                            done.tryEmitError(e);
+                        },
+                        () -> {
+                            inFlight.set(null);
+                            done.tryEmitEmpty();
+                        });
+                return flight;
             }
         }
+
+        private Mono<byte[]> upstream(int count) {
+            return SOURCE_QUANTUM.equals(source) ? fetchQuantum(count) : fetchAtmospheric(count);
+        }
+
+        /**
+         * 一批取约 PREFETCH_SECONDS 秒的用量，且不少于 MIN_BATCH 与“满足 need 后池仍在水位以上”所需的量；
+         * 不超过上游上限，池的空位装不下的部分不取。
+         */
+        int batchSize(int need) {
+            long predicted = Math.round(rate * PREFETCH_SECONDS);
+            long refill = (long) need + lowWater() - ring.available();
+            int size = (int) Math.min(maxFetch, Math.max(Math.max(refill, MIN_BATCH), predicted));
+            int free = ring.capacity() - ring.available();
+            return Math.max(Math.min(need, maxFetch), Math.min(size, free));
+        }
+
+        /** 补充水位：约 LEAD_SECONDS 秒的用量，不低于 LOW_WATER、不超过池容量的一半。 */
+        int lowWater() {
+            return (int) Math.min(ring.capacity() / 2, Math.max(LOW_WATER, Math.round(rate * LEAD_SECONDS)));
+        }
+
+        /** 按上次采样以来的取走量更新消耗速率。 */
+        void sampleRate(long now) {
+            long total = consumed.get();
+            if (sampledAt != 0 && now > sampledAt) {
+                double perSecond = (total - sampledConsumed) * 1e9 / (now - sampledAt);
+                rate += RATE_ALPHA * (perSecond - rate);
+            }
+            sampledAt = now;
+            sampledConsumed = total;
+        }
+    }
+
+    private BytePool poolOf(String source) {
+        return switch (source) {
+            case SOURCE_QUANTUM -> quantumPool;
+            case SOURCE_ATMOSPHERIC -> atmosphericPool;
+            default -> null;
+        };
     }
 
-    private String poolKey(String source) {
-        return "pool:" + source;
+    /** 后台补充：更新各池的消耗速率；最近被取用过的池低于水位时，从该池自己的源取一批，不走降级链。 */
+    @Scheduled(initialDelayString = "${numfeel.random.pool.refill-interval-ms:1000}",
+            fixedDelayString = "${numfeel.random.pool.refill-interval-ms:1000}")
+    void refillPools() {
+        long now = System.nanoTime();
+        quantumPool.sampleRate(now);
+        atmosphericPool.sampleRate(now);
+        refill(quantumPool);
+        refill(atmosphericPool);
+    }
+
+    private void refill(BytePool pool) {
+        long now = System.nanoTime();
+        if (pool.lastDemand == 0 || now - pool.lastDemand > IDLE_NANOS
+                || (pool.retryAt != 0 && now - pool.retryAt < 0)
+                || pool.ring.available() >= pool.lowWater() || pool.inFlight.get() != null) {
+            return;
+        }
+        pool.fill(0, false)
+                .doOnError(e -> {
+                    log.debug("{} 字节池补充失败，{}s 后重试: {}", pool.source,
+                            TimeUnit.NANOSECONDS.toSeconds(REFILL_BACKOFF_NANOS), e.getMessage());
+                    pool.retryAt = System.nanoTime() + REFILL_BACKOFF_NANOS;
+                })
+                .onErrorComplete()
+                .subscribe();
     }
 
     // ── 熵源链 ──
-    private record Fetched(List<Integer> bytes, String source, String provider) {
+    private record Fetched(byte[] bytes, String source, String provider) {
     }
 
     private Mono<Fetched> fetchChain(String want, int count) {
@@ -160,7 +331,7 @@ public class QuantumRandomService {
         if (SOURCE_SECURE.equals(want)) return secureBytes(count).map(b -> new Fetched(b, SOURCE_SECURE, providerOf(SOURCE_SECURE)));
         // 指定 atmospheric 则 quantum 不参与
         if (SOURCE_ATMOSPHERIC.equals(want)) {
-            return fetchAtmospheric(count)
+            return atmosphericPool.acquire(count)
                     .map(b -> { atmosphericHits.incrementAndGet(); return new Fetched(b, SOURCE_ATMOSPHERIC, providerOf(SOURCE_ATMOSPHERIC)); })
                     .onErrorResume(e -> {
                         log.warn("atmospheric 降级到 secure: {}", e.getMessage());
@@ -169,7 +340,7 @@ public class QuantumRandomService {
                     });
         }
         // 默认量子链：quantum → atmospheric → secure
-        return fetchQuantum(Math.max(count, MIN_BATCH))
+        return quantumPool.acquire(count)
                 .map(b -> {
                     quantumHits.incrementAndGet();
                     return new Fetched(b, SOURCE_QUANTUM, providerOf(SOURCE_QUANTUM));
@@ -177,7 +348,7 @@ public class QuantumRandomService {
                 .onErrorResume(qe -> {
                     log.warn("quantum 降级到 atmospheric: {}", qe.getMessage());
                     fallbackEvents.incrementAndGet();
-                    return fetchAtmospheric(Math.max(count, MIN_BATCH))
+                    return atmosphericPool.acquire(count)
                             .map(b -> {
                                 atmosphericHits.incrementAndGet();
                                 return new Fetched(b, SOURCE_ATMOSPHERIC, providerOf(SOURCE_ATMOSPHERIC));
@@ -190,8 +361,8 @@ public class QuantumRandomService {
                 });
     }
 
-    private Mono<List<Integer>> fetchQuantum(int count) {
-        int safe = Math.max(1, Math.min(count, 2000));
+    private Mono<byte[]> fetchQuantum(int count) {
+        int safe = Math.max(1, Math.min(count, QUANTUM_MAX_FETCH));
         if (ninjaApiToken == null || ninjaApiToken.isBlank()) {
             return Mono.error(new IllegalStateException("量子源未配置 token"));
         }
@@ -205,14 +376,14 @@ public class QuantumRandomService {
                 .retrieve()
                 .bodyToMono(ArrayNode.class)
                 .map(arr -> {
-                    List<Integer> out = new ArrayList<>(arr.size());
-                    for (int i = 0; i < arr.size(); i++) out.add(arr.get(i).asInt());
+                    byte[] out = new byte[arr.size()];
+                    for (int i = 0; i < out.length; i++) out[i] = (byte) arr.get(i).asInt();
                     return out;
                 });
     }
 
-    private Mono<List<Integer>> fetchAtmospheric(int count) {
-        int safe = Math.max(1, Math.min(count, 1000));
+    private Mono<byte[]> fetchAtmospheric(int count) {
+        int safe = Math.max(1, Math.min(count, ATMOSPHERIC_MAX_FETCH));
         return randomOrgWebClient.get()
                 .uri(uriBuilder -> uriBuilder.path("/integers/")
                         .queryParam("num", safe)
@@ -227,26 +398,25 @@ public class QuantumRandomService {
                 .bodyToMono(String.class)
                 .map(body -> {
                     String[] lines = body.split("\\s+");
-                    List<Integer> out = new ArrayList<>(lines.length);
+                    byte[] out = new byte[lines.length];
+                    int size = 0;
                     for (String line : lines) {
                         String t = line.trim();
                         if (!t.isEmpty()) {
-                            try { out.add(Integer.parseInt(t) & 0xff); } catch (NumberFormatException ignore) { }
+                            try { out[size++] = (byte) Integer.parseInt(t); } catch (NumberFormatException ignore) { }
                         }
                     }
-                    if (out.isEmpty()) throw new IllegalStateException("random.org 返回空");
-                    return out;
+                    if (size == 0) throw new IllegalStateException("random.org 返回空");
+                    return size == out.length ? out : Arrays.copyOf(out, size);
                 });
     }
 
-    private Mono<List<Integer>> secureBytes(int count) {
+    private Mono<byte[]> secureBytes(int count) {
         secureHits.incrementAndGet();
         return Mono.fromCallable(() -> {
-            List<Integer> out = new ArrayList<>(count);
             byte[] buf = new byte[count];
             secureRandom.nextBytes(buf);
-            for (byte b : buf) out.add(b & 0xff);
-            return out;
+            return buf;
         });
     }
 
@@ -272,18 +442,27 @@ public class QuantumRandomService {
         };
     }
 
-    /** 可观测性指标：返回各源命中与降级次数。仅供排障/展示。 */
-    public java.util.Map<String, Long> stats() {
-        return java.util.Map.of(
+    /**
+     * 可观测性指标：返回各源命中与降级次数、各字节池当前字节数，
+     * 上游请求数与挂到已有请求上的缺口数，以及 quantum / atmospheric 请求的字节中直接由池满足的比例。仅供排障/展示。
+     */
+    public Map<String, Number> stats() {
+        long requested = pooledRequestedBytes.get();
+        return Map.of(
                 "quantumHits", quantumHits.get(),
                 "atmosphericHits", atmosphericHits.get(),
                 "secureHits", secureHits.get(),
-                "fallbackEvents", fallbackEvents.get());
+                "fallbackEvents", fallbackEvents.get(),
+                "quantumPooled", (long) quantumPool.ring.available(),
+                "atmosphericPooled", (long) atmosphericPool.ring.available(),
+                "upstreamFetches", upstreamFetches.get(),
+                "coalescedWaiters", coalescedWaiters.get(),
+                "poolHitRatio", requested == 0 ? 0.0 : (double) pooledServedBytes.get() / requested);
     }
 
     // ────────────────────────────────────────────────────────────
-    // 字节 → 号码：无偏抽取（拒绝采样 + Fisher–Yates）
-    // 与前端 logic.js 完全同构，单测覆盖。
+    // 字节 → 号码：无偏抽取（按位拒绝采样 + Fisher–Yates），见 EntropyBits。
+    // 按期望消耗的位数取字节，不够时用 SecureRandom 补足，保证一定能出结果。
     // ────────────────────────────────────────────────────────────
 
     /**
@@ -295,21 +474,21 @@ public class QuantumRandomService {
      */
     public Mono<LotteryDraw> drawLottery(String type, String source) {
         String t = type == null ? "" : type.trim().toLowerCase();
-        int need = 256;
-        return bytes(need, source).map(e -> {
-            List<Integer> bs = takeBytes(e);
-            int[] idx = {0};
-            return switch (t) {
-                case "ssq" -> new LotteryDraw("ssq",
-                        pickUniqueShared(bs, idx, 6, 1, 33),
-                        drawIntShared(bs, idx, 16) + 1, null, null,
-                        e.source, e.provider, e.degraded);
-                case "dlt" -> new LotteryDraw("dlt", null, null,
-                        pickUniqueShared(bs, idx, 5, 1, 35),
-                        pickUniqueShared(bs, idx, 2, 1, 12),
-                        e.source, e.provider, e.degraded);
-                default -> throw new IllegalArgumentException("type 只能是 ssq 或 dlt");
-            };
+        int bits = switch (t) {
+            case "ssq" -> pickBits(33, 6) + EntropyBits.bitsPerDraw(16);
+            case "dlt" -> pickBits(35, 5) + pickBits(12, 2);
+            default -> 0;
+        };
+        if (bits == 0) return Mono.error(new IllegalArgumentException("type 只能是 ssq 或 dlt"));
+        String want = normalizeSource(source);
+        return rawBytes((bits + 7) >>> 3, want).map(f -> {
+            EntropyBits eb = new EntropyBits(f.bytes);
+            boolean degraded = !sameSource(want, f.source);
+            return t.equals("ssq")
+                    ? new LotteryDraw("ssq", pickUnique(eb, 6, 1, 33), draw(eb, 16) + 1, null, null,
+                            f.source, f.provider, degraded)
+                    : new LotteryDraw("dlt", null, null, pickUnique(eb, 5, 1, 35), pickUnique(eb, 2, 1, 12),
+                            f.source, f.provider, degraded);
         });
     }
 
@@ -329,34 +508,72 @@ public class QuantumRandomService {
             if (count < 1 || count > 100) throw new IllegalArgumentException("count 须在 1..100");
             int range = max - min + 1;
             if (range <= 0) throw new IllegalArgumentException("min/max 非法");
-            return bytes(256, source).map(e -> {
-                List<Integer> bs = takeBytes(e);
-                int[] idx = {0};
-                List<Integer> vals = new ArrayList<>();
-                for (int i = 0; i < count; i++) {
-                    Integer v = drawIntShared(bs, idx, range);
-                    if (v == null) v = secureRandom.nextInt(range);
-                    vals.add(v + min);
-                }
-                return new DigitsDraw(vals, null, e.source, e.provider, e.degraded);
-            });
+            return drawInts(min, range, count, source)
+                    .map(b -> new DigitsDraw(Arrays.stream(b.values()).boxed().toList(), null,
+                            b.source(), b.provider(), b.degraded()));
         }
         if (length < 1 || length > 20) throw new IllegalArgumentException("length 须在 1..20");
-        return bytes(256, source).map(e -> {
-            List<Integer> bs = takeBytes(e);
-            int[] idx = {0};
-            Integer first = drawIntShared(bs, idx, 9);
-            if (first == null) first = secureRandom.nextInt(9);
-            StringBuilder sb = new StringBuilder().append(first + 1);
+        String want = normalizeSource(source);
+        int bytes = (EntropyBits.bitsPerDraw(9) + (length - 1) * EntropyBits.bitsPerDraw(10) + 7) >>> 3;
+        return rawBytes(bytes, want).map(f -> {
+            EntropyBits eb = new EntropyBits(f.bytes);
+            StringBuilder sb = new StringBuilder().append(draw(eb, 9) + 1);
             for (int i = 1; i < length; i++) {
-                Integer d = drawIntShared(bs, idx, 10);
-                if (d == null) d = secureRandom.nextInt(10);
-                sb.append(d);
+                sb.append(draw(eb, 10));
             }
-            return new DigitsDraw(null, sb.toString(), e.source, e.provider, e.degraded);
+            return new DigitsDraw(null, sb.toString(), f.source, f.provider, !sameSource(want, f.source));
         });
     }
 
+    /**
+     * 批量无偏抽取 [min, max] 内 count 个整数（可重复），供模拟类页面一次拿几千个数。
+     * 需要的字节超过 {@value #MAX_BYTES} 时分段取；任一段被降级，整批按降级后的源标注。
+     *
+     * @param min 最小值（含）
+     * @param max 最大值（含）
+     * @param count 个数（1–{@value #MAX_BATCH_DRAWS}）
+     * @param source 熵源
+     * @return 整数数组与来源信息
+     */
+    public Mono<IntBatch> drawBatch(int min, int max, int count, String source) {
+        if (count < 1 || count > MAX_BATCH_DRAWS) {
+            return Mono.error(new IllegalArgumentException("count 须在 1.." + MAX_BATCH_DRAWS));
+        }
+        int range = max - min + 1;
+        if (min > max || range <= 0) return Mono.error(new IllegalArgumentException("min/max 非法"));
+        return drawInts(min, range, count, source);
+    }
+
+    private Mono<IntBatch> drawInts(int min, int range, int count, String source) {
+        String want = normalizeSource(source);
+        int need = EntropyBits.bytesFor(range, count);
+        int chunks = Math.max(1, (need + MAX_BYTES - 1) / MAX_BYTES);
+        return Flux.range(0, chunks)
+                .concatMap(i -> rawBytes(Math.max(1, Math.min(MAX_BYTES, need - i * MAX_BYTES)), want))
+                .collectList()
+                .map(parts -> {
+                    Fetched label = parts.get(0);
+                    int total = 0;
+                    for (Fetched f : parts) {
+                        total += f.bytes.length;
+                        if (sameSource(want, label.source) && !sameSource(want, f.source)) label = f;
+                    }
+                    byte[] all = parts.size() == 1 ? label.bytes : new byte[total];
+                    if (parts.size() > 1) {
+                        int off = 0;
+                        for (Fetched f : parts) {
+                            System.arraycopy(f.bytes, 0, all, off, f.bytes.length);
+                            off += f.bytes.length;
+                        }
+                    }
+                    int[] values = new int[count];
+                    int drawn = new EntropyBits(all).nextInts(range, values, 0, count);
+                    for (int i = drawn; i < count; i++) values[i] = secureRandom.nextInt(range); // 字节耗尽兜底
+                    for (int i = 0; i < count; i++) values[i] += min;
+                    return new IntBatch(values, label.source, label.provider, !sameSource(want, label.source));
+                });
+    }
+
     /** 彩票抽取结果。 */
     public record LotteryDraw(String type, List<Integer> red, Integer blue,
                               List<Integer> front, List<Integer> back,
@@ -368,65 +585,39 @@ public class QuantumRandomService {
                              String source, String provider, boolean degraded) {
     }
 
-    /** 从 Entropy 取可变 list。 */
-    private List<Integer> takeBytes(Entropy e) {
-        return new ArrayList<>(e.bytes());
+    /** 批量抽取结果。 */
+    public record IntBatch(int[] values, String source, String provider, boolean degraded) {
     }
 
-    /**
-     * 用随机字节无偏抽 [min,max] 内 count 个不重复号码（Fisher–Yates + 拒绝采样）。
-     * 字节不足时用 SecureRandom 补足，保证一定能出结果。游标 idx 跨调用延续。
-     */
-    private List<Integer> pickUniqueShared(List<Integer> bytes, int[] idx, int count, int min, int max) {
-        int pool = max - min + 1;
-        if (count > pool) throw new IllegalArgumentException("count 超过可选范围");
-        List<Integer> candidates = new ArrayList<>(pool);
-        for (int i = min; i <= max; i++) candidates.add(i);
-        List<Integer> picked = new ArrayList<>();
-        for (int pickedSoFar = 0; pickedSoFar < count; pickedSoFar++) {
-            int remaining = candidates.size();
-            Integer r = drawIntShared(bytes, idx, remaining);
-            if (r == null) r = secureRandom.nextInt(remaining); // 字节耗尽兜底
-            picked.add(candidates.get(r));
-            candidates.set(r, candidates.get(remaining - 1));
-            candidates.remove(remaining - 1);
-        }
-        picked.sort(Integer::compare);
-        return picked;
+    /** 从 [1, pool] 中不重复抽 count 个（Fisher–Yates）按期望上界需要的位数。 */
+    private static int pickBits(int pool, int count) {
+        int bits = 0;
+        for (int i = 0; i < count; i++) bits += EntropyBits.bitsPerDraw(pool - i);
+        return bits;
     }
 
     /**
-     * 用字节无偏取 [0, range) 的整数（拒绝采样 + 自适应窗口）。
+     * 无偏抽 [min,max] 内 count 个不重复号码（部分 Fisher–Yates），升序返回。
      */
-    private Integer drawIntShared(List<Integer> bytes, int[] idx, int range) {
-        if (range <= 1) return 0;
-        int w = windowForRange(range);
-        long span = 1L;
-        for (int i = 0; i < w; i++) span *= 256;
-        long limit = span - (span % range);
-        if (limit == 0) limit = span;
-        int guard = 0;
-        while (idx[0] + w <= bytes.size()) {
-            long n = 0;
-            for (int k = 0; k < w; k++) n = n * 256 + (bytes.get(idx[0] + k) & 0xff);
-            idx[0] += w;
-            if (n < limit) return (int) (n % range);
-            if (++guard > 4096) return null;
+    private List<Integer> pickUnique(EntropyBits bits, int count, int min, int max) {
+        int pool = max - min + 1;
+        if (count > pool) throw new IllegalArgumentException("count 超过可选范围");
+        int[] candidates = new int[pool];
+        for (int i = 0; i < pool; i++) candidates[i] = min + i;
+        int[] picked = new int[count];
+        for (int i = 0; i < count; i++) {
+            int remaining = pool - i;
+            int r = draw(bits, remaining);
+            picked[i] = candidates[r];
+            candidates[r] = candidates[remaining - 1];
         }
-        return null;
-    }
-
-    private int drawUniform(List<Integer> bytes, int min, int range) {
-        int[] idx = {0};
-        Integer v = drawIntShared(bytes, idx, range);
-        if (v == null) v = secureRandom.nextInt(range);
-        return v;
+        Arrays.sort(picked);
+        return Arrays.stream(picked).boxed().toList();
     }
 
-    private int windowForRange(int range) {
-        int w = 1;
-        long cap = 256;
-        while (cap < range && w < 8) { w++; cap *= 256; }
-        return w;
+    /** 无偏取 [0, range) 的整数，字节耗尽时用 SecureRandom 兜底。 */
+    private int draw(EntropyBits bits, int range) {
+        int v = bits.nextInt(range);
+        return v >= 0 ? v : secureRandom.nextInt(range);
     }
-}
\ No newline at end of file
+}
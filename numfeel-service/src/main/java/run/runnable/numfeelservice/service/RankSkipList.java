@@ -0,0 +1,138 @@
+package run.runnable.numfeelservice.service;
+
+import java.util.SplittableRandom;
+
+/**
+ * 可重复 double 键的可索引跳表：插入、删除、按键求名次都是期望 O(log n)。
+ * <p>
+ * 每层的前向指针附带跨度（跳过了多少个底层节点），沿查找路径累加跨度即得到“比 x 小的元素个数”，
+ * 不必像有序数组那样在插入时整体搬移，也不必像全表扫描那样逐个比较。非线程安全，由调用方加锁。
+ */
+final class RankSkipList {
+
+    private static final int MAX_LEVEL = 32;
+
+    private static final class Node {
+        final double key;
+        final Node[] next;
+        final int[] span;
+
+        Node(double key, int level) {
+            this.key = key;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    private final Node head = new Node(Double.NaN, MAX_LEVEL);
+    private final SplittableRandom random = new SplittableRandom(0x5EED);
+    private int level = 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(double key) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && x.next[i].key <= key) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                update[i].span[i] = size;
+            }
+            level = newLevel;
+        }
+        Node node = new Node(key, newLevel);
+        for (int i = 0; i < newLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = newLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    /** 删除一个等于 key 的元素；不存在时返回 false。 */
+    boolean remove(double key) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].key < key) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        Node target = x.next[0];
+        if (target == null || target.key != key) {
+            return false;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].next[i] = target.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /** 严格小于 key 的元素个数。 */
+    int countLess(double key) {
+        return countBefore(key, false);
+    }
+
+    /** 严格大于 key 的元素个数。 */
+    int countGreater(double key) {
+        return size - countBefore(key, true);
+    }
+
+    void clear() {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+        size = 0;
+    }
+
+    private int countBefore(double key, boolean inclusive) {
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && (x.next[i].key < key || inclusive && x.next[i].key == key)) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+        }
+        return rank;
+    }
+
+    /** 以 1/4 概率逐层晋升。 */
+    private int randomLevel() {
+        int lvl = 1;
+        while (lvl < MAX_LEVEL && (random.nextInt() & 3) == 0) {
+            lvl++;
+        }
+        return lvl;
+    }
+}
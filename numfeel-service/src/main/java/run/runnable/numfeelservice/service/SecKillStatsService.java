@@ -4,6 +4,7 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.SecKillScena
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.SecKillStatsResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.SecKillSubmitResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.SecKillStat;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
@@ -19,9 +20,11 @@ import java.util.List;
 public class SecKillStatsService {
 
     private final R2dbcEntityTemplate template;
+    private final BatchInsertBuffer<SecKillStat> inserts;
 
     public SecKillStatsService(R2dbcEntityTemplate template) {
         this.template = template;
+        this.inserts = new BatchInsertBuffer<>(template, SecKillStat.class);
     }
 
     /**
@@ -39,7 +42,7 @@ public class SecKillStatsService {
                                              int userRank, double userLatency, double latencyGap) {
         SecKillStat entity = new SecKillStat(
                 null, participants, stock, userWon, userRank, userLatency, latencyGap, System.currentTimeMillis());
-        return template.insert(SecKillStat.class).using(entity).then(submitStats());
+        return inserts.insert(entity).then(submitStats());
     }
 
     private Mono<SecKillSubmitResponse> submitStats() {
@@ -110,4 +113,9 @@ public class SecKillStatsService {
     private Number number(Object value) {
         return value instanceof Number number ? number : 0;
     }
+
+    @PreDestroy
+    void drain() {
+        inserts.drain();
+    }
 }
@@ -7,6 +7,7 @@ import run.runnable.numfeelservice.controller.dto.TrackingResponses.SocialEngine
 import run.runnable.numfeelservice.model.SocialEngineeringRecord;
 import run.runnable.numfeelservice.model.TrackingEntities.SocialEngineeringQuestion;
 import run.runnable.numfeelservice.model.TrackingEntities.SocialEngineeringSession;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
@@ -15,7 +16,10 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 社会工程学防骗挑战 — 业务逻辑层（R2DBC 重写）。
@@ -25,10 +29,47 @@ public class SocialEngineeringService {
 
     private static final Logger log = LoggerFactory.getLogger(SocialEngineeringService.class);
 
-    private final R2dbcEntityTemplate template;
+    /** 同一 “题号:手法” 的作答计数。 */
+    private static final class QuestionTally {
+        private final int questionId;
+        private final String tactic;
+        private long answered;
+        private long correct;
+
+        private QuestionTally(int questionId, String tactic) {
+            this.questionId = questionId;
+            this.tactic = tactic;
+        }
+    }
+
+    private final LiveAggregates<SocialEngineeringSession> sessions;
+    private final LiveAggregates.Counter<SocialEngineeringSession> allCorrect;
+    private final LiveAggregates.Summary<SocialEngineeringSession> correct;
+    private final LiveAggregates.Summary<SocialEngineeringSession> wrong;
+    private final LiveAggregates.Summary<SocialEngineeringSession> scorePct;
+    private final LiveAggregates<SocialEngineeringQuestion> questions;
+    private final LiveAggregates.Fold<SocialEngineeringQuestion, Map<String, QuestionTally>> tallies;
 
     public SocialEngineeringService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<SocialEngineeringSession> sessionBuilder =
+                LiveAggregates.builder(template, SocialEngineeringSession.class);
+        this.allCorrect = sessionBuilder.count(SocialEngineeringSession::allCorrect);
+        this.correct = sessionBuilder.summary(SocialEngineeringSession::correct);
+        this.wrong = sessionBuilder.summary(row -> row.total() - row.correct());
+        this.scorePct = sessionBuilder.summary(row -> row.correct() * 100.0 / row.total());
+        this.sessions = sessionBuilder.build();
+
+        LiveAggregates.Builder<SocialEngineeringQuestion> questionBuilder =
+                LiveAggregates.builder(template, SocialEngineeringQuestion.class);
+        this.tallies = questionBuilder.fold(LinkedHashMap::new, (byKey, row) -> {
+            QuestionTally tally = byKey.computeIfAbsent(row.questionId() + ":" + row.tactic(),
+                    k -> new QuestionTally(row.questionId(), row.tactic()));
+            tally.answered++;
+            if (row.correct()) {
+                tally.correct++;
+            }
+        });
+        this.questions = questionBuilder.build();
     }
 
     /** 提交一次完整问卷结果。 */
@@ -38,12 +79,12 @@ public class SocialEngineeringService {
 
         SocialEngineeringSession session = new SocialEngineeringSession(
                 null, record.sessionId(), record.total(), record.correct(), allCorrect, now);
-        Mono<SocialEngineeringSession> sessionMono = template.insert(SocialEngineeringSession.class).using(session);
+        Mono<SocialEngineeringSession> sessionMono = sessions.insert(session);
 
         Mono<Void> questionsMono = Flux.fromIterable(record.questions())
                 .map(q -> new SocialEngineeringQuestion(
                         null, record.sessionId(), q.questionId(), q.tactic(), q.isFake(), q.correct(), now))
-                .concatMap(question -> template.insert(SocialEngineeringQuestion.class).using(question))
+                .concatMap(questions::insert)
                 .then();
 
         return sessionMono.then(questionsMono)
@@ -56,58 +97,50 @@ public class SocialEngineeringService {
 
     /** 查询全局统计 + 每题统计。 */
     public Mono<SocialEngineeringStatsResponse> stats() {
-        Mono<SocialEngineeringGlobalStats> globalMono = ServiceSupport.selectAll(template, SocialEngineeringSession.class)
-                .map(this::toGlobalStats);
+        Mono<SocialEngineeringGlobalStats> globalMono = sessions.read(this::toGlobalStats);
 
-        Mono<List<SocialEngineeringQuestionStats>> questionMono = ServiceSupport.selectAll(template, SocialEngineeringQuestion.class)
-                .map(this::toQuestionStats);
+        Mono<List<SocialEngineeringQuestionStats>> questionMono = questions.read(this::toQuestionStats);
 
         return Mono.zip(globalMono, questionMono)
                 .map(tuple -> new SocialEngineeringStatsResponse(tuple.getT1(), tuple.getT2()));
     }
 
     /** 汇总整场测试的参与人数、全对人数与平均得分。 */
-    private SocialEngineeringGlobalStats toGlobalStats(List<SocialEngineeringSession> rows) {
+    private SocialEngineeringGlobalStats toGlobalStats() {
+        long total = sessions.count();
         return new SocialEngineeringGlobalStats(
-                rows.size(),
-                rows.stream().filter(SocialEngineeringSession::allCorrect).count(),
-                rows.stream().mapToInt(SocialEngineeringSession::correct).sum(),
-                rows.stream().mapToInt(row -> row.total() - row.correct()).sum(),
-                rows.isEmpty() ? 0.0 : round1(rows.stream()
-                        .mapToDouble(row -> row.correct() * 100.0 / row.total())
-                        .average()
-                        .orElse(0))
+                total,
+                allCorrect.get(),
+                (int) correct.sum(),
+                (int) wrong.sum(),
+                total == 0 ? 0.0 : round1(scorePct.mean())
         );
     }
 
-    /** 按题号与手法分组，构建前端答对率面板所需的单题统计。 */
-    private List<SocialEngineeringQuestionStats> toQuestionStats(List<SocialEngineeringQuestion> rows) {
-        List<SocialEngineeringQuestionStats> questions = new ArrayList<>();
-        rows.stream()
-                .collect(java.util.stream.Collectors.groupingBy(row -> row.questionId() + ":" + row.tactic()))
-                .entrySet()
+    /** 按题号排序，构建前端答对率面板所需的单题统计。 */
+    private List<SocialEngineeringQuestionStats> toQuestionStats() {
+        List<SocialEngineeringQuestionStats> stats = new ArrayList<>();
+        tallies.get().values()
                 .stream()
-                .sorted(java.util.Comparator.comparingInt(entry -> Integer.parseInt(entry.getKey().split(":")[0])))
-                .forEach(entry -> questions.add(toSingleQuestionStats(entry.getValue())));
-        return questions;
-    }
-
-    /** 将同一题目的多条作答记录转换为单条聚合统计。 */
-    private SocialEngineeringQuestionStats toSingleQuestionStats(List<SocialEngineeringQuestion> rows) {
-        SocialEngineeringQuestion first = rows.get(0);
-        long correctCount = rows.stream().filter(SocialEngineeringQuestion::correct).count();
-        long wrongCount = rows.size() - correctCount;
-        return new SocialEngineeringQuestionStats(
-                first.questionId(),
-                first.tactic(),
-                rows.size(),
-                correctCount,
-                wrongCount,
-                rows.isEmpty() ? 0.0 : round1(correctCount * 100.0 / rows.size())
-        );
+                .sorted(Comparator.comparingInt(tally -> tally.questionId))
+                .forEach(tally -> stats.add(new SocialEngineeringQuestionStats(
+                        tally.questionId,
+                        tally.tactic,
+                        (int) tally.answered,
+                        tally.correct,
+                        tally.answered - tally.correct,
+                        round1(tally.correct * 100.0 / tally.answered)
+                )));
+        return stats;
     }
 
     private double round1(double value) {
         return ServiceSupport.round(value, 1);
     }
+
+    @PreDestroy
+    void drain() {
+        sessions.drain();
+        questions.drain();
+    }
 }
@@ -3,6 +3,7 @@ package run.runnable.numfeelservice.service;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.SoritesBucket;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.SoritesStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.SoritesResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -19,10 +20,37 @@ import java.util.List;
 @Service
 public class SoritesService {
 
-    private final R2dbcEntityTemplate template;
+    private static final int BUCKETS = 10;
+    private static final int SAND_MAX = 10000;
+    private static final int BALD_MAX = 100000;
+    private static final int COLOR_MAX = 100;
+
+    private final LiveAggregates<SoritesResult> aggregates;
+    private final LiveAggregates.Summary<SoritesResult> sand;
+    private final LiveAggregates.Summary<SoritesResult> bald;
+    private final LiveAggregates.Summary<SoritesResult> color;
+    private final LiveAggregates.Median<SoritesResult> sandMedian;
+    private final LiveAggregates.Median<SoritesResult> baldMedian;
+    private final LiveAggregates.Median<SoritesResult> colorMedian;
+    private final LiveAggregates.Fold<SoritesResult, int[]> sandBuckets;
+    private final LiveAggregates.Fold<SoritesResult, int[]> baldBuckets;
+    private final LiveAggregates.Fold<SoritesResult, int[]> colorBuckets;
 
     public SoritesService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<SoritesResult> builder = LiveAggregates.builder(template, SoritesResult.class);
+        this.sand = builder.summary(SoritesResult::sandBoundary);
+        this.bald = builder.summary(SoritesResult::baldBoundary);
+        this.color = builder.summary(SoritesResult::colorBoundary);
+        this.sandMedian = builder.median(SoritesResult::sandBoundary);
+        this.baldMedian = builder.median(SoritesResult::baldBoundary);
+        this.colorMedian = builder.median(SoritesResult::colorBoundary);
+        this.sandBuckets = builder.fold(() -> new int[BUCKETS],
+                (counts, row) -> counts[bucketIndex(row.sandBoundary(), BUCKETS, SAND_MAX)]++);
+        this.baldBuckets = builder.fold(() -> new int[BUCKETS],
+                (counts, row) -> counts[bucketIndex(row.baldBoundary(), BUCKETS, BALD_MAX)]++);
+        this.colorBuckets = builder.fold(() -> new int[BUCKETS],
+                (counts, row) -> counts[bucketIndex(row.colorBoundary(), BUCKETS, COLOR_MAX)]++);
+        this.aggregates = builder.build();
     }
 
     /** 提交一次实验结果。 */
@@ -36,44 +64,30 @@ public class SoritesService {
                 colorBoundary,
                 System.currentTimeMillis()
         );
-        return template.insert(SoritesResult.class).using(entity).then();
+        return aggregates.insert(entity).then();
     }
 
     /** 查询全局统计。 */
     public Mono<SoritesStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, SoritesResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
-    /** 从原始边界值样本中构建均值、中位数和分桶分布。 */
-    private SoritesStatsResponse toStatsResponse(List<SoritesResult> rows) {
-        List<Integer> sandList = rows.stream().map(SoritesResult::sandBoundary).toList();
-        List<Integer> baldList = rows.stream().map(SoritesResult::baldBoundary).toList();
-        List<Integer> colorList = rows.stream().map(SoritesResult::colorBoundary).toList();
-
+    /** 从增量聚合中组装均值、中位数和分桶分布。 */
+    private SoritesStatsResponse toStatsResponse() {
         return new SoritesStatsResponse(
-                rows.size(),
-                roundAvgInt(sandList),
-                roundAvgInt(baldList),
-                roundAvgInt(colorList),
-                median(sandList),
-                median(baldList),
-                median(colorList),
-                bucketize(sandList, 10, 10000),
-                bucketize(baldList, 10, 100000),
-                bucketize(colorList, 10, 100)
+                aggregates.count(),
+                Math.round(sand.mean()),
+                Math.round(bald.mean()),
+                Math.round(color.mean()),
+                (int) sandMedian.get(),
+                (int) baldMedian.get(),
+                (int) colorMedian.get(),
+                toBuckets(sandBuckets.get(), SAND_MAX),
+                toBuckets(baldBuckets.get(), BALD_MAX),
+                toBuckets(colorBuckets.get(), COLOR_MAX)
         );
     }
 
-    /** 计算整数样本平均值并四舍五入。 */
-    private long roundAvgInt(List<Integer> values) {
-        if (values.isEmpty()) {
-            return 0L;
-        }
-        double avg = values.stream().mapToInt(Integer::intValue).average().orElse(0);
-        return Math.round(avg);
-    }
-
     /** 计算中位数，偶数样本时取中间两项平均。 */
     protected int median(List<Integer> values) {
         if (values == null || values.isEmpty()) return 0;
@@ -86,19 +100,32 @@ public class SoritesService {
 
     /** 将连续数值按固定桶数切分，生成前端柱状图使用的分布数据。 */
     protected List<SoritesBucket> bucketize(List<Integer> values, int bucketCount, int maxVal) {
-        int bucketSize = maxVal / bucketCount;
         int[] counts = new int[bucketCount];
         for (int v : values) {
-            int idx = Math.min(v / bucketSize, bucketCount - 1);
-            if (idx < 0) idx = 0;
-            counts[idx]++;
+            counts[bucketIndex(v, bucketCount, maxVal)]++;
         }
-        List<SoritesBucket> buckets = new ArrayList<>(bucketCount);
-        for (int i = 0; i < bucketCount; i++) {
+        return toBuckets(counts, maxVal);
+    }
+
+    /** 数值落在哪个桶，超出范围的归入首尾两桶。 */
+    private static int bucketIndex(int value, int bucketCount, int maxVal) {
+        int idx = Math.min(value / (maxVal / bucketCount), bucketCount - 1);
+        return Math.max(idx, 0);
+    }
+
+    private static List<SoritesBucket> toBuckets(int[] counts, int maxVal) {
+        int bucketSize = maxVal / counts.length;
+        List<SoritesBucket> buckets = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
             int from = i * bucketSize;
             int to = (i + 1) * bucketSize;
             buckets.add(new SoritesBucket(from + "-" + to, counts[i]));
         }
         return buckets;
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
@@ -4,11 +4,11 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.StroopGlobal
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.StroopStatsResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.StroopSubmitResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.StroopResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -17,10 +17,25 @@ import java.util.Map;
 @Service
 public class StroopStatsService {
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<StroopResult> aggregates;
+    private final LiveAggregates.Summary<StroopResult> effect;
+    private final LiveAggregates.Summary<StroopResult> avgRt;
+    private final LiveAggregates.Summary<StroopResult> accuracy;
+    private final LiveAggregates.Summary<StroopResult> conAvgRt;
+    private final LiveAggregates.Summary<StroopResult> incAvgRt;
+    private final LiveAggregates.GroupCount<StroopResult, String> grades;
+    private final LiveAggregates.DoubleRank<StroopResult> effectRank;
 
     public StroopStatsService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<StroopResult> builder = LiveAggregates.builder(template, StroopResult.class);
+        this.effect = builder.summary(StroopResult::stroopEffect);
+        this.avgRt = builder.summary(StroopResult::avgRt);
+        this.accuracy = builder.summary(StroopResult::accuracy);
+        this.conAvgRt = builder.summary(StroopResult::conAvgRt);
+        this.incAvgRt = builder.summary(StroopResult::incAvgRt);
+        this.grades = builder.countBy(StroopResult::grade);
+        this.effectRank = builder.rank(StroopResult::stroopEffect);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -41,10 +56,8 @@ public class StroopStatsService {
                                               double stroopEffect, String grade) {
         StroopResult entity = new StroopResult(
                 null, total, correctCount, accuracy, avgRT, conAvgRT, incAvgRT, stroopEffect, grade, System.currentTimeMillis());
-        return template.insert(StroopResult.class)
-                .using(entity)
-                .then(ServiceSupport.selectAll(template, StroopResult.class))
-                .map(rows -> toSubmitResponse(rows, stroopEffect));
+        return aggregates.insert(entity)
+                .then(aggregates.read(() -> toSubmitResponse(stroopEffect)));
     }
 
     /**
@@ -53,14 +66,13 @@ public class StroopStatsService {
      * @return 包含全局指标与评级分布的统计响应
      */
     public Mono<StroopStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, StroopResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /** 依据 Stroop 效应值越小越好的规则生成提交后的排名反馈。 */
-    private StroopSubmitResponse toSubmitResponse(java.util.List<StroopResult> rows, double stroopEffect) {
-        long rank = rows.stream().filter(row -> row.stroopEffect() < stroopEffect).count() + 1;
-        long totalSessions = rows.size();
+    private StroopSubmitResponse toSubmitResponse(double stroopEffect) {
+        long rank = effectRank.countBelow(stroopEffect) + 1;
+        long totalSessions = aggregates.count();
         return new StroopSubmitResponse(
                 rank,
                 totalSessions,
@@ -69,22 +81,27 @@ public class StroopStatsService {
     }
 
     /** 聚合平均效应值、反应时、正确率和评级分布。 */
-    private StroopStatsResponse toStatsResponse(java.util.List<StroopResult> rows) {
+    private StroopStatsResponse toStatsResponse() {
         StroopGlobalStats global = new StroopGlobalStats(
-                rows.size(),
-                round1(rows.stream().mapToDouble(StroopResult::stroopEffect).average().orElse(0)),
-                round1(rows.stream().mapToDouble(StroopResult::avgRt).average().orElse(0)),
-                round1(rows.stream().mapToDouble(StroopResult::accuracy).average().orElse(0) * 100),
-                round1(rows.stream().mapToDouble(StroopResult::stroopEffect).min().orElse(0)),
-                round1(rows.stream().mapToDouble(StroopResult::stroopEffect).max().orElse(0)),
-                round1(rows.stream().mapToDouble(StroopResult::conAvgRt).average().orElse(0)),
-                round1(rows.stream().mapToDouble(StroopResult::incAvgRt).average().orElse(0))
+                aggregates.count(),
+                round1(effect.mean()),
+                round1(avgRt.mean()),
+                round1(accuracy.mean() * 100),
+                round1(effect.min()),
+                round1(effect.max()),
+                round1(conAvgRt.mean()),
+                round1(incAvgRt.mean())
         );
-        Map<String, Long> gradeDist = new LinkedHashMap<>(ServiceSupport.countBy(rows, StroopResult::grade));
+        Map<String, Long> gradeDist = grades.snapshot();
         return new StroopStatsResponse(global, gradeDist);
     }
 
     private double round1(double value) {
         return ServiceSupport.round(value, 1);
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
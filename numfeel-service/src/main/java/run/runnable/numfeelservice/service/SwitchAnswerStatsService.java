@@ -4,6 +4,7 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.DailyTrend;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.SwitchAnswerStatsResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.SwitchAnswerSubmitResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.SwitchAnswerRound;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -12,8 +13,10 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -24,10 +27,26 @@ import java.util.TreeMap;
 @Service
 public class SwitchAnswerStatsService {
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<SwitchAnswerRound> aggregates;
+    /** 策略 → 回合数（stay / switch）。 */
+    private final LiveAggregates.GroupCount<SwitchAnswerRound, String> rounds;
+    /** 策略 → 答对回合数。 */
+    private final LiveAggregates.GroupCount<SwitchAnswerRound, String> wins;
+    private final LiveAggregates.Summary<SwitchAnswerRound> createdAt;
+    /** 已出现过的 “日期|IP” 组合，用于按日去重估计参与人数。 */
+    private final LiveAggregates.Fold<SwitchAnswerRound, Set<String>> participants;
+    /** 日期 → [stayRounds, stayWins, switchRounds, switchWins, total]。 */
+    private final LiveAggregates.Fold<SwitchAnswerRound, Map<String, long[]>> daily;
 
     public SwitchAnswerStatsService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<SwitchAnswerRound> builder = LiveAggregates.builder(template, SwitchAnswerRound.class);
+        this.rounds = builder.countBy(SwitchAnswerRound::strategy);
+        this.wins = builder.countBy(r -> r.won() ? r.strategy() : null);
+        this.createdAt = builder.summary(SwitchAnswerRound::createdAt);
+        this.participants = builder.fold(HashSet::new,
+                (seen, r) -> seen.add(dateOf(r.createdAt()) + "|" + (r.ip() == null ? "" : r.ip())));
+        this.daily = builder.fold(TreeMap::new, SwitchAnswerStatsService::accumulateDaily);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -44,10 +63,8 @@ public class SwitchAnswerStatsService {
                                                    int eliminated, String ip) {
         SwitchAnswerRound entity = new SwitchAnswerRound(
                 null, strategy, won, options, eliminated, ip, System.currentTimeMillis());
-        return template.insert(SwitchAnswerRound.class)
-                .using(entity)
-                .then(ServiceSupport.selectAll(template, SwitchAnswerRound.class))
-                .map(this::toSubmitResponse);
+        return aggregates.insert(entity)
+                .then(aggregates.read(this::toSubmitResponse));
     }
 
     /**
@@ -56,59 +73,54 @@ public class SwitchAnswerStatsService {
      * @return 全局统计响应
      */
     public Mono<SwitchAnswerStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, SwitchAnswerRound.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
-    private SwitchAnswerSubmitResponse toSubmitResponse(List<SwitchAnswerRound> rows) {
-        long stayRounds = rows.stream().filter(r -> "stay".equals(r.strategy())).count();
-        long stayWins = rows.stream().filter(r -> "stay".equals(r.strategy()) && r.won()).count();
-        long switchRounds = rows.stream().filter(r -> "switch".equals(r.strategy())).count();
-        long switchWins = rows.stream().filter(r -> "switch".equals(r.strategy()) && r.won()).count();
-        long lastUpdated = rows.stream().mapToLong(SwitchAnswerRound::createdAt).max()
-                .orElse(System.currentTimeMillis());
+    private SwitchAnswerSubmitResponse toSubmitResponse() {
+        long stayRounds = rounds.get("stay");
+        long stayWins = wins.get("stay");
+        long switchRounds = rounds.get("switch");
+        long switchWins = wins.get("switch");
+        long lastUpdated = createdAt.count() > 0 ? (long) createdAt.max() : System.currentTimeMillis();
         return new SwitchAnswerSubmitResponse(
-                rows.size(),
+                aggregates.count(),
                 stayRounds, stayWins, ServiceSupport.ratio(stayWins, stayRounds, 3),
                 switchRounds, switchWins, ServiceSupport.ratio(switchWins, switchRounds, 3),
                 lastUpdated
         );
     }
 
-    private SwitchAnswerStatsResponse toStatsResponse(List<SwitchAnswerRound> rows) {
-        long stayRounds = rows.stream().filter(r -> "stay".equals(r.strategy())).count();
-        long stayWins = rows.stream().filter(r -> "stay".equals(r.strategy()) && r.won()).count();
-        long switchRounds = rows.stream().filter(r -> "switch".equals(r.strategy())).count();
-        long switchWins = rows.stream().filter(r -> "switch".equals(r.strategy()) && r.won()).count();
+    private SwitchAnswerStatsResponse toStatsResponse() {
+        long stayRounds = rounds.get("stay");
+        long stayWins = wins.get("stay");
+        long switchRounds = rounds.get("switch");
+        long switchWins = wins.get("switch");
         // 按日去重 IP 粗略估计参与人数
-        long participantCount = rows.stream()
-                .map(r -> dateOf(r.createdAt()) + "|" + (r.ip() == null ? "" : r.ip()))
-                .distinct()
-                .count();
-        List<DailyTrend> trend = buildTrend(rows);
+        long participantCount = participants.get().size();
+        List<DailyTrend> trend = buildTrend(daily.get());
         return new SwitchAnswerStatsResponse(
-                rows.size(),
+                aggregates.count(),
                 stayRounds, stayWins, ServiceSupport.ratio(stayWins, stayRounds, 3),
                 switchRounds, switchWins, ServiceSupport.ratio(switchWins, switchRounds, 3),
                 participantCount, trend
         );
     }
 
-    /** 最近 7 天每日趋势：[stayRounds, stayWins, switchRounds, switchWins, total]。 */
-    private List<DailyTrend> buildTrend(List<SwitchAnswerRound> rows) {
-        Map<String, long[]> byDate = new TreeMap<>();
-        for (SwitchAnswerRound r : rows) {
-            String d = dateOf(r.createdAt());
-            long[] arr = byDate.computeIfAbsent(d, k -> new long[5]);
-            if ("stay".equals(r.strategy())) {
-                arr[0]++;
-                if (r.won()) arr[1]++;
-            } else {
-                arr[2]++;
-                if (r.won()) arr[3]++;
-            }
-            arr[4]++;
+    /** 把一回合计入当天的 [stayRounds, stayWins, switchRounds, switchWins, total]。 */
+    private static void accumulateDaily(Map<String, long[]> byDate, SwitchAnswerRound r) {
+        long[] arr = byDate.computeIfAbsent(dateOf(r.createdAt()), k -> new long[5]);
+        if ("stay".equals(r.strategy())) {
+            arr[0]++;
+            if (r.won()) arr[1]++;
+        } else {
+            arr[2]++;
+            if (r.won()) arr[3]++;
         }
+        arr[4]++;
+    }
+
+    /** 最近 7 天每日趋势。 */
+    private List<DailyTrend> buildTrend(Map<String, long[]> byDate) {
         List<DailyTrend> trend = new ArrayList<>();
         LocalDate today = LocalDate.now(ZoneOffset.UTC);
         for (int i = 6; i >= 0; i--) {
@@ -126,7 +138,12 @@ public class SwitchAnswerStatsService {
         return trend;
     }
 
-    private String dateOf(long millis) {
+    private static String dateOf(long millis) {
         return Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC).toLocalDate().toString();
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
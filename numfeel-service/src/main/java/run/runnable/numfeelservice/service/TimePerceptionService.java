@@ -6,15 +6,14 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.TimePercepti
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.TimePerceptionStatsResponse;
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.TimePerceptionSubmitResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.TimePerceptionResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.util.Comparator;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 时间感知扭曲实验室 — 业务逻辑层（R2DBC 重写）。
@@ -22,10 +21,38 @@ import java.util.Map;
 @Service
 public class TimePerceptionService {
 
-    private final R2dbcEntityTemplate template;
+    /** 排行榜可查询的最大条数。 */
+    private static final int MAX_LEADERBOARD = 100;
+
+    private final LiveAggregates<TimePerceptionResult> aggregates;
+    private final LiveAggregates.Summary<TimePerceptionResult> totalScore;
+    private final LiveAggregates.Summary<TimePerceptionResult> avgAbsDistortion;
+    private final LiveAggregates.Summary<TimePerceptionResult> weberScore;
+    private final LiveAggregates.Summary<TimePerceptionResult> blankDistortion;
+    private final LiveAggregates.Summary<TimePerceptionResult> loadDistortion;
+    private final LiveAggregates.Summary<TimePerceptionResult> emotionDistortion;
+    private final LiveAggregates.Counter<TimePerceptionResult> overestimators;
+    private final LiveAggregates.Counter<TimePerceptionResult> underestimators;
+    private final LiveAggregates.GroupCount<TimePerceptionResult, String> grades;
+    private final LiveAggregates.TopK<TimePerceptionResult> leaders;
+    private final LiveAggregates.IntRank<TimePerceptionResult> scoreRank;
 
     public TimePerceptionService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<TimePerceptionResult> builder =
+                LiveAggregates.builder(template, TimePerceptionResult.class);
+        this.totalScore = builder.summary(TimePerceptionResult::totalScore);
+        this.avgAbsDistortion = builder.summary(TimePerceptionResult::avgAbsDistortion);
+        this.weberScore = builder.summary(TimePerceptionResult::weberScore);
+        this.blankDistortion = builder.summary(TimePerceptionResult::blankAvgDistortion);
+        this.loadDistortion = builder.summary(TimePerceptionResult::loadAvgDistortion);
+        this.emotionDistortion = builder.summary(TimePerceptionResult::emotionAvgDistortion);
+        this.overestimators = builder.count(row -> "overestimator".equals(row.biasDirection()));
+        this.underestimators = builder.count(row -> "underestimator".equals(row.biasDirection()));
+        this.grades = builder.countBy(TimePerceptionResult::grade);
+        this.leaders = builder.top(MAX_LEADERBOARD,
+                Comparator.comparingInt(TimePerceptionResult::totalScore).reversed(), row -> true);
+        this.scoreRank = builder.rank(TimePerceptionResult::totalScore, 0, 100);
+        this.aggregates = builder.build();
     }
 
     /**
@@ -49,10 +76,9 @@ public class TimePerceptionService {
         TimePerceptionResult entity = new TimePerceptionResult(
                 null, playerName, totalScore, weberScore, avgAbsDistortion, blankAvgDistortion,
                 loadAvgDistortion, emotionAvgDistortion, biasDirection, grade, System.currentTimeMillis());
-        return template.insert(TimePerceptionResult.class)
-                .using(entity)
-                .then(ServiceSupport.selectAll(template, TimePerceptionResult.class))
-                .map(rows -> new TimePerceptionSubmitResponse(rankByScore(rows, totalScore), rows.size()));
+        return aggregates.insert(entity)
+                .then(aggregates.read(() -> new TimePerceptionSubmitResponse(
+                        scoreRank.countAbove(totalScore) + 1, aggregates.count())));
     }
 
     /**
@@ -61,8 +87,7 @@ public class TimePerceptionService {
      * @return 包含全局指标与评级分布的统计响应
      */
     public Mono<TimePerceptionStatsResponse> stats() {
-        return ServiceSupport.selectAll(template, TimePerceptionResult.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /**
@@ -72,51 +97,35 @@ public class TimePerceptionService {
      * @return 包含排行榜列表和总样本数的响应
      */
     public Mono<TimePerceptionLeaderboardResponse> leaderboard(int limit) {
-        int safeLimit = ServiceSupport.clampLimit(limit, 1, 100);
-        return ServiceSupport.selectAll(template, TimePerceptionResult.class)
-                .map(rows -> toLeaderboardResponse(rows, safeLimit));
-    }
-
-    /** 仅按总分计算当前玩家名次，高分优先。 */
-    private long rankByScore(List<TimePerceptionResult> rows, int totalScore) {
-        return rows.stream().filter(row -> row.totalScore() > totalScore).count() + 1;
+        int safeLimit = ServiceSupport.clampLimit(limit, 1, MAX_LEADERBOARD);
+        return aggregates.read(() -> new TimePerceptionLeaderboardResponse(
+                buildLeaderboard(leaders.first(safeLimit)), aggregates.count()));
     }
 
     /** 聚合时间知觉实验的均值指标与评级分布。 */
-    private TimePerceptionStatsResponse toStatsResponse(List<TimePerceptionResult> rows) {
+    private TimePerceptionStatsResponse toStatsResponse() {
+        long total = aggregates.count();
         TimePerceptionGlobalStats global = new TimePerceptionGlobalStats(
-                rows.size(),
-                round1(rows.stream().mapToInt(TimePerceptionResult::totalScore).average().orElse(0)),
-                round4(rows.stream().mapToDouble(TimePerceptionResult::avgAbsDistortion).average().orElse(0)),
-                round4(rows.stream().mapToDouble(TimePerceptionResult::weberScore).average().orElse(0)),
-                round4(rows.stream().mapToDouble(TimePerceptionResult::blankAvgDistortion).average().orElse(0)),
-                round4(rows.stream().mapToDouble(TimePerceptionResult::loadAvgDistortion).average().orElse(0)),
-                round4(rows.stream().mapToDouble(TimePerceptionResult::emotionAvgDistortion).average().orElse(0)),
-                rows.isEmpty() ? 0.0 : round3(rows.stream().filter(row -> "overestimator".equals(row.biasDirection())).count() / (double) rows.size()),
-                rows.isEmpty() ? 0.0 : round3(rows.stream().filter(row -> "underestimator".equals(row.biasDirection())).count() / (double) rows.size())
-        );
-
-        Map<String, Long> gradeDist = new LinkedHashMap<>(ServiceSupport.countBy(rows, TimePerceptionResult::grade));
-        return new TimePerceptionStatsResponse(global, gradeDist);
-    }
-
-    /** 构建排行榜响应，保持与前端展示一致的总数与排名规则。 */
-    private TimePerceptionLeaderboardResponse toLeaderboardResponse(List<TimePerceptionResult> rows, int safeLimit) {
-        List<TimePerceptionResult> sortedRows = ServiceSupport.sorted(
-                rows,
-                Comparator.comparingInt(TimePerceptionResult::totalScore).reversed()
+                total,
+                round1(totalScore.mean()),
+                round4(avgAbsDistortion.mean()),
+                round4(weberScore.mean()),
+                round4(blankDistortion.mean()),
+                round4(loadDistortion.mean()),
+                round4(emotionDistortion.mean()),
+                total == 0 ? 0.0 : round3(overestimators.get() / (double) total),
+                total == 0 ? 0.0 : round3(underestimators.get() / (double) total)
         );
-        List<TimePerceptionLeaderboardEntry> leaders = buildLeaderboard(sortedRows, safeLimit);
-        return new TimePerceptionLeaderboardResponse(leaders, rows.size());
+        return new TimePerceptionStatsResponse(global, grades.snapshot());
     }
 
     /** 对分数相同的玩家赋予并列名次。 */
-    private List<TimePerceptionLeaderboardEntry> buildLeaderboard(List<TimePerceptionResult> rows, int limit) {
+    private List<TimePerceptionLeaderboardEntry> buildLeaderboard(List<TimePerceptionResult> rows) {
         List<TimePerceptionLeaderboardEntry> leaders = new ArrayList<>();
         int rank = 0;
         int prevScore = Integer.MIN_VALUE;
         int index = 0;
-        for (TimePerceptionResult row : rows.stream().limit(limit).toList()) {
+        for (TimePerceptionResult row : rows) {
             index++;
             if (row.totalScore() != prevScore) {
                 rank = index;
@@ -144,4 +153,9 @@ public class TimePerceptionService {
     private double round4(double value) {
         return ServiceSupport.round(value, 4);
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
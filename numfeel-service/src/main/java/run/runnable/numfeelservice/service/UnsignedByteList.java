@@ -0,0 +1,27 @@
+package run.runnable.numfeelservice.service;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * {@code byte[]} 的只读 {@code List<Integer>} 视图，元素为 0..255。
+ * 不复制、不逐个装箱（0..255 落在 {@link Integer#valueOf} 的缓存里），供接口按整数数组输出随机字节。
+ */
+final class UnsignedByteList extends AbstractList<Integer> implements RandomAccess {
+
+    private final byte[] bytes;
+
+    UnsignedByteList(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public Integer get(int index) {
+        return bytes[index] & 0xff;
+    }
+
+    @Override
+    public int size() {
+        return bytes.length;
+    }
+}
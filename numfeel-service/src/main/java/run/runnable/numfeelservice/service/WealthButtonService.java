@@ -9,6 +9,7 @@ import run.runnable.numfeelservice.controller.dto.GameplayResponses.WealthButton
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.WealthButtonStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.WealthButtonLeaderboardEntry;
 import run.runnable.numfeelservice.model.GameplayEntities.WealthButtonStats;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
@@ -17,9 +18,6 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.*;
 
@@ -72,15 +70,44 @@ public class WealthButtonService {
             .maximumSize(10000)
             .build();
 
+    /** 排行榜可查询的最大条数。 */
+    private static final int MAX_LEADERBOARD = 100;
+
+    private static final Comparator<WealthButtonLeaderboardEntry> BY_WEALTH =
+            Comparator.comparingDouble(WealthButtonLeaderboardEntry::finalWealth).reversed()
+                    .thenComparingLong(WealthButtonLeaderboardEntry::createdAt);
+    private static final Comparator<WealthButtonLeaderboardEntry> BY_RETURN =
+            Comparator.comparingDouble(WealthButtonLeaderboardEntry::returnRate).reversed()
+                    .thenComparingLong(WealthButtonLeaderboardEntry::createdAt);
+    private static final Comparator<WealthButtonLeaderboardEntry> BY_PRESS_COUNT =
+            Comparator.comparingInt(WealthButtonLeaderboardEntry::pressCount).reversed()
+                    .thenComparingLong(WealthButtonLeaderboardEntry::createdAt);
+
     private final R2dbcEntityTemplate template;
     private final DatabaseClient databaseClient;
     private final TurnstileVerifier turnstileVerifier;
+    /** 排行榜按用户名去重，三个榜各自维护每人最高的一条记录及其名次索引。 */
+    private final LiveAggregates<WealthButtonLeaderboardEntry> leaderboard;
+    private final LiveAggregates.BestByKey<WealthButtonLeaderboardEntry, String> bestWealth;
+    private final LiveAggregates.BestByKey<WealthButtonLeaderboardEntry, String> bestReturn;
+    private final LiveAggregates.BestByKey<WealthButtonLeaderboardEntry, String> bestPressCount;
+    /** 清理已检查到的最大 id，只在本实例内记录，重启后从头检查一次。 */
+    private volatile long cleanedThroughId;
 
     public WealthButtonService(R2dbcEntityTemplate template, DatabaseClient databaseClient,
                                TurnstileVerifier turnstileVerifier) {
         this.template = template;
         this.databaseClient = databaseClient;
         this.turnstileVerifier = turnstileVerifier;
+        LiveAggregates.Builder<WealthButtonLeaderboardEntry> builder =
+                LiveAggregates.builder(template, WealthButtonLeaderboardEntry.class);
+        this.bestWealth = builder.bestBy(WealthButtonLeaderboardEntry::username,
+                WealthButtonLeaderboardEntry::finalWealth);
+        this.bestReturn = builder.bestBy(WealthButtonLeaderboardEntry::username,
+                WealthButtonLeaderboardEntry::returnRate);
+        this.bestPressCount = builder.bestBy(WealthButtonLeaderboardEntry::username,
+                WealthButtonLeaderboardEntry::pressCount);
+        this.leaderboard = builder.build();
     }
 
     // ── 统计相关 ──────────────────────────────────────────────────────
@@ -170,18 +197,15 @@ public class WealthButtonService {
                     markPowUsed(powHash);
                     lastSubmitAt.put(username, now);
                 }))
-                .then(template.insert(WealthButtonLeaderboardEntry.class)
-                        .using(entity)
-                        .then(ServiceSupport.selectAll(template, WealthButtonLeaderboardEntry.class))
-                        .map(rows -> computeRanks(rows, username, replayResult.finalWealth(),
-                                replayResult.returnRate(), replayResult.pressCount())));
+                .then(Mono.defer(() -> leaderboard.insert(entity)))
+                .then(Mono.defer(() -> leaderboard.read(() -> computeRanks(username, replayResult.finalWealth(),
+                        replayResult.returnRate(), replayResult.pressCount()))));
     }
 
     /** 查询排行榜 top N（按用户名去重）。 */
     public Mono<WealthButtonLeaderboardResponse> getLeaderboard(int limit) {
-        int safeLimit = ServiceSupport.clampLimit(limit, 1, 100);
-        return ServiceSupport.selectAll(template, WealthButtonLeaderboardEntry.class)
-                .map(rows -> buildLeaderboardResponse(rows, safeLimit));
+        int safeLimit = ServiceSupport.clampLimit(limit, 1, MAX_LEADERBOARD);
+        return leaderboard.read(() -> buildLeaderboardResponse(safeLimit));
     }
 
     // ── PoW 验证 ──────────────────────────────────────────────────────
@@ -237,19 +261,7 @@ public class WealthButtonService {
 
     /** 计算 SHA-256 哈希。 */
     static String sha256(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder(64);
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 not available", e);
-        }
+        return Hashing.sha256Hex(input);
     }
 
     // ── 数据校验 ──────────────────────────────────────────────────────
@@ -336,90 +348,40 @@ public class WealthButtonService {
         usedPowHashes.put(powHash, Boolean.TRUE);
     }
 
-    /** 计算当前提交在资产、收益率和存活时长三个榜的排名。 */
-    private WealthButtonLeaderboardSubmitResponse computeRanks(
-            List<WealthButtonLeaderboardEntry> rows, String username,
-            double finalWealth, double returnRate, int pressCount) {
-        // 按用户名去重：每人只取最高值
-        Map<String, Double> bestWealth = new java.util.HashMap<>();
-        Map<String, Double> bestReturn = new java.util.HashMap<>();
-        Map<String, Integer> bestPressCount = new java.util.HashMap<>();
-        for (WealthButtonLeaderboardEntry r : rows) {
-            bestWealth.merge(r.username(), r.finalWealth(), Math::max);
-            bestReturn.merge(r.username(), r.returnRate(), Math::max);
-            bestPressCount.merge(r.username(), r.pressCount(), Math::max);
-        }
-
-        // 计算当前用户的排名
-        double myBestWealth = bestWealth.getOrDefault(username, finalWealth);
-        double myBestReturn = bestReturn.getOrDefault(username, returnRate);
-        int myBestPressCount = bestPressCount.getOrDefault(username, pressCount);
+    /** 计算当前提交在资产、收益率和存活时长三个榜的排名（每人只按自己的最高值参与排名）。 */
+    private WealthButtonLeaderboardSubmitResponse computeRanks(String username, double finalWealth,
+                                                               double returnRate, int pressCount) {
+        WealthButtonLeaderboardEntry myWealth = bestWealth.best(username);
+        WealthButtonLeaderboardEntry myReturn = bestReturn.best(username);
+        WealthButtonLeaderboardEntry myPressCount = bestPressCount.best(username);
+        double myBestWealth = myWealth != null ? myWealth.finalWealth() : finalWealth;
+        double myBestReturn = myReturn != null ? myReturn.returnRate() : returnRate;
+        int myBestPressCount = myPressCount != null ? myPressCount.pressCount() : pressCount;
 
-        long wealthRank = bestWealth.values().stream().filter(v -> v > myBestWealth).count() + 1;
-        long returnRank = bestReturn.values().stream().filter(v -> v > myBestReturn).count() + 1;
-        long pressCountRank = bestPressCount.values().stream().filter(v -> v > myBestPressCount).count() + 1;
+        long wealthRank = bestWealth.countAbove(myBestWealth) + 1;
+        long returnRank = bestReturn.countAbove(myBestReturn) + 1;
+        long pressCountRank = bestPressCount.countAbove(myBestPressCount) + 1;
 
         return new WealthButtonLeaderboardSubmitResponse(
-                (int) wealthRank, (int) returnRank, (int) pressCountRank, bestWealth.size());
+                (int) wealthRank, (int) returnRank, (int) pressCountRank, bestWealth.keys());
     }
 
     /** 构建完整排行榜响应（按用户名去重，各取 top N）。 */
-    private WealthButtonLeaderboardResponse buildLeaderboardResponse(
-            List<WealthButtonLeaderboardEntry> rows, int limit) {
-
-        // 资产排行：每用户取最高资产那条记录
-        Map<String, WealthButtonLeaderboardEntry> bestWealthEntries = new java.util.HashMap<>();
-        for (WealthButtonLeaderboardEntry r : rows) {
-            bestWealthEntries.merge(r.username(), r,
-                    (a, b) -> a.finalWealth() >= b.finalWealth() ? a : b);
-        }
-        List<WealthButtonLeaderboardEntry> wealthSorted = ServiceSupport.sorted(
-                new ArrayList<>(bestWealthEntries.values()),
-                Comparator.comparingDouble(WealthButtonLeaderboardEntry::finalWealth).reversed()
-                        .thenComparingLong(WealthButtonLeaderboardEntry::createdAt));
-
-        // 收益率排行：每用户取最高收益率那条记录
-        Map<String, WealthButtonLeaderboardEntry> bestReturnEntries = new java.util.HashMap<>();
-        for (WealthButtonLeaderboardEntry r : rows) {
-            bestReturnEntries.merge(r.username(), r,
-                    (a, b) -> a.returnRate() >= b.returnRate() ? a : b);
-        }
-        List<WealthButtonLeaderboardEntry> returnSorted = ServiceSupport.sorted(
-                new ArrayList<>(bestReturnEntries.values()),
-                Comparator.comparingDouble(WealthButtonLeaderboardEntry::returnRate).reversed()
-                        .thenComparingLong(WealthButtonLeaderboardEntry::createdAt));
-
-        // 存活时长排行：每用户取最高按下次数那条记录
-        Map<String, WealthButtonLeaderboardEntry> bestPressCountEntries = new java.util.HashMap<>();
-        for (WealthButtonLeaderboardEntry r : rows) {
-            bestPressCountEntries.merge(r.username(), r,
-                    (a, b) -> a.pressCount() >= b.pressCount() ? a : b);
-        }
-        List<WealthButtonLeaderboardEntry> pressCountSorted = ServiceSupport.sorted(
-                new ArrayList<>(bestPressCountEntries.values()),
-                Comparator.comparingInt(WealthButtonLeaderboardEntry::pressCount).reversed()
-                        .thenComparingLong(WealthButtonLeaderboardEntry::createdAt));
+    private WealthButtonLeaderboardResponse buildLeaderboardResponse(int limit) {
+        return new WealthButtonLeaderboardResponse(
+                toItems(bestWealth.top(limit, BY_WEALTH)),
+                toItems(bestReturn.top(limit, BY_RETURN)),
+                toItems(bestPressCount.top(limit, BY_PRESS_COUNT)),
+                bestWealth.keys());
+    }
 
-        List<WealthButtonLeaderboardItem> byWealth = new ArrayList<>();
+    private List<WealthButtonLeaderboardItem> toItems(List<WealthButtonLeaderboardEntry> entries) {
+        List<WealthButtonLeaderboardItem> items = new ArrayList<>(entries.size());
         int rank = 1;
-        for (WealthButtonLeaderboardEntry e : wealthSorted.stream().limit(limit).toList()) {
-            byWealth.add(toItem(e, rank++));
-        }
-
-        List<WealthButtonLeaderboardItem> byReturn = new ArrayList<>();
-        rank = 1;
-        for (WealthButtonLeaderboardEntry e : returnSorted.stream().limit(limit).toList()) {
-            byReturn.add(toItem(e, rank++));
-        }
-
-        List<WealthButtonLeaderboardItem> byPressCount = new ArrayList<>();
-        rank = 1;
-        for (WealthButtonLeaderboardEntry e : pressCountSorted.stream().limit(limit).toList()) {
-            byPressCount.add(toItem(e, rank++));
+        for (WealthButtonLeaderboardEntry e : entries) {
+            items.add(toItem(e, rank++));
         }
-
-        long totalUsers = bestWealthEntries.size();
-        return new WealthButtonLeaderboardResponse(byWealth, byReturn, byPressCount, totalUsers);
+        return items;
     }
 
     private WealthButtonLeaderboardItem toItem(WealthButtonLeaderboardEntry e, int rank) {
@@ -434,19 +396,40 @@ public class WealthButtonService {
     /**
      * 定时清理排行榜中含 {@value #MAX_WIN_STREAK} 连胜的作弊记录。
      * <p>
-     * 启动 1 分钟后首次执行，之后每 5 分钟扫描一次。
+     * 提交时 {@link #replayGame} 已拒绝超限连胜，这里只是兜底（限制之前的旧数据、绕过本服务写入的行）：
+     * 启动 1 分钟后首次执行检查全表，之后每 5 分钟只检查 id 大于上次检查到的行，只取 id 与历史两列。
      */
     @Scheduled(initialDelay = 60_000L, fixedDelay = CLEAN_FIXED_DELAY_MS)
     public void cleanSuspiciousLeaderboardEntries() {
-        ServiceSupport.selectAll(template, WealthButtonLeaderboardEntry.class)
+        cleanSuspiciousSince()
+                .subscribe(
+                        n -> {},
+                        err -> log.warn("wealth-button cleanup failed: {}", err.getMessage())
+                );
+    }
+
+    /** 检查并删除 id 大于 {@link #cleanedThroughId} 的作弊记录，成功后推进检查位置；返回删除的行数。 */
+    Mono<Long> cleanSuspiciousSince() {
+        long after = cleanedThroughId;
+        return databaseClient.sql(
+                        "SELECT id, round_history FROM wealth_button_leaderboard WHERE id > :after ORDER BY id")
+                .bind("after", after)
+                .map((row, meta) -> new RoundHistoryRow(
+                        ((Number) row.get("id")).longValue(), (String) row.get("round_history")))
+                .all()
+                .collectList()
                 .flatMap(rows -> {
+                    long through = after;
                     List<Long> idsToDelete = new ArrayList<>();
-                    for (WealthButtonLeaderboardEntry r : rows) {
-                        if (r.id() != null && hasMaxWinStreak(r.roundHistory())) {
+                    for (RoundHistoryRow r : rows) {
+                        through = Math.max(through, r.id());
+                        if (hasMaxWinStreak(r.roundHistory())) {
                             idsToDelete.add(r.id());
                         }
                     }
+                    long checked = through;
                     if (idsToDelete.isEmpty()) {
+                        cleanedThroughId = checked;
                         return Mono.just(0L);
                     }
                     String placeholders = String.join(",",
@@ -456,19 +439,29 @@ public class WealthButtonService {
                     for (int i = 0; i < idsToDelete.size(); i++) {
                         spec = spec.bind(i, idsToDelete.get(i));
                     }
+                    // 被删的可能正是某人的最高记录，去重后的名次索引无法逐条回退，整体重建（只在真的删了行时）
                     return spec.fetch().rowsUpdated()
                             .doOnNext(n -> log.info("wealth-button cleanup deleted {} suspicious entries: ids={}",
-                                    n, idsToDelete));
-                })
-                .subscribe(
-                        n -> {},
-                        err -> log.warn("wealth-button cleanup failed: {}", err.getMessage())
-                );
+                                    n, idsToDelete))
+                            .doOnSuccess(n -> {
+                                cleanedThroughId = checked;
+                                leaderboard.invalidate();
+                            });
+                });
+    }
+
+    @PreDestroy
+    void drain() {
+        leaderboard.drain();
     }
 
     record ChallengeState(long expiresAt) {
     }
 
+    /** 清理时读取的两列。 */
+    private record RoundHistoryRow(long id, String roundHistory) {
+    }
+
     record GameReplayResult(int pressCount, int winCount, double finalWealth, double returnRate) {
     }
 }
@@ -2,6 +2,7 @@ package run.runnable.numfeelservice.service;
 
 import run.runnable.numfeelservice.controller.dto.GameplayResponses.WinningStrategyStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.WinningStrategyStat;
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -12,10 +13,20 @@ import reactor.core.publisher.Mono;
 @Service
 public class WinningStrategyStatsService {
 
-    private final R2dbcEntityTemplate template;
+    private final LiveAggregates<WinningStrategyStat> aggregates;
+    private final LiveAggregates.GroupCount<WinningStrategyStat, String> results;
+    private final LiveAggregates.GroupCount<WinningStrategyStat, String> games;
+    /** AI 胜场按模式分组。 */
+    private final LiveAggregates.GroupCount<WinningStrategyStat, String> aiWinsByGame;
+    private final LiveAggregates.Counter<WinningStrategyStat> aiWinsHard;
 
     public WinningStrategyStatsService(R2dbcEntityTemplate template) {
-        this.template = template;
+        LiveAggregates.Builder<WinningStrategyStat> builder = LiveAggregates.builder(template, WinningStrategyStat.class);
+        this.results = builder.countBy(WinningStrategyStat::result);
+        this.games = builder.countBy(WinningStrategyStat::game);
+        this.aiWinsByGame = builder.countBy(row -> "lose".equals(row.result()) ? row.game() : null);
+        this.aiWinsHard = builder.count(row -> "lose".equals(row.result()) && "hard".equals(row.difficulty()));
+        this.aggregates = builder.build();
     }
 
     /**
@@ -30,7 +41,7 @@ public class WinningStrategyStatsService {
     public Mono<WinningStrategyStatsResponse> submit(String game, String result, String difficulty, int rounds) {
         WinningStrategyStat entity = new WinningStrategyStat(
                 null, game, result, difficulty, rounds, System.currentTimeMillis());
-        return template.insert(WinningStrategyStat.class).using(entity).then(getStats());
+        return aggregates.insert(entity).then(getStats());
     }
 
     /**
@@ -39,37 +50,36 @@ public class WinningStrategyStatsService {
      * @return 包含全局指标与模式分布的统计响应
      */
     public Mono<WinningStrategyStatsResponse> getStats() {
-        return ServiceSupport.selectAll(template, WinningStrategyStat.class)
-                .map(this::toStatsResponse);
+        return aggregates.read(this::toStatsResponse);
     }
 
     /** 聚合总胜率、模式分布以及 AI 在不同模式/难度下的胜场数据。 */
-    private WinningStrategyStatsResponse toStatsResponse(java.util.List<WinningStrategyStat> rows) {
-        long total = rows.size();
-        long playerWins = rows.stream().filter(row -> "win".equals(row.result())).count();
-        long aiWins = rows.stream().filter(row -> "lose".equals(row.result())).count();
+    private WinningStrategyStatsResponse toStatsResponse() {
+        long total = aggregates.count();
+        long playerWins = results.get("win");
+        long aiWins = results.get("lose");
 
         return new WinningStrategyStatsResponse(
                 total,
                 playerWins,
                 aiWins,
                 round1(total > 0 ? aiWins * 100.0 / total : 0),
-                countByGame(rows, "bash"),
-                countByGame(rows, "wythoff"),
-                countByGame(rows, "coin"),
-                rows.stream().filter(row -> "lose".equals(row.result()) && "hard".equals(row.difficulty())).count(),
-                rows.stream().filter(row -> "lose".equals(row.result()) && "bash".equals(row.game())).count(),
-                rows.stream().filter(row -> "lose".equals(row.result()) && "wythoff".equals(row.game())).count(),
-                rows.stream().filter(row -> "lose".equals(row.result()) && "coin".equals(row.game())).count()
+                games.get("bash"),
+                games.get("wythoff"),
+                games.get("coin"),
+                aiWinsHard.get(),
+                aiWinsByGame.get("bash"),
+                aiWinsByGame.get("wythoff"),
+                aiWinsByGame.get("coin")
         );
     }
 
-    /** 统计某个博弈模式的总对局数。 */
-    private long countByGame(java.util.List<WinningStrategyStat> rows, String game) {
-        return rows.stream().filter(row -> game.equals(row.game())).count();
-    }
-
     private double round1(double value) {
         return ServiceSupport.round(value, 1);
     }
+
+    @PreDestroy
+    void drain() {
+        aggregates.drain();
+    }
 }
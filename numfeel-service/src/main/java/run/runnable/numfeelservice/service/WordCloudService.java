@@ -12,6 +12,7 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -19,15 +20,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.HashMap;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -36,6 +43,8 @@ import java.util.zip.ZipInputStream;
  * 词云业务逻辑层：数据下载、分词、统计、缓存。
  * <p>
  * 通过 @Cacheable 缓存结果 1 小时，内部阻塞 I/O 在 boundedElastic 调度器执行。
+ * 词频由增量索引 {@link WordCountIndex} 维护并持久化到磁盘，缓存过期或重启时只重新分词新增 / 变化的文件，
+ * 需要分词时按 CPU 核数并行（见 {@link #segmentFiles}）。
  */
 @Service
 public class WordCloudService {
@@ -45,6 +54,8 @@ public class WordCloudService {
     private static final String DATA_URL = "https://fileshare.runnable.run/HuChenFeng/HuChenFeng.zip";
     private static final String LOCAL_ZIP = "data/HuChenFeng.zip";
     private static final String DATA_DIR = "data/HuChenFeng";
+    /** 词频索引快照，见 {@link WordCountIndex}。 */
+    private static final String INDEX_FILE = "data/HuChenFeng.wcidx";
 
     private static final Set<String> STOP_WORDS = Set.of(
             "户晨风","感谢","不是","现在","一下","可以","知道","然后","xxxx","问题","为什么","可能","觉得","这样","这种",
@@ -62,7 +73,19 @@ public class WordCloudService {
             "主播","存在","只要","好像","这个","就是","那个","什么","怎么","还是"
     );
 
-    public record WordCloudData(List<WordCloudEntryResponse> top300, Map<String, Integer> fullCounts) {
+    /** 过滤规则（停用词表）变化时旧索引需要作废，用它的指纹做校验。 */
+    private static final long FILTER_HASH = STOP_WORDS.stream().sorted().toList().hashCode();
+
+    /** 常驻内存的词频索引，首次 {@link #generate} 时载入；由 generate 的锁保护。 */
+    private WordCountIndex index;
+
+    /**
+     * 词云结果。
+     *
+     * @param top300 出现次数最多的 300 个词
+     * @param words  全量词表的搜索索引
+     */
+    public record WordCloudData(List<WordCloudEntryResponse> top300, WordSearchIndex words) {
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -105,40 +128,178 @@ public class WordCloudService {
         Files.deleteIfExists(Paths.get(LOCAL_ZIP));
     }
 
-    /** 扫描语料目录，分词并生成 Top300 词频结果。 */
-    private WordCloudData generate() throws IOException {
+    /**
+     * 增量刷新词频索引并生成 Top300 词频结果。
+     * <p>
+     * 首次调用时从磁盘快照载入索引（快照缺失或失效则从空索引开始），之后常驻内存；
+     * 每次只重新分词新增或 mtime / size 变化的文件，语料未变化时不会调用 Jieba。
+     */
+    private synchronized WordCloudData generate() throws IOException {
         log.info("Generating word cloud data...");
-        Map<String, Integer> wordCounts = new HashMap<>();
-        JiebaSegmenter segmenter = new JiebaSegmenter();
 
         Path dataPath = Paths.get(DATA_DIR);
         if (!Files.exists(dataPath)) {
             log.warn("Data directory not found: {}", dataPath.toAbsolutePath());
-            return new WordCloudData(List.of(), new HashMap<>());
+            return new WordCloudData(List.of(), WordSearchIndex.EMPTY);
+        }
+
+        Path indexPath = Paths.get(INDEX_FILE);
+        if (index == null) {
+            index = loadIndex(indexPath);
+        }
+
+        long startNanos = System.nanoTime();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int changed = refreshIndex(index, dataPath, parallelism);
+        if (changed > 0) {
+            try {
+                index.save(indexPath);
+            } catch (IOException e) {
+                log.warn("Failed to save word count index {}: {}", indexPath, e.getMessage());
+            }
+        }
+        WordCounter wordCounts = index.totals();
+        log.info("Total words found: {} ({} files, {} re-segmented, {} ms)", wordCounts.size(), index.fileCount(),
+                changed, (System.nanoTime() - startNanos) / 1_000_000);
+
+        List<WordCloudEntryResponse> result = topWords(wordCounts, 300);
+        WordSearchIndex words = WordSearchIndex.from(wordCounts);
+        log.info("Top words count: {}, search index {} KB", result.size(), words.estimatedBytes() / 1024);
+
+        return new WordCloudData(result, words);
+    }
+
+    private static WordCountIndex loadIndex(Path indexPath) {
+        long startNanos = System.nanoTime();
+        try {
+            WordCountIndex loaded = WordCountIndex.load(indexPath, FILTER_HASH);
+            log.info("Loaded word count index: {} files in {} ms", loaded.fileCount(),
+                    (System.nanoTime() - startNanos) / 1_000_000);
+            return loaded;
+        } catch (IOException e) {
+            log.warn("Discarding word count index, rebuilding from corpus: {}", e.getMessage());
+            return new WordCountIndex(FILTER_HASH);
         }
+    }
 
+    /**
+     * 让索引与语料目录一致：移除已删除的文件，并行重新分词新增或变化的文件。
+     *
+     * @return 被移除或重新分词的文件数
+     */
+    static int refreshIndex(WordCountIndex index, Path dataPath, int parallelism) throws IOException {
+        List<Path> stale = new ArrayList<>();
+        List<BasicFileAttributes> staleAttrs = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        List<Path> files;
         try (Stream<Path> paths = Files.walk(dataPath)) {
-            paths.filter(Files::isRegularFile)
-                    .filter(p -> p.toString().endsWith(".md"))
-                    .forEach(p -> processFile(p, segmenter, wordCounts));
+            files = paths.filter(p -> p.toString().endsWith(".md")).toList();
+        }
+        for (Path path : files) {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                continue;
+            }
+            String key = indexKey(dataPath, path);
+            seen.add(key);
+            if (!index.isFresh(key, attrs.lastModifiedTime().toMillis(), attrs.size())) {
+                stale.add(path);
+                staleAttrs.add(attrs);
+            }
+        }
+
+        int changed = 0;
+        for (String key : index.paths()) {
+            if (!seen.contains(key) && index.remove(key)) {
+                changed++;
+            }
+        }
+
+        WordCounter[] counts = segmentFiles(stale, parallelism);
+        for (int i = 0; i < stale.size(); i++) {
+            BasicFileAttributes attrs = staleAttrs.get(i);
+            index.put(indexKey(dataPath, stale.get(i)), attrs.lastModifiedTime().toMillis(), attrs.size(), counts[i]);
+        }
+        return changed + stale.size();
+    }
+
+    private static String indexKey(Path dataPath, Path file) {
+        return dataPath.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * 并行分词一组 Markdown 文件，返回与 files 一一对应的词频。
+     * <p>
+     * 文件列表按 fork-join 二分，每个工作线程持有自己的 {@link JiebaSegmenter}，
+     * 每个文件的词频写入各自的 {@link WordCounter}，全程无共享写。
+     */
+    static WordCounter[] segmentFiles(List<Path> files, int parallelism) {
+        WordCounter[] results = new WordCounter[files.size()];
+        if (files.isEmpty()) {
+            return results;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism, SegmentWorker::new, null, false);
+        try {
+            pool.invoke(new SegmentTask(files, 0, files.size(), results));
+        } finally {
+            pool.shutdown();
         }
+        return results;
+    }
 
-        log.info("Total words found: {}", wordCounts.size());
+    /** 取出现次数最多的 limit 个词（单字词除外），按次数降序。 */
+    static List<WordCloudEntryResponse> topWords(WordCounter wordCounts, int limit) {
+        PriorityQueue<WordCloudEntryResponse> heap =
+                new PriorityQueue<>(limit + 1, Comparator.comparingInt(WordCloudEntryResponse::value));
+        wordCounts.forEach((word, count) -> {
+            if (word.length() <= 1 || (heap.size() == limit && count <= heap.peek().value())) {
+                return;
+            }
+            heap.add(new WordCloudEntryResponse(word, count));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        });
+        List<WordCloudEntryResponse> result = new ArrayList<>(heap);
+        result.sort(Comparator.comparingInt(WordCloudEntryResponse::value).reversed());
+        return result;
+    }
 
-        List<Map.Entry<String, Integer>> sorted = wordCounts.entrySet().stream()
-                .filter(e -> e.getKey().length() > 1)
-                .filter(e -> !STOP_WORDS.contains(e.getKey()))
-                .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
-                .limit(300)
-                .collect(Collectors.toList());
+    private static final class SegmentWorker extends ForkJoinWorkerThread {
+        final JiebaSegmenter segmenter = new JiebaSegmenter();
+
+        SegmentWorker(ForkJoinPool pool) {
+            super(pool);
+            setName("word-cloud-" + getPoolIndex());
+        }
+    }
 
-        log.info("Top words count: {}", sorted.size());
+    /** 把 files[from, to) 二分到单个文件，叶子任务用当前工作线程的分词器统计该文件。 */
+    private static final class SegmentTask extends RecursiveAction {
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+        private final WordCounter[] results;
 
-        List<WordCloudEntryResponse> result = sorted.stream()
-                .map(e -> new WordCloudEntryResponse(e.getKey(), e.getValue()))
-                .toList();
+        SegmentTask(List<Path> files, int from, int to, WordCounter[] results) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+        }
 
-        return new WordCloudData(result, wordCounts);
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SegmentTask(files, from, mid, results), new SegmentTask(files, mid, to, results));
+                return;
+            }
+            // 发起 invoke 的外部线程也可能帮忙执行任务，此时临时建一个分词器
+            JiebaSegmenter segmenter = Thread.currentThread() instanceof SegmentWorker worker
+                    ? worker.segmenter : new JiebaSegmenter();
+            results[from] = processFile(files.get(from), segmenter);
+        }
     }
 
     /** 判断本地语料目录是否已经存在可用数据。 */
@@ -159,10 +320,12 @@ public class WordCloudService {
         }
     }
 
-    /** 处理单个 Markdown 文件，只统计目标说话人的文本内容。 */
-    private void processFile(Path path, JiebaSegmenter segmenter, Map<String, Integer> wordCounts) {
-        try {
-            for (String line : Files.readAllLines(path)) {
+    /** 逐行流式读取单个 Markdown 文件，只统计目标说话人的文本内容。读取失败的文件记为空词频。 */
+    private static WordCounter processFile(Path path, JiebaSegmenter segmenter) {
+        WordCounter counts = new WordCounter(256);
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
                 String content = extractSpeakerContent(line);
                 if (content == null) {
                     continue;
@@ -170,17 +333,19 @@ public class WordCloudService {
                 for (SegToken token : segmenter.process(content, JiebaSegmenter.SegMode.SEARCH)) {
                     String word = token.word.trim();
                     if (shouldCountWord(word)) {
-                        wordCounts.merge(word, 1, Integer::sum);
+                        counts.increment(word);
                     }
                 }
             }
         } catch (IOException e) {
             log.warn("Failed to process file {}: {}", path, e.getMessage());
+            return new WordCounter(16);
         }
+        return counts;
     }
 
     /** 提取"户晨风"说话内容，去掉说话人前缀与空白。 */
-    private String extractSpeakerContent(String line) {
+    static String extractSpeakerContent(String line) {
         String content = line.trim();
         if (content.isEmpty()) {
             return null;
@@ -200,10 +365,37 @@ public class WordCloudService {
     }
 
     /** 过滤停用词、空串和纯数字，避免污染词云结果。 */
-    private boolean shouldCountWord(String word) {
+    static boolean shouldCountWord(String word) {
         return !word.isEmpty()
                 && !STOP_WORDS.contains(word)
-                && !word.matches("-?\\d+(\\.\\d+)?");
+                && !isNumber(word);
+    }
+
+    /** 等价于 {@code word.matches("-?\\d+(\\.\\d+)?")}，但不为每个词编译、匹配正则。 */
+    private static boolean isNumber(String word) {
+        int i = word.charAt(0) == '-' ? 1 : 0;
+        int intStart = i;
+        while (i < word.length() && isAsciiDigit(word.charAt(i))) {
+            i++;
+        }
+        if (i == intStart) {
+            return false;
+        }
+        if (i == word.length()) {
+            return true;
+        }
+        if (word.charAt(i) != '.') {
+            return false;
+        }
+        int fracStart = ++i;
+        while (i < word.length() && isAsciiDigit(word.charAt(i))) {
+            i++;
+        }
+        return i > fracStart && i == word.length();
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
     private void unzip(String zipPath, String destDir) throws IOException {
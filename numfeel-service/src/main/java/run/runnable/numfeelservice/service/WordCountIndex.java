@@ -0,0 +1,202 @@
+package run.runnable.numfeelservice.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 词云语料的增量词频索引：按文件记录 (mtime, size) 与该文件的词频，同时维护全体文件的词频合计。
+ * <p>
+ * 文件的 mtime 或 size 变化时只需重新分词这一个文件，用 {@link #put} 把新旧词频的差值并入合计；
+ * 文件删除时用 {@link #remove} 扣减。索引以快照形式落盘，重启时通过内存映射读回，无需重跑 Jieba。
+ * <p>
+ * 快照格式（大端）：
+ * <pre>
+ * int magic 'WCI1' | int version | long filterHash
+ * int wordCount | wordCount × (int len, utf8)
+ * int fileCount | fileCount × (int len, utf8 path | long mtime | long size | int n | n × (int wordId, int count))
+ * </pre>
+ * filterHash 标识写入时的分词过滤规则，与当前规则不一致时快照作废、全量重建。
+ */
+final class WordCountIndex {
+
+    private static final int MAGIC = 0x57434931; // "WCI1"
+    private static final int VERSION = 1;
+
+    /** 单个文件的指纹与词频。words 与 counts 一一对应。 */
+    record FileEntry(long mtime, long size, String[] words, int[] counts) {
+    }
+
+    private final long filterHash;
+    private final Map<String, FileEntry> files = new HashMap<>();
+    private final WordCounter totals = new WordCounter(1 << 16);
+
+    WordCountIndex(long filterHash) {
+        this.filterHash = filterHash;
+    }
+
+    /** 文件是否已收录且 mtime、size 都未变化。 */
+    boolean isFresh(String path, long mtime, long size) {
+        FileEntry entry = files.get(path);
+        return entry != null && entry.mtime() == mtime && entry.size() == size;
+    }
+
+    /** 写入（或替换）一个文件的词频，合计中先扣掉旧词频再加上新词频。 */
+    void put(String path, long mtime, long size, WordCounter counts) {
+        remove(path);
+        String[] words = new String[counts.size()];
+        int[] values = new int[counts.size()];
+        int[] n = {0};
+        counts.forEach((word, count) -> {
+            words[n[0]] = word;
+            values[n[0]++] = count;
+        });
+        add(path, new FileEntry(mtime, size, words, values));
+    }
+
+    /** 移除一个文件并从合计中扣减它的词频；文件不在索引中时返回 false。 */
+    boolean remove(String path) {
+        FileEntry old = files.remove(path);
+        if (old == null) {
+            return false;
+        }
+        for (int i = 0; i < old.words().length; i++) {
+            totals.add(old.words()[i], -old.counts()[i]);
+        }
+        return true;
+    }
+
+    Set<String> paths() {
+        return Set.copyOf(files.keySet());
+    }
+
+    int fileCount() {
+        return files.size();
+    }
+
+    /** 全体文件的词频合计。返回内部实例，调用方只读。 */
+    WordCounter totals() {
+        return totals;
+    }
+
+    private void add(String path, FileEntry entry) {
+        files.put(path, entry);
+        for (int i = 0; i < entry.words().length; i++) {
+            totals.add(entry.words()[i], entry.counts()[i]);
+        }
+    }
+
+    /** 写入快照：先写临时文件再原子替换，写到一半崩溃不会留下损坏的索引。 */
+    void save(Path file) throws IOException {
+        Map<String, Integer> wordIds = new HashMap<>((int) (totals.size() / 0.75f) + 1);
+        String[] words = new String[totals.size()];
+        totals.forEach((word, count) -> {
+            wordIds.put(word, wordIds.size());
+            words[wordIds.size() - 1] = word;
+        });
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(filterHash);
+            out.writeInt(words.length);
+            for (String word : words) {
+                writeString(out, word);
+            }
+            out.writeInt(files.size());
+            for (Map.Entry<String, FileEntry> e : files.entrySet()) {
+                FileEntry entry = e.getValue();
+                writeString(out, e.getKey());
+                out.writeLong(entry.mtime());
+                out.writeLong(entry.size());
+                out.writeInt(entry.words().length);
+                for (int i = 0; i < entry.words().length; i++) {
+                    out.writeInt(wordIds.get(entry.words()[i]));
+                    out.writeInt(entry.counts()[i]);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 通过内存映射读取快照。文件不存在时返回空索引；格式、版本或过滤规则不匹配时抛出
+     * {@link IOException}，由调用方决定是否回退到全量重建。
+     */
+    static WordCountIndex load(Path file, long filterHash) throws IOException {
+        WordCountIndex index = new WordCountIndex(filterHash);
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return index;
+        }
+        try {
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IOException("Unrecognized word count index format: " + file);
+            }
+            if (buf.getLong() != filterHash) {
+                throw new IOException("Word count index was built with different filter rules: " + file);
+            }
+            String[] words = new String[checkedLength(buf, 4)];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = readString(buf);
+            }
+            int fileCount = buf.getInt();
+            for (int f = 0; f < fileCount; f++) {
+                String path = readString(buf);
+                long mtime = buf.getLong();
+                long size = buf.getLong();
+                int n = checkedLength(buf, 8);
+                String[] fileWords = new String[n];
+                int[] counts = new int[n];
+                for (int i = 0; i < n; i++) {
+                    fileWords[i] = words[buf.getInt()];
+                    counts[i] = buf.getInt();
+                }
+                index.add(path, new FileEntry(mtime, size, fileWords, counts));
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or corrupt word count index: " + file, e);
+        }
+        return index;
+    }
+
+    /** 读取一个元素个数，并确认剩余字节至少够放下这么多个 elementBytes 大小的元素。 */
+    private static int checkedLength(MappedByteBuffer buf, int elementBytes) {
+        int length = buf.getInt();
+        if (length < 0 || (long) length * elementBytes > buf.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0 || length > buf.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package run.runnable.numfeelservice.service;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 词 → 次数的开放寻址计数表（线性探测），计数以 {@code int} 原样存放，不装箱。
+ * <p>
+ * 专供单线程累加：分词时每个文件各写一个实例，再由 {@link WordCountIndex#put} 逐词
+ * {@link #add} 进全局合计；文件变化或删除时同样用负数 {@code add} 扣减旧词频。
+ * 计数减到 0 的词会被删除（后移删除，不留墓碑）。
+ */
+final class WordCounter {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private String[] keys;
+    private int[] counts;
+    private int size;
+    private int resizeAt;
+
+    WordCounter() {
+        this(1024);
+    }
+
+    WordCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /** 计数加一。 */
+    void increment(String word) {
+        add(word, 1);
+    }
+
+    void add(String word, int delta) {
+        int mask = keys.length - 1;
+        int i = mix(word.hashCode()) & mask;
+        String key;
+        while ((key = keys[i]) != null) {
+            if (key.equals(word)) {
+                if ((counts[i] += delta) == 0) {
+                    removeAt(i);
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        if (delta == 0) {
+            return;
+        }
+        keys[i] = word;
+        counts[i] = delta;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    int get(String word) {
+        int mask = keys.length - 1;
+        int i = mix(word.hashCode()) & mask;
+        String key;
+        while ((key = keys[i]) != null) {
+            if (key.equals(word)) {
+                return counts[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /** 删除槽位 i，并把其后同一探测链上的元素前移补位。 */
+    private void removeAt(int i) {
+        int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            String key = keys[j];
+            if (key == null) {
+                break;
+            }
+            int home = mix(key.hashCode()) & mask;
+            boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (reachable) {
+                continue;
+            }
+            keys[i] = key;
+            counts[i] = counts[j];
+            i = j;
+        }
+        keys[i] = null;
+        counts[i] = 0;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            String key = oldKeys[j];
+            if (key == null) {
+                continue;
+            }
+            int i = mix(key.hashCode()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            counts[i] = oldCounts[j];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        counts = new int[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /** String.hashCode 低位分布较差，线性探测前先打散。 */
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,309 @@
+package run.runnable.numfeelservice.service;
+
+import run.runnable.numfeelservice.controller.dto.UtilityResponses.WordCloudEntryResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 词云全量词表的只读搜索索引：精确查词、前缀查询、包含查询，结果按词频取前 k 个。
+ * <p>
+ * 所有词按字典序拼接进一个 {@code char[]}（{@code offsets} 记录边界），词频放在平行的 {@code int[]} 中，
+ * 不为每个词保留 String / Integer / HashMap.Node 对象：
+ * <ul>
+ *   <li>精确查词、前缀查询：在有序词表上二分，前缀命中的词是一段连续区间；</li>
+ *   <li>区间内按词频取 top-k：在词频数组上建一棵 argmax 线段树，用堆每次弹出区间最大值再把区间一分为二，
+ *       耗时 O(k log n)，与前缀命中多少词无关；</li>
+ *   <li>包含查询：按字符建倒排表（每个字符 → 含该字符的词号），取查询串中倒排表最短的字符作为候选，
+ *       逐个校验子串后再取 top-k。</li>
+ * </ul>
+ * 构建后不可变，可以被多个请求线程并发读取。
+ */
+public final class WordSearchIndex {
+
+    public static final WordSearchIndex EMPTY = new WordSearchIndex(new String[0], new int[0]);
+
+    private final char[] chars;
+    private final int[] offsets;
+    private final int[] counts;
+    /** 自底向上线段树，叶子在 [n, 2n)，节点存子树中词频最大的词号（并列取字典序靠前者）。 */
+    private final int[] maxTree;
+    private final char[] postingChars;
+    private final int[] postingStarts;
+    private final int[] postingIds;
+
+    /** 由 词 → 次数 构建索引，次数 ≤ 0 的词被忽略。 */
+    static WordSearchIndex of(Map<String, Integer> wordCounts) {
+        String[] words = wordCounts.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toArray(String[]::new);
+        int[] counts = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            counts[i] = wordCounts.get(words[i]);
+        }
+        return new WordSearchIndex(words, counts);
+    }
+
+    static WordSearchIndex from(WordCounter wordCounts) {
+        String[] words = new String[wordCounts.size()];
+        int[] n = {0};
+        wordCounts.forEach((word, count) -> words[n[0]++] = word);
+        Arrays.sort(words);
+        int[] counts = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            counts[i] = wordCounts.get(words[i]);
+        }
+        return new WordSearchIndex(words, counts);
+    }
+
+    private WordSearchIndex(String[] sortedWords, int[] counts) {
+        int n = sortedWords.length;
+        this.counts = counts;
+        this.offsets = new int[n + 1];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            offsets[i] = total;
+            total += sortedWords[i].length();
+        }
+        offsets[n] = total;
+        this.chars = new char[total];
+        for (int i = 0; i < n; i++) {
+            sortedWords[i].getChars(0, sortedWords[i].length(), chars, offsets[i]);
+        }
+
+        this.maxTree = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            maxTree[n + i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            maxTree[i] = better(maxTree[2 * i], maxTree[2 * i + 1]);
+        }
+
+        // 字符倒排表（CSR）：先数出每个字符出现在多少个词里，再按字符顺序填词号
+        int[] df = new int[Character.MAX_VALUE + 1];
+        for (int i = 0; i < n; i++) {
+            for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+                if (firstOccurrence(p, offsets[i])) {
+                    df[chars[p]]++;
+                }
+            }
+        }
+        int distinct = 0;
+        for (int d : df) {
+            if (d > 0) {
+                distinct++;
+            }
+        }
+        this.postingChars = new char[distinct];
+        this.postingStarts = new int[distinct + 1];
+        int[] cursor = new int[df.length];
+        int k = 0;
+        int start = 0;
+        for (int c = 0; c < df.length; c++) {
+            if (df[c] > 0) {
+                postingChars[k] = (char) c;
+                postingStarts[k++] = start;
+                cursor[c] = start;
+                start += df[c];
+            }
+        }
+        postingStarts[distinct] = start;
+        this.postingIds = new int[start];
+        for (int i = 0; i < n; i++) {
+            for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+                if (firstOccurrence(p, offsets[i])) {
+                    postingIds[cursor[chars[p]]++] = i;
+                }
+            }
+        }
+    }
+
+    /** 词表大小。 */
+    public int size() {
+        return counts.length;
+    }
+
+    /** 精确查词，词不存在时返回 0。 */
+    public int count(String word) {
+        int lo = 0;
+        int hi = counts.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, word, Integer.MAX_VALUE);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return counts[mid];
+            }
+        }
+        return 0;
+    }
+
+    /** 以 prefix 开头、词频最高的至多 limit 个词，按词频降序。 */
+    public List<WordCloudEntryResponse> prefix(String prefix, int limit) {
+        int lo = lowerBound(prefix, prefix.length(), 0);
+        int hi = lowerBound(prefix, prefix.length(), 1);
+        return topInRange(lo, hi, limit);
+    }
+
+    /** 包含 fragment、词频最高的至多 limit 个词，按词频降序。 */
+    public List<WordCloudEntryResponse> contains(String fragment, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        if (fragment.isEmpty()) {
+            return topInRange(0, counts.length, limit);
+        }
+        // 取倒排表最短的字符作为候选来源
+        int best = -1;
+        for (int i = 0; i < fragment.length(); i++) {
+            int slot = Arrays.binarySearch(postingChars, fragment.charAt(i));
+            if (slot < 0) {
+                return List.of();
+            }
+            if (best < 0 || postingLength(slot) < postingLength(best)) {
+                best = slot;
+            }
+        }
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, (a, b) -> better(a, b) == a ? 1 : -1);
+        for (int p = postingStarts[best]; p < postingStarts[best + 1]; p++) {
+            int id = postingIds[p];
+            if (heap.size() == limit && better(heap.peek(), id) == heap.peek()) {
+                continue;
+            }
+            if (fragment.length() == 1 || indexOf(id, fragment) >= 0) {
+                heap.add(id);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        }
+        List<WordCloudEntryResponse> out = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            out.add(entry(heap.poll()));
+        }
+        Collections.reverse(out);
+        return out;
+    }
+
+    /** 索引数组本身占用的字节数估算（不含对象头）。 */
+    public long estimatedBytes() {
+        return 2L * chars.length + 4L * (offsets.length + counts.length + maxTree.length
+                + postingStarts.length + postingIds.length) + 2L * postingChars.length;
+    }
+
+    /** 区间 [lo, hi) 中词频最高的 limit 个词：堆中放 (区间, 区间 argmax)，弹出后把区间从 argmax 处拆开。 */
+    private List<WordCloudEntryResponse> topInRange(int lo, int hi, int limit) {
+        if (lo >= hi || limit <= 0) {
+            return List.of();
+        }
+        PriorityQueue<int[]> heap = new PriorityQueue<>((a, b) -> better(a[2], b[2]) == a[2] ? -1 : 1);
+        heap.add(new int[]{lo, hi, argmax(lo, hi)});
+        List<WordCloudEntryResponse> out = new ArrayList<>(Math.min(limit, hi - lo));
+        while (!heap.isEmpty() && out.size() < limit) {
+            int[] range = heap.poll();
+            int top = range[2];
+            out.add(entry(top));
+            if (range[0] < top) {
+                heap.add(new int[]{range[0], top, argmax(range[0], top)});
+            }
+            if (top + 1 < range[1]) {
+                heap.add(new int[]{top + 1, range[1], argmax(top + 1, range[1])});
+            }
+        }
+        return out;
+    }
+
+    private int argmax(int lo, int hi) {
+        int n = counts.length;
+        int best = lo;
+        for (int l = lo + n, r = hi + n; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                best = better(best, maxTree[l++]);
+            }
+            if ((r & 1) == 1) {
+                best = better(best, maxTree[--r]);
+            }
+        }
+        return best;
+    }
+
+    /** 词频高者优先，相同时字典序靠前（词号小）者优先。 */
+    private int better(int a, int b) {
+        if (counts[a] != counts[b]) {
+            return counts[a] > counts[b] ? a : b;
+        }
+        return Math.min(a, b);
+    }
+
+    /** 第一个满足 compare(i, key, keyLength) >= bias 的词号（bias=0 为下界，bias=1 为上界）。 */
+    private int lowerBound(String key, int keyLength, int bias) {
+        int lo = 0;
+        int hi = counts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, key, keyLength) < bias) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** 比较第 i 个词的前 maxLength 个字符与 key，语义同 {@link String#compareTo}。 */
+    private int compare(int i, String key, int maxLength) {
+        int from = offsets[i];
+        int length = Math.min(offsets[i + 1] - from, maxLength);
+        int keyLength = Math.min(key.length(), maxLength);
+        int common = Math.min(length, keyLength);
+        for (int j = 0; j < common; j++) {
+            char c = chars[from + j];
+            char k = key.charAt(j);
+            if (c != k) {
+                return c - k;
+            }
+        }
+        return length - keyLength;
+    }
+
+    private int indexOf(int i, String fragment) {
+        int from = offsets[i];
+        int last = offsets[i + 1] - fragment.length();
+        outer:
+        for (int p = from; p <= last; p++) {
+            for (int j = 0; j < fragment.length(); j++) {
+                if (chars[p + j] != fragment.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return p - from;
+        }
+        return -1;
+    }
+
+    private boolean firstOccurrence(int p, int wordStart) {
+        for (int q = wordStart; q < p; q++) {
+            if (chars[q] == chars[p]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int postingLength(int slot) {
+        return postingStarts[slot + 1] - postingStarts[slot];
+    }
+
+    private WordCloudEntryResponse entry(int i) {
+        return new WordCloudEntryResponse(new String(chars, offsets[i], offsets[i + 1] - offsets[i]), counts[i]);
+    }
+}
@@ -0,0 +1,216 @@
+package run.runnable.numfeelservice.web;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * 客户端 IP 的 128 位键，供限流按 IP 计数，不生成任何中间字符串。
+ * <p>
+ * 头的优先级与 {@link ClientIp#resolve} 相同；IPv4 按 IPv4 映射地址（::ffff:a.b.c.d）存放，
+ * 与写成 {@code ::ffff:a.b.c.d} 的同一地址得到同一个键，IPv6 的各种写法（大小写、省略前导零、{@code ::}）也归一。
+ * 不是合法 IP 的值（如伪造的转发头）取两段 64 位字符串哈希，并在高位打上标记，不会与真实 IPv6 地址相撞。
+ * <p>
+ * 可变、非线程安全：每个线程复用一个实例。
+ */
+final class IpKey {
+
+    /** 非 IP 值的高位标记：ff00::/8 是组播地址，不会作为客户端地址出现。 */
+    private static final long OPAQUE = 0xff00_0000_0000_0000L;
+    private static final long IPV4_MAPPED = 0x0000_ffff_0000_0000L;
+
+    long hi;
+    long lo;
+
+    /** 按 CF-Connecting-IP > X-Forwarded-For 首段 > X-Real-IP > remoteAddress 解析。 */
+    IpKey resolve(ServerHttpRequest request) {
+        String value = request.getHeaders().getFirst("CF-Connecting-IP");
+        if (value != null && !value.isBlank()) {
+            return parse(value, 0, value.length());
+        }
+        value = request.getHeaders().getFirst("X-Forwarded-For");
+        if (value != null && !value.isBlank()) {
+            int comma = value.indexOf(',');
+            return parse(value, 0, comma < 0 ? value.length() : comma);
+        }
+        value = request.getHeaders().getFirst("X-Real-IP");
+        if (value != null && !value.isBlank()) {
+            return parse(value, 0, value.length());
+        }
+        InetSocketAddress remote = request.getRemoteAddress();
+        InetAddress address = remote == null ? null : remote.getAddress();
+        if (address instanceof Inet4Address) {
+            // Inet4Address 的 hashCode 就是地址本身，不必复制字节数组
+            hi = 0;
+            lo = IPV4_MAPPED | (address.hashCode() & 0xffff_ffffL);
+            return this;
+        }
+        if (address != null) {
+            byte[] bytes = address.getAddress();
+            hi = 0;
+            lo = 0;
+            for (int i = 0; i < 8; i++) {
+                hi = (hi << 8) | (bytes[i] & 0xff);
+                lo = (lo << 8) | (bytes[i + 8] & 0xff);
+            }
+            return this;
+        }
+        return parse("unknown", 0, 7);
+    }
+
+    /** 解析 value[from, to)，忽略首尾空白。 */
+    IpKey parse(String value, int from, int to) {
+        while (from < to && value.charAt(from) <= ' ') from++;
+        while (to > from && value.charAt(to - 1) <= ' ') to--;
+        if (!parseIpv4(value, from, to) && !parseIpv6(value, from, to)) {
+            opaque(value, from, to);
+        }
+        return this;
+    }
+
+    private boolean parseIpv4(String s, int from, int to) {
+        long address = parseIpv4Bits(s, from, to);
+        if (address < 0) {
+            return false;
+        }
+        hi = 0;
+        lo = IPV4_MAPPED | address;
+        return true;
+    }
+
+    /** 点分十进制的 32 位值；格式不对时返回 -1。 */
+    private static long parseIpv4Bits(String s, int from, int to) {
+        long address = 0;
+        int octets = 0;
+        int i = from;
+        while (i < to) {
+            int octet = 0;
+            int digits = 0;
+            while (i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                octet = octet * 10 + (s.charAt(i) - '0');
+                if (++digits > 3 || octet > 255) {
+                    return -1;
+                }
+                i++;
+            }
+            if (digits == 0 || ++octets > 4) {
+                return -1;
+            }
+            address = (address << 8) | octet;
+            if (i < to) {
+                if (s.charAt(i) != '.' || i + 1 == to) {
+                    return -1;
+                }
+                i++;
+            }
+        }
+        return octets == 4 ? address : -1;
+    }
+
+    private boolean parseIpv6(String s, int from, int to) {
+        // 作用域（fe80::1%eth0）不参与区分
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == '%') {
+                to = i;
+                break;
+            }
+        }
+        if (to - from < 2) {
+            return false;
+        }
+        // "::" 之前的各组累积在 head，之后的累积在 tail，最后 head 左移补零再并上 tail
+        long headHi = 0;
+        long headLo = 0;
+        long tailHi = 0;
+        long tailLo = 0;
+        int groups = 0;
+        int headGroups = -1;
+        int i = from;
+        if (s.charAt(i) == ':') {
+            if (s.charAt(i + 1) != ':') {
+                return false;
+            }
+            headGroups = 0;
+            i += 2;
+        }
+        while (i < to) {
+            int start = i;
+            long value = 0;
+            while (i < to && i - start < 4) {
+                int digit = Character.digit(s.charAt(i), 16);
+                if (digit < 0) {
+                    break;
+                }
+                value = (value << 4) | digit;
+                i++;
+            }
+            int bits = 16;
+            if (i < to && s.charAt(i) == '.') {
+                // 末尾内嵌的 IPv4（::ffff:1.2.3.4）
+                value = parseIpv4Bits(s, start, to);
+                bits = 32;
+                i = to;
+            }
+            if (i == start || value < 0) {
+                return false;
+            }
+            groups += bits / 16;
+            if (groups > 8) {
+                return false;
+            }
+            if (headGroups < 0) {
+                headHi = (headHi << bits) | (headLo >>> (64 - bits));
+                headLo = (headLo << bits) | value;
+            } else {
+                tailHi = (tailHi << bits) | (tailLo >>> (64 - bits));
+                tailLo = (tailLo << bits) | value;
+            }
+            if (i < to) {
+                if (s.charAt(i) != ':' || i + 1 == to) {
+                    return false;
+                }
+                i++;
+                if (s.charAt(i) == ':') {
+                    if (headGroups >= 0) {
+                        return false;
+                    }
+                    headGroups = groups;
+                    i++;
+                }
+            }
+        }
+        if (headGroups < 0 ? groups != 8 : groups > 7) {
+            return false;
+        }
+        int shift = headGroups < 0 ? 0 : 128 - 16 * headGroups;
+        hi = shiftLeftHi(headHi, headLo, shift) | tailHi;
+        lo = shiftLeftLo(headLo, shift) | tailLo;
+        return true;
+    }
+
+    /** 128 位值 (hi, lo) 左移 bits 位（0 ≤ bits ≤ 128）后的高 64 位。 */
+    private static long shiftLeftHi(long hi, long lo, int bits) {
+        if (bits == 0) return hi;
+        if (bits < 64) return (hi << bits) | (lo >>> (64 - bits));
+        return bits < 128 ? lo << (bits - 64) : 0;
+    }
+
+    /** 128 位值左移 bits 位后的低 64 位。 */
+    private static long shiftLeftLo(long lo, int bits) {
+        return bits < 64 ? lo << bits : 0;
+    }
+
+    private void opaque(String s, int from, int to) {
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x84222325cbf29ce4L;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            h1 = (h1 ^ c) * 0x100000001b3L;
+            h2 = (h2 ^ c) * 0x9e3779b97f4a7c15L;
+        }
+        hi = OPAQUE | (h1 >>> 8);
+        lo = h2;
+    }
+}
@@ -0,0 +1,29 @@
+package run.runnable.numfeelservice.web;
+
+/**
+ * 查询参数解析。非法值直接抛 {@link ApiException#badRequest}，由 {@link GlobalExceptionHandler} 转成 400。
+ */
+public final class QueryParams {
+
+    private QueryParams() {
+    }
+
+    /**
+     * 可选的非负整数参数：缺省时取 defaultValue，否则必须是 [min, max] 内的十进制数（最多 9 位）。
+     *
+     * @param value 原始参数值，可为 null
+     * @param min 最小值（含）
+     * @param max 最大值（含）
+     * @param name 参数名，用于错误信息
+     * @param defaultValue 缺省值
+     */
+    public static int optionalInt(String value, int min, int max, String name, int defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        if (!value.matches("\\d{1,9}") || Integer.parseInt(value) < min || Integer.parseInt(value) > max) {
+            throw ApiException.badRequest("Invalid parameter '" + name + "' (" + min + " <= " + name + " <= " + max + ")");
+        }
+        return Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,123 @@
+package run.runnable.numfeelservice.web;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 一条限流规则的计数表：键为 (IP 高 64 位, IP 低 64 位, 路由)，每个键一个令牌桶，
+ * 容量 maxRequests、每 window 匀速补满，与 Bucket4j {@code Bandwidth.simple(maxRequests, window)} 等价。
+ * <p>
+ * 令牌桶按 GCRA（通用信元速率算法）存成一个 long：下一次“理论到达时间” TAT（纳秒）。
+ * 每个令牌间隔 T = window / maxRequests，允许的突发 τ = window − T；
+ * 请求时刻 now 放行的条件是 max(TAT, now) − now ≤ τ，放行后 TAT 变为 max(TAT, now) + T，
+ * 拒绝时还需等待 max(TAT, now) − τ − now。一次放行或拒绝只读写这一个 long，用 CAS 更新，不加锁。
+ * TAT ≤ now 的桶已经满了，与不存在的键没有区别，这样的槽位可以直接让给别的键。
+ * <p>
+ * 表是线性探测的开放寻址表，键与状态分别放在基本类型数组里，查找不分配对象。状态 0 表示空槽，
+ * {@value #BUSY} 表示正在写入键；写入方先把状态 CAS 成 BUSY，写好键再发布 TAT，读方遇到 BUSY 时自旋等待。
+ * 槽位从不清空，所以键总在探测序列里第一个空槽之前；{@value #MAX_PROBE} 个槽位内既没有这个键也没有空槽时，
+ * 把其中 TAT 最小（最接近补满）的槽位换给新键，相当于容量满时淘汰最不活跃的桶。
+ * 同一槽位的 TAT 通常只增不减，CAS 不会遇到 ABA；只有淘汰尚未补满的桶时 TAT 会回退，
+ * 与并发读方交错时最多把一次计数记到新键上。
+ * <p>
+ * 线程安全。
+ */
+final class RateLimitTable {
+
+    static final long EMPTY = 0;
+    static final long BUSY = -1;
+    static final int MAX_PROBE = 16;
+
+    private final long interval;
+    private final long tolerance;
+    private final int mask;
+    private final long[] keyHi;
+    private final long[] keyLo;
+    private final long[] keyRoute;
+    private final AtomicLongArray states;
+
+    /**
+     * @param maxRequests 每个窗口的请求数上限（桶容量）
+     * @param windowNanos 窗口长度
+     * @param capacity 槽位数，向上取 2 的幂
+     */
+    RateLimitTable(long maxRequests, long windowNanos, int capacity) {
+        this.interval = windowNanos / maxRequests;
+        this.tolerance = interval * (maxRequests - 1);
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBE) - 1) << 1;
+        this.mask = size - 1;
+        this.keyHi = new long[size];
+        this.keyLo = new long[size];
+        this.keyRoute = new long[size];
+        this.states = new AtomicLongArray(size);
+    }
+
+    /**
+     * 消耗键的一个令牌。
+     *
+     * @param now 当前时刻（纳秒，单调递增且大于 0）
+     * @return 0 表示放行；否则为还需等待的纳秒数
+     */
+    long tryAcquire(long hi, long lo, long route, long now) {
+        int start = (int) mix(hi, lo, route) & mask;
+        for (;;) {
+            int victim = -1;
+            long victimState = Long.MAX_VALUE;
+            for (int probe = 0; probe < MAX_PROBE; ) {
+                int slot = (start + probe) & mask;
+                long state = states.get(slot);
+                if (state == BUSY) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (state == EMPTY) {
+                    if (states.compareAndSet(slot, EMPTY, BUSY)) {
+                        return claim(slot, hi, lo, route, now);
+                    }
+                    continue;
+                }
+                if (keyHi[slot] == hi && keyLo[slot] == lo && keyRoute[slot] == route) {
+                    long tat = Math.max(state, now);
+                    long wait = tat - tolerance - now;
+                    if (wait > 0) {
+                        return wait;
+                    }
+                    if (states.compareAndSet(slot, state, tat + interval)) {
+                        return 0;
+                    }
+                    continue;
+                }
+                if (state < victimState) {
+                    victim = slot;
+                    victimState = state;
+                }
+                probe++;
+            }
+            if (states.compareAndSet(victim, victimState, BUSY)) {
+                return claim(victim, hi, lo, route, now);
+            }
+            // 候选槽位刚被别的请求改动，整轮重来（这个键可能已被别的请求写入）
+        }
+    }
+
+    /** 已把 slot 置为 BUSY：写入键并发布第一次放行后的 TAT。 */
+    private long claim(int slot, long hi, long lo, long route, long now) {
+        keyHi[slot] = hi;
+        keyLo[slot] = lo;
+        keyRoute[slot] = route;
+        states.set(slot, now + interval);
+        return 0;
+    }
+
+    /** 三个键字段合成槽位哈希：逐个并入后用 MurmurHash3 的 fmix64 打散。 */
+    private static long mix(long hi, long lo, long route) {
+        long h = hi * 0x9e3779b97f4a7c15L;
+        h = Long.rotateLeft(h ^ lo, 31) * 0xbf58476d1ce4e5b9L;
+        h = Long.rotateLeft(h ^ route, 27) * 0x94d049bb133111ebL;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
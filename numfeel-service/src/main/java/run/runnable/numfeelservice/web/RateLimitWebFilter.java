@@ -1,12 +1,8 @@
 package run.runnable.numfeelservice.web;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.ConsumptionProbe;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
@@ -18,15 +14,14 @@ import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.function.Function;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Predicate;
+import java.util.function.LongSupplier;
 
 /**
- * IP 级别限流（Bucket4j + Caffeine），等价于旧版 Vert.x {@code RateLimitHandler} 的组合用法。
+ * IP 级别限流，等价于旧版 Vert.x {@code RateLimitHandler} 的组合用法。
  * <p>
  * 规则（每个 IP）：
  * <ul>
@@ -35,105 +30,142 @@ import java.util.function.Predicate;
  *   <li>{@code POST /social-engineering/submit}：每分钟 30 次</li>
  *   <li>其余写接口（各种 {@code /submit}、排行榜 POST）：每分钟 10 次</li>
  * </ul>
- * 命中任一规则上限即返回 429。请求需同时满足全局规则与最具体的匹配规则。
+ * 命中任一规则上限即返回 429。请求需同时满足全局规则与最具体的匹配规则；
+ * 路由规则按 IP + 请求路径分别计数。
+ * <p>
+ * 每个请求都会经过这里（包括静态资源），所以热路径不分配字符串：客户端 IP 直接从请求头解析成 128 位的
+ * {@link IpKey}，POST 路由规则预先编译成按路径后缀倒序匹配的字典树（最长后缀优先），
+ * 路径本身只取一个 64 位哈希参与计数；每条规则一张 {@link RateLimitTable}，令牌桶状态是一个 long，CAS 更新。
+ * <p>
+ * 计数只在本进程内，重启清零。服务整体只支持单副本（{@code LiveAggregates} 上的各类统计、
+ * 指纹草图与埋点汇总都假定只有一个实例在写库，见 k3s-deployment-prod.yaml），所以这里不做跨副本共享；
+ * 将来要扩成多副本时，共享令牌桶应与上述内存统计一并改造。
  */
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE)
 public class RateLimitWebFilter implements WebFilter {
 
-    /** 单条限流规则：匹配条件 + token bucket 配置 + 独立 bucket 缓存。 */
-    private static final class Rule {
-        final Predicate<ServerHttpRequest> matches;
-        final Function<ServerHttpRequest, String> keyFunction;
-        final long maxRequests;
-        final long windowSeconds;
-        final Cache<String, Bucket> buckets;
-
-        Rule(Predicate<ServerHttpRequest> matches,
-             Function<ServerHttpRequest, String> keyFunction,
-             long maxRequests,
-             long windowSeconds) {
-            this.matches = matches;
-            this.keyFunction = keyFunction;
-            this.maxRequests = maxRequests;
-            this.windowSeconds = windowSeconds;
-            this.buckets = Caffeine.newBuilder()
-                    .expireAfterAccess(Math.max(windowSeconds * 5, 300), TimeUnit.SECONDS)
-                    .maximumSize(10_000)
-                    .build();
-        }
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    /** 每条规则最多同时跟踪的 (IP, 路径) 个数。 */
+    private static final int TABLE_CAPACITY = 16_384;
+
+    private static final ThreadLocal<IpKey> IP_KEYS = ThreadLocal.withInitial(IpKey::new);
 
-        private Bucket newBucket() {
-            return Bucket.builder()
-                    .addLimit(Bandwidth.simple(maxRequests, Duration.ofSeconds(windowSeconds)))
-                    .build();
+    /** 按路径后缀倒序建立的字典树；节点上的 rule 为匹配到的规则下标。 */
+    private static final class SuffixNode {
+        char[] labels = new char[0];
+        SuffixNode[] children = new SuffixNode[0];
+        int rule = -1;
+
+        SuffixNode child(char c) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
         }
 
-        /**
-         * @return 命中上限时返回需要等待的秒数；返回 0 表示本次可放行。
-         */
-        long tryAcquire(ServerHttpRequest request, String ip) {
-            String key = keyFunction.apply(request).replace('\n', ' ');
-            Bucket bucket = buckets.get(ip + "|" + key, k -> newBucket());
-            ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
-            if (probe.isConsumed()) {
-                return 0;
+        SuffixNode addChild(char c) {
+            SuffixNode existing = child(c);
+            if (existing != null) {
+                return existing;
             }
-            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill()) + 1);
+            int n = labels.length;
+            labels = Arrays.copyOf(labels, n + 1);
+            children = Arrays.copyOf(children, n + 1);
+            labels[n] = c;
+            children[n] = new SuffixNode();
+            return children[n];
         }
     }
 
-    private final List<Rule> rules = new ArrayList<>();
+    private final LongSupplier nanoClock;
+    /** 计时起点：让传给 {@link RateLimitTable} 的时刻从 1 开始。 */
+    private final long epoch;
+    private final RateLimitTable global;
+    private final SuffixNode postRoutes = new SuffixNode();
+    private final List<RateLimitTable> routeTables = new ArrayList<>();
 
     public RateLimitWebFilter() {
+        this(System::nanoTime);
+    }
+
+    RateLimitWebFilter(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.epoch = nanoClock.getAsLong() - 1;
         // 全局：200/min
-        rules.add(new Rule(req -> true, req -> "global", 200, 60));
+        this.global = new RateLimitTable(200, WINDOW_NANOS, TABLE_CAPACITY);
         // 指纹采集：60/min
-        rules.add(new Rule(isPost("/fingerprint/collect"), RateLimitWebFilter::routeKey, 60, 60));
+        postRoute(60, "/fingerprint/collect");
         // 社工防骗提交：30/min
-        rules.add(new Rule(isPost("/social-engineering/submit"), RateLimitWebFilter::routeKey, 30, 60));
+        postRoute(30, "/social-engineering/submit");
         // 通用埋点批量上报：30/min/IP（每批最多100条事件，上限约3000事件/min/IP）。
         // 路径不以 /submit 或 /leaderboard 结尾，不会被下面的通用写接口规则命中，需单独声明。
-        rules.add(new Rule(isPost("/events/collect"), RateLimitWebFilter::routeKey, 30, 60));
+        postRoute(30, "/events/collect");
         // 知乎创作分析：3/min/IP（拉取全量数据耗时较长，且知乎 API 本身有配额限制）
-        rules.add(new Rule(isPost("/zhihu/analyze"), RateLimitWebFilter::routeKey, 3, 60));
+        postRoute(3, "/zhihu/analyze");
         // multipart 上传：20/min/IP（另有每小时 1GB 字节配额，见 MultipartUploadService）
-        rules.add(new Rule(isPost("/multipart/upload"), RateLimitWebFilter::routeKey, 20, 60));
-        // 其余写接口：10/min
-        rules.add(new Rule(RateLimitWebFilter::isWriteThrottled, RateLimitWebFilter::routeKey, 10, 60));
+        postRoute(20, "/multipart/upload");
+        // 其余写接口：10/min。/social-engineering/submit 是更长的后缀，按最长匹配不会落到这里
+        postRoute(10, "/submit", "/leaderboard");
     }
 
-    private static Predicate<ServerHttpRequest> isPost(String path) {
-        return req -> "POST".equals(req.getMethod().name()) && req.getPath().value().endsWith(path);
+    private void postRoute(long maxRequests, String... suffixes) {
+        int rule = routeTables.size();
+        routeTables.add(new RateLimitTable(maxRequests, WINDOW_NANOS, TABLE_CAPACITY));
+        for (String suffix : suffixes) {
+            SuffixNode node = postRoutes;
+            for (int i = suffix.length() - 1; i >= 0; i--) {
+                node = node.addChild(suffix.charAt(i));
+            }
+            node.rule = rule;
+        }
     }
 
-    private static boolean isWriteThrottled(ServerHttpRequest req) {
-        String method = req.getMethod().name();
-        String path = req.getPath().value();
-        if ("POST".equals(method) && path.endsWith("/submit")) {
-            // 指纹与社工有更专门的规则，这里排除避免重复计入 10/min 桶
-            return !path.endsWith("/fingerprint/collect") && !path.endsWith("/social-engineering/submit");
+    /** 路径以哪条规则的后缀结尾（取最长的）；都不匹配时返回 -1。 */
+    private int matchPostRoute(String path) {
+        SuffixNode node = postRoutes;
+        int matched = -1;
+        for (int i = path.length() - 1; i >= 0; i--) {
+            node = node.child(path.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.rule >= 0) {
+                matched = node.rule;
+            }
         }
-        return "POST".equals(method) && path.endsWith("/leaderboard");
+        return matched;
     }
 
-    private static String routeKey(ServerHttpRequest req) {
-        return req.getMethod().name() + " " + req.getPath().value();
+    /** 路径的 64 位 FNV-1a 哈希，代替原先的 "METHOD path" 字符串键。 */
+    private static long pathHash(String path) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            h = (h ^ path.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
     }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
         ServerHttpRequest request = exchange.getRequest();
-        String ip = ClientIp.resolve(request);
+        IpKey ip = IP_KEYS.get().resolve(request);
+        long now = nanoClock.getAsLong() - epoch;
 
-        for (Rule rule : rules) {
-            if (rule.matches.test(request)) {
-                long retryAfter = rule.tryAcquire(request, ip);
-                if (retryAfter > 0) {
-                    return tooManyRequests(exchange.getResponse(), retryAfter);
-                }
+        long wait = global.tryAcquire(ip.hi, ip.lo, 0, now);
+        if (wait == 0 && HttpMethod.POST.equals(request.getMethod())) {
+            String path = request.getPath().value();
+            int rule = matchPostRoute(path);
+            if (rule >= 0) {
+                wait = routeTables.get(rule).tryAcquire(ip.hi, ip.lo, pathHash(path), now);
             }
         }
+        if (wait > 0) {
+            return tooManyRequests(exchange.getResponse(), Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait) + 1));
+        }
         return chain.filter(exchange);
     }
 
@@ -28,6 +28,22 @@ CREATE TABLE IF NOT EXISTS browser_fingerprints (
     INDEX idx_font_hash (font_hash)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- 浏览器指纹统计的 HyperLogLog 草图快照：每个维度一行（4096 个单字节寄存器）
+CREATE TABLE IF NOT EXISTS fingerprint_sketches (
+    dimension   VARCHAR(16)     PRIMARY KEY COMMENT 'full_hash / canvas_hash / ... / platform',
+    sketch      VARBINARY(4096) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 浏览器指纹统计快照的精确计数：id = 1 的一行，对应 id ≤ last_id 的全部行
+CREATE TABLE IF NOT EXISTS fingerprint_sketch_state (
+    id            TINYINT PRIMARY KEY,
+    last_id       BIGINT  NOT NULL COMMENT '快照已计入的最大 browser_fingerprints.id，恢复后从其后补扫',
+    total         BIGINT  NOT NULL,
+    entropy_sum   DOUBLE  NOT NULL COMMENT '非空 entropy_bits 之和',
+    entropy_count BIGINT  NOT NULL COMMENT '非空 entropy_bits 个数',
+    saved_at      BIGINT  NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- 社会工程学测试：场次汇总
 CREATE TABLE IF NOT EXISTS se_sessions (
     id          BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -456,6 +472,32 @@ CREATE TABLE IF NOT EXISTS demo_events (
     INDEX idx_created (created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- 埋点预聚合：按 (demo, UTC 日, 事件名) 的事件计数，由 EventRollupMaterializer 维护
+-- day 为 created_at DIV 86400000（UTC 纪元日）
+CREATE TABLE IF NOT EXISTS demo_event_rollup (
+    demo_slug   VARCHAR(64) NOT NULL,
+    day         INT         NOT NULL COMMENT 'UTC 纪元日',
+    event_name  VARCHAR(48) NOT NULL,
+    events      BIGINT      NOT NULL DEFAULT 0,
+    PRIMARY KEY (demo_slug, day, event_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 埋点预聚合：按 (demo, UTC 日) 的 session_id HyperLogLog 草图（4096 个单字节寄存器）
+-- day = -1 的行是该 demo 全部日期的并集，摘要查询只读这一行
+CREATE TABLE IF NOT EXISTS demo_session_sketch (
+    demo_slug   VARCHAR(64)     NOT NULL,
+    day         INT             NOT NULL COMMENT 'UTC 纪元日；-1 表示全部日期',
+    sketch      VARBINARY(4096) NOT NULL,
+    PRIMARY KEY (demo_slug, day)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 埋点预聚合的对账高水位：存在 id = 1 的行表示早于 backfilled_before 的事件已按 demo_events 重算，
+-- 启动时与每个 UTC 日结束后推进
+CREATE TABLE IF NOT EXISTS demo_rollup_state (
+    id                TINYINT PRIMARY KEY,
+    backfilled_before BIGINT  NOT NULL COMMENT '高水位（ms），之后的事件由写入路径计入，下次对账时按原表纠正'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- 爱荷华赌博任务（Iowa Gambling Task）结果记录
 -- 记录完整 100 手牌局结果，用于结果页对比全站均值与论文数据
 CREATE TABLE IF NOT EXISTS iowa_gambling_results (
@@ -506,3 +548,4 @@ CREATE TABLE IF NOT EXISTS keystroke_profiles (
     INDEX idx_kp_created (created_at),
     INDEX idx_kp_session (session_id, sample_index)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
@@ -106,7 +106,7 @@ class BrowserFingerprintControllerTest {
     @Test
     void stats_returns_data() {
         BrowserFingerprintStatsResponse stats = new BrowserFingerprintStatsResponse(
-                1000L, 800L, 1.25, 600L, 500L, 400L, 50L, 80L, 5L, 28.5);
+                1000L, 800L, 1.25, 600L, 500L, 400L, 50L, 80L, 5L, 28.5, 0.0163);
         when(mockService.stats()).thenReturn(Mono.just(stats));
 
         client.get().uri("/fingerprint/stats")
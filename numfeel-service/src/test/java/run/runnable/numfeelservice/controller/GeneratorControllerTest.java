@@ -1,17 +1,27 @@
 package run.runnable.numfeelservice.controller;
 
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
 import run.runnable.numfeelservice.generator.ChineseNameGenerator;
 import run.runnable.numfeelservice.generator.FakeDataGenerator;
 import run.runnable.numfeelservice.web.GlobalExceptionHandler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * GeneratorController HTTP 层测试，使用真实的 generator（Datafaker + boundedElastic）。
  */
 class GeneratorControllerTest {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private WebTestClient client;
 
     @BeforeEach
@@ -69,6 +79,205 @@ class GeneratorControllerTest {
                 });
     }
 
+    @Test
+    void mock_ndjson_streams_rows_and_trailer() {
+        client.get().uri("/mock?n=600&format=ndjson")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .value(body -> {
+                    assert body != null;
+                    String[] lines = body.split("\n");
+                    assert lines.length == 601;
+                    assert lines[0].contains("\"name\"");
+                    assert lines[600].equals("{\"status\":200,\"count\":600}");
+                });
+    }
+
+    @Test
+    void mock_stream_returns_valid_json_array() {
+        client.get().uri("/mock?n=600&format=stream")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> {
+                    JsonNode array = MAPPER.readTree(body);
+                    assert array.isArray();
+                    assert array.size() == 600;
+                    assert array.get(599).has("email");
+                });
+    }
+
+    @Test
+    void mock_same_seed_returns_identical_body() {
+        String first = client.get().uri("/mock?n=300&seed=123").exchange()
+                .expectStatus().isOk().expectBody(String.class).returnResult().getResponseBody();
+        String second = client.get().uri("/mock?n=300&seed=123").exchange()
+                .expectStatus().isOk().expectBody(String.class).returnResult().getResponseBody();
+        assert first != null && first.equals(second);
+    }
+
+    @Test
+    void mock_offset_limit_returns_slice_of_seeded_dataset() {
+        String full = client.get().uri("/mock?n=1000&seed=5").exchange()
+                .expectStatus().isOk().expectBody(String.class).returnResult().getResponseBody();
+        String page = client.get().uri("/mock?n=1000&seed=5&offset=400&limit=100&format=ndjson").exchange()
+                .expectStatus().isOk().expectBody(String.class).returnResult().getResponseBody();
+
+        JsonNode all = MAPPER.readTree(full);
+        String[] lines = page.split("\n");
+        assert lines.length == 101;
+        for (int i = 0; i < 100; i++) {
+            assert MAPPER.readTree(lines[i]).equals(all.get(400 + i));
+        }
+        assert lines[100].equals("{\"status\":200,\"count\":100}");
+    }
+
+    @Test
+    void mock_limit_is_clamped_to_end_of_dataset() {
+        client.get().uri("/mock?n=200&seed=1&offset=150&limit=200")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Seed", "1")
+                .expectBody(String.class)
+                .value(body -> {
+                    JsonNode array = MAPPER.readTree(body);
+                    assert array.size() == 50;
+                    assert array.get(0).get("id").asInt() == 150;
+                });
+    }
+
+    @Test
+    void mock_without_seed_reports_generated_seed() {
+        client.get().uri("/mock?n=200")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("X-Seed");
+    }
+
+    @Test
+    void mock_offset_out_of_range_returns_400() {
+        client.get().uri("/mock?n=200&offset=200")
+                .exchange()
+                .expectStatus().isEqualTo(400);
+    }
+
+    @Test
+    void chineseNames_same_seed_pages_are_consistent() {
+        String full = client.get().uri("/chinese-names?n=30&seed=8").exchange()
+                .expectStatus().isOk().expectBody(String.class).returnResult().getResponseBody();
+        String page = client.get().uri("/chinese-names?n=30&seed=8&offset=10&limit=5").exchange()
+                .expectStatus().isOk().expectBody(String.class).returnResult().getResponseBody();
+
+        JsonNode all = MAPPER.readTree(full);
+        JsonNode slice = MAPPER.readTree(page);
+        assert slice.size() == 5;
+        for (int i = 0; i < 5; i++) {
+            assert slice.get(i).equals(all.get(10 + i));
+        }
+    }
+
+    @Test
+    void mock_invalid_seed_returns_400() {
+        client.get().uri("/mock?n=200&seed=abc")
+                .exchange()
+                .expectStatus().isEqualTo(400);
+    }
+
+    @Test
+    void mock_accept_csv_streams_csv() {
+        client.get().uri("/mock?n=300&seed=2")
+                .accept(MediaType.parseMediaType("text/csv"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.parseMediaType("text/csv"))
+                .expectBody(String.class)
+                .value(body -> {
+                    String[] lines = body.split("\n");
+                    assert lines.length == 301;
+                    assert lines[0].equals("id,name,email,phone,address,company,dob,job");
+                    assert lines[1].startsWith("0,\"");
+                });
+    }
+
+    @Test
+    void mock_accept_msgpack_streams_maps() {
+        byte[] body = client.get().uri("/mock?n=300&seed=2")
+                .accept(MediaType.parseMediaType("application/x-msgpack"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.parseMediaType("application/x-msgpack"))
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(body)) {
+            int rows = 0;
+            while (unpacker.hasNext()) {
+                assert unpacker.unpackValue().asMapValue().size() == 8;
+                rows++;
+            }
+            assert rows == 300;
+        } catch (java.io.IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    void mock_accept_arrow_streams_ipc_with_eos() {
+        byte[] body = client.get().uri("/mock?n=300")
+                .accept(MediaType.parseMediaType("application/vnd.apache.arrow.stream"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        assert body != null && body.length > 300 * 8;
+        ByteBuffer tail = ByteBuffer.wrap(body, body.length - 8, 8).order(ByteOrder.LITTLE_ENDIAN);
+        assert tail.getInt() == -1 && tail.getInt() == 0;
+    }
+
+    @Test
+    void mock_wildcard_accept_returns_json() {
+        client.get().uri("/mock?n=200")
+                .accept(MediaType.ALL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void mockFormats_reports_bytes_per_row_for_each_format() {
+        client.get().uri("/mock/formats?n=500&seed=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(200)
+                .jsonPath("$.data.length()").isEqualTo(5)
+                .jsonPath("$.data[0].format").isEqualTo("json")
+                .jsonPath("$.data[4].format").isEqualTo("arrow")
+                .jsonPath("$.data[2].rows").isEqualTo(500);
+    }
+
+    @Test
+    void mockFormats_invalid_n_returns_400() {
+        client.get().uri("/mock/formats?n=20000")
+                .exchange()
+                .expectStatus().isEqualTo(400);
+    }
+
+    @Test
+    void mock_unknown_format_returns_400() {
+        client.get().uri("/mock?n=200&format=xml")
+                .exchange()
+                .expectStatus().isEqualTo(400);
+    }
+
+    @Test
+    void mock_ndjson_invalid_n_returns_400() {
+        client.get().uri("/mock?n=10&format=ndjson")
+                .exchange()
+                .expectStatus().isEqualTo(400);
+    }
+
     @Test
     void chineseNames_valid_n_returns_array() {
         client.get().uri("/chinese-names?n=5")
@@ -0,0 +1,67 @@
+package run.runnable.numfeelservice.controller;
+
+import run.runnable.numfeelservice.controller.dto.GameplayResponses.KeystrokeAnnReportResponse;
+import run.runnable.numfeelservice.service.KeystrokeService;
+import run.runnable.numfeelservice.web.GlobalExceptionHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeystrokeControllerTest {
+
+    private KeystrokeService mockService;
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        mockService = mock(KeystrokeService.class);
+        client = WebTestClient.bindToController(new KeystrokeController(mockService))
+                .controllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void ann_report_returns_404_when_not_available() {
+        when(mockService.annReportAvailable()).thenReturn(false);
+
+        client.get().uri("/keystroke/ann-report?sessions=500")
+                .exchange()
+                .expectStatus().isEqualTo(404);
+        verify(mockService, never()).annReport(anyInt());
+    }
+
+    @Test
+    void ann_report_returns_403_without_matching_token() {
+        when(mockService.annReportAvailable()).thenReturn(true);
+        when(mockService.annReportAuthorized(null)).thenReturn(false);
+
+        client.get().uri("/keystroke/ann-report?sessions=50")
+                .exchange()
+                .expectStatus().isEqualTo(403);
+        verify(mockService, never()).annReport(anyInt());
+    }
+
+    @Test
+    void ann_report_returns_report_with_token() {
+        when(mockService.annReportAvailable()).thenReturn(true);
+        when(mockService.annReportAuthorized("secret")).thenReturn(true);
+        when(mockService.annReport(50)).thenReturn(Mono.just(
+                new KeystrokeAnnReportResponse(true, 0.1, 512, 1000, 50, 0.98, 120.5, 8.2)));
+
+        client.get().uri("/keystroke/ann-report?sessions=50")
+                .header("X-Report-Token", "secret")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(200)
+                .jsonPath("$.data.sampledSessions").isEqualTo(50)
+                .jsonPath("$.data.recall").isEqualTo(0.98);
+    }
+}
@@ -6,6 +6,7 @@ import reactor.core.publisher.Mono;
 import run.runnable.numfeelservice.service.QuantumRandomService;
 import run.runnable.numfeelservice.service.QuantumRandomService.DigitsDraw;
 import run.runnable.numfeelservice.service.QuantumRandomService.Entropy;
+import run.runnable.numfeelservice.service.QuantumRandomService.IntBatch;
 import run.runnable.numfeelservice.service.QuantumRandomService.LotteryDraw;
 import run.runnable.numfeelservice.web.GlobalExceptionHandler;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -14,8 +15,11 @@ import java.util.List;
 
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -150,4 +154,45 @@ class RandomControllerTest {
                 .exchange()
                 .expectStatus().isEqualTo(400);
     }
-}
\ No newline at end of file
+
+    @Test
+    void batch_returns_values_with_degraded_source() {
+        when(service.drawBatch(eq(1), eq(6), eq(3), eq("quantum")))
+                .thenReturn(Mono.just(new IntBatch(new int[]{4, 1, 6}, "secure", "SecureRandom", true)));
+
+        client.get().uri("/random/batch?min=1&max=6&count=3&source=quantum")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(200)
+                .jsonPath("$.data.values.length()").isEqualTo(3)
+                .jsonPath("$.data.values[2]").isEqualTo(6)
+                .jsonPath("$.data.source").isEqualTo("secure")
+                .jsonPath("$.data.provider").isEqualTo("SecureRandom")
+                .jsonPath("$.data.degraded").isEqualTo(true);
+    }
+
+    @Test
+    void batch_count_too_large_returns_400() {
+        client.get().uri("/random/batch?min=1&max=6&count=10001")
+                .exchange()
+                .expectStatus().isEqualTo(400);
+        verify(service, never()).drawBatch(anyInt(), anyInt(), anyInt(), nullable(String.class));
+    }
+
+    @Test
+    void batch_missing_range_returns_400() {
+        client.get().uri("/random/batch?count=10")
+                .exchange()
+                .expectStatus().isEqualTo(400);
+    }
+
+    @Test
+    void batch_invalid_range_returns_400() {
+        when(service.drawBatch(anyInt(), anyInt(), anyInt(), nullable(String.class)))
+                .thenReturn(Mono.error(new IllegalArgumentException("min/max 非法")));
+        client.get().uri("/random/batch?min=9&max=1&count=10")
+                .exchange()
+                .expectStatus().isEqualTo(400);
+    }
+}
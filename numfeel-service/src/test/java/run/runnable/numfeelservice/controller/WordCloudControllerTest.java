@@ -2,6 +2,7 @@ package run.runnable.numfeelservice.controller;
 
 import run.runnable.numfeelservice.controller.dto.UtilityResponses.WordCloudEntryResponse;
 import run.runnable.numfeelservice.service.WordCloudService;
+import run.runnable.numfeelservice.service.WordSearchIndex;
 import run.runnable.numfeelservice.web.GlobalExceptionHandler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,13 +10,14 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
-import java.util.Map;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
- * WordCloudController HTTP 层测试，mock WordCloudService。
+ * WordCloudController HTTP 层测试，mock WordCloudService 与 WordSearchIndex（索引本身的查询见 WordSearchIndexTest）。
  */
 class WordCloudControllerTest {
 
@@ -37,8 +39,8 @@ class WordCloudControllerTest {
                 new WordCloudEntryResponse("市场", 120),
                 new WordCloudEntryResponse("政策", 100)
         );
-        Map<String, Integer> fullCounts = Map.of("经济", 150, "市场", 120, "政策", 100);
-        WordCloudService.WordCloudData data = new WordCloudService.WordCloudData(top300, fullCounts);
+        WordSearchIndex words = mock(WordSearchIndex.class);
+        WordCloudService.WordCloudData data = new WordCloudService.WordCloudData(top300, words);
         when(mockService.getOrLoad()).thenReturn(Mono.just(data));
 
         client.get().uri("/word-cloud")
@@ -56,8 +58,9 @@ class WordCloudControllerTest {
                 new WordCloudEntryResponse("经济", 150),
                 new WordCloudEntryResponse("市场", 120)
         );
-        Map<String, Integer> fullCounts = Map.of("经济", 150, "市场", 120);
-        WordCloudService.WordCloudData data = new WordCloudService.WordCloudData(top300, fullCounts);
+        WordSearchIndex words = mock(WordSearchIndex.class);
+        when(words.count("经济")).thenReturn(150);
+        WordCloudService.WordCloudData data = new WordCloudService.WordCloudData(top300, words);
         when(mockService.getOrLoad()).thenReturn(Mono.just(data));
 
         client.get().uri("/word-cloud?search=经济")
@@ -74,8 +77,9 @@ class WordCloudControllerTest {
         List<WordCloudEntryResponse> top300 = List.of(
                 new WordCloudEntryResponse("经济", 150)
         );
-        Map<String, Integer> fullCounts = Map.of("经济", 150, "罕见词", 3);
-        WordCloudService.WordCloudData data = new WordCloudService.WordCloudData(top300, fullCounts);
+        WordSearchIndex words = mock(WordSearchIndex.class);
+        when(words.count("罕见词")).thenReturn(3);
+        WordCloudService.WordCloudData data = new WordCloudService.WordCloudData(top300, words);
         when(mockService.getOrLoad()).thenReturn(Mono.just(data));
 
         client.get().uri("/word-cloud?search=罕见词")
@@ -87,6 +91,53 @@ class WordCloudControllerTest {
                 .jsonPath("$.inTop300").isEqualTo(false);
     }
 
+    @Test
+    void wordCloud_prefix_returns_most_frequent_matches() {
+        WordSearchIndex words = mock(WordSearchIndex.class);
+        when(words.prefix("经", 2)).thenReturn(List.of(
+                new WordCloudEntryResponse("经济", 150), new WordCloudEntryResponse("经验", 90)));
+        when(mockService.getOrLoad()).thenReturn(Mono.just(new WordCloudService.WordCloudData(List.of(), words)));
+
+        client.get().uri("/word-cloud?prefix=经&limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].name").isEqualTo("经济")
+                .jsonPath("$[1].name").isEqualTo("经验")
+                .jsonPath("$[1].value").isEqualTo(90);
+    }
+
+    @Test
+    void wordCloud_contains_returns_matches_with_default_limit() {
+        WordSearchIndex words = mock(WordSearchIndex.class);
+        // 未指定 limit 时取默认 20
+        when(words.contains("经济", 20)).thenReturn(List.of(new WordCloudEntryResponse("经济", 150),
+                new WordCloudEntryResponse("宏观经济", 60), new WordCloudEntryResponse("经济学", 40)));
+        when(mockService.getOrLoad()).thenReturn(Mono.just(new WordCloudService.WordCloudData(List.of(), words)));
+
+        client.get().uri("/word-cloud?contains=经济")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].name").isEqualTo("经济")
+                .jsonPath("$[1].name").isEqualTo("宏观经济")
+                .jsonPath("$[2].name").isEqualTo("经济学");
+    }
+
+    @Test
+    void wordCloud_invalid_limit_returns_400() {
+        for (String limit : List.of("abc", "0", "101", "-5", "99999999999")) {
+            client.get().uri("/word-cloud?prefix=经&limit=" + limit)
+                    .exchange()
+                    .expectStatus().isBadRequest()
+                    .expectBody()
+                    .jsonPath("$.status").isEqualTo(400);
+        }
+        verify(mockService, never()).getOrLoad();
+    }
+
     @Test
     void wordCloud_service_failure_returns_500() {
         when(mockService.getOrLoad()).thenReturn(Mono.error(new RuntimeException("Data load failed")));
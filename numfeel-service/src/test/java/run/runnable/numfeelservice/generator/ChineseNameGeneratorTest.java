@@ -49,4 +49,15 @@ class ChineseNameGeneratorTest {
                 })
                 .verifyComplete();
     }
+
+    @Test
+    void generate_with_seed_supports_offset_paging() {
+        ChineseNameGenerator generator = new ChineseNameGenerator();
+
+        var full = generator.generate(5L, 0, 50).collectList().block();
+        var page = generator.generate(5L, 20, 10).collectList().block();
+
+        assert full != null && page != null;
+        assert page.equals(full.subList(20, 30));
+    }
 }
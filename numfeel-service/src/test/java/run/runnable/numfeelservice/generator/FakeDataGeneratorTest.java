@@ -1,8 +1,23 @@
 package run.runnable.numfeelservice.generator;
 
 import run.runnable.numfeelservice.controller.dto.UtilityResponses.MockPersonResponse;
+import org.apache.arrow.flatbuf.Message;
+import org.apache.arrow.flatbuf.MessageHeader;
+import org.apache.arrow.flatbuf.RecordBatch;
+import org.apache.arrow.flatbuf.Schema;
 import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
 import reactor.test.StepVerifier;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 /**
  * FakeDataGenerator 单元测试，使用真实 Datafaker。
@@ -61,4 +76,139 @@ class FakeDataGeneratorTest {
                 })
                 .verifyComplete();
     }
+
+    @Test
+    void generate_same_seed_is_reproducible() {
+        FakeDataGenerator a = new FakeDataGenerator(2);
+        FakeDataGenerator b = new FakeDataGenerator(4);
+
+        var first = a.generate(42L, 0, 1200).collectList().block();
+        var second = b.generate(42L, 0, 1200).collectList().block();
+        var other = a.generate(43L, 0, 1200).collectList().block();
+
+        assert first != null && first.equals(second);
+        assert !first.equals(other);
+    }
+
+    @Test
+    void generateChunks_json_rows_match_records() throws Exception {
+        FakeDataGenerator generator = new FakeDataGenerator(2);
+        ObjectMapper mapper = new ObjectMapper();
+
+        var chunks = generator.generateChunks(7L, 0, FakeDataGenerator.CHUNK_ROWS + 10, RowFormat.JSON_ARRAY).collectList().block();
+        var records = generator.generate(7L, 0, FakeDataGenerator.CHUNK_ROWS + 10).collectList().block();
+
+        assert chunks != null && chunks.size() == 2;
+        assert chunks.get(0).rows() == FakeDataGenerator.CHUNK_ROWS;
+        assert chunks.get(1).rows() == 10;
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(new String(chunks.get(i).bytes(), StandardCharsets.UTF_8));
+        }
+        JsonNode array = mapper.readTree(sb.append(']').toString());
+        assert array.size() == records.size();
+        for (int i = 0; i < records.size(); i++) {
+            assert mapper.treeToValue(array.get(i), MockPersonResponse.class).equals(records.get(i));
+        }
+    }
+
+    @Test
+    void generateChunks_ndjson_ends_each_row_with_newline() {
+        FakeDataGenerator generator = new FakeDataGenerator(2);
+
+        StepVerifier.create(generator.generateChunks(1L, 0, 3, RowFormat.NDJSON))
+                .assertNext(chunk -> {
+                    String text = new String(chunk.bytes(), StandardCharsets.UTF_8);
+                    assert text.endsWith("}\n");
+                    assert text.split("\n").length == 3;
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void generate_row_depends_only_on_seed_and_row_number() {
+        FakeDataGenerator generator = new FakeDataGenerator(2);
+
+        var full = generator.generate(9L, 0, 1500).collectList().block();
+        var page = generator.generate(9L, 700, 300).collectList().block();
+
+        assert page != null && page.size() == 300;
+        assert page.get(0).id() == 700;
+        assert page.equals(full.subList(700, 1000));
+    }
+
+    @Test
+    void generateChunks_csv_rows_match_records() {
+        FakeDataGenerator generator = new FakeDataGenerator(2);
+
+        var chunks = generator.generateChunks(3L, 0, 20, RowFormat.CSV).collectList().block();
+        var records = generator.generate(3L, 0, 20).collectList().block();
+
+        String[] lines = new String(chunks.get(0).bytes(), StandardCharsets.UTF_8).split("\n");
+        assert lines.length == 20;
+        MockPersonResponse r = records.get(4);
+        assert lines[4].equals(r.id() + ",\"" + r.name() + "\",\"" + r.email() + "\",\"" + r.phone() + "\",\""
+                + r.address() + "\",\"" + r.company() + "\",\"" + r.dob() + "\",\"" + r.job() + "\"");
+        assert new String(RowFormat.CSV.header(), StandardCharsets.UTF_8)
+                .equals("id,name,email,phone,address,company,dob,job\n");
+    }
+
+    @Test
+    void generateChunks_msgpack_rows_decode_to_records() throws Exception {
+        FakeDataGenerator generator = new FakeDataGenerator(2);
+
+        var chunks = generator.generateChunks(3L, 100, 600, RowFormat.MSGPACK).collectList().block();
+        var records = generator.generate(3L, 100, 600).collectList().block();
+
+        int row = 0;
+        for (FakeDataGenerator.Chunk chunk : chunks) {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(chunk.bytes());
+            while (unpacker.hasNext()) {
+                Map<Value, Value> map = unpacker.unpackValue().asMapValue().map();
+                MockPersonResponse r = records.get(row++);
+                assert map.size() == 8;
+                assert map.get(ValueFactory.newString("id")).asIntegerValue().asInt() == r.id();
+                assert map.get(ValueFactory.newString("address")).asStringValue().asString().equals(r.address());
+                assert map.get(ValueFactory.newString("job")).asStringValue().asString().equals(r.job());
+            }
+        }
+        assert row == 600;
+    }
+
+    @Test
+    void generateChunks_arrow_emits_one_record_batch_per_chunk() {
+        FakeDataGenerator generator = new FakeDataGenerator(2);
+
+        var chunks = generator.generateChunks(3L, 0, FakeDataGenerator.CHUNK_ROWS + 1, RowFormat.ARROW)
+                .collectList().block();
+
+        assert chunks.size() == 2;
+        Message schema = arrowMessage(RowFormat.ARROW.header());
+        assert schema.headerType() == MessageHeader.Schema;
+        Schema fields = (Schema) schema.header(new Schema());
+        assert fields.fieldsLength() == 8;
+        assert fields.fields(4).name().equals("address");
+
+        Message batch = arrowMessage(chunks.get(1).bytes());
+        assert batch.headerType() == MessageHeader.RecordBatch;
+        RecordBatch recordBatch = (RecordBatch) batch.header(new RecordBatch());
+        assert recordBatch.length() == 1;
+        assert recordBatch.nodesLength() == 8;
+        assert recordBatch.buffersLength() == 2 + 3 * 7;
+
+        ByteBuffer eos = ByteBuffer.wrap(RowFormat.ARROW.footer()).order(ByteOrder.LITTLE_ENDIAN);
+        assert eos.getInt() == -1 && eos.getInt() == 0;
+    }
+
+    /** 解析一条 Arrow IPC 消息：0xFFFFFFFF + int32 元数据长度 + FlatBuffer Message。 */
+    private static Message arrowMessage(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assert buffer.getInt() == -1;
+        int length = buffer.getInt();
+        assert (8 + length) % 8 == 0;
+        Message message = Message.getRootAsMessage(buffer.slice(8, length).order(ByteOrder.LITTLE_ENDIAN));
+        assert bytes.length == 8 + length + message.bodyLength();
+        return message;
+    }
 }
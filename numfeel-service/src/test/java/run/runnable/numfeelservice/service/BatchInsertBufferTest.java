@@ -0,0 +1,163 @@
+package run.runnable.numfeelservice.service;
+
+import run.runnable.numfeelservice.model.GameplayEntities.MonkeyStat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.r2dbc.core.DefaultReactiveDataAccessStrategy;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.core.ReactiveInsertOperation;
+import org.springframework.data.r2dbc.dialect.MySqlDialect;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.FetchSpec;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * BatchInsertBuffer 单元测试：空闲时单行写入、写入期间到达的行合并成一条多行 INSERT、批量失败逐行重试。
+ */
+@ExtendWith(MockitoExtension.class)
+class BatchInsertBufferTest {
+
+    @Mock
+    private R2dbcEntityTemplate template;
+
+    @Mock
+    private DatabaseClient databaseClient;
+
+    private ReactiveInsertOperation.ReactiveInsert<MonkeyStat> insertMock;
+    private BatchInsertBuffer<MonkeyStat> buffer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        insertMock = mock(ReactiveInsertOperation.ReactiveInsert.class);
+        when(template.insert(MonkeyStat.class)).thenReturn(insertMock);
+        buffer = new BatchInsertBuffer<>(template, MonkeyStat.class);
+    }
+
+    private static MonkeyStat row(String text) {
+        return new MonkeyStat(null, text, text.length(), 10, 10, true, 1, 1000L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DatabaseClient.GenericExecuteSpec stubMultiRowInsert(Mono<Long> result) {
+        when(template.getDataAccessStrategy()).thenReturn(new DefaultReactiveDataAccessStrategy(MySqlDialect.INSTANCE));
+        when(template.getDatabaseClient()).thenReturn(databaseClient);
+        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class, RETURNS_SELF);
+        FetchSpec<Map<String, Object>> fetchSpec = mock(FetchSpec.class);
+        when(databaseClient.sql(anyString())).thenReturn(spec);
+        when(spec.fetch()).thenReturn(fetchSpec);
+        when(fetchSpec.rowsUpdated()).thenReturn(result);
+        return spec;
+    }
+
+    @Test
+    void idle_insert_goes_straight_through_template() {
+        MonkeyStat saved = new MonkeyStat(7L, "ab", 2, 10, 10, true, 1, 1000L);
+        when(insertMock.using(any(MonkeyStat.class))).thenReturn(Mono.just(saved));
+
+        StepVerifier.create(buffer.insert(row("ab"))).expectNext(saved).verifyComplete();
+        verify(template, never()).getDatabaseClient();
+    }
+
+    @Test
+    void rows_arriving_during_a_write_are_coalesced() {
+        Sinks.One<MonkeyStat> firstWrite = Sinks.one();
+        when(insertMock.using(any(MonkeyStat.class))).thenReturn(firstWrite.asMono());
+        DatabaseClient.GenericExecuteSpec spec = stubMultiRowInsert(Mono.just(3L));
+
+        List<MonkeyStat> results = new ArrayList<>();
+        buffer.insert(row("a")).subscribe(results::add);
+        buffer.insert(row("bb")).subscribe(results::add);
+        buffer.insert(row("ccc")).subscribe(results::add);
+        buffer.insert(row("dddd")).subscribe(results::add);
+        assertEquals(List.of(), results);
+
+        firstWrite.tryEmitValue(row("a"));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(databaseClient).sql(sql.capture());
+        assertTrue(sql.getValue().startsWith("INSERT INTO `monkey_stats` (`target_text`"), sql.getValue());
+        assertFalse(sql.getValue().contains("`id`"), sql.getValue());
+        assertEquals(3, sql.getValue().split("\\), \\(").length);
+        verify(spec).bind(anyInt(), eq("dddd"));
+        assertEquals(List.of(row("a"), row("bb"), row("ccc"), row("dddd")), results);
+        verify(insertMock, times(1)).using(any(MonkeyStat.class));
+    }
+
+    @Test
+    void null_columns_are_omitted_and_rows_grouped_by_columns() {
+        Sinks.One<MonkeyStat> firstWrite = Sinks.one();
+        when(insertMock.using(any(MonkeyStat.class)))
+                .thenReturn(firstWrite.asMono())
+                .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        DatabaseClient.GenericExecuteSpec spec = stubMultiRowInsert(Mono.just(2L));
+        MonkeyStat noText = new MonkeyStat(null, null, 0, 10, 10, true, 1, 1000L);
+
+        List<MonkeyStat> results = new ArrayList<>();
+        buffer.insert(row("a")).subscribe(results::add);
+        buffer.insert(row("bb")).subscribe(results::add);
+        buffer.insert(noText).subscribe(results::add);
+        buffer.insert(row("dddd")).subscribe(results::add);
+        firstWrite.tryEmitValue(row("a"));
+
+        // target_text 为 null 的行不与其他行合并，单独走 template.insert，不绑定 NULL 覆盖列默认值
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(databaseClient).sql(sql.capture());
+        assertTrue(sql.getValue().startsWith("INSERT INTO `monkey_stats` (`target_text`"), sql.getValue());
+        assertEquals(2, sql.getValue().split("\\), \\(").length);
+        verify(spec, never()).bindNull(anyInt(), any());
+        verify(insertMock).using(noText);
+        assertEquals(List.of(row("a"), row("bb"), row("dddd"), noText), results);
+    }
+
+    @Test
+    void failed_batch_is_retried_row_by_row() {
+        Sinks.One<MonkeyStat> firstWrite = Sinks.one();
+        when(insertMock.using(any(MonkeyStat.class)))
+                .thenReturn(firstWrite.asMono())
+                .thenReturn(Mono.error(new IllegalStateException("bad row")))
+                .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        stubMultiRowInsert(Mono.error(new IllegalStateException("batch failed")));
+
+        Mono<MonkeyStat> first = buffer.insert(row("a"));
+        first.subscribe();
+        Mono<MonkeyStat> bad = buffer.insert(row("bb")).cache();
+        Mono<MonkeyStat> good = buffer.insert(row("ccc")).cache();
+        bad.subscribe(v -> { }, e -> { });
+        good.subscribe();
+        firstWrite.tryEmitValue(row("a"));
+
+        StepVerifier.create(bad).verifyErrorMessage("bad row");
+        StepVerifier.create(good).expectNext(row("ccc")).verifyComplete();
+    }
+
+    @Test
+    void drain_waits_for_queued_rows_then_writes_directly() {
+        Sinks.One<MonkeyStat> firstWrite = Sinks.one();
+        when(insertMock.using(any(MonkeyStat.class)))
+                .thenReturn(firstWrite.asMono())
+                .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        buffer.insert(row("a")).subscribe();
+        assertFalse(buffer.drain(Duration.ofMillis(30)));
+
+        firstWrite.tryEmitValue(row("a"));
+        assertTrue(buffer.drain(Duration.ofMillis(30)));
+        StepVerifier.create(buffer.insert(row("bb"))).expectNext(row("bb")).verifyComplete();
+    }
+}
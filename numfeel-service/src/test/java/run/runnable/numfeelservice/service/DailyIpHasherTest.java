@@ -0,0 +1,68 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DailyIpHasher 单元测试：结果与逐次拼接计算一致，缓存按 UTC 日期轮换并受容量限制。
+ */
+class DailyIpHasherTest {
+
+    private static final DateTimeFormatter DAY_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    @Test
+    void hash_matches_concatenated_digest() throws Exception {
+        DailyIpHasher hasher = new DailyIpHasher("s4lt", 16);
+        long now = Instant.parse("2026-03-14T23:59:59Z").toEpochMilli();
+        for (String ip : new String[] {"1.2.3.4", "2001:db8::1", "203.0.113.42"}) {
+            assertEquals(expected(ip, now, "s4lt"), hasher.hash(ip, now));
+            // 第二次走缓存
+            assertEquals(expected(ip, now, "s4lt"), hasher.hash(ip, now));
+        }
+        assertEquals(expected("unknown", now, "s4lt"), hasher.hash(null, now));
+    }
+
+    @Test
+    void cache_rotates_at_utc_midnight() throws Exception {
+        DailyIpHasher hasher = new DailyIpHasher("s4lt", 16);
+        long beforeMidnight = Instant.parse("2026-03-14T23:59:59Z").toEpochMilli();
+        long afterMidnight = beforeMidnight + 1000;
+
+        String today = hasher.hash("1.2.3.4", beforeMidnight);
+        hasher.hash("5.6.7.8", beforeMidnight);
+        assertEquals(2, hasher.cachedCount());
+
+        String tomorrow = hasher.hash("1.2.3.4", afterMidnight);
+        assertNotEquals(today, tomorrow);
+        assertEquals(expected("1.2.3.4", afterMidnight, "s4lt"), tomorrow);
+        assertEquals(1, hasher.cachedCount());
+
+        // 迟到的前一天时间戳照常按前一天计算，但不把缓存换回去
+        assertEquals(today, hasher.hash("1.2.3.4", beforeMidnight));
+        assertEquals(1, hasher.cachedCount());
+        assertEquals(tomorrow, hasher.hash("1.2.3.4", afterMidnight + DAY_MS - 2000));
+    }
+
+    @Test
+    void cache_is_bounded_per_day() throws Exception {
+        DailyIpHasher hasher = new DailyIpHasher("s4lt", 4);
+        long now = Instant.parse("2026-03-14T12:00:00Z").toEpochMilli();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected("10.0.0." + i, now, "s4lt"), hasher.hash("10.0.0." + i, now));
+        }
+        assertEquals(4, hasher.cachedCount());
+        assertEquals(expected("10.0.0.9", now, "s4lt"), hasher.hash("10.0.0.9", now));
+    }
+
+    private static String expected(String ip, long nowMs, String salt) throws Exception {
+        String hash = HashingTest.reference(ip + DAY_FORMATTER.format(Instant.ofEpochMilli(nowMs)) + salt);
+        return hash.substring(0, 16);
+    }
+}
@@ -0,0 +1,66 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DrainSignal 单元测试：条件成立即返回；等待期间由 signal 唤醒而不是轮询；没有 signal 时按超时返回。
+ */
+class DrainSignalTest {
+
+    @Test
+    void returns_immediately_when_already_done() {
+        DrainSignal signal = new DrainSignal();
+        AtomicInteger kicks = new AtomicInteger();
+
+        assertTrue(signal.await(() -> true, kicks::incrementAndGet, Duration.ofSeconds(1)));
+        assertEquals(0, kicks.get());
+    }
+
+    @Test
+    void wakes_up_on_signal_from_writer() throws Exception {
+        DrainSignal signal = new DrainSignal();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger checks = new AtomicInteger();
+
+        CompletableFuture<Boolean> drained = CompletableFuture.supplyAsync(() -> signal.await(() -> {
+            checks.incrementAndGet();
+            return !writing.get();
+        }, () -> { }, Duration.ofSeconds(10)));
+        Thread.sleep(100);
+        // 没有 signal 时不会反复检查
+        assertEquals(1, checks.get());
+
+        writing.set(false);
+        signal.signal();
+        assertTrue(drained.get(5, TimeUnit.SECONDS));
+        assertEquals(2, checks.get());
+    }
+
+    @Test
+    void kick_that_finishes_synchronously_is_not_missed() {
+        DrainSignal signal = new DrainSignal();
+        AtomicBoolean pending = new AtomicBoolean(true);
+
+        assertTrue(signal.await(() -> !pending.get(), () -> {
+            pending.set(false);
+            signal.signal();
+        }, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void times_out_without_signal() {
+        DrainSignal signal = new DrainSignal();
+        long start = System.nanoTime();
+
+        assertFalse(signal.await(() -> false, () -> { }, Duration.ofMillis(50)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+}
@@ -0,0 +1,108 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EntropyBits 单元测试：按位消耗、耗尽返回 -1、期望位数上界与分布均匀，
+ * 以及一次读出前 k 位与逐位的 Fast Dice Roller 结果逐个相同。
+ */
+class EntropyBitsTest {
+
+    @Test
+    void reads_bits_msb_first_and_reports_exhaustion() {
+        // 全 0：每次抽取只需把区间扩到不小于 range，即 ceil(log2 range) 位
+        EntropyBits zeros = new EntropyBits(new byte[2]);
+        assertEquals(0, zeros.nextInt(10));
+        assertEquals(12, zeros.remainingBits());
+        assertEquals(0, zeros.nextInt(1));
+        assertEquals(12, zeros.remainingBits());
+        assertEquals(0, zeros.nextInt(1000));
+        assertEquals(-1, zeros.nextInt(10));
+
+        // 0b1010_0000：range 4 依次读出 10、10，range 2 读出 0
+        EntropyBits bits = new EntropyBits(new byte[]{(byte) 0xA0});
+        assertEquals(2, bits.nextInt(4));
+        assertEquals(2, bits.nextInt(4));
+        assertEquals(0, bits.nextInt(2));
+
+        // 8 位只够抽 4 个，第 5 个时耗尽
+        int[] out = new int[6];
+        assertEquals(4, new EntropyBits(new byte[]{(byte) 0xFF}).nextInts(4, out, 1, 5));
+        assertArrayEquals(new int[]{0, 3, 3, 3, 3, 0}, out);
+    }
+
+    @Test
+    void reading_first_bits_at_once_matches_bit_by_bit_roller() {
+        Random random = new Random(7);
+        int[] ranges = {2, 3, 6, 7, 10, 100, 255, 256, 257, 1000, 65_537, 1 << 30, Integer.MAX_VALUE};
+        for (int round = 0; round < 200; round++) {
+            byte[] bytes = new byte[1 + random.nextInt(40)];
+            random.nextBytes(bytes);
+            EntropyBits bits = new EntropyBits(bytes);
+            BitByBit reference = new BitByBit(bytes);
+            // 交替使用不同 range，覆盖缓冲区里残留位数的各种情况，一直抽到两边都耗尽
+            for (int draw = 0; draw < 400; draw++) {
+                int range = ranges[random.nextInt(ranges.length)];
+                assertEquals(reference.nextInt(range), bits.nextInt(range), "round " + round + " draw " + draw);
+            }
+        }
+    }
+
+    @Test
+    void draws_are_uniform_within_expected_bit_budget() {
+        byte[] bytes = new byte[200_000];
+        new Random(42).nextBytes(bytes);
+        EntropyBits bits = new EntropyBits(bytes);
+        int range = 6;
+        int[] counts = new int[range];
+        int draws = 0;
+        for (int v; (v = bits.nextInt(range)) >= 0; draws++) {
+            counts[v]++;
+        }
+
+        double perDraw = bytes.length * 8.0 / draws;
+        assertTrue(perDraw <= EntropyBits.bitsPerDraw(range), "每次抽取的位数不超过期望上界: " + perDraw);
+        double expected = draws / (double) range;
+        double chi2 = 0;
+        for (int c : counts) {
+            chi2 += (c - expected) * (c - expected) / expected;
+        }
+        // 自由度 5，p = 0.001 的临界值约 20.5
+        assertTrue(chi2 < 20.5, "卡方 " + chi2);
+        assertEquals(1, EntropyBits.bytesFor(6, 1));
+        assertEquals(5, EntropyBits.bytesFor(6, 8));
+    }
+
+    /** 逐位读取的 Fast Dice Roller，作为对照。 */
+    private static final class BitByBit {
+
+        private final byte[] bytes;
+        private int bit;
+
+        BitByBit(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int nextInt(int range) {
+            if (range <= 1) return 0;
+            long v = 1;
+            long c = 0;
+            for (;;) {
+                if (bit == bytes.length * 8) return -1;
+                int b = (bytes[bit >>> 3] >>> (7 - (bit & 7))) & 1;
+                bit++;
+                v <<= 1;
+                c = (c << 1) | b;
+                if (v >= range) {
+                    if (c < range) return (int) c;
+                    v -= range;
+                    c -= range;
+                }
+            }
+        }
+    }
+}
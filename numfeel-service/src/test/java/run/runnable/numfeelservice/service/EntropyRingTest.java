@@ -0,0 +1,87 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EntropyRing 单元测试：先进先出、回绕、满时只放入装得下的部分、不够时有多少取多少，
+ * 并发读取时每个字节恰好被取走一次。
+ */
+class EntropyRingTest {
+
+    @Test
+    void fifo_with_wraparound_and_partial_operations() {
+        EntropyRing ring = new EntropyRing(8);
+        assertEquals(8, ring.capacity());
+
+        assertEquals(6, ring.offer(new byte[]{1, 2, 3, 4, 5, 6}, 0, 6));
+        byte[] out = new byte[4];
+        assertEquals(4, ring.poll(out, 0, 4));
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, out);
+
+        // 跨过数组末尾写入；池满时只放入装得下的 6 个
+        assertEquals(6, ring.offer(new byte[]{7, 8, 9, 10, 11, 12, 13}, 0, 7));
+        assertEquals(8, ring.available());
+        assertEquals(0, ring.offer(new byte[]{14}, 0, 1));
+
+        byte[] all = new byte[10];
+        assertEquals(8, ring.poll(all, 1, 9));
+        assertArrayEquals(new byte[]{0, 5, 6, 7, 8, 9, 10, 11, 12, 0}, all);
+        assertEquals(0, ring.available());
+        assertEquals(0, ring.poll(all, 0, 1));
+    }
+
+    @Test
+    void concurrent_consumers_take_each_byte_exactly_once() throws InterruptedException {
+        EntropyRing ring = new EntropyRing(1024);
+        int total = 2_000_000;
+        long expectedSum = 0;
+        for (int i = 0; i < total; i++) {
+            expectedSum += i % 251;
+        }
+        AtomicLong taken = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+
+        List<Thread> consumers = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            Thread t = new Thread(() -> {
+                byte[] buf = new byte[37];
+                while (taken.get() < total) {
+                    int k = ring.poll(buf, 0, buf.length);
+                    long s = 0;
+                    for (int i = 0; i < k; i++) {
+                        s += buf[i] & 0xff;
+                    }
+                    sum.addAndGet(s);
+                    taken.addAndGet(k);
+                }
+            });
+            t.start();
+            consumers.add(t);
+        }
+
+        byte[] chunk = new byte[100];
+        for (int produced = 0; produced < total; ) {
+            int len = Math.min(chunk.length, total - produced);
+            for (int i = 0; i < len; i++) {
+                chunk[i] = (byte) ((produced + i) % 251);
+            }
+            int off = 0;
+            while (off < len) {
+                off += ring.offer(chunk, off, len - off);
+            }
+            produced += len;
+        }
+        for (Thread t : consumers) {
+            t.join(30_000);
+        }
+
+        assertEquals(total, taken.get());
+        assertEquals(expectedSum, sum.get());
+    }
+}
@@ -9,6 +9,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.r2dbc.core.DatabaseClient;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
+import tools.jackson.databind.ObjectMapper;
 
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -24,10 +25,19 @@ class EventCollectServiceTest {
     @Mock
     private DatabaseClient databaseClient;
 
+    @Mock
+    private EventRollupMaterializer rollup;
+
     private static final String SALT = "test-salt";
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private EventCollectService newService(boolean enabled) {
-        return new EventCollectService(databaseClient, enabled, SALT);
+        return newService(enabled, 1024, 500);
+    }
+
+    private EventCollectService newService(boolean enabled, int capacity, int maxBatch) {
+        return new EventCollectService(databaseClient, rollup, enabled, SALT, capacity, maxBatch, 200);
     }
 
     @Test
@@ -76,6 +86,12 @@ class EventCollectServiceTest {
                     assertEquals(3, resp.dropped());
                 })
                 .verifyComplete();
+
+        service.flushPending();
+        assertEquals(1, service.ingestStats().written());
+        assertEquals(0, service.ingestStats().queued());
+        verify(rollup).record(eq("demo-x"), eq("press"), eq("session12345678"), anyLong());
+        verifyNoMoreInteractions(rollup);
     }
 
     @Test
@@ -96,7 +112,7 @@ class EventCollectServiceTest {
 
     @Test
     @SuppressWarnings("unchecked")
-    void collect_insertFailure_treatsAllAsDropped() {
+    void collect_insertFailure_isCountedAfterAcceptance() {
         EventCollectService service = newService(true);
         DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class);
         when(databaseClient.sql(anyString())).thenReturn(spec);
@@ -112,13 +128,139 @@ class EventCollectServiceTest {
 
         StepVerifier.create(service.collect("demo-x", "session12345678", List.of(item), "1.2.3.4"))
                 .assertNext(resp -> {
-                    assertEquals(0, resp.accepted());
+                    // 响应不等待落库：写入失败只体现在写入队列的计数里
+                    assertEquals(1, resp.accepted());
+                    assertEquals(0, resp.dropped());
+                })
+                .verifyComplete();
+
+        service.flushPending();
+        assertEquals(1, service.ingestStats().failed());
+        assertEquals(0, service.ingestStats().written());
+        verifyNoInteractions(rollup);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void collect_batchInsertFailure_retriesRowByRow() {
+        EventCollectService service = newService(true);
+        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class);
+        when(databaseClient.sql(anyString())).thenReturn(spec);
+        when(spec.bind(anyInt(), any())).thenReturn(spec);
+        org.springframework.r2dbc.core.FetchSpec<java.util.Map<String, Object>> fetchSpec =
+                mock(org.springframework.r2dbc.core.FetchSpec.class);
+        when(spec.fetch()).thenReturn(fetchSpec);
+        // 整批失败，逐行重试时第三行仍失败
+        when(fetchSpec.rowsUpdated()).thenReturn(Mono.error(new RuntimeException("Data too long")),
+                Mono.just(1L), Mono.just(1L), Mono.error(new RuntimeException("Data too long")));
+
+        long now = System.currentTimeMillis();
+        List<EventItem> items = List.of(
+                new EventItem("press", 1, now, Map.of("idx", 1)),
+                new EventItem("press", 2, now, Map.of("idx", 2)),
+                new EventItem("press", 3, now, Map.of("idx", 3)));
+        StepVerifier.create(service.collect("demo-x", "session12345678", items, "1.2.3.4"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        service.flushPending();
+        verify(databaseClient, times(3)).sql(endsWith("VALUES (?,?,?,?,?,?,?,?)"));
+        assertEquals(2, service.ingestStats().written());
+        assertEquals(1, service.ingestStats().failed());
+        assertEquals(0, service.ingestStats().queued());
+        verify(rollup, times(2)).record(eq("demo-x"), eq("press"), eq("session12345678"), anyLong());
+    }
+
+    @Test
+    void collect_queueFull_dropsOverflowWithoutTouchingDatabase() {
+        EventCollectService service = newService(true, 2, 500);
+        long now = System.currentTimeMillis();
+        List<EventItem> items = List.of(
+                new EventItem("press", 1, now, Map.of()),
+                new EventItem("press", 2, now, Map.of()),
+                new EventItem("press", 3, now, Map.of()));
+
+        StepVerifier.create(service.collect("demo-x", "session12345678", items, "1.2.3.4"))
+                .assertNext(resp -> {
+                    assertEquals(2, resp.accepted());
                     assertEquals(1, resp.dropped());
                 })
                 .verifyComplete();
+
+        assertEquals(2, service.ingestStats().queued());
+        assertEquals(1, service.ingestStats().overflowDropped());
+        verifyNoInteractions(databaseClient);
+    }
+
+    @Test
+    void collect_fullBatch_isWrittenImmediatelyAsOneInsert() {
+        EventCollectService service = newService(true, 1024, 3);
+        mockSuccessfulInsert();
+        long now = System.currentTimeMillis();
+        // 两个请求各 2 条：第二个请求让队列达到 3 条，立即写出一批，剩下 1 条等定时任务
+        List<EventItem> items = List.of(
+                new EventItem("press", 1, now, Map.of("idx", 1)),
+                new EventItem("press", 2, now, Map.of("idx", 2)));
+        StepVerifier.create(service.collect("demo-x", "session12345678", items, "1.2.3.4"))
+                .expectNextCount(1)
+                .verifyComplete();
+        verifyNoInteractions(databaseClient);
+        StepVerifier.create(service.collect("demo-x", "session87654321", items, "5.6.7.8"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(databaseClient, times(1)).sql(endsWith("VALUES (?,?,?,?,?,?,?,?), (?,?,?,?,?,?,?,?), (?,?,?,?,?,?,?,?)"));
+        assertEquals(3, service.ingestStats().written());
+        assertEquals(1, service.ingestStats().queued());
+
+        service.flushPending();
+        assertEquals(4, service.ingestStats().written());
+        assertEquals(2, service.ingestStats().batches());
     }
 
-    // ── cleanProps ──────────────────────────────────────────────────────
+    // ── encodeProps ─────────────────────────────────────────────────────
+
+    /** encodeProps 的结果解析回 map，便于逐 key 断言。 */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> cleanProps(Map<String, Object> raw) {
+        String json = EventCollectService.encodeProps(raw);
+        return json == null ? Map.of() : MAPPER.readValue(json, LinkedHashMap.class);
+    }
+
+    @Test
+    void encodeProps_matchesJacksonSerializationOfAcceptedKeys() {
+        Map<String, Object> raw = new LinkedHashMap<>();
+        raw.put("i", 5);
+        raw.put("l", 12345678901L);
+        raw.put("d", 0.1);
+        raw.put("b", false);
+        raw.put("q", "say \"hi\"\n");
+        raw.put("zh", "中文 ✓");
+        raw.put("nested", Map.of("a", 1));
+        raw.put("", 1);
+
+        String json = EventCollectService.encodeProps(raw);
+
+        Map<String, Object> expected = new LinkedHashMap<>(raw);
+        expected.remove("nested");
+        expected.remove("");
+        assertEquals(MAPPER.writeValueAsString(expected), json);
+    }
+
+    @Test
+    void encodeProps_oversizedFirstKey_isSkippedAndLaterKeysStillValid() {
+        Map<String, Object> raw = new LinkedHashMap<>();
+        raw.put("k".repeat(2000), 1);
+        raw.put("ok", 2);
+
+        assertEquals("{\"ok\":2}", EventCollectService.encodeProps(raw));
+    }
+
+    @Test
+    void encodeProps_nothingAcceptable_returnsNull() {
+        assertNull(EventCollectService.encodeProps(null));
+        assertNull(EventCollectService.encodeProps(Map.of("nested", List.of(1))));
+    }
 
     @Test
     void cleanProps_keepsNumberBooleanShortString() {
@@ -127,7 +269,7 @@ class EventCollectServiceTest {
         raw.put("win", true);
         raw.put("mode", "standard");
 
-        Map<String, Object> cleaned = EventCollectService.cleanProps(raw);
+        Map<String, Object> cleaned = cleanProps(raw);
 
         assertEquals(5, cleaned.get("idx"));
         assertEquals(true, cleaned.get("win"));
@@ -141,7 +283,7 @@ class EventCollectServiceTest {
         raw.put("array", List.of(1, 2, 3));
         raw.put("ok", 1);
 
-        Map<String, Object> cleaned = EventCollectService.cleanProps(raw);
+        Map<String, Object> cleaned = cleanProps(raw);
 
         assertFalse(cleaned.containsKey("nested"));
         assertFalse(cleaned.containsKey("array"));
@@ -154,7 +296,7 @@ class EventCollectServiceTest {
         raw.put("short", "ok");
         raw.put("long", "x".repeat(65));
 
-        Map<String, Object> cleaned = EventCollectService.cleanProps(raw);
+        Map<String, Object> cleaned = cleanProps(raw);
 
         assertEquals("ok", cleaned.get("short"));
         assertFalse(cleaned.containsKey("long"));
@@ -167,7 +309,7 @@ class EventCollectServiceTest {
             raw.put("k" + i, i);
         }
 
-        Map<String, Object> cleaned = EventCollectService.cleanProps(raw);
+        Map<String, Object> cleaned = cleanProps(raw);
 
         assertTrue(cleaned.size() <= 20);
     }
@@ -183,7 +325,7 @@ class EventCollectServiceTest {
         }
         raw.put("big", "z".repeat(64));
 
-        Map<String, Object> cleaned = EventCollectService.cleanProps(raw);
+        Map<String, Object> cleaned = cleanProps(raw);
 
         assertEquals("ok", cleaned.get("small"));
         assertFalse(cleaned.containsKey("big"), "超限的 key 应被丢弃");
@@ -198,7 +340,7 @@ class EventCollectServiceTest {
             raw.put("k" + i, "v".repeat(64));
         }
 
-        Map<String, Object> cleaned = EventCollectService.cleanProps(raw);
+        Map<String, Object> cleaned = cleanProps(raw);
 
         assertTrue(cleaned.size() < 30, "超限后应丢弃部分 key");
         // 已接受的 key 必须原样保留
@@ -213,7 +355,7 @@ class EventCollectServiceTest {
         for (int i = 0; i < 25; i++) {
             raw.put("k" + i, "v".repeat(64));
         }
-        Map<String, Object> cleaned = EventCollectService.cleanProps(raw);
+        Map<String, Object> cleaned = cleanProps(raw);
         // 用 Jackson 序列化后的字节数验证真正落在 1024 以内
         String json = new tools.jackson.databind.ObjectMapper().writeValueAsString(cleaned);
         assertTrue(json.getBytes(java.nio.charset.StandardCharsets.UTF_8).length <= 1024,
@@ -222,8 +364,8 @@ class EventCollectServiceTest {
 
     @Test
     void cleanProps_nullOrEmptyInput_returnsEmptyMap() {
-        assertTrue(EventCollectService.cleanProps(null).isEmpty());
-        assertTrue(EventCollectService.cleanProps(Map.of()).isEmpty());
+        assertTrue(cleanProps(null).isEmpty());
+        assertTrue(cleanProps(Map.of()).isEmpty());
     }
 
     // ── normalizeClientTs ───────────────────────────────────────────────
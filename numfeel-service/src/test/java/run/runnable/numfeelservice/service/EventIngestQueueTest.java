@@ -0,0 +1,96 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EventIngestQueue 单元测试：容量取整、满时拒绝、顺序，以及多生产者并发入队不丢不重。
+ */
+class EventIngestQueueTest {
+
+    @Test
+    void capacity_rounds_up_to_power_of_two() {
+        assertEquals(1, new EventIngestQueue<Integer>(1).capacity());
+        assertEquals(4, new EventIngestQueue<Integer>(3).capacity());
+        assertEquals(1024, new EventIngestQueue<Integer>(1000).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new EventIngestQueue<Integer>(0));
+    }
+
+    @Test
+    void offer_rejects_when_full_and_drain_frees_slots_in_order() {
+        EventIngestQueue<Integer> queue = new EventIngestQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(3, queue.drainTo(out, 3));
+        assertEquals(List.of(0, 1, 2), out);
+        assertTrue(queue.offer(5));
+        assertTrue(queue.offer(6));
+        assertTrue(queue.offer(7));
+        assertFalse(queue.offer(8));
+
+        out.clear();
+        assertEquals(4, queue.drainTo(out, 10));
+        assertEquals(List.of(3, 5, 6, 7), out);
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.drainTo(out, 10));
+    }
+
+    @Test
+    void concurrent_producers_lose_nothing() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        EventIngestQueue<Integer> queue = new EventIngestQueue<>(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!queue.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        boolean[] seen = new boolean[producers * perProducer];
+        int[] lastPerProducer = new int[producers];
+        java.util.Arrays.fill(lastPerProducer, -1);
+        List<Integer> batch = new ArrayList<>();
+        int received = 0;
+        while (received < seen.length) {
+            batch.clear();
+            received += queue.drainTo(batch, 256);
+            for (int value : batch) {
+                assertFalse(seen[value], "duplicate " + value);
+                seen[value] = true;
+                // 同一生产者的元素保持入队顺序
+                int producer = value / perProducer;
+                assertTrue(value > lastPerProducer[producer]);
+                lastPerProducer[producer] = value;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, queue.size());
+    }
+}
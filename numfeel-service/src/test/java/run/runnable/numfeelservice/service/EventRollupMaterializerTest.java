@@ -0,0 +1,272 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.FetchSpec;
+import org.springframework.r2dbc.core.RowsFetchSpec;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * EventRollupMaterializer 单元测试：摘要合并库中汇总与未写库的增量；写库后清空增量、失败时保留重试；
+ * 回填在后台进行，完成前摘要立即失败、不写库，失败后退避；启动时从高水位所在日重算，日终结束后对账。
+ */
+@ExtendWith(MockitoExtension.class)
+class EventRollupMaterializerTest {
+
+    private static final long DAY = 20_000;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final long NOW = DAY * DAY_MS + 1234;
+
+    @Mock
+    private DatabaseClient databaseClient;
+
+    @Test
+    void summary_merges_stored_rollup_with_unflushed_events() {
+        backfilled(true);
+        HyperLogLog stored = new HyperLogLog();
+        for (int i = 0; i < 5; i++) {
+            stored.add("s" + i);
+        }
+        rows("SUM(events)", Flux.just(Map.entry("press", 10L)));
+        row("SELECT sketch FROM demo_session_sketch", Mono.just(stored));
+
+        EventRollupMaterializer rollup = backfilledRollup();
+        rollup.record("demo-x", "press", "s4", NOW);
+        rollup.record("demo-x", "click", "s5", NOW);
+        rollup.record("demo-x", "click", "s6", NOW);
+        rollup.record("demo-y", "click", "s7", NOW);
+
+        StepVerifier.create(rollup.summary("demo-x"))
+                .assertNext(resp -> {
+                    assertEquals(13, resp.events());
+                    assertEquals(7, resp.sessions());
+                    assertEquals(List.of("press", "click"), List.copyOf(resp.byEvent().keySet()));
+                    assertEquals(11L, resp.byEvent().get("press"));
+                    assertEquals(2L, resp.byEvent().get("click"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void flush_writes_counts_and_sketches_once() {
+        backfilled(true);
+        DatabaseClient.GenericExecuteSpec counts = update("events = events + VALUES(events)", Mono.just(1L));
+        rows("SELECT day, sketch", Flux.empty());
+        DatabaseClient.GenericExecuteSpec sketches = update("INSERT INTO demo_session_sketch", Mono.just(2L));
+
+        EventRollupMaterializer rollup = backfilledRollup();
+        rollup.record("demo-x", "press", "s1", NOW);
+        rollup.record("demo-x", "press", "s2", NOW);
+        rollup.flush();
+        rollup.flush();
+
+        verify(databaseClient, times(1)).sql(contains("events = events + VALUES(events)"));
+        verify(counts).bind(1, DAY);
+        verify(counts).bind(3, 2L);
+        // 当天一行 + 全部日期一行
+        verify(sketches).bind(1, EventRollupMaterializer.ALL_DAYS);
+        verify(sketches).bind(4, DAY);
+    }
+
+    @Test
+    void flush_failure_keeps_counts_for_retry() {
+        backfilled(true);
+        DatabaseClient.GenericExecuteSpec counts = update("events = events + VALUES(events)",
+                Mono.error(new IllegalStateException("db down")), Mono.just(1L));
+        rows("SELECT day, sketch", Flux.empty());
+        update("INSERT INTO demo_session_sketch", Mono.just(2L));
+
+        EventRollupMaterializer rollup = backfilledRollup();
+        rollup.record("demo-x", "press", "s1", NOW);
+        rollup.flush();
+        rollup.record("demo-x", "press", "s2", NOW);
+        rollup.flush();
+
+        verify(counts).bind(3, 1L);
+        verify(counts).bind(3, 2L);
+        verify(databaseClient, times(1)).sql(contains("INSERT INTO demo_session_sketch"));
+    }
+
+    @Test
+    void backfill_runs_once_before_first_write() {
+        backfilled(false);
+        update("ON DUPLICATE KEY UPDATE events = VALUES(events)", Mono.just(3L));
+        rows("SELECT DISTINCT", Flux.empty());
+        update("INSERT INTO demo_rollup_state", Mono.just(1L));
+        DatabaseClient.GenericExecuteSpec counts = update("events = events + VALUES(events)", Mono.just(1L));
+        rows("SELECT day, sketch", Flux.empty());
+        update("INSERT INTO demo_session_sketch", Mono.just(2L));
+
+        EventRollupMaterializer rollup = new EventRollupMaterializer(databaseClient, true);
+        rollup.record("demo-x", "press", "s1", NOW);
+        // 第一次 flush 只发起回填，增量留在内存里
+        rollup.flush();
+        rollup.record("demo-x", "press", "s2", NOW);
+        rollup.flush();
+        rollup.flush();
+
+        var order = inOrder(databaseClient);
+        order.verify(databaseClient).sql(contains("ON DUPLICATE KEY UPDATE events = VALUES(events)"));
+        order.verify(databaseClient).sql(contains("INSERT INTO demo_rollup_state"));
+        order.verify(databaseClient).sql(contains("events = events + VALUES(events)"));
+        verify(databaseClient, times(1)).sql(contains("FROM demo_rollup_state"));
+        verify(databaseClient, times(1)).sql(contains("events = events + VALUES(events)"));
+        verify(counts).bind(3, 2L);
+    }
+
+    @Test
+    void summary_fails_fast_while_backfill_is_running() {
+        backfilled(false);
+        update("ON DUPLICATE KEY UPDATE events = VALUES(events)", Mono.never());
+
+        EventRollupMaterializer rollup = new EventRollupMaterializer(databaseClient, true);
+
+        StepVerifier.create(rollup.summary("demo-x"))
+                .verifyErrorMessage("demo_events rollup backfill not finished");
+        StepVerifier.create(rollup.summary("demo-x"))
+                .verifyErrorMessage("demo_events rollup backfill not finished");
+        // 第二次调用不再发起回填
+        verify(databaseClient, times(1)).sql(contains("FROM demo_rollup_state"));
+        verify(databaseClient, never()).sql(contains("SUM(events)"));
+    }
+
+    @Test
+    void failed_backfill_is_not_retried_within_backoff() {
+        backfilled(false);
+        update("ON DUPLICATE KEY UPDATE events = VALUES(events)", Mono.error(new IllegalStateException("db down")));
+
+        EventRollupMaterializer rollup = new EventRollupMaterializer(databaseClient, true);
+        rollup.record("demo-x", "press", "s1", NOW);
+        rollup.flush();
+        rollup.flush();
+        StepVerifier.create(rollup.summary("demo-x")).expectError(IllegalStateException.class).verify();
+
+        verify(databaseClient, times(1)).sql(contains("ON DUPLICATE KEY UPDATE events = VALUES(events)"));
+        verify(databaseClient, never()).sql(contains("events = events + VALUES(events)"));
+    }
+
+    @Test
+    void startup_reconciles_from_day_of_high_water_mark() {
+        row("FROM demo_rollup_state", Mono.just(NOW));
+        DatabaseClient.GenericExecuteSpec counts = update("ON DUPLICATE KEY UPDATE events = VALUES(events)", Mono.just(4L));
+        DatabaseClient.GenericExecuteSpec sessions = spec("SELECT DISTINCT");
+        RowsFetchSpec<Object> sessionRows = stubRows(sessions);
+        when(sessionRows.all()).thenReturn(Flux.empty());
+        DatabaseClient.GenericExecuteSpec mark = update("INSERT INTO demo_rollup_state", Mono.just(1L));
+        long startedAt = NOW + 2 * DAY_MS + 500;
+
+        EventRollupMaterializer rollup = new EventRollupMaterializer(databaseClient, true, () -> startedAt);
+        rollup.flush();
+
+        // 上一个实例的写入路径计数从高水位所在日的零点起按原表覆盖
+        verify(counts).bind(0, DAY * DAY_MS);
+        verify(counts).bind(1, startedAt);
+        verify(sessions).bind(0, DAY * DAY_MS);
+        verify(mark).bind(0, startedAt);
+    }
+
+    @Test
+    void closed_day_is_reconciled_after_grace() {
+        long startedAt = NOW + DAY_MS / 2;
+        long nextDay = (DAY + 1) * DAY_MS;
+        AtomicLong clock = new AtomicLong(startedAt);
+        backfilled(true);
+        DatabaseClient.GenericExecuteSpec counts = update("ON DUPLICATE KEY UPDATE events = VALUES(events)", Mono.just(0L));
+        update("events = events + VALUES(events)", Mono.just(1L));
+        update("INSERT INTO demo_session_sketch", Mono.just(2L));
+        rows("SELECT day, sketch", Flux.empty());
+
+        EventRollupMaterializer rollup = new EventRollupMaterializer(databaseClient, true, clock::get);
+        rollup.flush();
+        rollup.record("demo-x", "press", "s1", startedAt + 1000);
+        clock.set(nextDay + EventRollupMaterializer.RECONCILE_GRACE_MS / 2);
+        rollup.flush();
+        verify(counts, never()).bind(1, nextDay);
+
+        clock.set(nextDay + EventRollupMaterializer.RECONCILE_GRACE_MS + 1);
+        rollup.flush();
+        rollup.flush();
+
+        // 启动时一次，日终之后一次：覆盖前一天整天，高水位推进到次日零点
+        verify(databaseClient, times(2)).sql(contains("ON DUPLICATE KEY UPDATE events = VALUES(events)"));
+        verify(counts, times(2)).bind(0, DAY * DAY_MS);
+        verify(counts).bind(1, nextDay);
+    }
+
+    @Test
+    void disabled_ignores_records() {
+        EventRollupMaterializer rollup = new EventRollupMaterializer(databaseClient, false);
+        rollup.record("demo-x", "press", "s1", NOW);
+        rollup.flush();
+        assertFalse(rollup.enabled());
+        verifyNoInteractions(databaseClient);
+    }
+
+    /** 启动后第一次 flush 在后台检查回填状态；mock 同步完成，之后即可写库与读摘要。 */
+    private EventRollupMaterializer backfilledRollup() {
+        EventRollupMaterializer rollup = new EventRollupMaterializer(databaseClient, true);
+        rollup.flush();
+        return rollup;
+    }
+
+    /** done 时高水位为 NOW，启动后只重算当天；否则从头回填。两种情况下重算都是同样的三条 SQL。 */
+    private void backfilled(boolean done) {
+        row("FROM demo_rollup_state", done ? Mono.just(NOW) : Mono.empty());
+        if (done) {
+            update("ON DUPLICATE KEY UPDATE events = VALUES(events)", Mono.just(0L));
+            rows("SELECT DISTINCT", Flux.empty());
+            update("INSERT INTO demo_rollup_state", Mono.just(1L));
+        }
+    }
+
+    private DatabaseClient.GenericExecuteSpec spec(String fragment) {
+        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class);
+        lenient().when(databaseClient.sql(contains(fragment))).thenReturn(spec);
+        lenient().when(spec.bind(anyInt(), any())).thenReturn(spec);
+        return spec;
+    }
+
+    private <T> void rows(String fragment, Flux<T> rows) {
+        RowsFetchSpec<T> fetch = stubRows(spec(fragment));
+        lenient().when(fetch.all()).thenReturn(rows);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> RowsFetchSpec<T> stubRows(DatabaseClient.GenericExecuteSpec spec) {
+        RowsFetchSpec<T> fetch = mock(RowsFetchSpec.class);
+        lenient().when(spec.map(any(BiFunction.class))).thenReturn(fetch);
+        return fetch;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void row(String fragment, Mono<T> row) {
+        DatabaseClient.GenericExecuteSpec spec = spec(fragment);
+        RowsFetchSpec<T> fetch = mock(RowsFetchSpec.class);
+        lenient().when(spec.map(any(BiFunction.class))).thenReturn(fetch);
+        lenient().when(fetch.one()).thenReturn(row);
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    private DatabaseClient.GenericExecuteSpec update(String fragment, Mono<Long> first, Mono<Long>... then) {
+        DatabaseClient.GenericExecuteSpec spec = spec(fragment);
+        FetchSpec<Map<String, Object>> fetch = mock(FetchSpec.class);
+        lenient().when(spec.fetch()).thenReturn(fetch);
+        lenient().when(fetch.rowsUpdated()).thenReturn(first, then);
+        return spec;
+    }
+}
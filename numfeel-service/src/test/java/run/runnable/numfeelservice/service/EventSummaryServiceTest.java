@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import run.runnable.numfeelservice.controller.dto.EventResponses.EventSummaryResponse;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.r2dbc.core.RowsFetchSpec;
 import reactor.core.publisher.Flux;
@@ -30,7 +31,7 @@ class EventSummaryServiceTest {
 
     @BeforeEach
     void setUp() {
-        service = new EventSummaryService(databaseClient);
+        service = new EventSummaryService(databaseClient, new EventRollupMaterializer(databaseClient, false));
     }
 
     @Test
@@ -119,4 +120,49 @@ class EventSummaryServiceTest {
         // Without Spring proxy both calls reach the database
         verify(databaseClient, times(2)).sql(contains("COUNT(*) AS events"));
     }
+
+    @Test
+    void summary_rollupEnabled_readsRollupWithoutScanning() {
+        EventRollupMaterializer rollup = mock(EventRollupMaterializer.class);
+        when(rollup.enabled()).thenReturn(true);
+        EventSummaryResponse fromRollup = new EventSummaryResponse(3, 7, Map.of("press", 7L));
+        when(rollup.summary("demo-x")).thenReturn(Mono.just(fromRollup));
+
+        StepVerifier.create(new EventSummaryService(databaseClient, rollup).summary("demo-x"))
+                .expectNext(fromRollup)
+                .verifyComplete();
+        verifyNoInteractions(databaseClient);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void summary_rollupFails_fallsBackToScan() {
+        EventRollupMaterializer rollup = mock(EventRollupMaterializer.class);
+        when(rollup.enabled()).thenReturn(true);
+        when(rollup.summary("demo-x")).thenReturn(Mono.error(new IllegalStateException("backfill failed")));
+
+        DatabaseClient.GenericExecuteSpec countsSpec = mock(DatabaseClient.GenericExecuteSpec.class);
+        DatabaseClient.GenericExecuteSpec byEventSpec = mock(DatabaseClient.GenericExecuteSpec.class);
+        when(databaseClient.sql(contains("COUNT(*) AS events"))).thenReturn(countsSpec);
+        when(databaseClient.sql(contains("GROUP BY event_name"))).thenReturn(byEventSpec);
+        when(countsSpec.bind(eq(0), eq("demo-x"))).thenReturn(countsSpec);
+        when(byEventSpec.bind(eq(0), eq("demo-x"))).thenReturn(byEventSpec);
+
+        RowsFetchSpec<long[]> countsRows = mock(RowsFetchSpec.class);
+        when(countsSpec.map(any(BiFunction.class))).thenReturn(countsRows);
+        when(countsRows.one()).thenReturn(Mono.just(new long[]{4L, 2L}));
+
+        RowsFetchSpec<Map.Entry<String, Long>> byEventRows = mock(RowsFetchSpec.class);
+        when(byEventSpec.map(any(BiFunction.class))).thenReturn(byEventRows);
+        when(byEventRows.all()).thenReturn(Flux.fromIterable(List.of(
+                new AbstractMap.SimpleEntry<>("press", 4L)
+        )));
+
+        StepVerifier.create(new EventSummaryService(databaseClient, rollup).summary("demo-x"))
+                .assertNext(resp -> {
+                    assertEquals(2, resp.sessions());
+                    assertEquals(4, resp.events());
+                })
+                .verifyComplete();
+    }
 }
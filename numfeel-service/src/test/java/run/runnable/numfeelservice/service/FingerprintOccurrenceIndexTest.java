@@ -0,0 +1,69 @@
+package run.runnable.numfeelservice.service;
+
+import run.runnable.numfeelservice.service.FingerprintOccurrenceIndex.Occurrence;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FingerprintOccurrenceIndex 单元测试：次数与第二新时间戳与原先的 COUNT(*) / LIMIT 1 OFFSET 1 一致，
+ * 扩容后不丢键，十六进制前缀不区分大小写。
+ */
+class FingerprintOccurrenceIndexTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Test
+    void tracks_count_and_second_latest_timestamp() {
+        FingerprintOccurrenceIndex index = new FingerprintOccurrenceIndex();
+
+        assertEquals(new Occurrence(1, null), index.record(HASH, 300));
+        // 初始加载不按时间排序
+        assertEquals(new Occurrence(2, 100L), index.record(HASH, 100));
+        assertEquals(new Occurrence(3, 200L), index.record(HASH, 200));
+        assertEquals(new Occurrence(4, 300L), index.record(HASH, 400));
+        // 时间戳相同与 ORDER BY created_at DESC LIMIT 1 OFFSET 1 一样返回同一个值
+        assertEquals(new Occurrence(5, 400L), index.record(HASH, 400));
+        assertEquals(new Occurrence(1, null), index.record("other", 500));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void hex_prefix_is_case_insensitive() {
+        assertEquals(0x9f86d081884c7d65L, FingerprintOccurrenceIndex.key(HASH));
+        assertEquals(FingerprintOccurrenceIndex.key(HASH), FingerprintOccurrenceIndex.key(HASH.toUpperCase()));
+        assertEquals(FingerprintOccurrenceIndex.key("hash123"), FingerprintOccurrenceIndex.key("HASH123"));
+        assertNotEquals(FingerprintOccurrenceIndex.key("hash123"), FingerprintOccurrenceIndex.key("hash124"));
+    }
+
+    @Test
+    void matches_reference_counts_across_growth() {
+        FingerprintOccurrenceIndex index = new FingerprintOccurrenceIndex();
+        Map<String, long[]> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            String hash = String.format("%016x", random.nextInt(50_000) * 0x9E3779B97F4A7C15L);
+            long createdAt = random.nextInt(1_000_000);
+            long[] expected = reference.computeIfAbsent(hash, h -> new long[]{0, Long.MIN_VALUE, Long.MIN_VALUE});
+            expected[0]++;
+            if (createdAt >= expected[1]) {
+                expected[2] = expected[1];
+                expected[1] = createdAt;
+            } else if (createdAt > expected[2]) {
+                expected[2] = createdAt;
+            }
+            Occurrence occurrence = index.record(hash, createdAt);
+            assertEquals(expected[0], occurrence.count());
+            assertEquals(expected[0] == 1 ? null : expected[2], occurrence.lastSeenAt());
+        }
+        assertEquals(reference.size(), index.size());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(new Occurrence(1, null), index.record(HASH, 1));
+    }
+}
@@ -1,9 +1,9 @@
 package run.runnable.numfeelservice.service;
 
-import run.runnable.numfeelservice.controller.dto.TrackingResponses.BrowserFingerprintCollectResponse;
-import run.runnable.numfeelservice.controller.dto.TrackingResponses.BrowserFingerprintStatsResponse;
 import run.runnable.numfeelservice.model.FingerprintRecord;
 import run.runnable.numfeelservice.model.TrackingEntities.BrowserFingerprint;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,16 +12,27 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.r2dbc.core.ReactiveInsertOperation;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.FetchSpec;
 import org.springframework.r2dbc.core.RowsFetchSpec;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.BiFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+/**
+ * FingerprintService 单元测试：采集后总量、同指纹次数与上一次出现时间取自内存；统计从快照恢复并补扫、
+ * 无快照时全表扫描、草图不可用时回退整表 SQL 且退避期内不重试加载；采集不等待加载，
+ * 加载期间写入的行恰好计入一次；快照只在有变化时保存。
+ */
 @ExtendWith(MockitoExtension.class)
 class FingerprintServiceTest {
 
@@ -46,32 +57,62 @@ class FingerprintServiceTest {
     }
 
     @Test
-    @SuppressWarnings("unchecked")
-    void collectShouldReturnStatsFromDatabase() {
+    void collectShouldReturnStatsFromMemory() {
+        noSnapshot();
+        query("WHERE id >", fingerprint(1, "hash123", 20.0), fingerprint(2, "other", 22.0),
+                fingerprint(3, "hash123", 24.0));
+        DatabaseClient.GenericExecuteSpec index = query("full_hash, created_at",
+                seen("hash123", 1700000000000L), seen("other", 1750000000000L), seen("hash123", 1600000000000L));
         mockInsertSuccess();
-        BrowserFingerprintCollectResponse expected = new BrowserFingerprintCollectResponse(
-                100, 5L, 1700000000000L, "mysql");
-        mockSqlCollectResponse(expected);
 
         StepVerifier.create(service.collect(SAMPLE))
                 .assertNext(resp -> {
-                    assertEquals(100, resp.total());
-                    assertEquals(5L, resp.sameHashCount());
+                    assertEquals(4, resp.total());
+                    assertEquals(3L, resp.sameHashCount());
                     assertEquals(1700000000000L, resp.lastSeenAt());
                     assertEquals("mysql", resp.source());
                 })
                 .verifyComplete();
+
+        StepVerifier.create(service.collect(SAMPLE))
+                .assertNext(resp -> {
+                    assertEquals(5, resp.total());
+                    assertEquals(4L, resp.sameHashCount());
+                    assertTrue(resp.lastSeenAt() > 1700000000000L);
+                })
+                .verifyComplete();
+        // 索引只在第一次使用时加载，之后不再查询
+        verify(index, times(1)).map(any(BiFunction.class));
+        verify(client, never()).sql(contains("COUNT("));
+    }
+
+    @Test
+    void collectShouldHandleNullLastSeenAt() {
+        noSnapshot();
+        query("WHERE id >");
+        query("full_hash, created_at", seen("other", 1700000000000L));
+        mockInsertSuccess();
+
+        StepVerifier.create(service.collect(SAMPLE))
+                .assertNext(resp -> {
+                    assertEquals(1, resp.total());
+                    assertEquals(1L, resp.sameHashCount());
+                    assertNull(resp.lastSeenAt());
+                })
+                .verifyComplete();
     }
 
     @Test
     @SuppressWarnings("unchecked")
     void collectShouldFallbackToMemoryWhenInsertFails() {
+        noSnapshot();
+        query("WHERE id >", fingerprint(1, "hash123", 20.0));
+        query("full_hash, created_at", seen("hash123", 1700000000000L));
         ReactiveInsertOperation.ReactiveInsert<BrowserFingerprint> insertMock =
                 mock(ReactiveInsertOperation.ReactiveInsert.class);
         when(template.insert(BrowserFingerprint.class)).thenReturn(insertMock);
         when(insertMock.using(any(BrowserFingerprint.class)))
                 .thenReturn(Mono.error(new RuntimeException("MySQL down")));
-        mockSqlChain();
 
         StepVerifier.create(service.collect(SAMPLE))
                 .assertNext(resp -> {
@@ -88,59 +129,95 @@ class FingerprintServiceTest {
                     assertEquals("memory", resp.source());
                 })
                 .verifyComplete();
+
+        // 失败的 INSERT 不计入统计
+        StepVerifier.create(service.stats())
+                .assertNext(resp -> assertEquals(1, resp.total()))
+                .verifyComplete();
     }
 
     @Test
     @SuppressWarnings("unchecked")
-    void collectShouldFallbackToMemoryWhenSqlQueryFails() {
-        mockInsertSuccess();
-
-        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class);
-        when(client.sql(contains("SELECT"))).thenReturn(spec);
-        when(spec.bind(eq("full_hash"), any())).thenReturn(spec);
-
-        RowsFetchSpec<BrowserFingerprintCollectResponse> rowsSpec = mock(RowsFetchSpec.class);
+    void collectShouldStillInsertWhenIndexLoadFails() {
+        noSnapshot();
+        query("WHERE id >");
+        DatabaseClient.GenericExecuteSpec spec = spec("full_hash, created_at");
+        RowsFetchSpec<Object> rowsSpec = mock(RowsFetchSpec.class);
         when(spec.map(any(BiFunction.class))).thenReturn(rowsSpec);
-        when(rowsSpec.one()).thenReturn(Mono.error(new RuntimeException("SQL error")));
+        when(rowsSpec.all()).thenReturn(Flux.error(new RuntimeException("SQL error")));
+        mockInsertSuccess();
+        DatabaseClient.GenericExecuteSpec counts = query("same_hash_count",
+                columns("total", 42L, "same_hash_count", 3L, "last_seen_at", 1700000000000L));
 
         StepVerifier.create(service.collect(SAMPLE))
                 .assertNext(resp -> {
-                    assertTrue(resp.total() >= 1);
-                    assertNull(resp.sameHashCount());
-                    assertEquals("memory", resp.source());
+                    assertEquals(42, resp.total());
+                    assertEquals(3L, resp.sameHashCount());
+                    assertEquals(1700000000000L, resp.lastSeenAt());
+                    assertEquals("mysql", resp.source());
                 })
                 .verifyComplete();
+        // 行照常写入，即时统计回退到 SQL
+        verify(template).insert(BrowserFingerprint.class);
+        verify(counts).bind("full_hash", "hash123");
     }
 
     @Test
-    @SuppressWarnings("unchecked")
-    void collectShouldHandleNullLastSeenAt() {
-        mockInsertSuccess();
-        BrowserFingerprintCollectResponse expected = new BrowserFingerprintCollectResponse(
-                42, 1L, null, "mysql");
-        mockSqlCollectResponse(expected);
+    void statsShouldScanTableWhenNoSnapshot() {
+        noSnapshot();
+        Map<String, Object> noEntropy = fingerprint(3, "a", 0);
+        noEntropy.remove("entropy_bits");
+        query("WHERE id >", fingerprint(1, "a", 20.0), fingerprint(2, "b", 30.0), noEntropy);
+        query("full_hash, created_at");
 
-        StepVerifier.create(service.collect(SAMPLE))
+        StepVerifier.create(service.stats())
                 .assertNext(resp -> {
-                    assertEquals(42, resp.total());
-                    assertEquals(1L, resp.sameHashCount());
-                    assertNull(resp.lastSeenAt());
+                    assertEquals(3, resp.total());
+                    assertEquals(2, resp.uniqueFull());
+                    assertEquals(1.5, resp.avgVisits());
+                    assertEquals(3, resp.uniqueCanvas());
+                    assertEquals(1, resp.uniquePlatform());
+                    assertEquals(25.0, resp.avgEntropy());
+                    assertEquals(0.0163, resp.uniqueStdError());
                 })
                 .verifyComplete();
     }
 
     @Test
-    @SuppressWarnings("unchecked")
-    void statsShouldReturnAggregatedData() {
-        BrowserFingerprintStatsResponse expected = new BrowserFingerprintStatsResponse(
-                1000, 800, 1.25, 15, 40, 30, 20, 50, 5, 28.5);
+    void statsShouldRestoreSnapshotAndCatchUp() {
+        FingerprintSketches saved = new FingerprintSketches();
+        for (int i = 1; i <= 10; i++) {
+            saved.scanned(new FingerprintSketches.Row((long) i, "full-" + (i % 5), "canvas-" + i, null,
+                    null, "UTC", null, "Win32", 30.0));
+        }
+        FingerprintSketches.Snapshot snapshot = saved.snapshot();
+        query("FROM fingerprint_sketch_state", columns(
+                "last_id", 10L, "total", 10L, "entropy_sum", 300.0, "entropy_count", 10L));
+        Map<String, Object>[] sketchRows = sketchRows(snapshot);
+        query("FROM fingerprint_sketches", sketchRows);
+        DatabaseClient.GenericExecuteSpec scan = query("WHERE id >", fingerprint(11, "full-new", 41.0));
+        query("full_hash, created_at");
 
-        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class);
-        when(client.sql(contains("SELECT"))).thenReturn(spec);
+        StepVerifier.create(service.stats())
+                .assertNext(resp -> {
+                    assertEquals(11, resp.total());
+                    assertEquals(6, resp.uniqueFull());
+                    assertEquals(11, resp.uniqueCanvas());
+                    assertEquals(2, resp.uniqueTimezone());
+                    assertEquals(31.0, resp.avgEntropy());
+                })
+                .verifyComplete();
+        verify(scan).bind("last_id", 10L);
+    }
 
-        RowsFetchSpec<BrowserFingerprintStatsResponse> rowsSpec = mock(RowsFetchSpec.class);
-        when(spec.map(any(BiFunction.class))).thenReturn(rowsSpec);
-        when(rowsSpec.one()).thenReturn(Mono.just(expected));
+    @Test
+    void statsShouldFallBackToTableScanWhenSketchesUnavailable() {
+        DatabaseClient.GenericExecuteSpec state = spec("FROM fingerprint_sketch_state");
+        when(state.map(any(BiFunction.class))).thenThrow(new RuntimeException("table missing"));
+        query("COUNT(DISTINCT", columns(
+                "total", 1000L, "unique_full", 800L, "unique_canvas", 15L, "unique_font", 40L,
+                "unique_webgl", 30L, "unique_timezone", 20L, "unique_screen", 50L,
+                "unique_platform", 5L, "avg_entropy", 28.5));
 
         StepVerifier.create(service.stats())
                 .assertNext(resp -> {
@@ -154,25 +231,84 @@ class FingerprintServiceTest {
                     assertEquals(50, resp.uniqueScreen());
                     assertEquals(5, resp.uniquePlatform());
                     assertEquals(28.5, resp.avgEntropy());
+                    assertEquals(0.0, resp.uniqueStdError());
                 })
                 .verifyComplete();
     }
 
+    @Test
+    void failedLoadShouldNotBeRetriedWithinBackoff() {
+        DatabaseClient.GenericExecuteSpec state = spec("FROM fingerprint_sketch_state");
+        when(state.map(any(BiFunction.class))).thenThrow(new RuntimeException("table missing"));
+        query("COUNT(DISTINCT", columns("total", 7L, "unique_full", 7L));
+        mockInsertSuccess();
+        query("same_hash_count", columns("total", 8L, "same_hash_count", 1L));
+
+        StepVerifier.create(service.stats())
+                .assertNext(resp -> assertEquals(7, resp.total()))
+                .verifyComplete();
+        StepVerifier.create(service.collect(SAMPLE))
+                .assertNext(resp -> assertEquals(8, resp.total()))
+                .verifyComplete();
+        StepVerifier.create(service.stats())
+                .assertNext(resp -> assertEquals(7, resp.total()))
+                .verifyComplete();
+
+        // 退避期内只回退 SQL，不再读快照与全表
+        verify(client, times(1)).sql(contains("FROM fingerprint_sketch_state"));
+        verify(client, never()).sql(contains("WHERE id >"));
+    }
+
     @Test
     @SuppressWarnings("unchecked")
-    void statsShouldReturnZeroStatsWhenTableIsEmpty() {
-        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class);
-        when(client.sql(contains("SELECT"))).thenReturn(spec);
+    void collectShouldNotWaitForRunningLoadAndCountItsRowOnce() {
+        noSnapshot();
+        Sinks.Many<Map<String, Object>> scan = Sinks.many().unicast().onBackpressureBuffer();
+        query("WHERE id >", scan.asFlux());
+        query("full_hash, created_at", seen(1, "other", 1600000000000L), seen(3, "hash123", 1700000000000L));
+        ReactiveInsertOperation.ReactiveInsert<BrowserFingerprint> insertMock =
+                mock(ReactiveInsertOperation.ReactiveInsert.class);
+        when(template.insert(BrowserFingerprint.class)).thenReturn(insertMock);
+        when(insertMock.using(any(BrowserFingerprint.class)))
+                .thenReturn(Mono.just(saved(3)), Mono.just(saved(4)), Mono.empty());
+        query("same_hash_count", columns("total", 4L, "same_hash_count", 2L));
 
-        RowsFetchSpec<BrowserFingerprintStatsResponse> rowsSpec = mock(RowsFetchSpec.class);
-        when(spec.map(any(BiFunction.class))).thenReturn(rowsSpec);
-        when(rowsSpec.one()).thenReturn(Mono.empty());
+        // 扫描还没结束，两次采集都直接 INSERT，即时统计走 SQL
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(service.collect(SAMPLE))
+                    .assertNext(resp -> assertEquals(4, resp.total()))
+                    .verifyComplete();
+        }
+
+        // id = 3 在扫描读到之前已提交，id = 4 没被读到：各计入一次
+        scan.tryEmitNext(fingerprint(1, "other", 20.0));
+        scan.tryEmitNext(fingerprint(3, "hash123", 20.0));
+        scan.tryEmitComplete();
+
+        StepVerifier.create(service.stats())
+                .assertNext(resp -> assertEquals(3, resp.total()))
+                .verifyComplete();
+        StepVerifier.create(service.collect(SAMPLE))
+                .assertNext(resp -> {
+                    assertEquals(4, resp.total());
+                    assertEquals(3L, resp.sameHashCount());
+                })
+                .verifyComplete();
+        verify(client, times(2)).sql(contains("same_hash_count"));
+    }
+
+    @Test
+    void statsShouldReturnZeroStatsWhenTableIsEmpty() {
+        noSnapshot();
+        query("WHERE id >");
+        query("full_hash, created_at");
 
         StepVerifier.create(service.stats())
                 .assertNext(resp -> {
                     assertEquals(0, resp.total());
                     assertEquals(0, resp.uniqueFull());
                     assertEquals(0, resp.avgVisits());
+                    assertEquals(0, resp.avgEntropy());
                 })
                 .verifyComplete();
     }
@@ -180,25 +316,49 @@ class FingerprintServiceTest {
     @Test
     @SuppressWarnings("unchecked")
     void statsShouldHandleZeroUniqueFull() {
-        BrowserFingerprintStatsResponse expected = new BrowserFingerprintStatsResponse(
-                10, 0, 0.0, 5, 5, 5, 5, 5, 5, 3.0);
-
-        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class);
-        when(client.sql(contains("SELECT"))).thenReturn(spec);
-
-        RowsFetchSpec<BrowserFingerprintStatsResponse> rowsSpec = mock(RowsFetchSpec.class);
-        when(spec.map(any(BiFunction.class))).thenReturn(rowsSpec);
-        when(rowsSpec.one()).thenReturn(Mono.just(expected));
+        noSnapshot();
+        Map<String, Object>[] rows = new Map[10];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = fingerprint(i + 1, null, 3.0);
+        }
+        query("WHERE id >", rows);
+        query("full_hash, created_at");
 
         StepVerifier.create(service.stats())
                 .assertNext(resp -> {
                     assertEquals(10, resp.total());
                     assertEquals(0, resp.uniqueFull());
                     assertEquals(0.0, resp.avgVisits());
+                    assertEquals(3.0, resp.avgEntropy());
                 })
                 .verifyComplete();
     }
 
+    @Test
+    void persistShouldSaveSnapshotOnlyWhenChanged() {
+        noSnapshot();
+        query("WHERE id >", fingerprint(1, "a", 20.0), fingerprint(2, "b", 30.0));
+        query("full_hash, created_at");
+        DatabaseClient.GenericExecuteSpec sketches = update("INSERT INTO fingerprint_sketches");
+        DatabaseClient.GenericExecuteSpec state = update("INSERT INTO fingerprint_sketch_state");
+
+        // 草图加载之前不保存
+        service.persist();
+        verify(client, never()).sql(contains("INSERT INTO fingerprint_sketches"));
+
+        StepVerifier.create(service.stats()).expectNextCount(1).verifyComplete();
+        service.persist();
+        service.persist();
+
+        verify(client, times(1)).sql(contains("INSERT INTO fingerprint_sketches"));
+        verify(sketches).bind(0, "full_hash");
+        verify(sketches).bind(12, "platform");
+        verify(state).bind(0, 2L);
+        verify(state).bind(1, 2L);
+        verify(state).bind(2, 50.0);
+        verify(state).bind(3, 2L);
+    }
+
     @SuppressWarnings("unchecked")
     private void mockInsertSuccess() {
         ReactiveInsertOperation.ReactiveInsert<BrowserFingerprint> insertMock =
@@ -208,25 +368,92 @@ class FingerprintServiceTest {
                 .thenReturn(Mono.empty());
     }
 
-    @SuppressWarnings("unchecked")
-    private void mockSqlCollectResponse(BrowserFingerprintCollectResponse expected) {
+    private void noSnapshot() {
+        query("FROM fingerprint_sketch_state");
+    }
+
+    private DatabaseClient.GenericExecuteSpec spec(String fragment) {
         DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class);
-        when(client.sql(contains("SELECT"))).thenReturn(spec);
-        when(spec.bind(eq("full_hash"), any())).thenReturn(spec);
+        lenient().when(client.sql(contains(fragment))).thenReturn(spec);
+        lenient().when(spec.bind(anyInt(), any())).thenReturn(spec);
+        lenient().when(spec.bind(anyString(), any())).thenReturn(spec);
+        return spec;
+    }
 
-        RowsFetchSpec<BrowserFingerprintCollectResponse> rowsSpec = mock(RowsFetchSpec.class);
-        when(spec.map(any(BiFunction.class))).thenReturn(rowsSpec);
-        when(rowsSpec.one()).thenReturn(Mono.just(expected));
+    /** 查询返回给定的行；映射函数作用在按列名取值的 Row 上。 */
+    @SafeVarargs
+    private DatabaseClient.GenericExecuteSpec query(String fragment, Map<String, Object>... rows) {
+        return query(fragment, Flux.fromArray(rows));
     }
 
     @SuppressWarnings("unchecked")
-    private void mockSqlChain() {
-        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class);
-        when(client.sql(anyString())).thenReturn(spec);
-        when(spec.bind(anyString(), any())).thenReturn(spec);
+    private DatabaseClient.GenericExecuteSpec query(String fragment, Flux<Map<String, Object>> rows) {
+        DatabaseClient.GenericExecuteSpec spec = spec(fragment);
+        lenient().when(spec.map(any(BiFunction.class))).thenAnswer(invocation -> {
+            BiFunction<Row, RowMetadata, Object> mapper = invocation.getArgument(0);
+            Flux<Object> mapped = rows.map(columns -> mapper.apply(row(columns), null));
+            RowsFetchSpec<Object> fetch = mock(RowsFetchSpec.class);
+            lenient().when(fetch.all()).thenReturn(mapped);
+            lenient().when(fetch.one()).thenReturn(mapped.next());
+            return fetch;
+        });
+        return spec;
+    }
 
-        RowsFetchSpec<Object> rowsSpec = mock(RowsFetchSpec.class);
-        when(rowsSpec.one()).thenReturn(Mono.empty());
-        when(spec.map(any(BiFunction.class))).thenReturn(rowsSpec);
+    @SuppressWarnings("unchecked")
+    private DatabaseClient.GenericExecuteSpec update(String fragment) {
+        DatabaseClient.GenericExecuteSpec spec = spec(fragment);
+        FetchSpec<Map<String, Object>> fetch = mock(FetchSpec.class);
+        lenient().when(spec.fetch()).thenReturn(fetch);
+        lenient().when(fetch.rowsUpdated()).thenReturn(Mono.just(1L));
+        return spec;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Row row(Map<String, Object> columns) {
+        Row row = mock(Row.class);
+        lenient().when(row.get(anyString())).thenAnswer(invocation -> columns.get(invocation.<String>getArgument(0)));
+        lenient().when(row.get(anyString(), any(Class.class)))
+                .thenAnswer(invocation -> columns.get(invocation.<String>getArgument(0)));
+        return row;
+    }
+
+    private static Map<String, Object> columns(Object... keyValues) {
+        Map<String, Object> columns = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            columns.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return columns;
+    }
+
+    private static Map<String, Object> seen(String fullHash, long createdAt) {
+        return columns("full_hash", fullHash, "created_at", createdAt);
+    }
+
+    private static Map<String, Object> seen(long id, String fullHash, long createdAt) {
+        return columns("id", id, "full_hash", fullHash, "created_at", createdAt);
+    }
+
+    /** INSERT 返回的、带自增 id 的 SAMPLE。 */
+    private static BrowserFingerprint saved(long id) {
+        return new BrowserFingerprint(id, "hash123", "canvasHash", "fontHash", "webglHash",
+                "1920x1080@24bit", "Asia/Shanghai", "zh-CN", "MacIntel", 8, 8, true, 24, 2.0, 30.0,
+                "1.2.3.4", 1750000000000L + id);
+    }
+
+    private static Map<String, Object> fingerprint(long id, String fullHash, double entropy) {
+        return columns("id", id, "full_hash", fullHash, "canvas_hash", "canvas-" + id,
+                "font_hash", "font", "webgl_hash", "webgl", "timezone", "Asia/Shanghai",
+                "screen_info", "1920x1080", "platform", "MacIntel", "entropy_bits", entropy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object>[] sketchRows(FingerprintSketches.Snapshot snapshot) {
+        List<String> dimensions = FingerprintSketches.DIMENSIONS;
+        Map<String, Object>[] rows = new Map[dimensions.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = columns("dimension", dimensions.get(i), "sketch", snapshot.sketches().get(i));
+        }
+        return rows;
     }
 }
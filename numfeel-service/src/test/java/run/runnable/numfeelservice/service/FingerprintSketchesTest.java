@@ -0,0 +1,108 @@
+package run.runnable.numfeelservice.service;
+
+import run.runnable.numfeelservice.controller.dto.TrackingResponses.BrowserFingerprintStatsResponse;
+import run.runnable.numfeelservice.service.FingerprintSketches.Row;
+import run.runnable.numfeelservice.service.FingerprintSketches.Snapshot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FingerprintSketches 单元测试：快照只包含已结清的计数；从快照恢复并补扫后与一次性全量扫描结果相同。
+ */
+class FingerprintSketchesTest {
+
+    private static Row row(long id) {
+        return new Row(id, "full-" + (id % 7), "canvas-" + (id % 3), null, "webgl",
+                "UTC", "1920x1080", id % 2 == 0 ? "Win32" : "MacIntel", id % 4 == 0 ? null : 10.0 + id);
+    }
+
+    @Test
+    void snapshot_waits_for_pending_inserts() {
+        FingerprintSketches sketches = new FingerprintSketches();
+        sketches.scanned(row(1));
+        sketches.scanned(row(2));
+
+        sketches.beginInsert();
+        sketches.beginInsert();
+        assertEquals(3, sketches.inserted(row(4)));
+        // id = 3 的 INSERT 还没结束，不能把 id ≤ 4 记为已计入
+        Snapshot partial = sketches.snapshot();
+        assertEquals(2, partial.lastId());
+        assertEquals(2, partial.total());
+
+        sketches.abandoned();
+        Snapshot settled = sketches.snapshot();
+        assertEquals(4, settled.lastId());
+        assertEquals(3, settled.total());
+        assertEquals(3, sketches.total());
+    }
+
+    @Test
+    void scan_does_not_settle_while_insert_pending() {
+        FingerprintSketches sketches = new FingerprintSketches();
+        sketches.beginInsert();
+        sketches.reset();
+        sketches.scanned(row(2));
+        // 扫描之外还有一条 INSERT 未完成，它的 id 可能小于 2
+        assertEquals(0, sketches.snapshot().lastId());
+
+        sketches.inserted(row(1));
+        Snapshot settled = sketches.snapshot();
+        assertEquals(2, settled.lastId());
+        assertEquals(2, settled.total());
+    }
+
+    @Test
+    void restore_and_catch_up_matches_full_scan() {
+        FingerprintSketches live = new FingerprintSketches();
+        FingerprintSketches full = new FingerprintSketches();
+        Snapshot snapshot = null;
+        for (long id = 1; id <= 100; id++) {
+            live.beginInsert();
+            live.inserted(row(id));
+            full.scanned(row(id));
+            if (id == 60) {
+                snapshot = live.snapshot();
+            }
+        }
+
+        FingerprintSketches restored = new FingerprintSketches();
+        restored.restore(snapshot);
+        for (long id = snapshot.lastId() + 1; id <= 100; id++) {
+            restored.scanned(row(id));
+        }
+
+        assertEquals(full.stats(), restored.stats());
+        assertEquals(full.stats(), live.stats());
+    }
+
+    @Test
+    void stats_ignore_nulls_like_count_distinct() {
+        FingerprintSketches sketches = new FingerprintSketches();
+        for (long id = 1; id <= 8; id++) {
+            sketches.scanned(row(id));
+        }
+
+        BrowserFingerprintStatsResponse stats = sketches.stats();
+        assertEquals(8, stats.total());
+        assertEquals(7, stats.uniqueFull());
+        assertEquals(1.14, stats.avgVisits());
+        assertEquals(3, stats.uniqueCanvas());
+        assertEquals(0, stats.uniqueFont());
+        assertEquals(1, stats.uniqueWebgl());
+        assertEquals(2, stats.uniquePlatform());
+        // id = 4、8 的熵值为空：(11 + 12 + 13 + 15 + 16 + 17) / 6
+        assertEquals(14.0, stats.avgEntropy());
+        assertEquals(0.0163, stats.uniqueStdError());
+    }
+
+    @Test
+    void empty_sketches_report_zero() {
+        BrowserFingerprintStatsResponse stats = new FingerprintSketches().stats();
+        assertEquals(0, stats.total());
+        assertEquals(0, stats.uniqueFull());
+        assertEquals(0, stats.avgVisits());
+        assertEquals(0, stats.avgEntropy());
+    }
+}
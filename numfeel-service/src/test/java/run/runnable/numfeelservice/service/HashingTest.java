@@ -0,0 +1,54 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hashing 单元测试：查表编码的输出与原先逐字节 toHexString 的实现一致，线程内复用的摘要实例不残留状态。
+ */
+class HashingTest {
+
+    @Test
+    void sha256Hex_matches_reference() throws Exception {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", Hashing.sha256Hex(""));
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(80);
+            for (int k = 0; k < length; k++) {
+                sb.append((char) (random.nextBoolean() ? 'a' + random.nextInt(26) : 0x4e00 + random.nextInt(500)));
+            }
+            String input = sb.toString();
+            assertEquals(reference(input), Hashing.sha256Hex(input), input);
+        }
+    }
+
+    @Test
+    void hex_prefix_and_digest_reuse() throws Exception {
+        byte[] bytes = {0, 1, 15, 16, (byte) 0x7f, (byte) 0x80, (byte) 0xff};
+        assertEquals("00010f107f80ff", Hashing.hex(bytes));
+        assertEquals("00010f", Hashing.hex(bytes, 3));
+        assertEquals("", Hashing.hex(bytes, 0));
+
+        // 上一次用到一半（未调用 digest）的实例，下一次取用时应已被重置
+        Hashing.sha256Digest().update("leftover".getBytes(StandardCharsets.UTF_8));
+        assertEquals(reference("abc"), Hashing.sha256Hex("abc"));
+    }
+
+    /** 原先各服务中的实现。 */
+    static String reference(String input) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : hash) {
+            String h = Integer.toHexString(0xff & b);
+            if (h.length() == 1) hex.append('0');
+            hex.append(h);
+        }
+        return hex.toString();
+    }
+}
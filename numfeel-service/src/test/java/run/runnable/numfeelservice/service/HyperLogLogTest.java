@@ -0,0 +1,48 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HyperLogLog 单元测试：估算误差在标准误差的 4 倍以内，合并等于并集，序列化往返不变。
+ */
+class HyperLogLogTest {
+
+    @Test
+    void estimate_within_error_bounds() {
+        for (int n : new int[]{0, 1, 10, 1_000, 20_000, 300_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < n; i++) {
+                sketch.add("session-" + i);
+                // 重复值不影响结果
+                sketch.add("session-" + i);
+            }
+            double tolerance = Math.max(1, 4 * HyperLogLog.standardError() * n);
+            assertEquals(n, sketch.estimate(), tolerance, "n=" + n);
+        }
+    }
+
+    @Test
+    void merge_is_union_and_bytes_round_trip() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        HyperLogLog both = new HyperLogLog();
+        for (int i = 0; i < 5_000; i++) {
+            String value = "v" + i;
+            (i % 2 == 0 ? a : b).add(value);
+            if (i % 3 == 0) {
+                a.add(value);
+            }
+            both.add(value);
+        }
+        a.merge(b);
+        assertArrayEquals(both.toBytes(), a.toBytes());
+
+        HyperLogLog restored = HyperLogLog.fromBytes(a.toBytes());
+        assertEquals(a.estimate(), restored.estimate());
+        assertTrue(HyperLogLog.fromBytes(null).isEmpty());
+        assertTrue(HyperLogLog.fromBytes(new byte[3]).isEmpty());
+        assertFalse(restored.isEmpty());
+    }
+}
@@ -0,0 +1,229 @@
+package run.runnable.numfeelservice.service;
+
+import run.runnable.numfeelservice.model.GameplayEntities.KeystrokeProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KeystrokeIndex 单元测试：剪枝后的最近邻与逐对暴力比较的结果一致；
+ * ε = 0、预算不限时同长度样本上的 VP 树查询与精确扫描一致；带备忘的查询在持续写入下与重新扫描一致；
+ * 分步查询与召回报告只看准备时的快照。
+ */
+class KeystrokeIndexTest {
+
+    @Test
+    void nearest_matches_brute_force() {
+        Random random = new Random(17);
+        List<KeystrokeProfile> rows = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String session = "s-" + random.nextInt(120);
+            rows.add(new KeystrokeProfile((long) i, session, 0, "t",
+                    randomArray(random, 60, 180, 5 + random.nextInt(20)),
+                    randomArray(random, 80, 600, random.nextInt(4) == 0 ? 0 : 4 + random.nextInt(20)),
+                    1000, 0, random.nextInt(1_000_000)));
+        }
+        KeystrokeIndex index = KeystrokeIndex.of(rows);
+
+        for (int s = 0; s < 120; s++) {
+            String session = "s-" + s;
+            KeystrokeIndex.Match match = index.nearest(session);
+            double expected = bruteForceNearest(rows, session);
+            if (expected < 0) {
+                assertEquals(-1, match.distance(), session);
+            } else {
+                assertEquals(expected, match.distance(), 1e-9, session);
+                final double d = match.distance();
+                // 回告的时间戳属于某个距离恰为最小值的 session
+                assertTrue(rows.stream().anyMatch(r -> !r.sessionId().equals(session)
+                        && r.createdAt() == match.lastSeenAt()
+                        && bruteForceBetween(rows, session, r.sessionId()) == d), session);
+            }
+        }
+    }
+
+    @Test
+    void averages_and_counts() {
+        KeystrokeIndex index = KeystrokeIndex.of(List.of(
+                new KeystrokeProfile(1L, "a", 0, "t", "[100,200]", "[300]", 1000, 0, 1L),
+                new KeystrokeProfile(2L, "a", 1, "t", "bad", "[]", 3000, 0, 2L)));
+
+        assertEquals(2, index.size());
+        assertEquals(150.0, index.avgHold());
+        assertEquals(300.0, index.avgInterval());
+        assertEquals(2000.0, index.avgTotalMs());
+        assertEquals(2, index.sampleCount("a"));
+        assertEquals(0, index.sampleCount("b"));
+        assertEquals(KeystrokeIndex.Match.NONE, index.nearest("a"));
+    }
+
+    @Test
+    void cached_nearest_tracks_interleaved_adds() {
+        Random random = new Random(31);
+        KeystrokeIndex index = new KeystrokeIndex();
+        for (int i = 0; i < 600; i++) {
+            index.add(new KeystrokeProfile((long) i, "s-" + random.nextInt(60), 0, "t",
+                    randomArray(random, 60, 180, 5 + random.nextInt(10)),
+                    randomArray(random, 80, 600, 4 + random.nextInt(10)),
+                    1000, 0, i));
+            if (i % 7 == 0) {
+                // 每次写入后轮流查询若干 session，覆盖增量比较与自己提交后的整体重算
+                for (int s = i % 5; s < 60; s += 5) {
+                    String session = "s-" + s;
+                    assertEquals(index.nearest(session), index.nearestCached(session), session);
+                }
+            }
+        }
+    }
+
+    @Test
+    void split_lookup_scans_snapshot_taken_at_prepare() {
+        Random random = new Random(43);
+        KeystrokeIndex index = new KeystrokeIndex();
+        KeystrokeIndex before = new KeystrokeIndex();
+        for (int i = 0; i < 50; i++) {
+            KeystrokeProfile row = new KeystrokeProfile((long) i, "s-" + random.nextInt(10), 0, "t",
+                    randomArray(random, 60, 180, 8), randomArray(random, 80, 600, 7), 1000, 0, i);
+            index.add(row);
+            before.add(row);
+        }
+        KeystrokeIndex.Lookup lookup = index.prepareNearest("s-0");
+        // 准备之后的写入触发列数组扩容，快照仍只看到准备时的 50 个样本
+        for (int i = 50; i < 400; i++) {
+            index.add(new KeystrokeProfile((long) i, "s-" + random.nextInt(20), 0, "t",
+                    randomArray(random, 60, 180, 8), randomArray(random, 80, 600, 7), 1000, 0, i));
+        }
+        assertEquals(before.nearest("s-0").distance(), lookup.run().finish().distance(), 1e-9);
+        assertEquals(index.nearest("s-0"), index.nearestCached("s-0"));
+    }
+
+    @Test
+    void totals_refresh_after_add() {
+        KeystrokeIndex index = KeystrokeIndex.of(List.of(
+                new KeystrokeProfile(1L, "a", 0, "t", "[100,201]", "[300]", 1000, 0, 1L)));
+        KeystrokeIndex.Totals first = index.totals();
+        assertSame(first, index.totals());
+        assertEquals(new KeystrokeIndex.Totals(1, 1000, 150.5, 300.0), first);
+
+        index.add(new KeystrokeProfile(2L, "b", 0, "t", "[50]", "[100]", 2001, 0, 2L));
+        assertEquals(new KeystrokeIndex.Totals(2, 1501, 117.0, 200.0), index.totals());
+    }
+
+    @Test
+    void approximate_with_zero_epsilon_matches_exact_on_equal_lengths() {
+        Random random = new Random(23);
+        KeystrokeIndex index = new KeystrokeIndex(0, Integer.MAX_VALUE);
+        // 远超组内缓冲区，覆盖多棵树合并后的查询
+        for (int i = 0; i < 1500; i++) {
+            index.add(new KeystrokeProfile((long) i, "s-" + random.nextInt(400), 0, "t",
+                    randomArray(random, 60, 180, 12), randomArray(random, 80, 600, 11),
+                    1000, 0, i));
+        }
+        assertTrue(index.approximate());
+
+        for (int s = 0; s < 400; s++) {
+            String session = "s-" + s;
+            KeystrokeIndex.Match exact = index.nearest(session);
+            KeystrokeIndex.Match approx = index.nearestApprox(session);
+            assertEquals(exact.distance(), approx.distance(), 1e-9, session);
+        }
+        KeystrokeIndex.AnnReport report = index.annReport(50);
+        assertEquals(1500, report.totalSamples());
+        assertEquals(50, report.sessions());
+        assertEquals(1.0, report.recall());
+    }
+
+    @Test
+    void ann_report_runs_on_snapshot_taken_at_prepare() {
+        Random random = new Random(47);
+        KeystrokeIndex index = new KeystrokeIndex(0, Integer.MAX_VALUE);
+        KeystrokeIndex before = new KeystrokeIndex(0, Integer.MAX_VALUE);
+        for (int i = 0; i < 300; i++) {
+            KeystrokeProfile row = new KeystrokeProfile((long) i, "s-" + random.nextInt(80), 0, "t",
+                    randomArray(random, 60, 180, 10), randomArray(random, 80, 600, 9), 1000, 0, i);
+            index.add(row);
+            before.add(row);
+        }
+        KeystrokeIndex.AnnReportRun run = index.prepareAnnReport(40);
+        // 准备之后的写入让缓冲区合并成新树、列数组扩容，报告仍只基于准备时的 300 个样本
+        for (int i = 300; i < 1200; i++) {
+            index.add(new KeystrokeProfile((long) i, "s-" + random.nextInt(200), 0, "t",
+                    randomArray(random, 60, 180, 10), randomArray(random, 80, 600, 9), 1000, 0, i));
+        }
+        KeystrokeIndex.AnnReport report = run.run();
+        KeystrokeIndex.AnnReport expected = before.annReport(40);
+        assertEquals(300, report.totalSamples());
+        assertEquals(expected.sessions(), report.sessions());
+        assertEquals(1.0, report.recall());
+    }
+
+    @Test
+    void approximate_falls_back_to_exact_without_same_length_samples() {
+        KeystrokeIndex index = new KeystrokeIndex(0.1, 512);
+        index.add(new KeystrokeProfile(1L, "a", 0, "t", "[100,120,140]", "[300,310]", 1000, 0, 1L));
+        index.add(new KeystrokeProfile(2L, "b", 0, "t", "[100,120,150,90]", "[300,320,280]", 1000, 0, 2L));
+
+        KeystrokeIndex.Match exact = index.nearest("a");
+        assertEquals(exact, index.nearestApprox("a"));
+        assertEquals(2L, exact.lastSeenAt());
+    }
+
+    private static double bruteForceNearest(List<KeystrokeProfile> rows, String session) {
+        double best = Double.MAX_VALUE;
+        for (KeystrokeProfile other : rows) {
+            if (!other.sessionId().equals(session)) {
+                double d = bruteForceBetween(rows, session, other.sessionId());
+                if (d >= 0 && d < best) {
+                    best = d;
+                }
+            }
+        }
+        return best == Double.MAX_VALUE ? -1 : best;
+    }
+
+    private static double bruteForceBetween(List<KeystrokeProfile> rows, String a, String b) {
+        double best = Double.MAX_VALUE;
+        for (KeystrokeProfile x : rows) {
+            if (!x.sessionId().equals(a)) continue;
+            for (KeystrokeProfile y : rows) {
+                if (!y.sessionId().equals(b)) continue;
+                List<Integer> xh = KeystrokeService.parseList(x.holdTimes());
+                List<Integer> xi = KeystrokeService.parseList(x.intervals());
+                List<Integer> yh = KeystrokeService.parseList(y.holdTimes());
+                List<Integer> yi = KeystrokeService.parseList(y.intervals());
+                if (xh.isEmpty() || xi.isEmpty() || yh.isEmpty() || yi.isEmpty()) continue;
+                best = Math.min(best, distance(xh, xi, yh, yi));
+            }
+        }
+        return best == Double.MAX_VALUE ? -1 : best;
+    }
+
+    private static double distance(List<Integer> h1, List<Integer> i1, List<Integer> h2, List<Integer> i2) {
+        int nh = Math.min(h1.size(), h2.size());
+        double holdSum = 0;
+        for (int k = 0; k < nh; k++) {
+            double d = (h1.get(k) - h2.get(k)) / 200.0;
+            holdSum += d * d;
+        }
+        int ni = Math.min(i1.size(), i2.size());
+        double intSum = 0;
+        for (int k = 0; k < ni; k++) {
+            double d = (i1.get(k) - i2.get(k)) / 500.0;
+            intSum += d * d;
+        }
+        return 0.6 * Math.sqrt(holdSum / nh) + 0.4 * (ni > 0 ? Math.sqrt(intSum / ni) : 0);
+    }
+
+    private static String randomArray(Random random, int min, int max, int length) {
+        StringJoiner joiner = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < length; i++) {
+            joiner.add(String.valueOf(min + random.nextInt(max - min)));
+        }
+        return joiner.toString();
+    }
+}
@@ -1,6 +1,5 @@
 package run.runnable.numfeelservice.service;
 
-import run.runnable.numfeelservice.controller.dto.GameplayResponses.KeystrokeStatsResponse;
 import run.runnable.numfeelservice.model.GameplayEntities.KeystrokeProfile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,11 +8,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.r2dbc.core.ReactiveInsertOperation;
-import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.core.ReactiveSelectOperation;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
-import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,14 +25,11 @@ class KeystrokeServiceTest {
     @Mock
     private R2dbcEntityTemplate template;
 
-    @Mock
-    private DatabaseClient db;
-
     private KeystrokeService service;
 
     @BeforeEach
     void setUp() {
-        service = new KeystrokeService(template, db);
+        service = new KeystrokeService(template, false, 0.1, 512, "");
     }
 
     private static KeystrokeProfile toProfile(long id, String sessionId, int sampleIndex,
@@ -75,64 +71,173 @@ class KeystrokeServiceTest {
                 .verifyError(RuntimeException.class);
     }
 
+    @SuppressWarnings("unchecked")
+    private void mockSelectAll(KeystrokeProfile... rows) {
+        ReactiveSelectOperation.ReactiveSelect<KeystrokeProfile> selectMock =
+                mock(ReactiveSelectOperation.ReactiveSelect.class);
+        when(template.select(KeystrokeProfile.class)).thenReturn(selectMock);
+        when(selectMock.all()).thenReturn(Flux.just(rows));
+    }
+
     @Test
-    void aggregateStatsShouldReturnAggregatedData() {
-        List<KeystrokeProfile> rows = List.of(
+    void indexShouldAggregateTotalsAndNearest() {
+        KeystrokeIndex index = KeystrokeIndex.of(List.of(
                 toProfile(1L, "s-a", 0, "[100,100,100]", "[200,200]", 9000, 0, 1_000_000L),
                 toProfile(2L, "s-a", 1, "[100,100,100]", "[200,200]", 9000, 0, 1_100_000L),
                 toProfile(3L, "s-b", 0, "[60,60,60]", "[120,120]", 5000, 2, 2_000_000L)
-        );
-        KeystrokeStatsResponse resp =
-                KeystrokeService.aggregateStats(rows, 3, 7666.7, "s-a");
-        assertEquals(3, resp.totalSamples());
-        assertEquals(7666.7, resp.avgTotalMs(), 0.1);
-        assertEquals(86.7, resp.avgHoldMs(), 0.1);
-        assertEquals(173.3, resp.avgIntervalMs(), 0.1);
-        assertEquals(2, resp.sampleCount());
+        ));
+        KeystrokeIndex.Totals totals = index.totals();
+        assertEquals(3, totals.samples());
+        assertEquals(7667.0, totals.avgTotalMs());
+        assertEquals(86.7, totals.avgHoldMs());
+        assertEquals(173.3, totals.avgIntervalMs());
+        assertEquals(2, index.sampleCount("s-a"));
         // s-a 与 s-b：hold 差 40（归一化 /200 → 0.2），interval 差 80（/500 → 0.16）
-        // 0.6*0.2 + 0.4*0.16 = 0.184 → 0.2
-        assertEquals(0.2, resp.nearestDistance(), 0.01);
-        // 距离 0.2 ≤ 识别阈值 0.5 → 判定同一人此前来过，回告 s-b 最近提交时间
-        assertEquals(2_000_000L, resp.lastSeenAt());
+        // 0.6*0.2 + 0.4*0.16 = 0.184
+        KeystrokeIndex.Match match = index.nearestCached("s-a");
+        assertEquals(0.184, match.distance(), 1e-9);
+        assertEquals(2_000_000L, match.lastSeenAt());
     }
 
     @Test
-    void aggregateStatsShouldNotIdentifyWhenDistanceTooLarge() {
-        List<KeystrokeProfile> rows = List.of(
+    void indexShouldReturnNoMatchWhenNoOthers() {
+        KeystrokeIndex index = KeystrokeIndex.of(List.of(
+                toProfile(1L, "s-a", 0, "[100]", "[200]", 1000, 0, 1_000_000L)
+        ));
+        assertEquals(1, index.sampleCount("s-a"));
+        assertEquals(KeystrokeIndex.Match.NONE, index.nearestCached("s-a"));
+    }
+
+    @Test
+    void statsShouldIdentifyWithinThreshold() {
+        mockSelectAll(
                 toProfile(1L, "s-a", 0, "[100,100,100]", "[200,200]", 9000, 0, 1_000_000L),
                 toProfile(2L, "s-a", 1, "[100,100,100]", "[200,200]", 9000, 0, 1_100_000L),
-                toProfile(3L, "s-b", 0, "[600,600,600]", "[200,200]", 9000, 0, 2_000_000L)
-        );
-        KeystrokeStatsResponse resp =
-                KeystrokeService.aggregateStats(rows, 3, 9000, "s-a");
-        // hold 差 500（/200 → 2.5）→ 0.6*2.5 = 1.5 > 0.5 → 不识别
-        assertEquals(1.5, resp.nearestDistance(), 0.01);
-        assertEquals(-1, resp.lastSeenAt());
+                toProfile(3L, "s-b", 0, "[60,60,60]", "[120,120]", 5000, 2, 2_000_000L));
+
+        StepVerifier.create(service.stats("s-a"))
+                .assertNext(resp -> {
+                    assertEquals(3, resp.totalSamples());
+                    assertEquals(2, resp.sampleCount());
+                    // 0.184 → 0.2 ≤ 识别阈值 0.5 → 判定同一人此前来过，回告 s-b 最近提交时间
+                    assertEquals(0.2, resp.nearestDistance());
+                    assertEquals(2_000_000L, resp.lastSeenAt());
+                })
+                .verifyComplete();
     }
 
     @Test
-    void aggregateStatsShouldHandleEmptyData() {
-        KeystrokeStatsResponse resp =
-                KeystrokeService.aggregateStats(Collections.emptyList(), 0, 0, "s-a");
-        assertEquals(0, resp.totalSamples());
-        assertEquals(0.0, resp.avgTotalMs());
-        assertEquals(0.0, resp.avgHoldMs());
-        assertEquals(0.0, resp.avgIntervalMs());
-        assertEquals(-1, resp.nearestDistance());
-        assertEquals(0, resp.sampleCount());
-        assertEquals(-1, resp.lastSeenAt());
+    void statsShouldNotIdentifyWhenDistanceTooLarge() {
+        mockSelectAll(
+                toProfile(1L, "s-a", 0, "[100,100,100]", "[200,200]", 9000, 0, 1_000_000L),
+                toProfile(2L, "s-a", 1, "[100,100,100]", "[200,200]", 9000, 0, 1_100_000L),
+                toProfile(3L, "s-b", 0, "[600,600,600]", "[200,200]", 9000, 0, 2_000_000L));
+
+        StepVerifier.create(service.stats("s-a"))
+                .assertNext(resp -> {
+                    // hold 差 500（/200 → 2.5）→ 0.6*2.5 = 1.5 > 0.5 → 不识别
+                    assertEquals(1.5, resp.nearestDistance(), 0.01);
+                    assertEquals(-1, resp.lastSeenAt());
+                })
+                .verifyComplete();
     }
 
     @Test
-    void aggregateStatsShouldReturnNearestMinusOneWhenNoOthers() {
-        List<KeystrokeProfile> rows = List.of(
-                toProfile(1L, "s-a", 0, "[100]", "[200]", 1000, 0, 1_000_000L)
-        );
-        KeystrokeStatsResponse resp =
-                KeystrokeService.aggregateStats(rows, 1, 1000, "s-a");
-        assertEquals(1, resp.sampleCount());
-        assertEquals(-1, resp.nearestDistance());
-        assertEquals(-1, resp.lastSeenAt());
+    void statsShouldHandleEmptyData() {
+        mockSelectAll();
+
+        StepVerifier.create(service.stats("s-a"))
+                .assertNext(resp -> {
+                    assertEquals(0, resp.totalSamples());
+                    assertEquals(0.0, resp.avgTotalMs());
+                    assertEquals(0.0, resp.avgHoldMs());
+                    assertEquals(0.0, resp.avgIntervalMs());
+                    assertEquals(-1, resp.nearestDistance());
+                    assertEquals(0, resp.sampleCount());
+                    assertEquals(-1, resp.lastSeenAt());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void statsShouldScanOnceAndIncludeLaterSubmits() {
+        ReactiveSelectOperation.ReactiveSelect<KeystrokeProfile> selectMock =
+                mock(ReactiveSelectOperation.ReactiveSelect.class);
+        when(template.select(KeystrokeProfile.class)).thenReturn(selectMock);
+        when(selectMock.all()).thenReturn(Flux.just(
+                toProfile(1L, "s-a", 0, "[100,100,100]", "[200,200]", 9000, 0, 1_000_000L),
+                toProfile(2L, "s-b", 0, "[60,60,60]", "[120,120]", 5000, 2, 2_000_000L)));
+        ReactiveInsertOperation.ReactiveInsert<KeystrokeProfile> insertMock =
+                mock(ReactiveInsertOperation.ReactiveInsert.class);
+        when(template.insert(KeystrokeProfile.class)).thenReturn(insertMock);
+        when(insertMock.using(any(KeystrokeProfile.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        StepVerifier.create(service.stats("s-a"))
+                .assertNext(resp -> {
+                    assertEquals(2, resp.totalSamples());
+                    assertEquals(7000.0, resp.avgTotalMs());
+                    assertEquals(0.2, resp.nearestDistance(), 0.01);
+                })
+                .verifyComplete();
+        StepVerifier.create(service.submit("s-c", 0, "abc123", "[100,100,100]", "[200,200]", 4000, 0))
+                .verifyComplete();
+        StepVerifier.create(service.stats("s-a"))
+                .assertNext(resp -> {
+                    assertEquals(3, resp.totalSamples());
+                    assertEquals(6000.0, resp.avgTotalMs());
+                    assertEquals(0.0, resp.nearestDistance());
+                })
+                .verifyComplete();
+        verify(selectMock, times(1)).all();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void statsShouldReflectOwnSubmitImmediately() {
+        ReactiveSelectOperation.ReactiveSelect<KeystrokeProfile> selectMock =
+                mock(ReactiveSelectOperation.ReactiveSelect.class);
+        when(template.select(KeystrokeProfile.class)).thenReturn(selectMock);
+        when(selectMock.all()).thenReturn(Flux.just(
+                toProfile(1L, "s-a", 0, "[100,100,100]", "[200,200]", 9000, 0, 1_000_000L),
+                toProfile(2L, "s-b", 0, "[600,600,600]", "[200,200]", 5000, 2, 2_000_000L)));
+        ReactiveInsertOperation.ReactiveInsert<KeystrokeProfile> insertMock =
+                mock(ReactiveInsertOperation.ReactiveInsert.class);
+        when(template.insert(KeystrokeProfile.class)).thenReturn(insertMock);
+        when(insertMock.using(any(KeystrokeProfile.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        StepVerifier.create(service.stats("s-a"))
+                .assertNext(resp -> {
+                    assertEquals(1, resp.sampleCount());
+                    assertEquals(1.5, resp.nearestDistance(), 0.01);
+                })
+                .verifyComplete();
+        // s-a 自己的第二个样本与 s-b 完全相同：样本数与最近距离都要立刻更新
+        StepVerifier.create(service.submit("s-a", 1, "abc123", "[600,600,600]", "[200,200]", 5000, 0))
+                .verifyComplete();
+        StepVerifier.create(service.stats("s-a"))
+                .assertNext(resp -> {
+                    assertEquals(2, resp.sampleCount());
+                    assertEquals(0.0, resp.nearestDistance());
+                    assertEquals(2_000_000L, resp.lastSeenAt());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void annReportRequiresAnnAndMatchingToken() {
+        assertFalse(service.annReportAvailable());
+        assertFalse(service.annReportAuthorized(""));
+
+        KeystrokeService noAnn = new KeystrokeService(template, false, 0.1, 512, "secret");
+        assertFalse(noAnn.annReportAvailable());
+        assertFalse(noAnn.annReportAuthorized("secret"));
+
+        KeystrokeService gated = new KeystrokeService(template, true, 0.1, 512, "secret");
+        assertTrue(gated.annReportAvailable());
+        assertTrue(gated.annReportAuthorized("secret"));
+        assertFalse(gated.annReportAuthorized("secre"));
+        assertFalse(gated.annReportAuthorized(null));
     }
 
     @Test
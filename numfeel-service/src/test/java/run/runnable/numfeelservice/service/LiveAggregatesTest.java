@@ -0,0 +1,273 @@
+package run.runnable.numfeelservice.service;
+
+import run.runnable.numfeelservice.model.GameplayEntities.MonkeyStat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.core.ReactiveDeleteOperation;
+import org.springframework.data.r2dbc.core.ReactiveInsertOperation;
+import org.springframework.data.r2dbc.core.ReactiveSelectOperation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * LiveAggregates 单元测试：初始扫描只做一次、写入增量并入、扫描或作废与写入交错时不重复计数。
+ */
+@ExtendWith(MockitoExtension.class)
+class LiveAggregatesTest {
+
+    @Mock
+    private R2dbcEntityTemplate template;
+
+    private LiveAggregates<MonkeyStat> aggregates;
+    private LiveAggregates.Counter<MonkeyStat> successes;
+    private LiveAggregates.Summary<MonkeyStat> length;
+    private LiveAggregates.GroupCount<MonkeyStat, String> targets;
+    private LiveAggregates.TopK<MonkeyStat> longest;
+    private LiveAggregates.Median<MonkeyStat> medianLength;
+
+    @BeforeEach
+    void setUp() {
+        LiveAggregates.Builder<MonkeyStat> builder = LiveAggregates.builder(template, MonkeyStat.class);
+        successes = builder.count(MonkeyStat::success);
+        length = builder.summary(MonkeyStat::targetLength);
+        targets = builder.countBy(MonkeyStat::targetText);
+        longest = builder.top(3, Comparator.comparingInt(MonkeyStat::targetLength).reversed(), MonkeyStat::success);
+        medianLength = builder.median(MonkeyStat::targetLength);
+        aggregates = builder.build();
+    }
+
+    private static MonkeyStat row(long id, String text, boolean success) {
+        return new MonkeyStat(id, text, text.length(), 10, 10, success, 1, id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReactiveSelectOperation.ReactiveSelect<MonkeyStat> stubSelect(List<MonkeyStat> rows) {
+        ReactiveSelectOperation.ReactiveSelect<MonkeyStat> selectMock = mock(ReactiveSelectOperation.ReactiveSelect.class);
+        when(template.select(MonkeyStat.class)).thenReturn(selectMock);
+        when(selectMock.all()).thenReturn(Flux.fromIterable(rows));
+        return selectMock;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubInsertEcho() {
+        ReactiveInsertOperation.ReactiveInsert<MonkeyStat> insertMock = mock(ReactiveInsertOperation.ReactiveInsert.class);
+        when(template.insert(MonkeyStat.class)).thenReturn(insertMock);
+        when(insertMock.using(any(MonkeyStat.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+    }
+
+    @Test
+    void scans_table_once_and_applies_later_inserts() {
+        ReactiveSelectOperation.ReactiveSelect<MonkeyStat> selectMock = stubSelect(List.of(
+                row(1, "ab", true), row(2, "abcd", false), row(3, "abc", true)));
+        stubInsertEcho();
+
+        StepVerifier.create(aggregates.read(() -> aggregates.count() + "/" + successes.get()))
+                .expectNext("3/2")
+                .verifyComplete();
+        StepVerifier.create(aggregates.insert(row(4, "abcde", true)))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(aggregates.read(() -> List.of(aggregates.count(), successes.get(), targets.get("abcde"))))
+                .expectNext(List.of(4L, 3L, 1L))
+                .verifyComplete();
+
+        verify(selectMock, times(1)).all();
+    }
+
+    @Test
+    void summary_group_top_and_median_match_full_scan() {
+        Random random = new Random(7);
+        List<MonkeyStat> rows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            rows.add(row(i, "x".repeat(1 + random.nextInt(20)), random.nextBoolean()));
+        }
+        stubSelect(rows);
+
+        StepVerifier.create(aggregates.read(() -> {
+                    assertEquals(rows.size(), aggregates.count());
+                    assertEquals(rows.stream().filter(MonkeyStat::success).count(), successes.get());
+                    assertEquals(rows.stream().mapToInt(MonkeyStat::targetLength).average().orElse(0), length.mean(), 1e-9);
+                    assertEquals(rows.stream().mapToInt(MonkeyStat::targetLength).min().orElse(0), length.min());
+                    assertEquals(rows.stream().mapToInt(MonkeyStat::targetLength).max().orElse(0), length.max());
+                    assertEquals(rows.stream().filter(r -> r.targetLength() == 5).count(), targets.get("xxxxx"));
+                    assertEquals(ServiceSupport.countBy(rows, MonkeyStat::targetText), targets.snapshot());
+
+                    List<MonkeyStat> expectedTop = rows.stream().filter(MonkeyStat::success)
+                            .sorted(Comparator.comparingInt(MonkeyStat::targetLength).reversed())
+                            .limit(3).toList();
+                    assertEquals(expectedTop, longest.first(10));
+                    assertEquals(expectedTop.subList(0, 1), longest.first(1));
+
+                    int[] sorted = rows.stream().mapToInt(MonkeyStat::targetLength).sorted().toArray();
+                    assertEquals((sorted[249] + sorted[250]) / 2.0, medianLength.get());
+                    return true;
+                }))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void empty_table_reads_zeroes() {
+        stubSelect(List.of());
+
+        StepVerifier.create(aggregates.read(() -> List.of(aggregates.count(), length.mean(), length.max(),
+                        medianLength.get(), targets.mostFrequentOrDefault("-"), longest.first(3))))
+                .expectNext(List.of(0L, 0.0, 0.0, 0.0, "-", List.of()))
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void insert_before_scan_is_counted_once_by_the_scan() {
+        Sinks.One<MonkeyStat> pendingInsert = Sinks.one();
+        ReactiveInsertOperation.ReactiveInsert<MonkeyStat> insertMock = mock(ReactiveInsertOperation.ReactiveInsert.class);
+        when(template.insert(MonkeyStat.class)).thenReturn(insertMock);
+        when(insertMock.using(any(MonkeyStat.class))).thenReturn(pendingInsert.asMono());
+        MonkeyStat inserted = row(1, "ab", true);
+
+        List<MonkeyStat> result = new ArrayList<>();
+        aggregates.insert(inserted).subscribe(result::add);
+        Mono<Long> count = aggregates.read(aggregates::count);
+
+        // INSERT 还没结束，扫描不能开始，否则可能读不到这一行
+        verify(template, never()).select(MonkeyStat.class);
+
+        stubSelect(List.of(inserted));
+        pendingInsert.tryEmitValue(inserted);
+
+        StepVerifier.create(count).expectNext(1L).verifyComplete();
+        assertEquals(List.of(inserted), result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failed_scan_is_retried_on_next_read() {
+        ReactiveSelectOperation.ReactiveSelect<MonkeyStat> selectMock = mock(ReactiveSelectOperation.ReactiveSelect.class);
+        when(template.select(MonkeyStat.class)).thenReturn(selectMock);
+        when(selectMock.all())
+                .thenReturn(Flux.concat(Flux.just(row(1, "ab", true)), Flux.error(new RuntimeException("db down"))))
+                .thenReturn(Flux.just(row(1, "ab", true), row(2, "abc", false)));
+
+        StepVerifier.create(aggregates.read(aggregates::count))
+                .verifyErrorMessage("db down");
+        StepVerifier.create(aggregates.read(() -> Map.of("count", aggregates.count(), "ok", successes.get())))
+                .expectNext(Map.of("count", 2L, "ok", 1L))
+                .verifyComplete();
+    }
+
+    @Test
+    void rank_and_best_by_key_follow_inserts_without_rescanning() {
+        LiveAggregates.Builder<MonkeyStat> builder = LiveAggregates.builder(template, MonkeyStat.class);
+        LiveAggregates.IntRank<MonkeyStat> lengthRank = builder.rank(MonkeyStat::targetLength, 0, 3);
+        LiveAggregates.DoubleRank<MonkeyStat> attemptRank = builder.rank(row -> row.totalAttempts() / 2.0);
+        LiveAggregates.BestByKey<MonkeyStat, String> bestById = builder.bestBy(MonkeyStat::targetText,
+                MonkeyStat::createdAt);
+        LiveAggregates<MonkeyStat> ranked = builder.build();
+        ReactiveSelectOperation.ReactiveSelect<MonkeyStat> selectMock = stubSelect(List.of(
+                row(1, "ab", true), row(2, "abcd", false), row(3, "ab", true)));
+        stubInsertEcho();
+
+        StepVerifier.create(ranked.read(ranked::count)).expectNext(3L).verifyComplete();
+        StepVerifier.create(ranked.insert(row(4, "abcde", true))
+                        .then(ranked.read(() -> List.of(
+                                lengthRank.countAbove(2), lengthRank.countBelow(4), attemptRank.countBelow(5.0),
+                                (long) bestById.keys(), bestById.best("ab").createdAt(), bestById.countAbove(2)))))
+                .expectNext(List.of(2L, 2L, 0L, 3L, 3L, 2L))
+                .verifyComplete();
+        StepVerifier.create(ranked.read(() -> bestById.top(2, Comparator.comparingLong(MonkeyStat::createdAt))))
+                .expectNext(List.of(row(2, "abcd", false), row(3, "ab", true)))
+                .verifyComplete();
+
+        verify(selectMock, times(1)).all();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteAll_clears_every_aggregate() {
+        ReactiveSelectOperation.ReactiveSelect<MonkeyStat> selectMock = mock(ReactiveSelectOperation.ReactiveSelect.class);
+        when(template.select(MonkeyStat.class)).thenReturn(selectMock);
+        when(selectMock.all())
+                .thenReturn(Flux.just(row(1, "ab", true), row(2, "abc", true)))
+                .thenReturn(Flux.empty());
+        ReactiveDeleteOperation.ReactiveDelete deleteMock = mock(ReactiveDeleteOperation.ReactiveDelete.class);
+        when(template.delete(MonkeyStat.class)).thenReturn(deleteMock);
+        when(deleteMock.all()).thenReturn(Mono.just(2L));
+
+        StepVerifier.create(aggregates.read(aggregates::count)).expectNext(2L).verifyComplete();
+        StepVerifier.create(aggregates.deleteAll()).verifyComplete();
+        StepVerifier.create(aggregates.read(() -> List.of(aggregates.count(), successes.get(), (long) targets.groups())))
+                .expectNext(List.of(0L, 0L, 0L))
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void invalidate_during_insert_counts_the_row_once() {
+        ReactiveSelectOperation.ReactiveSelect<MonkeyStat> selectMock = mock(ReactiveSelectOperation.ReactiveSelect.class);
+        when(template.select(MonkeyStat.class)).thenReturn(selectMock);
+        MonkeyStat inserted = row(2, "abc", true);
+        when(selectMock.all())
+                .thenReturn(Flux.just(row(1, "ab", true)))
+                .thenReturn(Flux.just(row(1, "ab", true), inserted));
+        Sinks.One<MonkeyStat> pendingInsert = Sinks.one();
+        ReactiveInsertOperation.ReactiveInsert<MonkeyStat> insertMock = mock(ReactiveInsertOperation.ReactiveInsert.class);
+        when(template.insert(MonkeyStat.class)).thenReturn(insertMock);
+        when(insertMock.using(any(MonkeyStat.class))).thenReturn(pendingInsert.asMono());
+
+        StepVerifier.create(aggregates.read(aggregates::count)).expectNext(1L).verifyComplete();
+        List<MonkeyStat> result = new ArrayList<>();
+        aggregates.insert(inserted).subscribe(result::add);
+
+        // INSERT 在途时作废：重新扫描要等它结束（因而读得到它），写入本身不再并入
+        aggregates.invalidate();
+        Mono<Long> count = aggregates.read(aggregates::count);
+        verify(selectMock, times(1)).all();
+        pendingInsert.tryEmitValue(inserted);
+
+        StepVerifier.create(count).expectNext(2L).verifyComplete();
+        StepVerifier.create(aggregates.read(() -> successes.get())).expectNext(2L).verifyComplete();
+        assertEquals(List.of(inserted), result);
+        verify(selectMock, times(2)).all();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void insert_is_written_even_when_scan_fails() {
+        Sinks.Empty<Void> scanFailure = Sinks.empty();
+        ReactiveSelectOperation.ReactiveSelect<MonkeyStat> selectMock = mock(ReactiveSelectOperation.ReactiveSelect.class);
+        when(template.select(MonkeyStat.class)).thenReturn(selectMock);
+        MonkeyStat inserted = row(1, "ab", true);
+        when(selectMock.all())
+                .thenReturn(scanFailure.asMono().thenMany(Flux.<MonkeyStat>empty()))
+                .thenReturn(Flux.just(inserted));
+        stubInsertEcho();
+
+        Mono<Long> failed = aggregates.read(aggregates::count).cache();
+        failed.subscribe(v -> { }, e -> { });
+        // 扫描进行中的写入先等扫描结束，扫描失败也照常落库
+        List<MonkeyStat> result = new ArrayList<>();
+        aggregates.insert(inserted).subscribe(result::add);
+        assertEquals(List.of(), result);
+        scanFailure.tryEmitError(new RuntimeException("db down"));
+
+        StepVerifier.create(failed).verifyErrorMessage("db down");
+        assertEquals(List.of(inserted), result);
+        StepVerifier.create(aggregates.read(aggregates::count)).expectNext(1L).verifyComplete();
+    }
+}
@@ -3,10 +3,12 @@ package run.runnable.numfeelservice.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.node.ArrayNode;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -203,6 +205,38 @@ class QuantumRandomServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void drawBatch_returns_thousands_of_values_in_range() {
+        StepVerifier.create(service.drawBatch(1, 6, 6000, "secure"))
+                .assertNext(b -> {
+                    assertEquals("secure", b.source());
+                    assertFalse(b.degraded());
+                    assertEquals(6000, b.values().length);
+                    int[] counts = new int[7];
+                    for (int v : b.values()) {
+                        assertTrue(v >= 1 && v <= 6);
+                        counts[v]++;
+                    }
+                    for (int face = 1; face <= 6; face++) assertTrue(counts[face] > 800, "每个点数都出现");
+                })
+                .verifyComplete();
+
+        StepVerifier.create(service.drawBatch(1, 6, 0, "secure"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @Test
+    void drawLottery_requests_only_the_bytes_it_expects_to_use() {
+        ArrayNode big = arrayNode();
+        for (int i = 0; i < 1024; i++) big.add(i % 256);
+        when(responseSpec.bodyToMono(ArrayNode.class)).thenReturn(Mono.just(big));
+
+        // 双色球：6 个红球 + 1 个蓝球约 49 位，从池里只取 7 个字节
+        service.drawLottery("ssq", null).block();
+        assertEquals(1024L - 7, service.stats().get("quantumPooled"));
+    }
+
     @Test
     void drawLottery_uses_secure_when_no_token() {
         service = new QuantumRandomService(ninjaWebClient, randomOrgWebClient, "");
@@ -234,4 +268,81 @@ class QuantumRandomServiceTest {
                 })
                 .verifyComplete();
     }
+
+    @Test
+    void pool_serves_follow_up_request() {
+        ArrayNode big = arrayNode();
+        for (int i = 0; i < 1024; i++) big.add(i % 256);
+        when(responseSpec.bodyToMono(ArrayNode.class)).thenReturn(Mono.just(big));
+
+        StepVerifier.create(service.bytes(16, "quantum"))
+                .assertNext(e -> assertEquals(List.of(0, 1, 2, 3), e.bytes().subList(0, 4)))
+                .verifyComplete();
+        // 上游一批 1024 个，余下的 1008 个进池，下一次直接从池里取，接着第 16 个往后
+        StepVerifier.create(service.bytes(100, "quantum"))
+                .assertNext(e -> {
+                    assertEquals("quantum", e.source());
+                    assertFalse(e.degraded());
+                    assertTrue(e.provider().contains("字节池缓存"));
+                    assertEquals(100, e.bytes().size());
+                    assertEquals(16, e.bytes().get(0));
+                    assertEquals(115, e.bytes().get(99));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void partial_pool_draw_tops_up_only_the_difference() {
+        ArrayNode big = arrayNode();
+        for (int i = 0; i < 1024; i++) big.add(i % 256);
+        when(responseSpec.bodyToMono(ArrayNode.class))
+                .thenReturn(Mono.just(big))
+                .thenReturn(Mono.error(new RuntimeException("upstream down")));
+        when(responseSpec.bodyToMono(String.class))
+                .thenReturn(Mono.just("201\n202\n203"))
+                .thenReturn(Mono.error(new RuntimeException("random.org down")));
+
+        StepVerifier.create(service.bytes(16, null)).expectNextCount(1).verifyComplete();
+        // 池中 1008 个全部用上，只差 2 个向上游补；量子源失败降级到大气噪声，整段按降级后的源标注
+        StepVerifier.create(service.bytes(1010, null))
+                .assertNext(e -> {
+                    assertEquals(1010, e.bytes().size());
+                    assertEquals(16, e.bytes().get(0));
+                    assertEquals(List.of(201, 202), e.bytes().subList(1008, 1010));
+                    assertEquals("atmospheric", e.source());
+                    assertTrue(e.degraded());
+                })
+                .verifyComplete();
+        assertEquals(1L, service.stats().get("atmosphericPooled"), "大气噪声多出的 1 个进了自己的池");
+    }
+
+    @Test
+    void concurrent_pool_misses_share_one_upstream_fetch() {
+        Sinks.One<ArrayNode> upstream = Sinks.one();
+        when(responseSpec.bodyToMono(ArrayNode.class)).thenReturn(upstream.asMono());
+
+        List<QuantumRandomService.Entropy> results = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 5; i++) {
+            service.bytes(100, "quantum").subscribe(results::add);
+        }
+        // 5 个缺口只发出一次上游请求，其余 4 个挂在它上面
+        verify(responseSpec, times(1)).bodyToMono(ArrayNode.class);
+        assertTrue(results.isEmpty());
+
+        ArrayNode big = arrayNode();
+        for (int i = 0; i < 1024; i++) big.add(i % 256);
+        upstream.tryEmitValue(big);
+
+        assertEquals(5, results.size());
+        HashSet<Integer> firstBytes = new HashSet<>();
+        for (QuantumRandomService.Entropy e : results) {
+            assertEquals("quantum", e.source());
+            assertEquals(100, e.bytes().size());
+            firstBytes.add(e.bytes().get(0));
+        }
+        assertEquals(5, firstBytes.size(), "每个请求拿到不同的字节");
+        assertEquals(4L, service.stats().get("coalescedWaiters"));
+        assertEquals(1L, service.stats().get("upstreamFetches"));
+        assertEquals(0.0, service.stats().get("poolHitRatio"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RankSkipList 与 FenwickCounter 单元测试：随机增删后与对列表的暴力计数逐一对照。
+ */
+class RankSkipListTest {
+
+    @Test
+    void skip_list_ranks_match_brute_force() {
+        Random random = new Random(11);
+        RankSkipList list = new RankSkipList();
+        List<Double> values = new ArrayList<>();
+
+        for (int step = 0; step < 5000; step++) {
+            if (!values.isEmpty() && random.nextInt(3) == 0) {
+                Double victim = values.remove(random.nextInt(values.size()));
+                assertTrue(list.remove(victim));
+            } else {
+                // 取值范围窄一些，保证有大量重复键
+                double v = random.nextInt(200) / 4.0 - 10;
+                values.add(v);
+                list.add(v);
+            }
+            double probe = random.nextInt(220) / 4.0 - 12;
+            assertEquals(values.size(), list.size());
+            assertEquals(values.stream().filter(v -> v < probe).count(), list.countLess(probe));
+            assertEquals(values.stream().filter(v -> v > probe).count(), list.countGreater(probe));
+        }
+    }
+
+    @Test
+    void skip_list_remove_missing_and_clear() {
+        RankSkipList list = new RankSkipList();
+        list.add(1.5);
+        list.add(1.5);
+
+        assertFalse(list.remove(2.0));
+        assertTrue(list.remove(1.5));
+        assertEquals(1, list.size());
+        assertEquals(1, list.countGreater(1.0));
+
+        list.clear();
+        assertEquals(0, list.size());
+        assertEquals(0, list.countLess(100));
+        list.add(3);
+        assertEquals(1, list.countLess(4));
+    }
+
+    @Test
+    void fenwick_ranks_match_brute_force_including_out_of_range() {
+        Random random = new Random(13);
+        FenwickCounter counter = new FenwickCounter(0, 100);
+        List<Integer> values = new ArrayList<>();
+
+        for (int step = 0; step < 5000; step++) {
+            if (!values.isEmpty() && random.nextInt(3) == 0) {
+                counter.remove(values.remove(random.nextInt(values.size())));
+            } else {
+                // 少量值落在 [0, 100] 之外，走溢出跳表
+                int v = random.nextInt(120) - 10;
+                values.add(v);
+                counter.add(v);
+            }
+            int probe = random.nextInt(130) - 15;
+            assertEquals(values.size(), counter.size());
+            assertEquals(values.stream().filter(v -> v < probe).count(), counter.countLess(probe));
+            assertEquals(values.stream().filter(v -> v > probe).count(), counter.countGreater(probe));
+        }
+
+        counter.clear();
+        assertEquals(0, counter.size());
+        assertEquals(0, counter.countGreater(-1000));
+    }
+
+    @Test
+    void fenwick_rejects_empty_domain() {
+        assertThrows(IllegalArgumentException.class, () -> new FenwickCounter(5, 4));
+    }
+}
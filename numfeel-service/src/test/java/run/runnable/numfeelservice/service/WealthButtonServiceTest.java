@@ -11,16 +11,27 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.r2dbc.core.ReactiveInsertOperation;
 import org.springframework.data.r2dbc.core.ReactiveSelectOperation;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.FetchSpec;
+import org.springframework.r2dbc.core.RowsFetchSpec;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -331,6 +342,52 @@ class WealthButtonServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void cleanupShouldOnlyCheckRowsAfterLastCleanedId() {
+        String streak = "W".repeat(WealthButtonService.MAX_WIN_STREAK);
+        DatabaseClient.GenericExecuteSpec select = mock(DatabaseClient.GenericExecuteSpec.class);
+        when(databaseClient.sql(contains("SELECT id, round_history"))).thenReturn(select);
+        when(select.bind(anyString(), any())).thenReturn(select);
+        when(select.map(any(BiFunction.class)))
+                .thenAnswer(invocation -> historyRows(invocation.getArgument(0),
+                        Map.of(3L, "WWLL", 7L, streak + "L", 9L, "LW")))
+                .thenAnswer(invocation -> historyRows(invocation.getArgument(0), Map.of()));
+        DatabaseClient.GenericExecuteSpec delete = mock(DatabaseClient.GenericExecuteSpec.class);
+        when(databaseClient.sql(contains("DELETE FROM wealth_button_leaderboard"))).thenReturn(delete);
+        when(delete.bind(anyInt(), any())).thenReturn(delete);
+        FetchSpec<Map<String, Object>> fetch = mock(FetchSpec.class);
+        when(delete.fetch()).thenReturn(fetch);
+        when(fetch.rowsUpdated()).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(service.cleanSuspiciousSince()).expectNext(1L).verifyComplete();
+        StepVerifier.create(service.cleanSuspiciousSince()).expectNext(0L).verifyComplete();
+
+        verify(select).bind("after", 0L);
+        verify(select).bind("after", 9L);
+        verify(delete).bind(0, 7L);
+        // 第二次没有新行，也不再整表读取排行榜
+        verify(databaseClient).sql(contains("DELETE FROM wealth_button_leaderboard"));
+        verify(template, never()).select(WealthButtonLeaderboardEntry.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RowsFetchSpec<Object> historyRows(BiFunction<Row, RowMetadata, Object> mapper,
+                                                     Map<Long, String> histories) {
+        List<Object> mapped = histories.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> {
+                    Row row = mock(Row.class);
+                    when(row.get("id")).thenReturn(e.getKey());
+                    when(row.get("round_history")).thenReturn(e.getValue());
+                    return mapper.apply(row, null);
+                })
+                .toList();
+        RowsFetchSpec<Object> fetch = mock(RowsFetchSpec.class);
+        when(fetch.all()).thenReturn(Flux.fromIterable(mapped));
+        return fetch;
+    }
+
     @SuppressWarnings("unchecked")
     private void mockSelectAllLeaderboard(List<WealthButtonLeaderboardEntry> rows) {
         ReactiveSelectOperation.ReactiveSelect<WealthButtonLeaderboardEntry> selectMock =
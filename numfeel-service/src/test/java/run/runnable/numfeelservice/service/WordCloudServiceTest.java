@@ -0,0 +1,236 @@
+package run.runnable.numfeelservice.service;
+
+import com.huaban.analysis.jieba.JiebaSegmenter;
+import com.huaban.analysis.jieba.SegToken;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import run.runnable.numfeelservice.controller.dto.UtilityResponses.WordCloudEntryResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WordCloudService 分词统计单元测试：在临时目录构造小语料，验证并行、增量统计与顺序全量统计结果一致。
+ */
+class WordCloudServiceTest {
+
+    private static final String[] LINES = {
+            "户晨风：我们今天聊一聊北京和上海的房价，还有年轻人的工资收入。",
+            "网友：主播你怎么看待消费降级？",
+            "户晨风:消费降级是一个伪命题，苹果手机卖得比安卓贵是有原因的。",
+            "户晨风：   ",
+            "户晨风：2024 年的经济形势 3.14 -5 还是要看出口和内需。",
+    };
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void refreshIndex_parallel_matches_sequential_reference() throws IOException {
+        writeCorpus(24);
+
+        Map<String, Integer> expected = referenceCounts();
+        Map<String, Integer> single = refreshedTotals(1);
+        Map<String, Integer> parallel = refreshedTotals(4);
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, single);
+        assertEquals(expected, parallel);
+    }
+
+    @Test
+    void refreshIndex_ignores_non_markdown_and_other_speakers() throws IOException {
+        Files.writeString(dataDir.resolve("a.txt"), "户晨风：房价\n");
+        Files.writeString(dataDir.resolve("b.md"), "网友：房价\n户晨风：工资\n");
+
+        WordCountIndex index = new WordCountIndex(0);
+        WordCloudService.refreshIndex(index, dataDir, 2);
+
+        assertEquals(1, index.fileCount());
+        assertEquals(0, index.totals().get("房价"));
+        assertEquals(1, index.totals().get("工资"));
+    }
+
+    @Test
+    void refreshIndex_empty_directory_returns_empty_index() throws IOException {
+        WordCountIndex index = new WordCountIndex(0);
+
+        assertEquals(0, WordCloudService.refreshIndex(index, dataDir, 2));
+        assertEquals(0, index.totals().size());
+    }
+
+    @Test
+    void refreshIndex_only_resegments_changed_files() throws IOException {
+        writeCorpus(10);
+        WordCountIndex index = new WordCountIndex(0);
+        assertEquals(10, WordCloudService.refreshIndex(index, dataDir, 2));
+        assertEquals(0, WordCloudService.refreshIndex(index, dataDir, 2));
+
+        Path changed = dataDir.resolve("0.md");
+        Files.writeString(changed, "户晨风：收入和工资，工资和房价。\n");
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 5000));
+        Files.delete(dataDir.resolve("sub/1.md"));
+        Files.writeString(dataDir.resolve("sub/new.md"), "户晨风：出口和内需\n");
+
+        assertEquals(3, WordCloudService.refreshIndex(index, dataDir, 2));
+        assertEquals(10, index.fileCount());
+        assertEquals(referenceCounts(), toMap(index.totals()));
+    }
+
+    @Test
+    void index_snapshot_round_trips_through_mmap() throws IOException {
+        writeCorpus(12);
+        WordCountIndex index = new WordCountIndex(42);
+        WordCloudService.refreshIndex(index, dataDir, 2);
+        Path snapshot = dataDir.resolve("index.wcidx");
+        index.save(snapshot);
+
+        WordCountIndex loaded = WordCountIndex.load(snapshot, 42);
+
+        assertEquals(12, loaded.fileCount());
+        assertEquals(toMap(index.totals()), toMap(loaded.totals()));
+        assertEquals(0, WordCloudService.refreshIndex(loaded, dataDir, 2));
+    }
+
+    @Test
+    void index_load_missing_file_returns_empty_index() throws IOException {
+        WordCountIndex loaded = WordCountIndex.load(dataDir.resolve("missing.wcidx"), 1);
+
+        assertEquals(0, loaded.fileCount());
+    }
+
+    @Test
+    void index_load_rejects_other_filter_rules_and_truncated_snapshots() throws IOException {
+        writeCorpus(3);
+        WordCountIndex index = new WordCountIndex(7);
+        WordCloudService.refreshIndex(index, dataDir, 2);
+        Path snapshot = dataDir.resolve("index.wcidx");
+        index.save(snapshot);
+
+        assertThrows(IOException.class, () -> WordCountIndex.load(snapshot, 8));
+
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> WordCountIndex.load(snapshot, 7));
+    }
+
+    @Test
+    void shouldCountWord_rejects_numbers_and_stop_words() {
+        assertFalse(WordCloudService.shouldCountWord("2024"));
+        assertFalse(WordCloudService.shouldCountWord("-5"));
+        assertFalse(WordCloudService.shouldCountWord("3.14"));
+        assertFalse(WordCloudService.shouldCountWord("这个"));
+        assertFalse(WordCloudService.shouldCountWord(""));
+        assertTrue(WordCloudService.shouldCountWord("3."));
+        assertTrue(WordCloudService.shouldCountWord(".5"));
+        assertTrue(WordCloudService.shouldCountWord("-"));
+        assertTrue(WordCloudService.shouldCountWord("5G"));
+        assertTrue(WordCloudService.shouldCountWord("１２"));
+    }
+
+    @Test
+    void topWords_orders_by_count_and_skips_single_chars() {
+        WordCounter counts = new WordCounter(4);
+        for (int i = 0; i < 1000; i++) {
+            counts.add("词" + i, i);
+        }
+        counts.add("的", 5000);
+
+        List<WordCloudEntryResponse> top = WordCloudService.topWords(counts, 300);
+
+        assertEquals(300, top.size());
+        assertEquals("词999", top.get(0).name());
+        assertEquals(700, top.get(299).value());
+    }
+
+    @Test
+    void wordCounter_grows_and_accumulates() {
+        WordCounter a = new WordCounter(1);
+        WordCounter b = new WordCounter(1);
+        for (int i = 0; i < 5000; i++) {
+            a.increment("w" + i);
+            b.add("w" + (i + 2500), 2);
+        }
+        b.forEach(a::add);
+
+        assertEquals(7500, a.size());
+        assertEquals(1, a.get("w0"));
+        assertEquals(3, a.get("w2500"));
+        assertEquals(2, a.get("w7499"));
+        assertEquals(0, a.get("missing"));
+    }
+
+    @Test
+    void wordCounter_drops_words_that_reach_zero() {
+        WordCounter counter = new WordCounter(1);
+        for (int i = 0; i < 2000; i++) {
+            counter.add("w" + i, 3);
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            counter.add("w" + i, -3);
+        }
+
+        assertEquals(1000, counter.size());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i % 2 == 0 ? 0 : 3, counter.get("w" + i));
+        }
+        counter.forEach((word, count) -> assertEquals(3, count));
+    }
+
+    private void writeCorpus(int files) throws IOException {
+        Files.createDirectories(dataDir.resolve("sub"));
+        for (int f = 0; f < files; f++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i <= f % 7; i++) {
+                sb.append(LINES[(f + i) % LINES.length]).append('\n');
+            }
+            Path dir = f % 2 == 0 ? dataDir : dataDir.resolve("sub");
+            Files.writeString(dir.resolve(f + ".md"), sb.toString());
+        }
+    }
+
+    private Map<String, Integer> refreshedTotals(int parallelism) throws IOException {
+        WordCountIndex index = new WordCountIndex(0);
+        WordCloudService.refreshIndex(index, dataDir, parallelism);
+        return toMap(index.totals());
+    }
+
+    private static Map<String, Integer> toMap(WordCounter counter) {
+        Map<String, Integer> out = new HashMap<>();
+        counter.forEach(out::put);
+        return out;
+    }
+
+    /** 用原先的单线程 readAllLines + HashMap 方式统计，作为对照。 */
+    private Map<String, Integer> referenceCounts() throws IOException {
+        JiebaSegmenter segmenter = new JiebaSegmenter();
+        Map<String, Integer> counts = new HashMap<>();
+        try (var paths = Files.walk(dataDir)) {
+            for (Path p : paths.filter(p -> p.toString().endsWith(".md")).toList()) {
+                for (String line : Files.readAllLines(p)) {
+                    String content = WordCloudService.extractSpeakerContent(line);
+                    if (content == null) {
+                        continue;
+                    }
+                    for (SegToken token : segmenter.process(content, JiebaSegmenter.SegMode.SEARCH)) {
+                        String word = token.word.trim();
+                        if (!word.isEmpty() && !word.matches("-?\\d+(\\.\\d+)?")
+                                && WordCloudService.shouldCountWord(word)) {
+                            counts.merge(word, 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,103 @@
+package run.runnable.numfeelservice.service;
+
+import org.junit.jupiter.api.Test;
+import run.runnable.numfeelservice.controller.dto.UtilityResponses.WordCloudEntryResponse;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WordSearchIndex 单元测试：与对 HashMap 的暴力扫描结果逐一对照。
+ */
+class WordSearchIndexTest {
+
+    private static final String ALPHABET = "经济市场房价工资收入北京上海年轻人消费";
+
+    @Test
+    void count_exact_lookup() {
+        WordSearchIndex index = WordSearchIndex.of(Map.of("经济", 150, "经济学", 40, "市场", 120, "零", 0));
+
+        assertEquals(3, index.size());
+        assertEquals(150, index.count("经济"));
+        assertEquals(40, index.count("经济学"));
+        assertEquals(0, index.count("经"));
+        assertEquals(0, index.count("零"));
+        assertEquals(0, index.count("不存在"));
+    }
+
+    @Test
+    void prefix_and_contains_match_brute_force() {
+        Map<String, Integer> counts = randomVocabulary(5000, 1);
+        WordCounter counter = new WordCounter();
+        counts.forEach(counter::add);
+        WordSearchIndex index = WordSearchIndex.from(counter);
+        Random random = new Random(2);
+
+        for (int q = 0; q < 300; q++) {
+            String query = randomWord(random, 1 + random.nextInt(3));
+            int limit = 1 + random.nextInt(30);
+            assertEquals(bruteForce(counts, w -> w.startsWith(query), limit), index.prefix(query, limit), query);
+            assertEquals(bruteForce(counts, w -> w.contains(query), limit), index.contains(query, limit), query);
+        }
+        for (String word : counts.keySet()) {
+            assertEquals(counts.get(word), index.count(word));
+        }
+    }
+
+    @Test
+    void ties_are_broken_by_word_order() {
+        WordSearchIndex index = WordSearchIndex.of(Map.of("ab", 5, "aa", 5, "ac", 5, "b", 9));
+
+        assertEquals(List.of(new WordCloudEntryResponse("aa", 5), new WordCloudEntryResponse("ab", 5)),
+                index.prefix("a", 2));
+        assertEquals(List.of(new WordCloudEntryResponse("b", 9), new WordCloudEntryResponse("ab", 5)),
+                index.contains("b", 5));
+    }
+
+    @Test
+    void empty_and_missing_queries() {
+        WordSearchIndex index = WordSearchIndex.of(Map.of("经济", 150, "市场", 120));
+
+        assertEquals(List.of(), index.prefix("房", 10));
+        assertEquals(List.of(), index.contains("济场", 10));
+        assertEquals(List.of(), index.contains("济", 0));
+        assertEquals(2, index.prefix("", 10).size());
+        assertEquals("经济", index.contains("", 1).get(0).name());
+        assertEquals(List.of(), WordSearchIndex.EMPTY.prefix("经", 10));
+        assertEquals(0, WordSearchIndex.EMPTY.count("经"));
+    }
+
+    private static List<WordCloudEntryResponse> bruteForce(Map<String, Integer> counts, Predicate<String> filter,
+                                                           int limit) {
+        return counts.entrySet().stream()
+                .filter(e -> filter.test(e.getKey()))
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.naturalOrder())))
+                .limit(limit)
+                .map(e -> new WordCloudEntryResponse(e.getKey(), e.getValue()))
+                .toList();
+    }
+
+    private static Map<String, Integer> randomVocabulary(int size, long seed) {
+        Random random = new Random(seed);
+        Map<String, Integer> counts = new HashMap<>();
+        while (counts.size() < size) {
+            counts.put(randomWord(random, 1 + random.nextInt(5)), 1 + random.nextInt(50));
+        }
+        return counts;
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package run.runnable.numfeelservice.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * IpKey 单元测试：与 InetAddress 的解析结果一致，同一地址的不同写法得到同一个键，头的优先级与 ClientIp 相同。
+ */
+class IpKeyTest {
+
+    @Test
+    void parses_ipv4_as_mapped_address() {
+        IpKey key = parse("203.0.113.8");
+        assertThat(key.hi).isZero();
+        assertThat(key.lo).isEqualTo(0x0000_ffff_cb00_7108L);
+        assertThat(same("203.0.113.8", " ::ffff:203.0.113.8 ")).isTrue();
+        assertThat(same("203.0.113.8", "::FFFF:cb00:7108")).isTrue();
+        assertThat(same("203.0.113.8", "203.0.113.9")).isFalse();
+    }
+
+    @Test
+    void parses_ipv6_like_inet_address() throws Exception {
+        String[] addresses = {
+                "2001:db8::1", "2001:0DB8:0000:0000:0000:0000:0000:0001", "::", "::1", "fe80::1%eth0",
+                "1::", "1:2:3:4:5:6:7:8", "1:2:3:4:5:6::8", "1::8", "::2:3:4:5:6:7:8", "64:ff9b::192.0.2.33",
+                "2404:6800:4003:c03::8a"
+        };
+        for (String address : addresses) {
+            IpKey key = parse(address);
+            byte[] bytes = InetAddress.getByName(address.replace("%eth0", "")).getAddress();
+            if (bytes.length == 4) {
+                bytes = new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff,
+                        bytes[0], bytes[1], bytes[2], bytes[3]};
+            }
+            long hi = 0;
+            long lo = 0;
+            for (int i = 0; i < 8; i++) {
+                hi = (hi << 8) | (bytes[i] & 0xff);
+                lo = (lo << 8) | (bytes[i + 8] & 0xff);
+            }
+            assertThat(key.hi).as(address).isEqualTo(hi);
+            assertThat(key.lo).as(address).isEqualTo(lo);
+        }
+    }
+
+    @Test
+    void invalid_values_are_hashed_apart_from_real_addresses() {
+        String[] invalid = {"unknown", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1:2:3:4:5:6:7:8:9", "1:::2",
+                "12345::1", ":1", "1:", "::1::", "", "1.2.3.4:80"};
+        for (String value : invalid) {
+            IpKey key = parse(value);
+            assertThat(key.hi >>> 56).as(value).isEqualTo(0xffL);
+        }
+        assertThat(same("unknown", "unknown")).isTrue();
+        assertThat(same("unknown", "unknown2")).isFalse();
+    }
+
+    @Test
+    void resolve_follows_client_ip_header_priority() {
+        MockServerHttpRequest all = MockServerHttpRequest.get("/")
+                .header("CF-Connecting-IP", "198.51.100.1")
+                .header("X-Forwarded-For", "198.51.100.2, 10.0.0.1")
+                .header("X-Real-IP", "198.51.100.3")
+                .remoteAddress(new InetSocketAddress("198.51.100.4", 1234))
+                .build();
+        assertThat(new IpKey().resolve(all).lo).isEqualTo(parse("198.51.100.1").lo);
+
+        MockServerHttpRequest forwarded = MockServerHttpRequest.get("/")
+                .header("X-Forwarded-For", " 198.51.100.2 , 10.0.0.1")
+                .build();
+        assertThat(new IpKey().resolve(forwarded).lo).isEqualTo(parse("198.51.100.2").lo);
+
+        MockServerHttpRequest remote = MockServerHttpRequest.get("/")
+                .remoteAddress(new InetSocketAddress("198.51.100.4", 1234))
+                .build();
+        assertThat(new IpKey().resolve(remote).lo).isEqualTo(parse("198.51.100.4").lo);
+
+        MockServerHttpRequest remoteV6 = MockServerHttpRequest.get("/")
+                .remoteAddress(new InetSocketAddress("2001:db8::1", 1234))
+                .build();
+        IpKey v6 = new IpKey().resolve(remoteV6);
+        assertThat(v6.hi).isEqualTo(parse("2001:db8::1").hi);
+        assertThat(v6.lo).isEqualTo(parse("2001:db8::1").lo);
+    }
+
+    private static IpKey parse(String value) {
+        return new IpKey().parse(value, 0, value.length());
+    }
+
+    private static boolean same(String a, String b) {
+        IpKey x = parse(a);
+        IpKey y = parse(b);
+        return x.hi == y.hi && x.lo == y.lo;
+    }
+}
@@ -0,0 +1,93 @@
+package run.runnable.numfeelservice.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * RateLimitTable 单元测试：容量与匀速补充与 Bucket4j 的 greedy bucket 一致，键之间互不影响，
+ * 表满时淘汰最不活跃的桶，并发下放行次数不超过容量。
+ */
+class RateLimitTableTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void allows_burst_of_capacity_then_refills_one_token_per_interval() {
+        RateLimitTable table = new RateLimitTable(10, MINUTE, 64);
+        long now = 1;
+        for (int i = 0; i < 10; i++) {
+            assertThat(table.tryAcquire(0, 1, 7, now)).isZero();
+        }
+        long wait = table.tryAcquire(0, 1, 7, now);
+        assertThat(wait).isEqualTo(MINUTE / 10);
+        // 拒绝不消耗令牌
+        assertThat(table.tryAcquire(0, 1, 7, now + wait - 1)).isEqualTo(1);
+        assertThat(table.tryAcquire(0, 1, 7, now + wait)).isZero();
+        assertThat(table.tryAcquire(0, 1, 7, now + wait)).isPositive();
+        // 空闲一个窗口后补满
+        long later = now + wait + MINUTE;
+        for (int i = 0; i < 10; i++) {
+            assertThat(table.tryAcquire(0, 1, 7, later)).isZero();
+        }
+        assertThat(table.tryAcquire(0, 1, 7, later)).isPositive();
+    }
+
+    @Test
+    void keys_differ_by_ip_and_route() {
+        RateLimitTable table = new RateLimitTable(1, MINUTE, 64);
+        assertThat(table.tryAcquire(0, 1, 7, 1)).isZero();
+        assertThat(table.tryAcquire(0, 1, 7, 1)).isPositive();
+        assertThat(table.tryAcquire(0, 2, 7, 1)).isZero();
+        assertThat(table.tryAcquire(1, 1, 7, 1)).isZero();
+        assertThat(table.tryAcquire(0, 1, 8, 1)).isZero();
+    }
+
+    @Test
+    void full_table_evicts_least_recently_limited_bucket() {
+        RateLimitTable table = new RateLimitTable(1, MINUTE, RateLimitTable.MAX_PROBE);
+        // 填满所有槽位，第 0 个键最早
+        for (int key = 0; key < RateLimitTable.MAX_PROBE; key++) {
+            assertThat(table.tryAcquire(0, key, 0, 1 + key)).isZero();
+        }
+        assertThat(table.tryAcquire(0, 100, 0, 100)).isZero();
+        // 被淘汰的最早的键拿到新桶，其余的键仍受限
+        assertThat(table.tryAcquire(0, 0, 0, 101)).isZero();
+        assertThat(table.tryAcquire(0, RateLimitTable.MAX_PROBE - 1, 0, 102)).isPositive();
+    }
+
+    @Test
+    void concurrent_acquires_never_exceed_capacity() throws InterruptedException {
+        RateLimitTable table = new RateLimitTable(1000, MINUTE, 1024);
+        AtomicInteger allowed = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 500; i++) {
+                        for (int key = 0; key < 4; key++) {
+                            if (table.tryAcquire(0, key, 0, 1) == 0) {
+                                allowed.incrementAndGet();
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+        start.countDown();
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(allowed).hasValue(4 * 1000);
+    }
+}
@@ -7,7 +7,9 @@ import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -79,10 +81,102 @@ class RateLimitWebFilterTest {
         assertThat(rejected.getResponse().getStatusCode().value()).isEqualTo(429);
     }
 
+    @Test
+    void social_engineering_submit_uses_thirty_per_minute_rule_instead_of_generic_submit_rule() {
+        RateLimitWebFilter filter = new RateLimitWebFilter();
+        AtomicInteger passed = new AtomicInteger();
+        WebFilterChain chain = exchange -> {
+            passed.incrementAndGet();
+            return Mono.empty();
+        };
+
+        for (int i = 0; i < 31; i++) {
+            filter.filter(exchange(HttpMethod.POST, "/social-engineering/submit"), chain).block();
+        }
+
+        assertThat(passed).hasValue(30);
+    }
+
+    @Test
+    void route_rules_count_each_path_and_ip_separately() {
+        RateLimitWebFilter filter = new RateLimitWebFilter();
+        AtomicInteger passed = new AtomicInteger();
+        WebFilterChain chain = exchange -> {
+            passed.incrementAndGet();
+            return Mono.empty();
+        };
+
+        for (int i = 0; i < 10; i++) {
+            filter.filter(exchange(HttpMethod.POST, "/sorites/submit"), chain).block();
+            filter.filter(exchange(HttpMethod.POST, "/stroop/submit"), chain).block();
+            filter.filter(exchange(HttpMethod.POST, "/sorites/submit", "198.51.100.7"), chain).block();
+        }
+        assertThat(passed).hasValue(30);
+
+        // 同一地址的 IPv4 映射写法共用一个桶
+        MockServerWebExchange rejected = exchange(HttpMethod.POST, "/sorites/submit", "::ffff:203.0.113.8");
+        filter.filter(rejected, chain).block();
+        assertThat(rejected.getResponse().getStatusCode().value()).isEqualTo(429);
+    }
+
+    @Test
+    void global_limit_applies_to_all_requests_and_refills_over_time() {
+        AtomicLong clock = new AtomicLong(1_000);
+        RateLimitWebFilter filter = new RateLimitWebFilter(clock::get);
+        AtomicInteger passed = new AtomicInteger();
+        WebFilterChain chain = exchange -> {
+            passed.incrementAndGet();
+            return Mono.empty();
+        };
+
+        for (int i = 0; i < 200; i++) {
+            filter.filter(exchange(HttpMethod.GET, i % 2 == 0 ? "/index.html" : "/random/number"), chain).block();
+        }
+        MockServerWebExchange rejected = exchange(HttpMethod.GET, "/index.html");
+        filter.filter(rejected, chain).block();
+        assertThat(passed).hasValue(200);
+        assertThat(rejected.getResponse().getStatusCode().value()).isEqualTo(429);
+        // 每 60s / 200 = 0.3s 补一个令牌，Retry-After 向上取整
+        assertThat(rejected.getResponse().getHeaders().getFirst("Retry-After")).isEqualTo("1");
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+        filter.filter(exchange(HttpMethod.GET, "/index.html"), chain).block();
+        assertThat(passed).hasValue(201);
+        filter.filter(exchange(HttpMethod.GET, "/index.html"), chain).block();
+        assertThat(passed).hasValue(201);
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        for (int i = 0; i < 200; i++) {
+            filter.filter(exchange(HttpMethod.GET, "/index.html"), chain).block();
+        }
+        assertThat(passed).hasValue(401);
+    }
+
+    @Test
+    void zhihu_analyze_retry_after_reflects_slow_refill() {
+        RateLimitWebFilter filter = new RateLimitWebFilter();
+        WebFilterChain chain = exchange -> Mono.empty();
+
+        for (int i = 0; i < 3; i++) {
+            filter.filter(exchange(HttpMethod.POST, "/zhihu/analyze"), chain).block();
+        }
+        MockServerWebExchange rejected = exchange(HttpMethod.POST, "/zhihu/analyze");
+        filter.filter(rejected, chain).block();
+
+        assertThat(rejected.getResponse().getStatusCode().value()).isEqualTo(429);
+        // 3/min：20s 补一个令牌
+        assertThat(Long.parseLong(rejected.getResponse().getHeaders().getFirst("Retry-After")))
+                .isBetween(19L, 21L);
+    }
+
     private MockServerWebExchange exchange(HttpMethod method, String path) {
+        return exchange(method, path, "203.0.113.8");
+    }
+
+    private MockServerWebExchange exchange(HttpMethod method, String path, String ip) {
         return MockServerWebExchange.from(
                 MockServerHttpRequest.method(method, path)
-                        .header("X-Real-IP", "203.0.113.8")
+                        .header("X-Real-IP", ip)
         );
     }
 }